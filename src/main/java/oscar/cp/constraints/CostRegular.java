@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *   
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *   
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+package oscar.cp.constraints;
+
+import oscar.algo.Inconsistency;
+import oscar.cp.core.CPPropagStrength;
+import oscar.cp.core.variables.CPIntVar;
+import oscar.cp.core.variables.CPVar;
+import scala.collection.Iterable;
+import scala.jdk.javaapi.CollectionConverters;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+
+/**
+ * Cost Regular Constraint
+ *
+ * Regular constraint with a cost for each letter at each position: cost = sum_i costs[i][x[i]].
+ * The shortest and longest paths of the layered graph of the regular constraint bound the cost,
+ * and a letter is removed from x[i] if all its edges are on paths longer than the max of the cost
+ * or shorter than its min (Demassey, Pesant and Rousseau, A Cost-Regular Based Hybrid Column Generation Approach).
+ */
+public class CostRegular extends Regular {
+
+	private int [][] costs;
+	private CPIntVar cost;
+
+	// shortest and longest paths from the initial state and to the accepting states
+	private long [] fMin;
+	private long [] fMax;
+	private long [] bMin;
+	private long [] bMax;
+
+	private int [] values;
+
+	/**
+	 * Constraint x to be a valid sequence accepted by the automaton with cost = sum_i costs[i][x[i]]
+	 * @param x
+	 * @param automaton
+	 * @param costs a x.length x nbLetters matrix, costs[i][a] is the cost of the letter a at the position i
+	 * @param cost
+	 */
+	public CostRegular(CPIntVar [] x, Automaton automaton, int [][] costs, CPIntVar cost) {
+		super(x, automaton);
+		if (costs.length != x.length) throw new IllegalArgumentException("CostRegular: dim of x and costs must match");
+		for (int i = 0; i < costs.length; i++) {
+			if (costs[i].length < nbLetters) throw new IllegalArgumentException("CostRegular: costs must be given for all the letters");
+		}
+		this.costs = costs;
+		this.cost = cost;
+	}
+
+	@Override
+	public Iterable<CPVar> associatedVars() {
+		List<CPVar> l = new LinkedList<>(Arrays.asList(x));
+		l.add(cost);
+		return CollectionConverters.asScala(l);
+	}
+
+	@Override
+	public void setup(CPPropagStrength l) throws Inconsistency {
+		super.setup(l);
+
+		int nNodes = (n + 1) * nbStates;
+		fMin = new long[nNodes];
+		fMax = new long[nNodes];
+		bMin = new long[nNodes];
+		bMax = new long[nNodes];
+		values = new int[nbLetters];
+
+		propagate();
+
+		for (int i = 0; i < n; i++) {
+			if (!x[i].isBound()) {
+				x[i].callPropagateWhenDomainChanges(this);
+			}
+		}
+		if (!cost.isBound()) {
+			cost.callPropagateWhenBoundsChange(this);
+		}
+	}
+
+	// an edge is in the graph if its states and its letter are, and its letter is still in the domain
+	private boolean hasEdge(int i, int a, int next) {
+		return next >= 0 && isLetterAlive(i, a) && x[i].hasValue(a) && isStateAlive(i + 1, next);
+	}
+
+	@Override
+	public void propagate() throws Inconsistency {
+		Arrays.fill(fMin, Long.MAX_VALUE);
+		Arrays.fill(fMax, Long.MIN_VALUE);
+		Arrays.fill(bMin, Long.MAX_VALUE);
+		Arrays.fill(bMax, Long.MIN_VALUE);
+
+		// forward
+		fMin[initialState] = 0;
+		fMax[initialState] = 0;
+		for (int i = 0; i < n; i++) {
+			for (int q = 0; q < nbStates; q++) {
+				int node = i * nbStates + q;
+				if (fMin[node] == Long.MAX_VALUE || !isStateAlive(i, q)) continue;
+				for (int a = 0; a < nbLetters; a++) {
+					int next = T[q][a];
+					if (hasEdge(i, a, next)) {
+						int succ = (i + 1) * nbStates + next;
+						fMin[succ] = Math.min(fMin[succ], fMin[node] + costs[i][a]);
+						fMax[succ] = Math.max(fMax[succ], fMax[node] + costs[i][a]);
+					}
+				}
+			}
+		}
+		long minCost = Long.MAX_VALUE;
+		long maxCost = Long.MIN_VALUE;
+		for (int q = 0; q < nbStates; q++) {
+			int node = n * nbStates + q;
+			if (accepting[q] && isStateAlive(n, q) && fMin[node] != Long.MAX_VALUE) {
+				minCost = Math.min(minCost, fMin[node]);
+				maxCost = Math.max(maxCost, fMax[node]);
+				bMin[node] = 0;
+				bMax[node] = 0;
+			}
+		}
+		if (minCost == Long.MAX_VALUE || minCost > cost.getMax() || maxCost < cost.getMin()) {
+			throw Inconsistency.get();
+		}
+		cost.updateMin((int) minCost);
+		cost.updateMax((int) maxCost);
+
+		// backward
+		for (int i = n - 1; i >= 0; i--) {
+			for (int q = 0; q < nbStates; q++) {
+				int node = i * nbStates + q;
+				if (!isStateAlive(i, q)) continue;
+				for (int a = 0; a < nbLetters; a++) {
+					int next = T[q][a];
+					if (hasEdge(i, a, next)) {
+						int succ = (i + 1) * nbStates + next;
+						if (bMin[succ] == Long.MAX_VALUE) continue;
+						bMin[node] = Math.min(bMin[node], bMin[succ] + costs[i][a]);
+						bMax[node] = Math.max(bMax[node], bMax[succ] + costs[i][a]);
+					}
+				}
+			}
+		}
+
+		// letters whose paths all exceed the bounds of the cost
+		int min = cost.getMin();
+		int max = cost.getMax();
+		for (int i = 0; i < n; i++) {
+			int nRemoved = 0;
+			for (int a = 0; a < nbLetters; a++) {
+				if (!isLetterAlive(i, a) || !x[i].hasValue(a)) continue;
+				long shortest = Long.MAX_VALUE;
+				long longest = Long.MIN_VALUE;
+				for (int q = 0; q < nbStates; q++) {
+					int node = i * nbStates + q;
+					int next = T[q][a];
+					if (fMin[node] == Long.MAX_VALUE || !isStateAlive(i, q) || !hasEdge(i, a, next)) continue;
+					int succ = (i + 1) * nbStates + next;
+					if (bMin[succ] == Long.MAX_VALUE) continue;
+					shortest = Math.min(shortest, fMin[node] + costs[i][a] + bMin[succ]);
+					longest = Math.max(longest, fMax[node] + costs[i][a] + bMax[succ]);
+				}
+				if (shortest > max || longest < min) {
+					values[nRemoved++] = a;
+				}
+			}
+			if (nRemoved > 0) x[i].removeValues(values, nRemoved);
+		}
+	}
+
+}
@@ -63,24 +63,8 @@ public class GCCBinPacking extends Constraint {
     private int[] valSeen;
     private int   magic;
 
-    private int dfs;
-    private int component;
-
-    private int[] varComponent;
-    private int[] varDfs;
-    private int[] varHigh;
-
-    private int[] valComponent;
-    private int[] valDfs;
-    private int[] valHigh;
-
-    int sinkComponent;
-    int sinkDfs;
-    int sinkHigh;
-
-    private int[] stack;
-    private int[] type;
-    int top;
+    // components of the residual graph
+    private ResidualGraphSCC scc;
 
 
     public GCCBinPacking(CPIntVar[] x, int [] weights ,CPIntVar [] loads, CPIntVar [] o) {
@@ -444,201 +428,12 @@ public class GCCBinPacking extends Constraint {
     }
 
     private void allocateSCC() {
-        varComponent = new int[x.length];
-        varDfs = new int[x.length];
-        varHigh = new int [x.length];
-
-        valComponent = new int [nbVals];
-        valDfs = new int[nbVals];
-        valHigh = new int[nbVals];
-
-        stack = new int [x.length+nbVals+2];
-        type  = new int [x.length+nbVals+2];
+        scc = new ResidualGraphSCC(x, minVal, maxVal);
     }
 
     private void prune() {
-        findSCC();
-        for (int k = 0; k < x.length; k++) {
-            int mx = x[k].getMin();
-            int Mx = x[k].getMax();
-            for (int w = mx; w <= Mx; w++) {
-                if (varMatch[k] != w) {
-                    if (varComponent[k] != valComponent[w-minVal]) {
-                        if (x[k].hasValue(w)) {
-                            x[k].removeValue(w);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void initSCC() {
-        for(int k = 0 ; k < x.length; k++) {
-            varComponent[k] = 0;
-            varDfs[k] = 0;
-            varHigh[k] = 0;
-        }
-        for(int k = minVal; k <= maxVal; k++) {
-            valComponent[k-minVal] = 0;
-            valDfs[k-minVal] = 0;
-            valHigh[k-minVal] = 0;
-        }
-        sinkComponent = 0;
-        sinkDfs = 0;
-        sinkHigh = 0;
-
-        top = 0;
-        dfs = x.length + (maxVal-minVal+1) + 1;
-        component = 0;
-    }
-
-    private void findSCC() {
-        initSCC();
-        for (int k = 0; k < x.length; k++) {
-            if (varDfs[k] == 0) {
-                findSCCvar(k);
-            }
-        }
-    }
-
-    private void findSCCvar(int k) {
-        varDfs[k] = dfs--;
-        varHigh[k] = varDfs[k];
-        stack[top] = k;
-        type[top] = 0;
-        top++;
-        assert(top <= x.length + maxVal-minVal + 2);
-        int mx = x[k].getMin();
-        int Mx = x[k].getMax();
-        for (int w = mx; w <= Mx; w++) {
-            int wind = w-minVal;
-            if (varMatch[k] != w) {
-                if (x[k].hasValue(w)) {
-                    if (valDfs[wind] == 0) {
-                        findSCCval(w);
-                        if (valHigh[wind] > varHigh[k])
-                            varHigh[k] = valHigh[wind];
-                    }
-                    else if ((valDfs[wind] > varDfs[k]) && (valComponent[wind] == 0)) {
-                        if (valDfs[wind] > varHigh[k])
-                            varHigh[k] = valDfs[wind];
-                    }
-                }
-            }
-        }
-        if (varHigh[k] == varDfs[k]) {
-            component++;
-            do {
-                assert(top > 0);
-                int v = stack[--top];
-                int t = type[top];
-                if (t == 0)
-                    varComponent[v] = component;
-                else if (t == 1)
-                    valComponent[v-minVal] = component;
-                else
-                    sinkComponent = component;
-                if (t == 0 && v == k)
-                    break;
-            } while (true);
-        }
-    }
-
-    private void findSCCval(int v) {
-        int vind = v-minVal;
-        valDfs[vind] = dfs--;
-        valHigh[vind] = valDfs[vind];
-        stack[top] = v;
-        type[top] = 1;
-        top++;
-        assert(top <= x.length + maxVal-minVal + 2);
-        // first go to the variables assigned to this value
-
-        int k = valMatch[vind];
-        while (k != NONE) {
-            if (varDfs[k] == 0) {
-                findSCCvar(k);
-                if (varHigh[k] > valHigh[vind])
-                    valHigh[vind] = varHigh[k];
-            }
-            else if ( (varDfs[k] > valDfs[vind]) && (varComponent[k] == 0)) {
-                if (varDfs[k] > valHigh[vind])
-                    valHigh[vind] = varDfs[k];
-            }
-            k = next[k];
-        }
-
-        // next try to see if you can go to the sink
-
-        if (flow[vind] < up[vind]) {
-            // go to the sink
-            if (sinkDfs == 0) {
-                findSCCsink();
-                if (sinkHigh > valHigh[vind])
-                    valHigh[vind] = sinkHigh;
-            }
-            else if ((sinkDfs > valDfs[vind]) && (sinkComponent == 0) && (sinkDfs > valHigh[vind])) {
-                valHigh[vind] = sinkDfs;
-            }
-        }
-
-        if (valHigh[vind] == valDfs[vind]) {
-            component++;
-            do {
-                assert(top > 0);
-                int i = stack[--top];
-                int t = type[top];
-                if (t == 0)
-                    varComponent[i] = component;
-                else if (t == 1)
-                    valComponent[i-minVal] = component;
-                else
-                    sinkComponent = component;
-                if (t == 1 && i == v)
-                    break;
-            } while (true);
-        }
-    }
-
-    private void findSCCsink() {
-        sinkDfs  = dfs--;
-        sinkHigh = sinkDfs;
-        stack[top] = NONE;
-        type[top] = 2;
-        top++;
-        assert(top <= x.length + maxVal-minVal + 2);
-        for(int i = 0; i < x.length; i++) {
-            int w = varMatch[i];
-            int wind = w-minVal;
-            if (flow[wind] > low[wind]) {
-                if (valDfs[wind] == 0) {
-                    findSCCval(w);
-                    if (valHigh[wind] > sinkHigh)
-                        sinkHigh = valHigh[wind];
-                }
-                else if ((valDfs[wind] > sinkDfs) && (valComponent[wind] == 0) && (valDfs[wind] > sinkHigh)) {
-                    sinkHigh = valDfs[wind];
-                }
-            }
-        }
-
-        if (sinkHigh == sinkDfs) {
-            component++;
-            do {
-                assert(top > 0);
-                int i = stack[--top];
-                int t = type[top];
-                if (t == 0)
-                    varComponent[i] = component;
-                else if (t == 1)
-                    valComponent[i-minVal] = component;
-                else
-                    sinkComponent = component;
-                if (t == 2)
-                    break;
-            } while (true);
-        }
+        scc.findSCC(varMatch, valMatch, next, flow, low, up, false);
+        scc.prune();
     }
 
 
@@ -51,35 +51,15 @@ public class GCCVarAC extends Constraint {
 	protected int []  up;
 	protected int []  flow;
 
-	// flow
-	protected int   sizeFlow;
+	// flow, the arrays are the ones of the matching
+	protected ReversibleMatching matching;
 	protected int[] varMatch;
 	protected int[] next;
-	protected int[] prev;
 	protected int[] valMatch;
 	protected int[] varSeen;
 	protected int[] valSeen;
 	protected int   magic;
 
-	protected int dfs;
-	protected int component;
-
-	protected int[] varComponent;
-	protected int[] varDfs;
-	protected int[] varHigh;
-
-	protected int[] valComponent;
-	protected int[] valDfs;
-	protected int[] valHigh;
-
-	protected int sinkComponent;
-	protected int sinkDfs;
-	protected int sinkHigh;
-
-	protected int[] stack;
-	protected int[] type;
-	protected int top;
-
 
     /**
      * Constraint the values minval + i to appear between o[i] times in x
@@ -120,15 +100,10 @@ public class GCCVarAC extends Constraint {
 			throw Inconsistency.get();
 		}
 
-		allocateSCC();
 		prune();
 		pruneBounds();
 
-		for(int k = 0 ; k < x.length; k++) {
-			if (!x[k].isBound()) {
-				x[k].callPropagateWhenDomainChanges(this);
-			}
-		}
+		matching.registerDeltas();
 		for (int i = 0; i < o.length; i++) {
 			o[i].callPropagateWhenBoundsChange(this);
 		}
@@ -138,13 +113,7 @@ public class GCCVarAC extends Constraint {
 	@Override
 	public void propagate() throws Inconsistency {
 	   updateBounds();
-	   for(int k = 0; k < x.length; k++) {
-	      if (varMatch[k] != NONE) {
-	         if (!x[k].hasValue(varMatch[k])) {
-	            unassign(k);
-	         }
-	      }
-	   }
+	   matching.removeLostEdges();
 	   for(int k = minVal; k <= maxVal; k++)
 	      while (flow[k-minVal] > up[k-minVal])
 	         unassign(valMatch[k-minVal]);
@@ -195,395 +164,46 @@ public class GCCVarAC extends Constraint {
 
 
 	protected void allocateFlow() {
-		// flow
-		flow = new int[nbVals];
-		// first variable matched
-		valMatch = new int [nbVals];
-		for(int k = 0; k < nbVals; k++){
-			valMatch[k] = NONE;  // unmatched
-		}
-		// next variable matched
-		next = new int[x.length];
-		for(int k = 0; k < x.length; k++){
-			next[k] = NONE;  // no next
-		}
-		// previous variable matched
-		prev = new int[x.length];
-		for(int k = 0; k < x.length; k++){
-			prev[k] = NONE;  // no prev
-		}
-		// variable assignment
-		varMatch = new int [x.length];
-		for(int k = 0 ; k < x.length; k++){
-			varMatch[k] = NONE; // unmatched
-		}
-		// flag
+		matching = new ReversibleMatching(this, x, minVal, maxVal, low, up, false);
+		flow = matching.flow();
+		valMatch = matching.valMatch();
+		next = matching.next();
+		varMatch = matching.varMatch();
+		// flags of the searches of the subclasses, the matching has its own
 		varSeen = new int[x.length];
-		// flag
 		valSeen = new int[nbVals];
 		magic = 0;	
 	}
 
-	//assigns value v to variable k and update structures: sizeFlow, flow, varMatch, prev, next, valMatch
+	//assigns value v to variable k and update structures: flow, varMatch, next, valMatch
 	protected void assign(int k,int v){
-		sizeFlow++;
-		unassign(k);
-		// k is now first on the list of v
-		varMatch[k] = v;
-		flow[v-minVal]++;
-		int nk = valMatch[v-minVal];
-		next[k] = nk;
-		prev[k] = NONE;
-		if (nk != NONE)
-			prev[nk] = k;
-		valMatch[v-minVal] = k;
+		matching.assign(k, v);
 	}
 
-	//unassings variable k and updates appropriately the structures: sizeFlow, flow, varMatch, prev, next, valMatch
+	//unassings variable k and updates appropriately the structures: flow, varMatch, next, valMatch
 	protected void unassign(int k){
-		if (varMatch[k] != NONE) { // this guy is assigned; must be removed
-			sizeFlow--;
-			int w = varMatch[k];
-			flow[w-minVal]--;
-			if (valMatch[w-minVal] == k) { // first in the list
-				int nk = next[k];
-				valMatch[w-minVal] = nk;
-				if (nk != NONE)
-					prev[nk] = NONE; // nk is now first
-			}
-			else { // not first
-				int pk = prev[k];
-				int nk = next[k];
-				next[pk] = nk;
-				if (nk != NONE)
-					prev[nk] = pk;
-			}
-			varMatch[k] = NONE;
-		}
+		matching.unassign(k);
 	}
 
 	//finds a initial flow for both the underflow and overflow
 	protected void findInitialFlow() {
-		sizeFlow = 0;
-		for(int k = 0; k < x.length; k++) {
-			int mx = x[k].getMin();
-			int Mx = x[k].getMax();
-			for(int i = mx; i <= Mx; i++){
-				if (flow[i-minVal] < up[i-minVal])
-					if (x[k].hasValue(i)) {
-						assign(k,i);
-						break;
-					}
-			}
-		}
+		matching.findInitialFlow();
 	}
 
 	protected boolean findMaximalFlow() {
-		if (sizeFlow < x.length) {
-			for(int k = 0; k < x.length; k++) {
-				if (varMatch[k] == NONE) {
-					magic++;
-					if (!findAugmentingPath(k))
-						return false;
-				}
-			}
-		}
-		return true;
-	}
-
-	protected boolean findAugmentingPath(int k) {
-		if (varSeen[k] != magic) {
-			varSeen[k] =  magic;
-			int mx = x[k].getMin();
-			int Mx = x[k].getMax();
-			for(int v = mx; v <= Mx; v++) {
-				if (varMatch[k] != v) {
-					if (x[k].hasValue(v)) {
-						if (findAugmentingPathValue(v)) {
-							assign(k,v);
-							return true;
-						}
-					}
-				}
-			}
-		}
-		return false;
-	}
-
-	protected boolean findAugmentingPathValue(int v) {
-		int vind = v-minVal;
-		if (valSeen[vind] != magic) {
-			valSeen[vind] = magic;
-			if (flow[vind] < up[vind])
-				return true;
-			else if (flow[vind] > 0) {
-				int i = valMatch[vind];
-				while (i != NONE) {
-					if (findAugmentingPath(i))
-						return true;
-					i = next[i];
-				}
-			}
-		}
-		return false;
+		return matching.findMaximalFlow();
 	}
 
 	protected boolean findFeasibleFlow() {
-		for(int v = minVal; v <= maxVal; v++) {
-			while (flow[v-minVal] < low[v-minVal])
-				if (!findFeasibleFlowTo(v))
-					return false;
-		}
-		return true;
+		return matching.findFeasibleFlow();
 	}
 
 	protected boolean findFeasibleFlowTo(int q) { //q is a value
-		magic++;
-		for(int v = minVal; v <= maxVal; v++) {
-			if (flow[v-minVal] > low[v-minVal])
-				if (findFeasibleFlowValue(v,q))
-					return true;
-		}
-		return false;
-	}
-
-	protected boolean findFeasibleFlowValue(int v,int q) { //try to transfer some flow from v to q
-		int vind = v-minVal;
-		if (valSeen[vind] != magic) {
-			valSeen[vind] = magic;
-			int i = valMatch[vind];
-			while (i != NONE) {
-				if (varMatch[i] != q && x[i].hasValue(q)) {
-					assign(i,q);
-					return true;
-				}
-				i = next[i];
-			}
-			i = valMatch[vind];
-			while (i != NONE) {
-				if (findFeasibleFlowVar(i,q))
-					return true;
-				i = next[i];
-			}
-		}
-		return false;
-	}
-
-	protected boolean findFeasibleFlowVar(int k,int q) { //k is a var index, q is a value
-		if (varSeen[k] != magic) {
-			varSeen[k] = magic;
-			int mx = x[k].getMin();
-			int Mx = x[k].getMax();
-			for(int v = mx; v <= Mx; v++) {
-				if (q != v && varMatch[k] != v) {
-					if (x[k].hasValue(v)) {
-						if (findFeasibleFlowValue(v,q)) {
-							assign(k,v);
-							return true;
-						}
-					}
-				}
-			}
-		}
-		return false;
-	}
-
-	protected void allocateSCC() {
-		varComponent = new int[x.length];
-		varDfs = new int[x.length];
-		varHigh = new int [x.length];
-
-		valComponent = new int [nbVals];
-		valDfs = new int[nbVals];
-		valHigh = new int[nbVals];
-
-		stack = new int [x.length+nbVals+2];
-		type  = new int [x.length+nbVals+2];
+		return matching.findFeasibleFlowTo(q);
 	}
 
 	protected void prune() {
-		findSCC();
-		for(int k = 0; k < x.length; k++) {
-			int mx = x[k].getMin();
-			int Mx = x[k].getMax();
-			for(int w = mx; w <= Mx; w++) {
-				if (varMatch[k] != w) {
-					if (varComponent[k] != valComponent[w-minVal]) {
-						if (x[k].hasValue(w)) {
-							x[k].removeValue(w);
-						}
-					}
-				}
-			}
-		}
-	}
-
-	protected void initSCC() {
-		for(int k = 0 ; k < x.length; k++) {
-			varComponent[k] = 0;
-			varDfs[k] = 0;
-			varHigh[k] = 0;
-		}
-		for(int k = minVal; k <= maxVal; k++) {
-			valComponent[k-minVal] = 0;
-			valDfs[k-minVal] = 0;
-			valHigh[k-minVal] = 0;
-		}
-		sinkComponent = 0;
-		sinkDfs = 0;
-		sinkHigh = 0;
-
-		top = 0;
-		dfs = x.length + (maxVal-minVal+1) + 1;
-		component = 0;
-	}
-
-	protected void findSCC() {
-		initSCC();
-		for(int k = 0; k < x.length; k++) {
-			if (varDfs[k] == 0) {
-				findSCCvar(k);
-			}
-		}
-	}
-
-	protected void findSCCvar(int k) {
-		varDfs[k] = dfs--;
-		varHigh[k] = varDfs[k];
-		stack[top] = k;
-		type[top] = 0;
-		top++;
-		assert(top <= x.length + maxVal-minVal + 2);
-		int mx = x[k].getMin();
-		int Mx = x[k].getMax();
-		for(int w = mx; w <= Mx; w++) {
-			int wind = w-minVal;
-			if (varMatch[k] != w) {
-				if (x[k].hasValue(w)) {
-					if (valDfs[wind] == 0) {
-						findSCCval(w);
-						if (valHigh[wind] > varHigh[k])
-							varHigh[k] = valHigh[wind];
-					}
-					else if ( (valDfs[wind] > varDfs[k]) && (valComponent[wind] == 0)) {
-						if (valDfs[wind] > varHigh[k])
-							varHigh[k] = valDfs[wind];
-					}
-				}
-			}
-		}
-		if (varHigh[k] == varDfs[k]) {
-			component++;
-			do {
-				assert(top > 0);
-				int v = stack[--top];
-				int t = type[top];
-				if (t == 0)
-					varComponent[v] = component;
-				else if (t == 1)
-					valComponent[v-minVal] = component;
-				else
-					sinkComponent = component;
-				if (t == 0 && v == k)
-					break;
-			} while (true);
-		}
-	}
-
-	protected void findSCCval(int v) {
-		int vind = v-minVal;
-		valDfs[vind] = dfs--;
-		valHigh[vind] = valDfs[vind];
-		stack[top] = v;
-		type[top] = 1;
-		top++;
-		assert(top <= x.length + maxVal-minVal + 2);
-		// first go to the variables assigned to this value
-
-		int k = valMatch[vind];
-		while (k != NONE) {
-			if (varDfs[k] == 0) {
-				findSCCvar(k);
-				if (varHigh[k] > valHigh[vind])
-					valHigh[vind] = varHigh[k];
-			}
-			else if ( (varDfs[k] > valDfs[vind]) && (varComponent[k] == 0)) {
-				if (varDfs[k] > valHigh[vind])
-					valHigh[vind] = varDfs[k];
-			}
-			k = next[k];
-		}
-
-		// next try to see if you can go to the sink
-
-		if (flow[vind] < up[vind]) {
-			// go to the sink
-			if (sinkDfs == 0) {
-				findSCCsink();
-				if (sinkHigh > valHigh[vind])
-					valHigh[vind] = sinkHigh;
-			}
-			else if ((sinkDfs > valDfs[vind]) && (sinkComponent == 0) && (sinkDfs > valHigh[vind])) {
-				valHigh[vind] = sinkDfs;
-			}
-		}
-
-		if (valHigh[vind] == valDfs[vind]) {
-			component++;
-			do {
-				assert(top > 0);
-				int i = stack[--top];
-				int t = type[top];
-				if (t == 0)
-					varComponent[i] = component;
-				else if (t == 1)
-					valComponent[i-minVal] = component;
-				else
-					sinkComponent = component;
-				if (t == 1 && i == v)
-					break;
-			} while (true);
-		}
-	}
-
-	protected void findSCCsink() {
-		sinkDfs  = dfs--;
-		sinkHigh = sinkDfs;
-		stack[top] = NONE;
-		type[top] = 2;
-		top++;
-		assert(top <= x.length + maxVal-minVal + 2);
-		for(int i = 0; i < x.length; i++) {
-			int w = varMatch[i];
-			int wind = w-minVal;
-			if (flow[wind] > low[wind]) {
-				if (valDfs[wind] == 0) {
-					findSCCval(w);
-					if (valHigh[wind] > sinkHigh)
-						sinkHigh = valHigh[wind];
-				}
-				else if ((valDfs[wind] > sinkDfs) && (valComponent[wind] == 0) && (valDfs[wind] > sinkHigh)) {
-					sinkHigh = valDfs[wind];
-				}
-			}
-		}
-
-		if (sinkHigh == sinkDfs) {
-			component++;
-			do {
-				assert(top > 0);
-				int i = stack[--top];
-				int t = type[top];
-				if (t == 0)
-					varComponent[i] = component;
-				else if (t == 1)
-					valComponent[i-minVal] = component;
-				else
-					sinkComponent = component;
-				if (t == 2)
-					break;
-			} while (true);
-		}
+		matching.prune();
 	}
 
 
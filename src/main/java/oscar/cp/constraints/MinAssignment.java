@@ -18,11 +18,10 @@ package oscar.cp.constraints;
 import oscar.algo.Inconsistency;
 import oscar.cp.core.CPPropagStrength;
 import oscar.cp.core.Constraint;
-import oscar.cp.core.delta.DeltaIntVar;
 import oscar.cp.core.variables.CPIntVar;
 import oscar.cp.core.variables.CPIntVarAdaptable;
 import oscar.cp.core.variables.CPVar;
-import oscar.algo.reversible.ReversibleInt;
+import oscar.algo.reversible.ReversibleIntArray;
 import scala.collection.Iterable;
 import scala.jdk.javaapi.CollectionConverters;
 
@@ -30,6 +29,12 @@ import java.util.Arrays;
 
 /**
  * Minimum Assignment (or weighted matching)
+ *
+ * The dual values and the assignment of the Hungarian algorithm are reversible arrays restored on backtrack.
+ * When values are removed, only the rows that lost their assigned column are augmented again, in O(n^2) each.
+ * The reduced costs of the dual solution remove the values that would exceed the max of the cost,
+ * and assign the variables whose column cannot be changed without exceeding it.
+ *
  * @author Pierre Schaus pschaus@gmail.com
  */
 public class MinAssignment extends Constraint {
@@ -39,11 +44,10 @@ public class MinAssignment extends Constraint {
     private CPIntVar cost;
     private int [][] weights;
 
-    private ReversibleInt [] lc;
-    private ReversibleInt [] lr;
-    private ReversibleInt [] valc; // row assigned to the column
-    private ReversibleInt [] valr; // column assign to the row
-    private ReversibleInt [][] w;
+    private ReversibleIntArray lc;
+    private ReversibleIntArray lr;
+    private ReversibleIntArray valc; // row assigned to the column
+    private ReversibleIntArray valr; // column assign to the row
 
     private boolean [] markc;
     private boolean [] markr;
@@ -62,15 +66,12 @@ public class MinAssignment extends Constraint {
     private boolean [] isValueBound;
     private int [] unboundVars;
     private int [] unboundVals;
-    // cached values for valr and valc
-    private int [] valr_;
-    private int [] valc_;
     private int nUnboundVars = 0;
     private int nUnboundVals = 0;
 
-
-
-    private DeltaIntVar[] delta;
+    // smallest reduced cost of an unassigned value of each row and of each column
+    private int [] rowMin;
+    private int [] colMin;
 
     private boolean exactReducedCosts = false;
 
@@ -113,11 +114,8 @@ public class MinAssignment extends Constraint {
         unboundVals = new int[n];
         nUnboundVars = 0;
         nUnboundVals = 0;
-        valr_ = new int[n];
-        valc_ = new int[n];
-
-        delta = new DeltaIntVar[n];
-
+        rowMin = new int[n];
+        colMin = new int[n];
     }
 
     @Override
@@ -147,42 +145,24 @@ public class MinAssignment extends Constraint {
     private void initTrails() {
 
         M = Integer.MIN_VALUE;
-        w = new ReversibleInt [x.length][];
         for (int i = 0; i < x.length; i++) {
-            w[i] = new ReversibleInt[x.length];
             for (int j = 0; j < x.length; j++) {
-                w[i][j] = new ReversibleInt(s(),0);
-                w[i][j].setValue(weights[i][j]);
                 M = Math.max(M, weights[i][j]);
             }
         }
         M++;
 
-        for (int i = 0; i < x.length; i++) {
-            for (int j = 0; j < x.length; j++) {
-                if (!x[i].hasValue(j)) {
-                    w[i][j].setValue(M);
-                }
-            }
-        }
-
-        lc = new ReversibleInt [x.length];
-        lr = new ReversibleInt [x.length];
-        valc = new ReversibleInt [x.length];
-        valr = new ReversibleInt [x.length];
-
-        for (int i = 0; i < lc.length; i++) {
-            lc[i] = new ReversibleInt(s(),0);
-            lc[i].setValue(0);
-
-            lr[i] = new ReversibleInt(s(),0);
-            lr[i].setValue(0);
+        lc = new ReversibleIntArray(s(), x.length, 0);
+        lr = new ReversibleIntArray(s(), x.length, 0);
+        valc = new ReversibleIntArray(s(), x.length, NONE);
+        valr = new ReversibleIntArray(s(), x.length, NONE);
+    }
 
-            valc[i] = new ReversibleInt(s(),NONE);
-            valc[i].setValue(NONE);
-            valr[i] = new ReversibleInt(s(),NONE);
-            valr[i].setValue(NONE);
-        }
+    /**
+     * @return the weight of assigning i->j, M if j is not in the domain of x[i]
+     */
+    private int w(int i, int j) {
+        return x[i].hasValue(j) ? weights[i][j] : M;
     }
 
 
@@ -203,7 +183,7 @@ public class MinAssignment extends Constraint {
 
         for (int i = 0; i < x.length; i++) {
             if (!x[i].isBound()) {
-                delta[i] = x[i].callPropagateOnChangesWithDelta(this);
+                x[i].callPropagateWhenDomainChanges(this);
             }
         }
         if (!cost.isBound()) {
@@ -219,25 +199,25 @@ public class MinAssignment extends Constraint {
         for (int j = 0; j < x.length; j++) {
             int m = Integer.MAX_VALUE;
             for (int i = 0; i < x.length; i++) {
-                int val = w[i][j].getValue() - lc[j].getValue() - lr[i].getValue();
+                int val = w(i,j) - lc.apply(j) - lr.apply(i);
                 m = Math.min(m, val);
             }
-            lc[j].setValue(lc[j].getValue() + m);
+            lc.update(j, lc.apply(j) + m);
         }
         for (int i = 0; i < x.length; i++) {
             int m = Integer.MAX_VALUE;
             for (int j =0; j< x.length; j++) {
-                int val = w[i][j].getValue() - lc[j].getValue() - lr[i].getValue();
+                int val = w(i,j) - lc.apply(j) - lr.apply(i);
                 m = Math.min(m, val);
             }
-            lr[i].setValue(lr[i].getValue() + m);
+            lr.update(i, lr.apply(i) + m);
         }
     }
 
     private void initAssignment() {
         for (int i = 0; i < x.length; i++) {
             for (int j = 0; j < x.length; j++) {
-                if (!colAssigned(j) && w[i][j].getValue() == 0) {
+                if (!colAssigned(j) && w(i,j) - lc.apply(j) - lr.apply(i) == 0) {
                     assignRow(i,j);
                     break;
                 }
@@ -258,7 +238,7 @@ public class MinAssignment extends Constraint {
         }
         markr[i] = true;
         for (int c = 0; c < x.length; c++) {
-            pi[c] = w[i][c].getValue() - lc[c].getValue() - lr[i].getValue();
+            pi[c] = w(i,c) - lc.apply(c) - lr.apply(i);
             pathRowOfColumn[c] = i;
         }
         do {
@@ -285,9 +265,9 @@ public class MinAssignment extends Constraint {
                 }
                 for (int k = 0; k < x.length; k++) {
                     if (markr[k])
-                        lr[k].setValue(lr[k].getValue() + m);
+                        lr.update(k, lr.apply(k) + m);
                     if (markc[k])
-                        lc[k].setValue(lc[k].getValue() - m);
+                        lc.update(k, lc.apply(k) - m);
                     else
                         pi[k] -= m;
                 }
@@ -296,7 +276,7 @@ public class MinAssignment extends Constraint {
 
             // primal step
             if (colAssigned(col)) {
-                row = valc[col].getValue();
+                row = valc.apply(col);
                 markr[row] = true;
                 markc[col] = true;
             } else {
@@ -308,7 +288,7 @@ public class MinAssignment extends Constraint {
 
             for (int c = 0; c < x.length; c++) {
                 if (!markc[c]) {
-                    int m = w[row][c].getValue() - lc[c].getValue() - lr[row].getValue();
+                    int m = w(row,c) - lc.apply(c) - lr.apply(row);
                     if (m < pi[c]) {
                         pi[c] = m;
                         pathRowOfColumn[c] = row;
@@ -324,9 +304,9 @@ public class MinAssignment extends Constraint {
         int row;
         do {
             row = pathRowOfColumn[c];
-            valc[c].setValue(row);
-            int col = valr[row].getValue();
-            valr[row].setValue(c);
+            valc.update(c, row);
+            int col = valr.apply(row);
+            valr.update(row, c);
             c = col;
         } while (row != r);
     }
@@ -334,51 +314,31 @@ public class MinAssignment extends Constraint {
 
 
     private boolean rowAssigned(int i) {
-        return valr[i].getValue() != NONE;
+        return valr.apply(i) != NONE;
     }
 
     private boolean colAssigned(int j) {
-        return valc[j].getValue() != NONE;
+        return valc.apply(j) != NONE;
     }
 
     private void assignRow(int i, int j) {
-        valr[i].setValue(j);
-        valc[j].setValue(i);
+        valr.update(i, j);
+        valc.update(j, i);
     }
 
     @Override
     public void propagate() {
-        // treat the deltas
+        // the rows whose column has been removed are unassigned, the dual values remain feasible
         for (int r = 0; r < x.length; r++) {
-            if (delta[r] != null) { // if variable was not already bound at posting
-                int nRemoved = delta[r].fillArray(values);
-                for (int j = 0; j < nRemoved; j++) {
-                    int c = values[j];
-                    w[r][c].setValue(M);
-                    if (valr[r].getValue() == c) {
-                        valr[r].setValue(NONE);
-                        valc[c].setValue(NONE);
-                    }
-                }
+            int c = valr.apply(r);
+            if (c != NONE && !x[r].hasValue(c)) {
+                valr.update(r, NONE);
+                valc.update(c, NONE);
             }
         }
 
-
-        boolean valid = true;
-        for (int i = 0; i < x.length; i++) {
-            if (!rowAssigned(i)) {
-                valid = false;
-                break;
-            }
-        }
-        if (!valid) {
-            findMinimalAssignment();
-        }
-        for (int i = 0; i < x.length; i++) {
-            valc_[i] = valc[i].getValue();
-            valr_[i] = valr[i].getValue();
-        }
-
+        findMinimalAssignment();
+        updateUnBounds();
         prune();
     }
 
@@ -413,10 +373,10 @@ public class MinAssignment extends Constraint {
             for (int j = 0; j < x.length+x.length; j++) {
                 if (i == j) {
                     dist[i][j] = 0;
-                } else if (i < x.length && j >= x.length && valr[i].getValue() != j-x.length) {
-                    dist[i][j] = w[i][j-x.length].getValue();
-                } else if (i >= x.length && j < x.length && valr[j].getValue() == i-x.length){
-                    dist[i][j] = -w[j][i-x.length].getValue();
+                } else if (i < x.length && j >= x.length && valr.apply(i) != j-x.length) {
+                    dist[i][j] = w(i,j-x.length);
+                } else if (i >= x.length && j < x.length && valr.apply(j) == i-x.length){
+                    dist[i][j] = -w(j,i-x.length);
                 } else {
                     dist[i][j] = M;
                 }
@@ -461,7 +421,7 @@ public class MinAssignment extends Constraint {
                     int nVals = x[i].fillArray(values);
                     for (int ind = 0; ind < nVals; ind++) {
                         int j = values[ind];
-                        if (valr_[i] != j) {
+                        if (valr.apply(i) != j) {
                             // there is an edge i->j in residual graph
                             if (distance[i] + weights[i][j] < distance[x.length + j]) {
                                 distance[x.length + j] = distance[i] + weights[i][j];
@@ -473,7 +433,7 @@ public class MinAssignment extends Constraint {
                 // edges from right to left (matched values to variables)
                 for (int l = 0; l < nUnboundVals; l++) {
                     int i = unboundVals[l];
-                    int j = valc_[i];
+                    int j = valc.apply(i);
                     if (distance[i + x.length] - weights[j][i] < distance[j]) {
                         distance[j] = distance[i + x.length] - weights[j][i];
                     }
@@ -492,8 +452,8 @@ public class MinAssignment extends Constraint {
     private void prune() {
         int sum = 0;
         for (int i = 0; i < x.length; i++) {
-            sum += lc[i].getValue();
-            sum += lr[i].getValue();
+            sum += lc.apply(i);
+            sum += lr.apply(i);
         }
         cost.updateMin(sum) ;
         int slack = cost.getMax() - sum;
@@ -503,21 +463,32 @@ public class MinAssignment extends Constraint {
     }
 
     public void pruneLPReducedCosts(int slack) {
+        Arrays.fill(colMin, Integer.MAX_VALUE);
         for (int s = 0; s < nUnboundVars; s++) {
             int i = unboundVars[s];
+            rowMin[i] = Integer.MAX_VALUE;
             int nVals = x[i].fillArray(values);
             for (int ind = 0; ind < nVals; ind++) {
                 int j = values[ind];
-                if (valr_[i] != j) { //
-                    int val = w[i][j].getValue();
-                    int m = val - lc[j].getValue() - lr[i].getValue(); // get reduced cost of assigning i->j
+                if (valr.apply(i) != j) { //
+                    int m = weights[i][j] - lc.apply(j) - lr.apply(i); // get reduced cost of assigning i->j
                     if (m > slack) {
-                        w[i][j].setValue(M);
                         x[i].removeValue(j);
+                    } else {
+                        rowMin[i] = Math.min(rowMin[i], m);
+                        colMin[j] = Math.min(colMin[j], m);
                     }
                 }
             }
         }
+        // another assignment without i->j uses an other value for i and an other variable for j
+        for (int s = 0; s < nUnboundVars; s++) {
+            int i = unboundVars[s];
+            int j = valr.apply(i);
+            if (!x[i].isBound() && (long) rowMin[i] + colMin[j] > slack) {
+                x[i].assign(j);
+            }
+        }
     }
 
 
@@ -533,20 +504,15 @@ public class MinAssignment extends Constraint {
             int nVals = x[i].fillArray(values);
             for (int ind = 0; ind < nVals; ind++) {
                 int j = values[ind];
-                if (valr_[i] != j) { // check if there is an arc
+                if (valr.apply(i) != j) { // check if there is an arc
 
-                    int i_p = valc_[j]; // origin of i
-                    int j_p = valr_[i]; // destination of i
+                    int i_p = valc.apply(j); // origin of i
+                    int j_p = valr.apply(i); // destination of i
 
                     // exact reduced cost of assigning i->j
                     int m = (weights[i][j]+sp[i_p][j_p])-(weights[i][j_p]+weights[i_p][j]);
 
-                    //int val = w[i][j].getValue();
-                    //int mlp= val - lc[j].getValue() - lr[i].getValue();
-                    //assert(mlp <= m); // exact reduced cost stronger than lp reduced cost
-
                     if (m > slack) {
-                        w[i][j].setValue(M);
                         x[i].removeValue(j);
                     }
                 }
@@ -15,6 +15,7 @@
 package oscar.cp.constraints;
 
 import oscar.algo.Inconsistency;
+import oscar.algo.reversible.ReversibleIntArray;
 import oscar.cp.core.CPPropagStrength;
 import oscar.cp.core.Constraint;
 import oscar.cp.core.variables.CPIntVar;
@@ -30,22 +31,50 @@ import java.util.Set;
 
 /**
  * Regular Constraint
+ *
+ * Layered graph of Pesant (A Regular Language Membership Constraint for Finite Sequences of Variables):
+ * the layer i contains the states reachable from the initial state with the first i letters and from which
+ * an accepting state can be reached with the last n-i letters. The edge (q, a) of the layer i goes to the state T[q][a]
+ * of the layer i+1, and a remains in the domain of x[i] as long as one of these edges remains.
+ *
+ * The in and out degrees of the states and the number of edges of each letter are reversible.
+ * When a value is removed, its edges are removed and the states left without in or out edges are removed in turn,
+ * so that each edge is removed once along a branch.
+ *
  * @author Pierre Schaus pschaus@gmail.com
  */
 public class Regular extends Constraint {
 
-	private int nbStates;
-	private int [][] T; //transition matrix;
-	private int initialState;
-	private Set<Integer> acceptingStates;
-	
-	private CPIntVar [] x;
-	private CPIntVar [] q;
+	protected int nbStates;
+	protected int nbLetters;
+	protected int [][] T; //transition matrix;
+	protected int initialState;
+	protected boolean [] accepting;
+
+	protected CPIntVar [] x;
+	protected int n;
+
+	// predecessors of each state: T[predStates[q][k]][predLetters[q][k]] == q
+	private int [][] predStates;
+	private int [][] predLetters;
+
+	// state q of the layer i at index i*nbStates+q, layers 0..n
+	private ReversibleIntArray nodeAlive;
+	private ReversibleIntArray inDegree;
+	private ReversibleIntArray outDegree;
+	// letter a of the layer i at index i*nbLetters+a, layers 0..n-1
+	private ReversibleIntArray letterAlive;
+	private ReversibleIntArray support;
+
+	// states to remove
+	private int [] stack;
+	private int top;
+	private int [] pushed;
+	private int magic = 0;
 
 	@Override
 	public Iterable<CPVar> associatedVars() {
 		List<CPVar> l = new LinkedList<>(Arrays.asList(x));
-		l.addAll(Arrays.asList(q));
 		return CollectionConverters.asScala(l);
 	}
 
@@ -57,30 +86,215 @@ public class Regular extends Constraint {
 	public Regular(CPIntVar [] x, Automaton automaton) {
 		super(x[0].store(),"Regular");
 		this.x = x;
+		this.n = x.length;
 
 	    automaton.setPosted();//ensure that the automaton is not modified anymore
 	    nbStates = automaton.getNbStates();
+	    nbLetters = automaton.getNbLetters();
 	    T = automaton.getTransitionMatrix();//transition matrix
 	    initialState = automaton.getInitialState();
-	    acceptingStates = automaton.getAcceptingStates();
-	    q = new CPIntVar[x.length];
-	    for (int i = 0; i < q.length; i++) {
-			q[i] = CPIntVar.apply(s(),0,nbStates-1);
-		}		
+	    Set<Integer> acceptingStates = automaton.getAcceptingStates();
+	    accepting = new boolean[nbStates];
+	    for (int q : acceptingStates) {
+	    	accepting[q] = true;
+	    }
+	}
+
+	/**
+	 * @return true if the state q of the layer i is in the layered graph
+	 */
+	protected boolean isStateAlive(int i, int q) {
+		return nodeAlive.apply(i * nbStates + q) == 1;
+	}
+
+	/**
+	 * @return true if some edges of the layer i are labeled with the letter a
+	 */
+	protected boolean isLetterAlive(int i, int a) {
+		return letterAlive.apply(i * nbLetters + a) == 1;
 	}
 
-	
 	@Override
 	public void setup(CPPropagStrength l) throws Inconsistency {
-		s().post(ElementCst2D.apply(T,CPIntVar.apply(s(),initialState,initialState),x[0],q[0]));
-		
-		for (int v = 0; v < nbStates; v++) {
-			if (!acceptingStates.contains(v)) {
-				q[x.length-1].removeValue(v);
+		buildPredecessors();
+
+		int nNodes = (n + 1) * nbStates;
+		nodeAlive = new ReversibleIntArray(s(), nNodes, 0);
+		inDegree = new ReversibleIntArray(s(), nNodes, 0);
+		outDegree = new ReversibleIntArray(s(), nNodes, 0);
+		letterAlive = new ReversibleIntArray(s(), n * nbLetters, 0);
+		support = new ReversibleIntArray(s(), n * nbLetters, 0);
+		stack = new int[nNodes];
+		pushed = new int[nNodes];
+
+		for (int i = 0; i < n; i++) {
+			x[i].updateMin(0);
+			x[i].updateMax(nbLetters - 1);
+		}
+
+		// states reachable from the initial state
+		boolean [] alive = new boolean[nNodes];
+		alive[initialState] = true;
+		for (int i = 0; i < n; i++) {
+			for (int q = 0; q < nbStates; q++) {
+				if (!alive[i * nbStates + q]) continue;
+				for (int a = 0; a < nbLetters; a++) {
+					int next = T[q][a];
+					if (next >= 0 && x[i].hasValue(a)) alive[(i + 1) * nbStates + next] = true;
+				}
+			}
+		}
+		// states from which an accepting state is reachable
+		for (int q = 0; q < nbStates; q++) {
+			if (!accepting[q]) alive[n * nbStates + q] = false;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			for (int q = 0; q < nbStates; q++) {
+				if (!alive[i * nbStates + q]) continue;
+				boolean coReached = false;
+				for (int a = 0; a < nbLetters && !coReached; a++) {
+					int next = T[q][a];
+					coReached = next >= 0 && x[i].hasValue(a) && alive[(i + 1) * nbStates + next];
+				}
+				alive[i * nbStates + q] = coReached;
+			}
+		}
+		if (!alive[initialState]) {
+			throw Inconsistency.get();
+		}
+
+		// edges between the remaining states
+		int [] values = new int[nbLetters];
+		for (int i = 0; i < n; i++) {
+			for (int q = 0; q < nbStates; q++) {
+				if (!alive[i * nbStates + q]) continue;
+				nodeAlive.update(i * nbStates + q, 1);
+				for (int a = 0; a < nbLetters; a++) {
+					int next = T[q][a];
+					if (next >= 0 && x[i].hasValue(a) && alive[(i + 1) * nbStates + next]) {
+						outDegree.update(i * nbStates + q, outDegree.apply(i * nbStates + q) + 1);
+						inDegree.update((i + 1) * nbStates + next, inDegree.apply((i + 1) * nbStates + next) + 1);
+						support.update(i * nbLetters + a, support.apply(i * nbLetters + a) + 1);
+					}
+				}
+			}
+			int nRemoved = 0;
+			for (int a = 0; a < nbLetters; a++) {
+				if (support.apply(i * nbLetters + a) > 0) letterAlive.update(i * nbLetters + a, 1);
+				else if (x[i].hasValue(a)) values[nRemoved++] = a;
+			}
+			if (nRemoved > 0) x[i].removeValues(values, nRemoved);
+		}
+		for (int q = 0; q < nbStates; q++) {
+			if (alive[n * nbStates + q]) nodeAlive.update(n * nbStates + q, 1);
+		}
+
+		for (int i = 0; i < n; i++) {
+			if (!x[i].isBound()) {
+				x[i].callValRemoveIdxWhenValueIsRemoved(this, i);
 			}
 		}
-		for (int i = 1; i < x.length; i++) {
-			s().post(ElementCst2D.apply(T,q[i-1],x[i],q[i]));
+	}
+
+	private void buildPredecessors() {
+		int [] nPreds = new int[nbStates];
+		for (int q = 0; q < nbStates; q++) {
+			for (int a = 0; a < nbLetters; a++) {
+				if (T[q][a] >= 0) nPreds[T[q][a]]++;
+			}
+		}
+		predStates = new int[nbStates][];
+		predLetters = new int[nbStates][];
+		for (int q = 0; q < nbStates; q++) {
+			predStates[q] = new int[nPreds[q]];
+			predLetters[q] = new int[nPreds[q]];
+			nPreds[q] = 0;
+		}
+		for (int q = 0; q < nbStates; q++) {
+			for (int a = 0; a < nbLetters; a++) {
+				int next = T[q][a];
+				if (next >= 0) {
+					predStates[next][nPreds[next]] = q;
+					predLetters[next][nPreds[next]] = a;
+					nPreds[next]++;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void valRemoveIdx(CPIntVar y, int i, int a) throws Inconsistency {
+		if (a < 0 || a >= nbLetters || letterAlive.apply(i * nbLetters + a) == 0) {
+			return;
+		}
+		magic++;
+		top = 0;
+		// removes the edges labeled with a, an edge is removed by the first of its letter and its states to be removed
+		for (int q = 0; q < nbStates; q++) {
+			int next = T[q][a];
+			if (next >= 0 && nodeAlive.apply(i * nbStates + q) == 1 && nodeAlive.apply((i + 1) * nbStates + next) == 1) {
+				decrement(outDegree, i * nbStates + q);
+				decrement(inDegree, (i + 1) * nbStates + next);
+			}
+		}
+		support.update(i * nbLetters + a, 0);
+		letterAlive.update(i * nbLetters + a, 0);
+		removeStates();
+	}
+
+	// Decrements the degree of a state, and pushes the state to remove if it has no more edges
+	private void decrement(ReversibleIntArray degree, int node) {
+		int d = degree.apply(node) - 1;
+		degree.update(node, d);
+		if (d == 0 && pushed[node] != magic) {
+			pushed[node] = magic;
+			stack[top++] = node;
+		}
+	}
+
+	// Decrements the number of edges labeled with a in the layer i, and removes a from x[i] if there is none left
+	private void removeEdge(int i, int a) throws Inconsistency {
+		int index = i * nbLetters + a;
+		int count = support.apply(index) - 1;
+		support.update(index, count);
+		if (count == 0) {
+			letterAlive.update(index, 0);
+			x[i].removeValue(a);
+		}
+	}
+
+	private void removeStates() throws Inconsistency {
+		while (top > 0) {
+			int node = stack[--top];
+			if (node == initialState) {
+				throw Inconsistency.get();
+			}
+			int i = node / nbStates;
+			int q = node % nbStates;
+			if (i < n) {
+				// out edges
+				for (int a = 0; a < nbLetters; a++) {
+					int next = T[q][a];
+					if (next >= 0 && letterAlive.apply(i * nbLetters + a) == 1 && nodeAlive.apply((i + 1) * nbStates + next) == 1) {
+						decrement(inDegree, (i + 1) * nbStates + next);
+						removeEdge(i, a);
+					}
+				}
+			}
+			if (i > 0) {
+				// in edges
+				int [] preds = predStates[q];
+				int [] letters = predLetters[q];
+				for (int k = 0; k < preds.length; k++) {
+					int pred = preds[k];
+					int a = letters[k];
+					if (letterAlive.apply((i - 1) * nbLetters + a) == 1 && nodeAlive.apply((i - 1) * nbStates + pred) == 1) {
+						decrement(outDegree, (i - 1) * nbStates + pred);
+						removeEdge(i - 1, a);
+					}
+				}
+			}
+			nodeAlive.update(node, 0);
 		}
 	}
 
@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+package oscar.cp.constraints;
+
+import oscar.cp.core.variables.CPIntVar;
+
+/**
+ * Strongly connected components of the residual graph of a flow from variables to values,
+ * computed from scratch at each call, for the matching based constraints whose flow is not a
+ * ReversibleMatching (SoftGCCAC, GCCBinPacking).
+ *
+ * The flow is given by the arrays of the constraint: the value matched by each variable (varMatch),
+ * the first variable matched to each value (valMatch) and the next variable matched to the same value (next).
+ * The residual graph has the edges
+ * <ul>
+ *   <li>var -> val for the values of the domain of var that are not matched to var,</li>
+ *   <li>val -> var for the variables matched to val,</li>
+ *   <li>val -> sink if flow[val] < up[val] and sink -> val if flow[val] > low[val],</li>
+ *   <li>if the variables can be unmatched: var -> source if var is matched, source -> var if var is not,
+ *       and sink -> source.</li>
+ * </ul>
+ * An edge var -> val not in the flow belongs to a maximum (feasible) flow iff var and val are in the same component.
+ *
+ * The components are computed with an iterative Tarjan, in O(nEdges) without recursion,
+ * and the domains read during the search are reused by the pruning.
+ * Each call of findSCC decomposes the whole residual graph again: the components are not trailed
+ * and are not repaired around the removed edges, and the flow itself stays in each constraint.
+ */
+public class ResidualGraphSCC {
+
+	private static final int NONE = -Integer.MIN_VALUE;
+
+	private final CPIntVar[] x;
+	private final int nVars;
+	private final int minVal;
+	private final int nVals;
+	private final int source;
+	private final int sink;
+
+	// domains of the variables read during the search
+	private final int[][] domains;
+	private final int[] domSizes;
+
+	// nodes: variables, then values, then the source and the sink
+	private final int[] dfs;
+	private final int[] high;
+	private final int[] component;
+	private final int[] edgePos;
+	private final int[] stack;
+	private final int[] callStack;
+	private int nComponents;
+
+	// flow of the current search
+	private int[] varMatch;
+	private int[] valMatch;
+	private int[] next;
+	private int[] flow;
+	private int[] low;
+	private int[] up;
+	private boolean partial;
+
+	/**
+	 * @param x the variables
+	 * @param minVal the smallest value of the domains
+	 * @param maxVal the largest value of the domains
+	 */
+	public ResidualGraphSCC(CPIntVar[] x, int minVal, int maxVal) {
+		this.x = x;
+		this.nVars = x.length;
+		this.minVal = minVal;
+		this.nVals = maxVal - minVal + 1;
+		this.source = nVars + nVals;
+		this.sink = nVars + nVals + 1;
+		domains = new int[nVars][];
+		for (int k = 0; k < nVars; k++) {
+			domains[k] = new int[x[k].getSize()];
+		}
+		domSizes = new int[nVars];
+		int nNodes = nVars + nVals + 2;
+		dfs = new int[nNodes];
+		high = new int[nNodes];
+		component = new int[nNodes];
+		edgePos = new int[nNodes];
+		stack = new int[nNodes];
+		callStack = new int[nNodes];
+	}
+
+	/**
+	 * Computes the strongly connected components of the residual graph
+	 *
+	 * @param varMatch the value matched by each variable, NONE if not matched
+	 * @param valMatch the first variable matched to each value (indexed by value - minVal), NONE if none
+	 * @param next the next variable matched to the same value, NONE if none
+	 * @param flow the number of variables matched to each value (indexed by value - minVal)
+	 * @param low the minimum flow of each value (indexed by value - minVal)
+	 * @param up the maximum flow of each value (indexed by value - minVal)
+	 * @param partial true if the variables can be unmatched
+	 */
+	public void findSCC(int[] varMatch, int[] valMatch, int[] next, int[] flow, int[] low, int[] up, boolean partial) {
+		this.varMatch = varMatch;
+		this.valMatch = valMatch;
+		this.next = next;
+		this.flow = flow;
+		this.low = low;
+		this.up = up;
+		this.partial = partial;
+
+		java.util.Arrays.fill(dfs, 0);
+		java.util.Arrays.fill(component, 0);
+		nComponents = 0;
+		int index = 0;
+		int top = 0;
+		for (int root = 0; root < nVars; root++) {
+			if (dfs[root] != 0) continue;
+			int nCalls = 0;
+			visit(root, ++index);
+			stack[top++] = root;
+			callStack[nCalls++] = root;
+			while (nCalls > 0) {
+				int u = callStack[nCalls - 1];
+				int v = nextSuccessor(u);
+				if (v >= 0) {
+					if (dfs[v] == 0) {
+						visit(v, ++index);
+						stack[top++] = v;
+						callStack[nCalls++] = v;
+					} else if (component[v] == 0 && dfs[v] < high[u]) {
+						high[u] = dfs[v];
+					}
+				} else {
+					nCalls--;
+					if (high[u] == dfs[u]) {
+						nComponents++;
+						int w;
+						do {
+							w = stack[--top];
+							component[w] = nComponents;
+						} while (w != u);
+					}
+					if (nCalls > 0) {
+						int p = callStack[nCalls - 1];
+						if (high[u] < high[p]) high[p] = high[u];
+					}
+				}
+			}
+		}
+	}
+
+	// Marks the node as visited and initializes the iteration on its successors
+	private void visit(int u, int index) {
+		dfs[u] = index;
+		high[u] = index;
+		if (u < nVars) {
+			domSizes[u] = x[u].fillArray(domains[u]);
+			edgePos[u] = 0;
+		} else if (u < source) {
+			int first = valMatch[u - nVars];
+			edgePos[u] = first == NONE ? -1 : first;
+		} else {
+			edgePos[u] = 0;
+		}
+	}
+
+	// Returns the next successor of the node in the residual graph, -1 if there is none
+	private int nextSuccessor(int u) {
+		if (u < nVars) {
+			int[] dom = domains[u];
+			int size = domSizes[u];
+			while (edgePos[u] < size) {
+				int w = dom[edgePos[u]++];
+				if (w != varMatch[u]) return nVars + w - minVal;
+			}
+			if (partial && edgePos[u] == size) {
+				edgePos[u]++;
+				if (varMatch[u] != NONE) return source;
+			}
+			return -1;
+		} else if (u < source) {
+			int vind = u - nVars;
+			int k = edgePos[u];
+			if (k >= 0) {
+				int nk = next[k];
+				edgePos[u] = nk == NONE ? -1 : nk;
+				return k;
+			}
+			if (k == -1) {
+				edgePos[u] = -2;
+				if (flow[vind] < up[vind]) return sink;
+			}
+			return -1;
+		} else if (u == source) {
+			while (edgePos[u] < nVars) {
+				int k = edgePos[u]++;
+				if (varMatch[k] == NONE) return k;
+			}
+			return -1;
+		} else {
+			while (edgePos[u] < nVals) {
+				int vind = edgePos[u]++;
+				if (flow[vind] > low[vind]) return nVars + vind;
+			}
+			if (partial && edgePos[u] == nVals) {
+				edgePos[u]++;
+				return source;
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the number of components found by the last search
+	 */
+	public int nComponents() {
+		return nComponents;
+	}
+
+	/**
+	 * @return the component of the variable k, between 1 and nComponents
+	 */
+	public int varComponent(int k) {
+		return component[k];
+	}
+
+	/**
+	 * @return the component of the value v, 0 if the value has not been reached
+	 */
+	public int valComponent(int v) {
+		return component[nVars + v - minVal];
+	}
+
+	/**
+	 * @return the number of values of the domain of the variable k read by the last search
+	 */
+	public int domainSize(int k) {
+		return domSizes[k];
+	}
+
+	/**
+	 * @return the domain of the variable k read by the last search, in its first domainSize(k) entries
+	 */
+	public int[] domain(int k) {
+		return domains[k];
+	}
+
+	/**
+	 * Removes the edges var -> val that are not in the flow and that are between two components.
+	 * The domains read by the last search are used, they must not have changed since, and they are
+	 * overwritten by the removed values.
+	 *
+	 * @return the number of removed values
+	 */
+	public int prune() {
+		int nRemoved = 0;
+		for (int k = 0; k < nVars; k++) {
+			if (domSizes[k] <= 1) continue;
+			int[] dom = domains[k];
+			int size = domSizes[k];
+			int comp = component[k];
+			// the removed values are moved at the beginning of the array and removed at once
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				int w = dom[i];
+				if (w != varMatch[k] && component[nVars + w - minVal] != comp) {
+					dom[n++] = w;
+				}
+			}
+			if (n > 0) {
+				x[k].removeValues(dom, n);
+				nRemoved += n;
+			}
+		}
+		return nRemoved;
+	}
+}
@@ -73,28 +73,14 @@ public class SoftGCCAC extends Constraint{
 
 
 
-	private int dfs;
-	private int component;
-
-	private int [] varComponent;
-	private int [] varDfs;
-	private int [] varHigh;
-
-	private int [] valComponent;
-	private int [] valDfs;
-	private int [] valHigh;
-
-	private int sinkComponent;
-	private int sinkDfs;
-	private int sinkHigh;
+	// components of the residual graphs of the underflow and of the overflow
+	private ResidualGraphSCC scc_uf;
+	private ResidualGraphSCC scc_of;
+	private int [] zeros; // no minimum flow in the values
 
 	private boolean [] isVarAlwaysMatched_uf;
 	private boolean [] isVarAlwaysMatched_of;
 
-	private int [] stack;
-	private int [] type;
-	private int top;
-
 
     /**
      * Constraint the values minval+i to appear between low[i] and up[i] times in x but accept some violations to this rule.
@@ -279,13 +265,13 @@ public class SoftGCCAC extends Constraint{
 
 		findSCC(FlowType.UF);
 		computeIsVarAlwaysMatched(FlowType.UF);
-		if(varComponent[i] != valComponent[v-minval] && (low[v-minval]>0 || isVarAlwaysMatched_uf[i])){
+		if(scc_uf.varComponent(i) != scc_uf.valComponent(v) && (low[v-minval]>0 || isVarAlwaysMatched_uf[i])){
 			reducedCost += 1;
 		}
 
 		findSCC(FlowType.OF);
 		computeIsVarAlwaysMatched(FlowType.OF);
-		if(varComponent[i] != valComponent[v-minval] && (up[v-minval]>0 || isVarAlwaysMatched_of[i])){
+		if(scc_of.varComponent(i) != scc_of.valComponent(v) && (up[v-minval]>0 || isVarAlwaysMatched_of[i])){
 			reducedCost += 1;
 		}
 		
@@ -549,269 +535,49 @@ public class SoftGCCAC extends Constraint{
 	private void computeIsVarAlwaysMatched(FlowType ft){
 		boolean [] isVarAlwaysMatched;
 		int [] varMatch;
-		
+		ResidualGraphSCC scc;
+
 		if(ft == FlowType.UF){
 			isVarAlwaysMatched = isVarAlwaysMatched_uf;
 			varMatch = varMatch_uf;
+			scc = scc_uf;
 		}else{
 			isVarAlwaysMatched = isVarAlwaysMatched_of;
 			varMatch = varMatch_of;
+			scc = scc_of;
 		}
 
 
-		int [] nbVarInComponent = new int[component+1];
+		int [] nbVarInComponent = new int[scc.nComponents()+1];
 		for(int k = 0; k < x.length; k++){
 			if(varMatch[k] == NONE ){
-				nbVarInComponent[varComponent[k]]++;
+				nbVarInComponent[scc.varComponent(k)]++;
 			}
 		}
 		for(int k = 0; k < x.length; k++){
 			isVarAlwaysMatched[k] = false;
-			if(varMatch[k] != NONE && nbVarInComponent[varComponent[k]] == 0){
+			if(varMatch[k] != NONE && nbVarInComponent[scc.varComponent(k)] == 0){
 				isVarAlwaysMatched[k] = true;
 			}
 		}
 	}
 
 	private void allocateSCC(){
-		varComponent = new int[x.length];
-		varDfs = new int[x.length];
-		varHigh = new int [x.length];
-
-		valComponent = new int [nbVals];
-		valDfs = new int[nbVals];
-		valHigh = new int[nbVals];
-	
-		stack        = new int [x.length+nbVals+1];
-		type         = new int [x.length+nbVals+1];
+		scc_uf = new ResidualGraphSCC(x, minval, maxval);
+		scc_of = new ResidualGraphSCC(x, minval, maxval);
+		zeros = new int[nbVals];
 
 		isVarAlwaysMatched_uf  = new boolean[x.length];
 		isVarAlwaysMatched_of  = new boolean[x.length];
 		
 	}
-	
-	private void initSCC(){
-		for(int k = 0 ; k < x.length; k++) {
-			varComponent[k] = 0;
-			varDfs[k] = 0;
-			varHigh[k] = 0;
-		}
-		for(int k = 0 ; k < nbVals; k++) {
-			valComponent[k] = 0;
-			valDfs[k] = 0;
-			valHigh[k] = 0;
-		}
-		
-		sinkComponent = 0;
-		sinkDfs = 0;
-		sinkHigh = 0;
-		
-		top = 0;
-		dfs = x.length + nbVals + 1;
-		component = 0;	
-	}
-	
-	private void findSCC(FlowType ft){
-		initSCC();
-		for(int k = 0; k < x.length; k++) {
-			if (varDfs[k] == 0)
-				findSCCvar(k,ft);
-		}
-	}
-	
-	private void findSCCvar(int k, FlowType ft){
-		  int [] varMatch = (ft == FlowType.UF) ? varMatch_uf : varMatch_of; //first variable matched to the value
-
-		  varDfs[k] = dfs--;
-		  varHigh[k] = varDfs[k];
-		  stack[top] = k;
-		  type[top] = 0;
-		  top++;
-		  assert(top <= x.length + nbVals + 1);
-
-
-		  int mx = x[k].getMin();
-		  int Mx = x[k].getMax();
-		  for(int w = mx; w <= Mx; w++) {
-		    //go to every values of the domain of x that is not matched by x
-		    if (varMatch[k] != w) {
-		      if (x[k].hasValue(w)) {
-		        if (valDfs[w-minval] == 0) {
-		          findSCCval(w,ft);
-		          if (valHigh[w-minval] > varHigh[k])
-		            varHigh[k] = valHigh[w-minval];
-		        }
-		        else if ( (valDfs[w-minval] > varDfs[k]) && (valComponent[w-minval] == 0)) {
-		          if (valDfs[w-minval] > varHigh[k])
-		            varHigh[k] = valDfs[w-minval];
-		        }
-		      }
-		    }
-		  }
-
-		  //if x is matched go also to every other variables that are not matched (path from x->source->x')
-
-		  if(varMatch[k] != NONE){
-		    for(int i = 0; i < x.length; i++) {
-		      if(varMatch[i] == NONE){
-		        if (varDfs[i] == 0) {
-		          findSCCvar(i,ft);
-		          if (varHigh[i] > varHigh[k])
-		            varHigh[k] = varHigh[i];
-		        }
-		        else if ( (varDfs[i] > varDfs[k]) && (varComponent[i] == 0)) {
-		          if (varDfs[i] > varHigh[k])
-		            varHigh[k] = varDfs[i];
-		        }
-		      }
-		    }
-		  }
-
-		  if (varHigh[k] == varDfs[k]) {
-		    component++;
-		    do {
-		      assert(top > 0);
-		      int i = stack[--top];
-		      int t = type[top];
-		      if (t == 0)
-		        varComponent[i] = component;
-		      else if (t == 1)
-		        valComponent[i-minval] = component;
-		      else
-		        sinkComponent = component;
-		      if (t == 0 && i == k)
-		        break;
-		    } while (true);
-		  }
-		
-		
-	}
-	
-	private void findSCCval(int v, FlowType ft){
-		int []  valMatch = (ft == FlowType.UF) ? valMatch_uf : valMatch_of; //first variable matched to the value
-		int []  capa     = (ft == FlowType.UF) ? low : up; //first variable matched to the value
-		int []  next     = (ft == FlowType.UF) ? next_uf : next_of; //first variable matched to the value
-		int []  flow     = (ft == FlowType.UF) ? flow_uf : flow_of; //first variable matched to the value
-
-		valDfs[v-minval] = dfs--;
-		valHigh[v-minval] = valDfs[v-minval];
-		stack[top] = v;
-		type[top] = 1;
-		top++;
-		assert(top <= x.length + nbVals + 1);
-
-		// first go to the variables assigned to this value
-		int k = valMatch[v-minval];
-		while (k != NONE) {
-			if (varDfs[k] == 0) {
-				findSCCvar(k,ft);
-				if (varHigh[k] > valHigh[v-minval])
-					valHigh[v-minval] = varHigh[k];
-			}
-			else if ( (varDfs[k] > valDfs[v-minval]) && (varComponent[k] == 0)) {
-				if (varDfs[k] > valHigh[v-minval])
-					valHigh[v-minval] = varDfs[k];
-			}
-			k = next[k];
-		}
-
-		// next try to see if you can go to the sink
-
-		if (flow[v-minval] < capa[v-minval]) {
-			// go to the sink
-			if (sinkDfs == 0) {
-				findSCCsink(ft);
-				if (sinkHigh > valHigh[v-minval])
-					valHigh[v-minval] = sinkHigh;
-			}
-			else if ( (sinkDfs > valDfs[v-minval]) && (sinkComponent == 0)) {
-				if (sinkDfs > valHigh[v-minval])
-					valHigh[v-minval] = sinkDfs;
-			}
-		}
-
-		if (valHigh[v-minval] == valDfs[v-minval]) {
-			component++;
-			do {
-				assert(top > 0);
-				int i = stack[--top];
-				int t = type[top];
-				if (t == 0)
-					varComponent[i] = component;
-				else if (t == 1)
-					valComponent[i-minval] = component;
-				else
-					sinkComponent = component;
-				if (t == 1 && i == v)
-					break;
-			} while (true);
-		}
-		
-	}
-	
-	private void findSCCsink(FlowType ft){
-		  int []  varMatch = (ft == FlowType.UF) ? varMatch_uf : varMatch_of; //first variable matched to the value
-		  int []  flow     = (ft == FlowType.UF) ? flow_uf : flow_of; //first variable matched to the value
-
-		  sinkDfs  = dfs--;
-		  sinkHigh = sinkDfs;
-		  stack[top] = NONE;
-		  type[top] = 2;
-		  top++;
-		  assert(top <= x.length + nbVals + 1);
-
-		  //from the sink, I can go to the values if the flow in the value is larger than the demand in these value
-
-		  for(int i = 0; i < x.length; i++) {
-		    int w = varMatch[i];
-		    if(varMatch[i] != NONE){
-		      if (flow[w-minval] > 0) { //there is no minimum capacity
-		        if (valDfs[w-minval] == 0) {
-		          findSCCval(w,ft);
-		          if (valHigh[w-minval] > sinkHigh)
-		            sinkHigh = valHigh[w-minval];
-		        }
-		        else if ( (valDfs[w-minval] > sinkDfs) && (valComponent[w-minval] == 0)) {
-		          if (valDfs[w-minval] > sinkHigh)
-		            sinkHigh = valDfs[w-minval];
-		        }
-		      }
-		    }
-		  }
 
-		  //from the sink we can also go the variables that are not matched
-
-		  for(int i = 0; i < x.length; i++) {
-		    if(varMatch[i] == NONE){
-		      if (varDfs[i] == 0) {
-		        findSCCvar(i,ft);
-		        if (varHigh[i] > sinkHigh)
-		          sinkHigh = varHigh[i];
-		      }
-		      else if ( (varDfs[i] > sinkDfs) && (varComponent[i] == 0)) {
-		        if (varDfs[i] > sinkHigh)
-		          sinkHigh = varDfs[i];
-		      }
-		    }
-		  }
-
-		  if (sinkHigh == sinkDfs) {
-		    component++;
-		    do {
-		      assert(top > 0);
-		      int i = stack[--top];
-		      int t = type[top];
-		      if (t == 0)
-		        varComponent[i] = component;
-		      else if (t == 1)
-		        valComponent[i-minval] = component;
-		      else
-		        sinkComponent = component;
-		      if (t == 2)
-		        break;
-		    } while (true);
-		  }
-		
+	// the variables can be unmatched and the flow in the values is at most low (underflow) or up (overflow)
+	private void findSCC(FlowType ft){
+		if(ft == FlowType.UF)
+			scc_uf.findSCC(varMatch_uf, valMatch_uf, next_uf, flow_uf, zeros, low, true);
+		else
+			scc_of.findSCC(varMatch_of, valMatch_of, next_of, flow_of, zeros, up, true);
 	}
 	
 	private void prune(int valViol){
@@ -821,18 +587,8 @@ public class SoftGCCAC extends Constraint{
 
 		//we compute the SCC in Gu and Go and also if a variable is matched in every maximum matching in Gu and Go
 
-		//source of inefficiency to create the table (memory)?
-		int  [] varComponent_uf = new int[x.length];
-		int  [] valComponent_uf = new int[nbVals];
-		
 		findSCC(FlowType.UF);
 		computeIsVarAlwaysMatched(FlowType.UF);
-		for(int v = 0; v<nbVals; v++) {
-			valComponent_uf[v] = valComponent[v];
-		}
-		for(int k = 0; k < x.length; k++) {
-			varComponent_uf[k] = varComponent[k];
-		}
 
 		findSCC(FlowType.OF);
 		computeIsVarAlwaysMatched(FlowType.OF);
@@ -845,7 +601,7 @@ public class SoftGCCAC extends Constraint{
 				for(int w = mx; w <= Mx; w++) {
 					if(x[k].hasValue(w)){
 						if (varMatch_uf[k] != w && varMatch_of[k] != w) {
-							if ((varComponent_uf[k] != valComponent_uf[w-minval] && (low[w-minval]>0 || isVarAlwaysMatched_uf[k])) && (varComponent[k] != valComponent[w-minval] && (up[w-minval]>0 || isVarAlwaysMatched_of[k])) ) {
+							if ((scc_uf.varComponent(k) != scc_uf.valComponent(w) && (low[w-minval]>0 || isVarAlwaysMatched_uf[k])) && (scc_of.varComponent(k) != scc_of.valComponent(w) && (up[w-minval]>0 || isVarAlwaysMatched_of[k])) ) {
 								x[k].removeValue(w);
 							}
 						}
@@ -862,7 +618,7 @@ public class SoftGCCAC extends Constraint{
 				for(int w = mx; w <= Mx; w++) {
 					if(x[k].hasValue(w)){
 						if (varMatch_uf[k] != w && varMatch_of[k] != w) {
-							if (varComponent_uf[k] != valComponent_uf[w-minval] && (low[w-minval]>0 || isVarAlwaysMatched_uf[k])) {
+							if (scc_uf.varComponent(k) != scc_uf.valComponent(w) && (low[w-minval]>0 || isVarAlwaysMatched_uf[k])) {
 								x[k].removeValue(w);
 							}
 						}
@@ -878,7 +634,7 @@ public class SoftGCCAC extends Constraint{
 				for(int w = mx; w <= Mx; w++) {
 					if(x[k].hasValue(w)){
 						if (varMatch_of[k] != w) {
-							if (varComponent[k] != valComponent[w-minval] && (up[w-minval]>0 || isVarAlwaysMatched_of[k])) {
+							if (scc_of.varComponent(k) != scc_of.valComponent(w) && (up[w-minval]>0 || isVarAlwaysMatched_of[k])) {
 								x[k].removeValue(w);
 							}
 						}
@@ -106,6 +106,23 @@ class ArrayStackInt(initialSize: Int = 100) {
     else stack(idx) = entry
   }
   
+  /** Returns the length of the internal array */
+  @inline final def capacity: Int = stack.length
+
+  /**
+   *  Reallocates the internal array to twice the size of the stack (but not
+   *  below the initial size) if it is larger, such that the memory used by
+   *  a past peak of the stack can be garbage collected.
+   */
+  final def shrink(): Unit = {
+    val newLength = math.max(initialSize, index * 2)
+    if (newLength < stack.length) {
+      val newStack = new Array[Int](newLength)
+      System.arraycopy(stack, 0, newStack, 0, index)
+      stack = newStack
+    }
+  }
+
   // Double the size of the stack
   @inline private def growStack(): Unit = {
     val newStack = new Array[Int](stack.length * 2)
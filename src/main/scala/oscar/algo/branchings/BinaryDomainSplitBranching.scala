@@ -10,13 +10,12 @@ class BinaryDomainSplitBranching[T](variables: Array[IntVarLike], varHeuris: (In
 
   def this(x: Array[IntVarLike], varHeuris: (Int => T), orderer: T => Ordered[T]) = this(x, varHeuris, i => (x(i).min + x(i).max) / 2, orderer)
 
-  final override def alternatives(): Seq[Alternative] = {
-    if (allBounds()) noAlternative
+  final override def nextDecision(): Boolean = {
+    if (allBounds()) false
     else {
       val i = nextVar()
-      val variable = variables(i)
-      val value = valHeuris(i)
-      List(Decision.lowerEq(variable, value), Decision.greaterEq(variable, value + 1))
+      decide(i, PrimitiveBranching.LowerEq, valHeuris(i))
+      true
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+
+package oscar.algo.reversible
+
+/**
+ * Trail of a reversible structure that logs its changes in arrays of its own, with a single trail entry
+ * per state of the context.
+ *
+ * Before a change, the structure asks newEntry for the position of the change in its log, and saves
+ * there what is needed to undo it. On backtrack, undo is called on the entries of the state, from the last one.
+ *
+ * @param context the context in which the log is trailed
+ */
+abstract class LevelLog(context: ReversibleContext) extends TrailEntry {
+
+  // Log sizes at each level, restored on backtrack
+  private[this] var levels = new Array[Int](16)
+  private[this] var nLevels = 0
+  private[this] var lastMagic = -1L
+  private[this] var size = 0
+
+  /** The number of entries of the log */
+  final def logSize: Int = size
+
+  /** Returns the position of a new entry of the log, the first entry of a state trails the log */
+  @inline protected final def newEntry(): Int = {
+    val contextMagic = context.magic
+    if (lastMagic != contextMagic) {
+      lastMagic = contextMagic
+      if (nLevels == levels.length) levels = java.util.Arrays.copyOf(levels, nLevels * 2)
+      levels(nLevels) = size
+      nLevels += 1
+      context.trail(this)
+    }
+    size += 1
+    size - 1
+  }
+
+  /** Undoes the change saved at the position entry of the log */
+  protected def undo(entry: Int): Unit
+
+  /** Returns a copy of an array of the log with twice its length */
+  protected final def grow(array: Array[Int]): Array[Int] = {
+    context.innerTrailGrown(array.length * 4L)
+    java.util.Arrays.copyOf(array, array.length * 2)
+  }
+
+  /** Returns a copy of an array of the log with twice its length */
+  protected final def grow(array: Array[Long]): Array[Long] = {
+    context.innerTrailGrown(array.length * 8L)
+    java.util.Arrays.copyOf(array, array.length * 2)
+  }
+
+  final override def restore(): Unit = {
+    nLevels -= 1
+    val until = levels(nLevels)
+    while (size > until) {
+      size -= 1
+      undo(size)
+    }
+    lastMagic = -1L
+  }
+}
@@ -41,6 +41,12 @@ trait ReversibleContext {
 
   /** Trail the closure such that it is called on corresponding pop */
   def trail[@specialized T](closure: => T): Unit
+
+  /**
+   * Notifies the context that a reversible has grown its inner trail (the array in which
+   * it saves its states) by an estimated number of bytes, see ReversibleContextImpl.trailBytes
+   */
+  def innerTrailGrown(bytes: Long): Unit = {}
 }
 
 /**
@@ -56,6 +62,10 @@ class ReversibleContextImpl extends ReversibleContext {
   private[this] var trailTime: Long = 0
   private[this] var magicNumber: Long = 0
 
+  // Estimated memory of the inner trails of the reversibles, and limit on the memory of the trail
+  private[this] var innerBytes: Long = 0L
+  private[this] var limitBytes: Long = Long.MaxValue
+
   private[this] val trailStack: ArrayStack[TrailEntry] = new ArrayStack(1024)
   private[this] val levelStack: ArrayStackInt = new ArrayStackInt(128)
   
@@ -77,6 +87,26 @@ class ReversibleContextImpl extends ReversibleContext {
   /** Returns the time spent to pop states */
   final def time: Long = trailTime
 
+  /**
+   * Returns an estimate of the number of bytes held by the trail: the stack of trail entries,
+   * the stack of states and the inner trails of the reversibles (which never shrink).
+   * The trail entries themselves are not counted.
+   */
+  final def trailBytes: Long = {
+    trailStack.capacity * ReversibleContext.ReferenceBytes + levelStack.capacity * 4L + innerBytes
+  }
+
+  /** Returns the limit on trailBytes, Long.MaxValue if there is none */
+  final def memoryLimit: Long = limitBytes
+
+  /** Sets a limit on trailBytes, a search stops when it is exceeded (see DFSearch) */
+  final def memoryLimit_=(bytes: Long): Unit = limitBytes = bytes
+
+  /** Returns true if trailBytes exceeds the memory limit */
+  final def isMemoryLimitExceeded: Boolean = limitBytes != Long.MaxValue && trailBytes > limitBytes
+
+  override final def innerTrailGrown(bytes: Long): Unit = innerBytes += bytes
+
   /** Adds an action to execute when the `pop` function is called 
    *  This is added action will be removed on pop of the current context state
    */
@@ -137,6 +167,24 @@ class ReversibleContextImpl extends ReversibleContext {
     }
     // Increments the magic because we want to trail again
     magicNumber += 1
+    shrink()
+  }
+
+  /**
+   *  Restores the node to the state on top of the stack when it contained level states,
+   *  the states above are removed (the on pop actions are executed for each of them)
+   */
+  def popUntil(level: Int): Unit = {
+    while (levelStack.length > level) pop()
+  }
+
+  /**
+   *  Releases the memory of the stacks beyond twice their current size, to be
+   *  called after a deep excursion (a search, a dive) when the stacks are small again
+   */
+  final def shrink(): Unit = {
+    trailStack.shrink()
+    levelStack.shrink()
   }
   
   /** Reset the last state */
@@ -160,4 +208,7 @@ class ReversibleContextImpl extends ReversibleContext {
 
 object ReversibleContext {
   def apply() = new ReversibleContextImpl
+
+  /** Estimated size of a reference in a trail stack */
+  final val ReferenceBytes = 8L
 }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.algo.reversible
+
+/**
+ * Binary min-heap on the elements of [0, nElements) with a primitive long key for each element.
+ * Elements with the same key are ordered by increasing index.
+ *
+ * Contrary to [[oscar.algo.array.ArrayHeapInt]], the position of each element in the heap is known,
+ * such that changing the key of an element or removing it costs O(log n). The changes are logged
+ * and undone on backtrack, in O(log n) each.
+ *
+ * Int keys can be used as is, and double keys can be mapped on longs with [[ReversibleIndexedHeap.doubleToKey]].
+ *
+ * @param initialKeys the elements are initially in the heap with these keys
+ */
+final class ReversibleIndexedHeap(context: ReversibleContext, initialKeys: Array[Long]) extends LevelLog(context) {
+
+  private[this] val nElements = initialKeys.length
+  private[this] val keys = initialKeys.clone()
+  // heap(1) is the minimum, heap(0) is not used
+  private[this] val heap = Array.tabulate(nElements + 1)(i => i - 1)
+  private[this] val positions = Array.tabulate(nElements)(i => i + 1)
+  private[this] var heapSize = nElements
+
+  // log of the changes as (element, key before the change), the elements that are not in the heap have ABSENT as position
+  private[this] var logElements = new Array[Int](16)
+  private[this] var logKeys = new Array[Long](16)
+
+  private[this] final val ABSENT = 0
+
+  // initial heapify
+  {
+    var i = heapSize / 2
+    while (i > 0) {
+      heapifyTopDown(i)
+      i -= 1
+    }
+  }
+
+  def size: Int = heapSize
+
+  def isEmpty: Boolean = heapSize == 0
+
+  def contains(element: Int): Boolean = positions(element) != ABSENT
+
+  def key(element: Int): Long = keys(element)
+
+  /** Returns the element with the smallest key */
+  def min: Int = {
+    if (heapSize != 0) heap(1)
+    else throw new NoSuchElementException("empty")
+  }
+
+  /** Removes the element from the heap, does nothing if the element is not in the heap */
+  def remove(element: Int): Unit = {
+    if (positions(element) != ABSENT) {
+      log(element)
+      removeFromHeap(element)
+    }
+  }
+
+  /** Changes the key of an element of the heap, does nothing if the element is not in the heap */
+  def changeKey(element: Int, key: Long): Unit = {
+    if (positions(element) != ABSENT && keys(element) != key) {
+      log(element)
+      updateKey(element, key)
+    }
+  }
+
+  final override protected def undo(entry: Int): Unit = {
+    val element = logElements(entry)
+    val key = logKeys(entry)
+    if (positions(element) == ABSENT) {
+      keys(element) = key
+      heapSize += 1
+      heap(heapSize) = element
+      positions(element) = heapSize
+      heapifyBottomUp(heapSize)
+    }
+    else updateKey(element, key)
+  }
+
+  private def updateKey(element: Int, key: Long): Unit = {
+    val decreased = key < keys(element)
+    keys(element) = key
+    if (decreased) heapifyBottomUp(positions(element))
+    else heapifyTopDown(positions(element))
+  }
+
+  private def removeFromHeap(element: Int): Unit = {
+    val i = positions(element)
+    val last = heap(heapSize)
+    heapSize -= 1
+    positions(element) = ABSENT
+    if (last != element) {
+      heap(i) = last
+      positions(last) = i
+      heapifyBottomUp(i)
+      heapifyTopDown(positions(last))
+    }
+  }
+
+  private def log(element: Int): Unit = {
+    val entry = newEntry()
+    if (entry == logElements.length) {
+      logElements = grow(logElements)
+      logKeys = grow(logKeys)
+    }
+    logElements(entry) = element
+    logKeys(entry) = keys(element)
+  }
+
+  @inline private def less(a: Int, b: Int): Boolean = {
+    val ka = keys(a)
+    val kb = keys(b)
+    ka < kb || (ka == kb && a < b)
+  }
+
+  @inline private def swap(i: Int, j: Int): Unit = {
+    val ei = heap(i)
+    val ej = heap(j)
+    heap(i) = ej
+    heap(j) = ei
+    positions(ej) = i
+    positions(ei) = j
+  }
+
+  private def heapifyTopDown(position: Int): Unit = {
+    var i = position
+    var continue = true
+    while (continue) {
+      val l = i << 1
+      val r = l + 1
+      var min = i
+      if (l <= heapSize && less(heap(l), heap(min))) min = l
+      if (r <= heapSize && less(heap(r), heap(min))) min = r
+      if (min != i) {
+        swap(i, min)
+        i = min
+      }
+      else continue = false
+    }
+  }
+
+  private def heapifyBottomUp(position: Int): Unit = {
+    var i = position
+    while (i > 1 && less(heap(i), heap(i >> 1))) {
+      swap(i, i >> 1)
+      i = i >> 1
+    }
+  }
+
+  override def toString: String = "ReversibleIndexedHeap(" + (1 to heapSize).map(i => heap(i)).mkString(", ") + ")"
+}
+
+object ReversibleIndexedHeap {
+
+  /** Maps a double on a long such that the order is preserved */
+  @inline def doubleToKey(value: Double): Long = {
+    val bits = java.lang.Double.doubleToLongBits(value)
+    if (bits < 0) bits ^ Long.MaxValue else bits
+  }
+}
@@ -103,6 +103,7 @@ class ReversibleInt(context: ReversibleContext, initValue: Int, initSize: Int) e
     val newTrail = new Array[Int](trailSize * 2)
     System.arraycopy(trail, 0, newTrail, 0, trailSize)
     trail = newTrail
+    context.innerTrailGrown(trailSize * 4L)
   }
 }
 
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.algo.reversible
+
+/**
+ * Array of reversible integers.
+ *
+ * Contrary to an array of [[ReversibleInt]], a single trail entry is pushed per state of the context.
+ * An entry is saved in a log the first time it changes in a state, and the log is undone on backtrack.
+ *
+ * @param length the number of entries
+ * @param initValue the initial value of the entries
+ */
+final class ReversibleIntArray(context: ReversibleContext, val length: Int, initValue: Int) extends LevelLog(context) {
+
+  private[this] val values = Array.fill(length)(initValue)
+
+  // Magic of the state in which each entry has been saved
+  private[this] val magics = Array.fill(length)(-1L)
+
+  // Log of the changes as (entry, value before the change)
+  private[this] var logIds = new Array[Int](16)
+  private[this] var logValues = new Array[Int](16)
+
+  @inline def apply(i: Int): Int = values(i)
+
+  @inline def update(i: Int, value: Int): Unit = {
+    if (values(i) != value) {
+      save(i)
+      values(i) = value
+    }
+  }
+
+  /** Fills the array with value */
+  def fill(value: Int): Unit = {
+    var i = 0
+    while (i < length) {
+      update(i, value)
+      i += 1
+    }
+  }
+
+  final override protected def undo(entry: Int): Unit = {
+    val i = logIds(entry)
+    values(i) = logValues(entry)
+    magics(i) = -1L
+  }
+
+  // Saves the entry before its first change in the current state
+  @inline private def save(i: Int): Unit = {
+    val contextMagic = context.magic
+    if (magics(i) != contextMagic) {
+      magics(i) = contextMagic
+      val entry = newEntry()
+      if (entry == logIds.length) {
+        logIds = grow(logIds)
+        logValues = grow(logValues)
+      }
+      logIds(entry) = i
+      logValues(entry) = values(i)
+    }
+  }
+
+  override def toString: String = values.mkString("[", ", ", "]")
+}
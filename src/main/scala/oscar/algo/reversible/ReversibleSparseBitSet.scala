@@ -61,6 +61,54 @@ object BitSetOp {
     val offset = bitOffset(pos)
     bitSet(offset).setValue(bitSet(offset).getValue | oneBitLong(pos))
   }
+
+  /**
+   * Check if the bit at the given position is set,
+   * the positions outside the bitSet being unset
+   * @param bitSet array of Long representing the bitset
+   * @param pos position of the bit, possibly negative
+   * @return true if the bit is set, false otherwise
+   */
+  def hasBit(bitSet: Array[Long], pos: Int): Boolean = {
+    pos >= 0 && (pos >>> 6) < bitSet.length && (bitSet(pos >>> 6) & oneBitLong(pos)) != 0
+  }
+
+  /**
+   * Extract the 64 bits starting at the given position,
+   * the positions outside the bitSet being unset
+   * @param bitSet array of Long representing the bitset
+   * @param from position of the first bit, possibly negative
+   * @return word whose bit i is the bit from + i of the bitSet
+   */
+  def wordAt(bitSet: Array[Long], from: Int): Long = {
+    val offset = from >> 6 // rounded down for negative positions
+    val shift = from & 63
+    val low = if (offset >= 0 && offset < bitSet.length) bitSet(offset) >>> shift else 0L
+    if (shift == 0) low
+    else {
+      val high = if (offset + 1 >= 0 && offset + 1 < bitSet.length) bitSet(offset + 1) << (64 - shift) else 0L
+      low | high
+    }
+  }
+
+  /**
+   * Count the bits set between two positions
+   * @param bitSet array of Long representing the bitset
+   * @param from first position, possibly negative
+   * @param to last position (included)
+   * @return number of bits set in [from, to]
+   */
+  def countBits(bitSet: Array[Long], from: Int, to: Int): Int = {
+    var count = 0
+    var pos = from
+    while (pos <= to) {
+      val n = to - pos + 1
+      val word = wordAt(bitSet, pos)
+      count += java.lang.Long.bitCount(if (n >= 64) word else word & ((1L << n) - 1))
+      pos += 64
+    }
+    count
+  }
 }
 
 
@@ -219,6 +267,7 @@ class ReversibleSparseBitSet(val context: ReversibleContext, val n: Int, val ini
     System.arraycopy(wordValue, 0, newWordValue, 0, innerTrailSize)
     wordIndex = newWordIndex
     wordValue = newWordValue
+    context.innerTrailGrown(innerTrailSize * 12L)
     innerTrailSize *= 2
   }
 
@@ -16,7 +16,7 @@
 package oscar.algo.search
 
 import oscar.algo.Inconsistency
-import oscar.algo.array.ArrayStack
+import oscar.algo.array.{ArrayStack, ArrayStackInt}
 
 class SearchStatistics(
                         val nNodes: Int,
@@ -25,8 +25,13 @@ class SearchStatistics(
                         val completed: Boolean,
                         val timeInTrail: Long,
                         val maxTrailSize: Int,
-                        val nSols: Int) {
-  override val toString: String = s"nNodes: $nNodes\nnFails: $nFails\ntime(ms): $time\ncompleted: $completed\ntimeInTrail: $timeInTrail\nnSols: $nSols\n"
+                        val nSols: Int,
+                        val memoryLimitReached: Boolean = false,
+                        val trailBytes: Long = 0L) {
+  override val toString: String = {
+    val memory = if (memoryLimitReached) s"memoryLimitReached: true (trail: $trailBytes bytes)\n" else ""
+    s"nNodes: $nNodes\nnFails: $nFails\ntime(ms): $time\ncompleted: $completed\ntimeInTrail: $timeInTrail\nnSols: $nSols\n" + memory
+  }
 }
 
 /**
@@ -38,6 +43,15 @@ class DFSearch(node: DFSearchNode) {
 
   private[this] val alternativesStack = new ArrayStack[Iterator[Alternative]](100)
 
+  // Pending decisions of a primitive branching, the operation is tagged with RightBranch when it is the last one of its node
+  private[this] val decisionVars = new ArrayStackInt(100)
+  private[this] val decisionOps = new ArrayStackInt(100)
+  private[this] val decisionValues = new ArrayStackInt(100)
+  private[this] final val RightBranch = 1 << 8
+
+  // The branching of the current search if it is primitive, null otherwise
+  private[this] var primitiveBranching: PrimitiveBranching = null
+
   // Number of backtracks of the previous search
   private[this] var nbBkts: Int = 0
 
@@ -50,6 +64,9 @@ class DFSearch(node: DFSearchNode) {
   // True if the previous search was exhaustive
   private[this] var completed: Boolean = false
 
+  // True if the previous search was stopped because the trail exceeded the memory limit of the node
+  private[this] var memoryLimitReached: Boolean = false
+
 
   // Actions to execute in case of solution node
   private[this] var solutionActions = List.empty[() => Unit]
@@ -77,6 +94,9 @@ class DFSearch(node: DFSearchNode) {
   /** Returns true if the previous search was exhaustive */
   final def isCompleted: Boolean = completed
 
+  /** Returns true if the previous search was stopped by the memory limit of the node (see ReversibleContextImpl.memoryLimit) */
+  final def isMemoryLimitReached: Boolean = memoryLimitReached
+
   /** Adds an action to execute when a failed node is found */
   final def onFailure(action: => Unit): Unit = failureActions = (() => action) :: failureActions
 
@@ -90,24 +110,113 @@ class DFSearch(node: DFSearchNode) {
   final def clearOnFailure(): Unit = failureActions = Nil
 
   @inline private def expand(branching: Branching): Boolean = {
-    val alternatives = branching.alternatives
-    if (alternatives.isEmpty) false
+    if (primitiveBranching != null) {
+      if (!primitiveBranching.nextDecision()) false
+      else {
+        decisionVars.push(primitiveBranching.decisionVar)
+        decisionOps.push(primitiveBranching.decisionOp)
+        decisionValues.push(primitiveBranching.decisionValue)
+        true
+      }
+    }
+    else {
+      val alternatives = branching.alternatives
+      if (alternatives.isEmpty) false
+      else {
+        alternativesStack.push(alternatives.iterator)
+        true
+      }
+    }
+  }
+
+  @inline private def nOpenNodes: Int = {
+    if (primitiveBranching != null) decisionOps.size
+    else alternativesStack.size
+  }
+
+  // Applies the next alternative of the node on top of the stack
+  @inline private def branch(): Unit = {
+    val alternatives = alternativesStack.top
+    val alternative = alternatives.next()
+
+    val isLast = !alternatives.hasNext
+
+    if (!isLast) {
+      if(searchListener_ != null)
+        searchListener_.onPush(node)
+      node.pushState()
+    }
+    else alternativesStack.pop() // no more alternative in the sequence
+
+    if(searchListener_ != null)
+      searchListener_.onBranch(alternative)
+
+    try {
+      alternative() // apply the alternative
+    } catch {
+      case _: Inconsistency => node.fail()
+    }
+  }
+
+  // Applies the next decision of the node on top of the primitive stacks
+  @inline private def branchPrimitive(): Unit = {
+    val varIndex = decisionVars.top
+    val op = decisionOps.top
+    val value = decisionValues.top
+
+    val isLast = (op & RightBranch) != 0
+
+    if (!isLast) {
+      if(searchListener_ != null)
+        searchListener_.onPush(node)
+      node.pushState()
+      // the right branch is applied the next time the node is on top
+      decisionOps.pop()
+      decisionValues.pop()
+      decisionOps.push(PrimitiveBranching.oppositeOp(op) | RightBranch)
+      decisionValues.push(PrimitiveBranching.oppositeValue(op, value))
+    }
     else {
-      alternativesStack.push(alternatives.iterator)
-      true
+      decisionVars.pop()
+      decisionOps.pop()
+      decisionValues.pop()
+    }
+
+    val decisionOp = op & ~RightBranch
+    if(searchListener_ != null)
+      searchListener_.onBranch(primitiveBranching.decision(varIndex, decisionOp, value))
+
+    try {
+      primitiveBranching(varIndex, decisionOp, value) // apply the decision
+    } catch {
+      case _: Inconsistency => node.fail()
     }
   }
 
+  // Returns true if the trail exceeds the memory limit, the search is then stopped as by a stop condition
+  @inline private def checkMemory(): Boolean = {
+    if (node.isMemoryLimitExceeded) memoryLimitReached = true
+    memoryLimitReached
+  }
+
   final def start(branching: Branching, stopCondition: DFSearch => Boolean = _ => false/*, searchListener : DFSearchListener*/): Unit = {
 
     // Initializes the search
     node.resetStats() // resets trailing time too
     alternativesStack.clear()
+    decisionVars.clear()
+    decisionOps.clear()
+    decisionValues.clear()
+    primitiveBranching = branching match {
+      case b: PrimitiveBranching => b
+      case _ => null
+    }
     branching.reset() // resets branching
     nbSols = 0
     nbBkts = 0
     nbNodes = 0
     completed = false
+    memoryLimitReached = false
 
     if(searchListener_ != null)
       searchListener_.onPush(node)
@@ -127,30 +236,12 @@ class DFSearch(node: DFSearchNode) {
       }
     }
 
-    while (!alternativesStack.isEmpty && !stopCondition(this)) {
+    while (nOpenNodes != 0 && !stopCondition(this) && !checkMemory()) {
 
       nbNodes += 1
 
-      val alternatives = alternativesStack.top
-      val alternative = alternatives.next()
-      
-      val isLast = !alternatives.hasNext
-      
-      if (!isLast) {
-        if(searchListener_ != null)
-          searchListener_.onPush(node)
-        node.pushState()
-      }
-      else alternativesStack.pop() // no more alternative in the sequence
-
-      if(searchListener_ != null)
-        searchListener_.onBranch(alternative)
-
-      try {
-        alternative() // apply the alternative
-      } catch {
-        case _: Inconsistency => node.fail()
-      }
+      if (primitiveBranching != null) branchPrimitive()
+      else branch()
 
       if (!node.isFailed) {
         val isExpandable = expand(branching)
@@ -174,7 +265,7 @@ class DFSearch(node: DFSearchNode) {
     }
     
     // Pop the remaining nodes 
-    var i = alternativesStack.size
+    var i = nOpenNodes
     if (i == 0) completed = true
     else while (i != 0) {
       if(searchListener_ != null)
@@ -185,5 +276,6 @@ class DFSearch(node: DFSearchNode) {
     if(searchListener_ != null)
       searchListener_.onPop(node)
     node.pop()
+    primitiveBranching = null
   }
 }
\ No newline at end of file
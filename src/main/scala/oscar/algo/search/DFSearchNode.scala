@@ -105,7 +105,9 @@ class DFSearchNode extends ReversibleContextImpl with ConstrainableContext {
     }
     searchStrategy.searchListener = listener // Set the listener
     searchStrategy.start(heuristic.maxDiscrepancy(maxDiscrepancy), stopCondition)
+    val bytes = trailBytes // Memory held by the trail at the end of the search
     pop() // Restore the current state
+    shrink() // Release the memory of the deepest states
     searchStrategy.searchListener = null  // Remove the listener
     // Build the statistic object
     new SearchStatistics(
@@ -115,7 +117,9 @@ class DFSearchNode extends ReversibleContextImpl with ConstrainableContext {
       searchStrategy.isCompleted,
       this.time,
       this.maxSize,
-      searchStrategy.nSolutions
+      searchStrategy.nSolutions,
+      searchStrategy.isMemoryLimitReached,
+      bytes
     )
   }
 
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.algo.search
+
+import oscar.algo.vars.IntVarLike
+
+import scala.annotation.switch
+
+/**
+ * Binary branching whose decisions are encoded as primitive triples (variable index, operation, value).
+ *
+ * The left branch of a node applies the operation, the right branch applies its opposite
+ * (remove for assign, greater-or-equal for lower-or-equal and conversely).
+ * [[DFSearch]] stores these triples in int stacks and applies them without building
+ * any alternative, as long as no search listener needs to observe the decisions.
+ * The usual [[Branching.alternatives]] is still available such that this branching
+ * can be combined with any other one.
+ *
+ * @param variables the variables on which the decisions are taken
+ */
+abstract class PrimitiveBranching(variables: Array[IntVarLike]) extends Branching {
+
+  import PrimitiveBranching._
+
+  private[this] var varIndex = -1
+  private[this] var op = Assign
+  private[this] var value = 0
+
+  /**
+   * Selects the decision of the left branch of the next node with decide
+   * @return false if there is no decision to take, the current node being a solution
+   */
+  def nextDecision(): Boolean
+
+  /** Sets the decision selected by nextDecision */
+  @inline protected final def decide(varIndex: Int, op: Int, value: Int): Unit = {
+    this.varIndex = varIndex
+    this.op = op
+    this.value = value
+  }
+
+  /** Variable index of the last selected decision */
+  final def decisionVar: Int = varIndex
+
+  /** Operation of the last selected decision */
+  final def decisionOp: Int = op
+
+  /** Value of the last selected decision */
+  final def decisionValue: Int = value
+
+  /** Applies the operation op with the given value on variables(varIndex) */
+  final def apply(varIndex: Int, op: Int, value: Int): Unit = {
+    val variable = variables(varIndex)
+    (op: @switch) match {
+      case Assign => variable.context.assign(variable, value)
+      case Remove => variable.context.remove(variable, value)
+      case LowerEq => variable.context.smallerEq(variable, value)
+      case GreaterEq => variable.context.largerEq(variable, value)
+    }
+  }
+
+  /** Returns the decision object equivalent to the triple */
+  final def decision(varIndex: Int, op: Int, value: Int): Decision = {
+    val variable = variables(varIndex)
+    (op: @switch) match {
+      case Assign => Decision.assign(variable, value)
+      case Remove => Decision.remove(variable, value)
+      case LowerEq => Decision.lowerEq(variable, value)
+      case GreaterEq => Decision.greaterEq(variable, value)
+    }
+  }
+
+  override def alternatives(): Seq[Alternative] = {
+    if (!nextDecision()) noAlternative
+    else List(decision(varIndex, op, value), decision(varIndex, oppositeOp(op), oppositeValue(op, value)))
+  }
+}
+
+object PrimitiveBranching {
+
+  final val Assign = 0
+  final val Remove = 1
+  final val LowerEq = 2
+  final val GreaterEq = 3
+
+  /** The operation applied on the right branch */
+  @inline final def oppositeOp(op: Int): Int = op ^ 1
+
+  /** The value used by the operation applied on the right branch */
+  @inline final def oppositeValue(op: Int, value: Int): Int = {
+    if (op == LowerEq) value + 1
+    else if (op == GreaterEq) value - 1
+    else value
+  }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.batch
+
+import java.util.concurrent.atomic.{AtomicInteger, AtomicReference}
+import java.util.concurrent.{ExecutorService, Executors, Future}
+
+/**
+ * Solves batches of instances with a pool of workers. Each worker owns a template, built on
+ * its first instance and reused for all the following ones (of this batch and of the next ones),
+ * so that the model is stated once per worker and its code stays warm. The threads of the pool
+ * are also kept between the batches, until close is called.
+ *
+ * @param nWorkers the number of threads solving the instances
+ * @param newTemplate builds the template of a worker, the templates must not share mutable state
+ */
+final class BatchSolver[D, R](nWorkers: Int, newTemplate: () => ModelTemplate[D, R]) extends AutoCloseable {
+
+  require(nWorkers >= 1, "the number of workers should be at least 1")
+
+  private[this] val templates = new Array[ModelTemplate[D, R]](nWorkers)
+
+  // Daemon threads, so that a batch solver which is not closed does not keep the JVM alive
+  private[this] val executor: ExecutorService = {
+    val nThreads = new AtomicInteger(0)
+    Executors.newFixedThreadPool(nWorkers, (r: Runnable) => {
+      val thread = new Thread(r, "BatchSolver-worker-" + nThreads.getAndIncrement())
+      thread.setDaemon(true)
+      thread
+    })
+  }
+
+  /** The number of workers */
+  def size: Int = nWorkers
+
+  /** Solves the instances, the results are in the order of the instances */
+  def solveAll(instances: IndexedSeq[D]): IndexedSeq[R] = {
+    val results = new Array[Any](instances.length)
+    val next = new AtomicInteger(0)
+    runWorkers { k =>
+      var i = next.getAndIncrement()
+      while (i < instances.length) {
+        results(i) = template(k).run(instances(i))
+        i = next.getAndIncrement()
+      }
+    } {
+      // Stops the other workers
+      next.set(instances.length)
+    }
+    results.toIndexedSeq.asInstanceOf[IndexedSeq[R]]
+  }
+
+  /** Solves the instances with each worker, to build the templates and compile their code */
+  def warmUp(instances: IndexedSeq[D]): Unit = {
+    runWorkers(k => instances.foreach(template(k).run))(())
+  }
+
+  /** Stops the threads of the pool once the current batch is solved, the solver cannot be used anymore */
+  override def close(): Unit = executor.shutdown()
+
+  /** Returns true if the solver has been closed */
+  def isClosed: Boolean = executor.isShutdown
+
+  private def template(k: Int): ModelTemplate[D, R] = {
+    if (templates(k) == null) templates(k) = newTemplate()
+    templates(k)
+  }
+
+  // Runs a task per worker on the pool and rethrows the first exception, after having called onError.
+  // The worker k is the only one using the template k, the batches being solved one at a time.
+  private def runWorkers(work: Int => Unit)(onError: => Unit): Unit = synchronized {
+    if (executor.isShutdown) throw new IllegalStateException("the batch solver is closed")
+    val error = new AtomicReference[Throwable]()
+    val tasks = Array.tabulate[Future[_]](nWorkers)(k => executor.submit(new Runnable {
+      override def run(): Unit = {
+        try work(k)
+        catch {
+          case e: Throwable =>
+            error.compareAndSet(null, e)
+            onError
+        }
+      }
+    }))
+    tasks.foreach(_.get())
+    if (error.get != null) throw error.get
+  }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.batch
+
+import oscar.algo.Inconsistency
+import oscar.cp._
+import oscar.cp.constraints.EqCons
+import oscar.cp.core.NoSolutionException
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * A model built once and solved for many instances of the same problem.
+ *
+ * The model is stated in the constructor of the subclass, with parameter variables for the data
+ * of the instances (e.g. the durations of the activities). For each instance, run goes back to the
+ * state of the solver at the end of the model, binds the parameters to the data and solves.
+ * The variables, the constraints and the search are thus created and set up only once.
+ *
+ * @tparam D the data of an instance
+ * @tparam R the result of an instance
+ */
+abstract class ModelTemplate[D, R] extends CPModel {
+
+  private[this] val params = ArrayBuffer[CPIntVar]()
+
+  // Number of states of the solver at the end of the model, -1 before the first run
+  private[this] var rootLevel = -1
+
+  private[this] var _nRuns = 0
+
+  /** The number of instances solved by the template */
+  final def nRuns: Int = _nRuns
+
+  /** Creates a parameter, a variable of the model whose value is given by each instance */
+  protected final def parameter(min: Int, max: Int, name: String = "param"): CPIntVar = {
+    val param = CPIntVar(min, max, name)
+    params += param
+    param
+  }
+
+  /** Creates n parameters */
+  protected final def parameters(n: Int, min: Int, max: Int, name: String = "param"): Array[CPIntVar] = {
+    Array.tabulate(n)(i => parameter(min, max, name + i))
+  }
+
+  /** Assigns the parameter to value, fails if the value is not in its domain */
+  protected final def bind(param: CPIntVar, value: Int): Unit = solver.post(new EqCons(param, value))
+
+  /**
+   * Binds the parameters to the data of the instance. The constraints specific to the instance
+   * can also be added, they are removed before the next instance.
+   */
+  protected def bind(data: D): Unit
+
+  /** Solves the instance once its parameters are bound, e.g. with start */
+  protected def solve(data: D): R
+
+  /** The result of an instance for which the binding of the parameters fails */
+  protected def infeasible(data: D): R
+
+  /** Solves the instance and restores the model */
+  final def run(data: D): R = {
+    if (rootLevel == -1) rootLevel = solver.nLevel
+    solver.popUntil(rootLevel)
+    solver.pushState()
+    _nRuns += 1
+    try {
+      solver.objective.objs.foreach(_.relax())
+      solver.solutions.clear()
+      val bound = try {
+        bind(data)
+        val unbound = params.filterNot(_.isBound)
+        if (unbound.nonEmpty) throw new IllegalStateException("the parameters " + unbound.mkString(", ") + " are not bound")
+        true
+      } catch {
+        case _: Inconsistency => false
+        case _: NoSolutionException => false
+      }
+      if (bound && !solver.isFailed) solve(data)
+      else infeasible(data)
+    } finally {
+      solver.popUntil(rootLevel)
+    }
+  }
+}
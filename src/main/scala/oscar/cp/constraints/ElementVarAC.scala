@@ -76,25 +76,34 @@ class ElementVarAC(y: Array[CPIntVar], x: CPIntVar, z: CPIntVar) extends Constra
     //resetData() // Mandatory if propagate is called after the initial call
     initData()
 
-    var i = x.fillArray(values)
-    while (i > 0) {
-      i -= 1
+    // The removed values are moved at the beginning of the array
+    var n = x.fillArray(values)
+    var nRemoved = 0
+    var i = 0
+    while (i < n) {
       val v = values(i)
       if (intersect(v - minId).size == 0) {
-        x.removeValue(v)
+        values(nRemoved) = v
+        nRemoved += 1
       }
+      i += 1
     }
+    x.removeValues(values, nRemoved)
 
     if (x.isBound) return bindX()
 
-    i = z.fillArray(values)
-    while (i > 0) {
-      i -= 1
+    n = z.fillArray(values)
+    nRemoved = 0
+    i = 0
+    while (i < n) {
       val v = values(i)
       if (nSupports(v - minValue).value == 0) {
-        z.removeValue(v)
+        values(nRemoved) = v
+        nRemoved += 1
       }
+      i += 1
     }
+    z.removeValues(values, nRemoved)
   }
 
   // Initializes data structures
@@ -204,20 +213,31 @@ class ElementEq(ys: Array[CPIntVar], x: CPIntVar, z: CPIntVar, values: Array[Int
   }
   
   final override def propagate(): Unit = {
-    var i = y.fillArray(values)
-    while (i > 0) {
-      i -= 1
+    // The removed values are moved at the beginning of the array
+    var n = y.fillArray(values)
+    var nRemoved = 0
+    var i = 0
+    while (i < n) {
       val value = values(i)
-      if (!z.hasValue(value))
-        y.removeValue(value)
+      if (!z.hasValue(value)) {
+        values(nRemoved) = value
+        nRemoved += 1
+      }
+      i += 1
     }
-    i = z.fillArray(values)
-    while (i > 0) {
-      i -= 1
+    y.removeValues(values, nRemoved)
+    n = z.fillArray(values)
+    nRemoved = 0
+    i = 0
+    while (i < n) {
       val value = values(i)
-      if (!y.hasValue(value))
-        z.removeValue(value)
+      if (!y.hasValue(value)) {
+        values(nRemoved) = value
+        nRemoved += 1
+      }
+      i += 1
     }
+    z.removeValues(values, nRemoved)
   }
   
   // FIXME: should be idempotent (not allowed yet for L1 events)
@@ -17,7 +17,7 @@
 
 package oscar.cp.constraints
 
-import oscar.algo.reversible.ReversibleInt
+import oscar.algo.reversible.TrailEntry
 import oscar.algo.{DisjointSets, Inconsistency, RangeMinQuery}
 import oscar.cp.{CPIntVar, CPIntVarOps, CPSetVar, Constraint}
 import oscar.cp.core.CPPropagStrength
@@ -25,7 +25,19 @@ import oscar.cp.core.variables.CPVar
 
 import scala.math.Ordering.Double.TotalOrdering
 
+final class HeldKarpTrailEntry(hk: HeldKarp, y: Array[Double], tree: Array[Int], treeSize: Int, treeValid: Boolean, filteredMax: Int) extends TrailEntry {
+  @inline final override def restore(): Unit = hk.restore(y, tree, treeSize, treeValid, filteredMax)
+}
+
 /**
+ * Lower bound of the cost of a tour with the 1-trees of the Lagrangian relaxation of Held and Karp.
+ *
+ * The Lagrangian multipliers are reversible: the subgradient iterations of a node start from the best multipliers
+ * of its parent, and stop once the bound has not improved for a few iterations. The 1-tree of the best multipliers
+ * is kept: as long as its edges are possible and contain the required edges, it is still a minimum 1-tree and the
+ * bound is not recomputed. The edges are kept sorted by reduced weight between two iterations, the small changes
+ * of the multipliers only requiring an insertion sort.
+ *
  * @author Pierre Schaus pschaus@gmail.com
  */
 class HeldKarp(edges: CPSetVar, edgeData: Array[(Int,Int,Int)], cost: CPIntVar) extends Constraint(edges.store) {
@@ -34,206 +46,317 @@ class HeldKarp(edges: CPSetVar, edgeData: Array[(Int,Int,Int)], cost: CPIntVar)
 
   private[this] val epsilon = 10e-6
   private[this] val n = (edgeData.map(_._1).max max (edgeData.map(_._2).max)) +1
+  private[this] val nEdges = edgeData.length
+  private[this] val excluded = n-1
   private[this] val component = new DisjointSets[CCTreeNode](0,n-1)
   private[this] val cctree = new CCTree(n-1)
-  private[this] val distMatrix = Array.fill(n,n)(new ReversibleInt(s,Int.MaxValue)) 
-  
-  private[this] val edgeIndex = Array.fill(n,n)(-1)
-  private[this] val y = Array.fill(n)(0.0)
-  
-  for (((i,j,w),idx) <- edgeData.zipWithIndex) {
-    edgeIndex(i)(j) = idx
-    edgeIndex(j)(i) = idx
-    distMatrix(i min j)(i max j) := w
-  }
-  
-  @inline private def edgeWeight(i: Int, j: Int): Int = {
-    distMatrix(i min j)(i max j).value
-  }
-  
 
-  @inline private def removeEdge(i: Int,j: Int): Unit = {
-    distMatrix(i min j)(i max j) := Int.MaxValue
-    edges.excludes(edgeIndex(i)(j))
+  private[this] val edgeFrom = edgeData.map(_._1)
+  private[this] val edgeTo = edgeData.map(_._2)
+  private[this] val edgeCost = edgeData.map(_._3)
+
+  // Maximum number of subgradient iterations without improvement of the bound
+  private[this] val maxStall = 5
+
+  // Lagrangian multipliers
+  private[this] var y = new Array[Double](n)
+  private[this] val bestY = new Array[Double](n)
+
+  // Edges sorted by reduced weight
+  private[this] val order = Array.tabulate(nEdges)(i => i)
+  private[this] val reducedWeights = new Array[Double](nEdges)
+
+  // 1-tree of the last iteration
+  private[this] val incident = new Array[Int](n)
+  private[this] val edgeUsed = new Array[Boolean](nEdges)
+  private[this] val treeEdges = new Array[Int](n)
+  private[this] var treeSize = 0
+  private[this] var oneTreeLBf = 0.0
+  private[this] var heaviestWeightAdjacentToExcluded = Double.MaxValue
+
+  // Minimum 1-tree of the multipliers y, and max of the cost when the edges were filtered with it
+  private[this] var cachedTree = new Array[Int](n)
+  private[this] var cachedSize = 0
+  private[this] var cacheValid = false
+  private[this] var filteredMax = Int.MaxValue
+  private[this] var lastMagic = -1L
+
+  @inline private def trail(): Unit = {
+    val contextMagic = s.magic
+    if (lastMagic != contextMagic) {
+      lastMagic = contextMagic
+      s.trail(new HeldKarpTrailEntry(this, y, cachedTree, cachedSize, cacheValid, filteredMax))
+      // The saved arrays are not modified anymore
+      y = y.clone()
+      cachedTree = cachedTree.clone()
+    }
   }
-  
-  @inline private def forceEdge(i: Int,j: Int): Unit = {
-    edges.requires(edgeIndex(i)(j))
-  }  
-  
-  @inline private def isEdgePossible(i: Int,j: Int): Boolean = {
-    edges.isPossible(edgeIndex(i)(j))
+
+  final def restore(oldY: Array[Double], oldTree: Array[Int], oldSize: Int, oldValid: Boolean, oldFilteredMax: Int): Unit = {
+    y = oldY
+    cachedTree = oldTree
+    cachedSize = oldSize
+    cacheValid = oldValid
+    filteredMax = oldFilteredMax
+    lastMagic = -1L
   }
-  
-  @inline private def isEdgeRequired(i: Int,j: Int): Boolean = {
-    edges.isRequired(edgeIndex(i)(j))
-  }  
 
   override def setup(l: CPPropagStrength): Unit = {
-    for (((i,j,w),idx) <- edgeData.zipWithIndex) {
-      if (!edges.isPossible(idx)) removeEdge(i,j)
-      if (edges.isRequired(idx)) forceEdge(i,j)
-    }
     edges.callPropagateWhenDomainChanges(this)
     propagateNumSteps(100)
   }
   
   override def propagate(): Unit = {
-    propagateNumSteps(5)
+    if (cacheValid && cachedTreeIsMinimum()) {
+      // The bound is unchanged, the edges are filtered again if the cost has decreased
+      if (cost.max < filteredMax) {
+        trail()
+        computeOneTree()
+        filterEdges()
+        filteredMax = cost.max
+      }
+    }
+    else propagateNumSteps(30)
   }
-  
-  @inline private def propagateNumSteps(nSteps: Int): Unit = {
-    var iter = 0
-    var improvement = true
-    var lb = 0
-    var stepSize = 0.1
+
+  /**
+   * @return true if the edges of the cached 1-tree are possible and contain the required edges,
+   *         the 1-tree being then still minimum for the multipliers
+   */
+  private def cachedTreeIsMinimum(): Boolean = {
+    java.util.Arrays.fill(incident, 0)
+    var nRequired = 0
+    var k = 0
+    while (k < cachedSize) {
+      val idx = cachedTree(k)
+      if (!edges.isPossible(idx)) return false
+      if (edges.isRequired(idx)) {
+        nRequired += 1
+        incident(edgeFrom(idx)) += 1
+        incident(edgeTo(idx)) += 1
+        if (incident(edgeFrom(idx)) > 2 || incident(edgeTo(idx)) > 2) throw Inconsistency
+      }
+      k += 1
+    }
+    nRequired == edges.requiredSize
+  }
+
+  /**
+   * Subgradient iterations, the step size being halved each time the bound is not improved
+   * @param maxSteps the maximum number of iterations
+   */
+  private def propagateNumSteps(maxSteps: Int): Unit = {
+    trail()
     var alpha = 2.0
-    var beta = 0.5
-    val excluded = n-1
-    val nMetaIter = 2
-    
-    var metaIter = 0
-    while (metaIter < nMetaIter) {
-      iter = 0
-      while (iter < nSteps) {
-        //println("iter---")
-        iter += 1
-        improvement = false
-        
-        component.reset()
-        cctree.reset()
-        component.resetAndSetData(i => cctree.nodes(i))
-        val edgeUsed = Array.fill(edgeData.length)(false)
-          
-        val incident = Array.fill(n)(0)
-
-        def edgeWeight(idx: Int): Double = {
-          val (i, j, w) = edgeData(idx)
-          (w - y(i) - y(j))
+    var bestLB = Double.NegativeInfinity
+    var bestIsLast = false
+    var stall = 0
+    var iter = 0
+    var done = false
+    while (iter < maxSteps && !done) {
+      computeOneTree()
+      if (oneTreeLBf > bestLB) {
+        bestLB = oneTreeLBf
+        System.arraycopy(y, 0, bestY, 0, n)
+        bestIsLast = true
+        stall = 0
+        cost.updateMin(oneTreeLBf.ceil.toInt)
+      } else {
+        bestIsLast = false
+        stall += 1
+        alpha /= 2
+      }
+
+      // update the weights
+      var denom = 0.0
+      var i = 0
+      while (i < n) {
+        denom += (2 - incident(i)) * (2 - incident(i))
+        i += 1
+      }
+      // the 1-tree is a tour if denom is 0
+      if (denom == 0 || stall >= maxStall) done = true
+      else {
+        val oneTreeLB = oneTreeLBf.ceil.toInt
+        val target = if (cost.max - oneTreeLB < 0) oneTreeLB+0.1 else cost.max
+        val stepSize = alpha * (target - oneTreeLB) / denom
+        i = 0
+        while (i < n) {
+          y(i) += (stepSize * (2 - incident(i)))
+          i += 1
         }
-        // first add the required edges to the tree
-        val required = edges.requiredSet()
-        var weight = 0.0
-        var nAdjacentToExcluded = 0
-        for (idx <- required) {
-          val (i, j, w) = edgeData(idx)
-          incident(i) += 1
-          incident(j) += 1
-          if (i != excluded && j != excluded) {
+      }
+      iter += 1
+    }
+
+    // the next nodes start from the best multipliers
+    System.arraycopy(bestY, 0, y, 0, n)
+    if (!bestIsLast) computeOneTree()
+    filterEdges()
+
+    System.arraycopy(treeEdges, 0, cachedTree, 0, treeSize)
+    cachedSize = treeSize
+    cacheValid = true
+    filteredMax = cost.max
+  }
+
+  @inline private def addToTree(idx: Int): Unit = {
+    incident(edgeFrom(idx)) += 1
+    incident(edgeTo(idx)) += 1
+    edgeUsed(idx) = true
+    treeEdges(treeSize) = idx
+    treeSize += 1
+  }
+
+  /**
+   * Computes the minimum 1-tree for the multipliers y, with the required edges
+   */
+  private def computeOneTree(): Unit = {
+    component.reset()
+    cctree.reset()
+    component.resetAndSetData(i => cctree.nodes(i))
+    java.util.Arrays.fill(incident, 0)
+    java.util.Arrays.fill(edgeUsed, false)
+    treeSize = 0
+    sortEdges()
+
+    // first add the required edges to the tree
+    var weight = 0.0
+    var nAdjacentToExcluded = 0
+    val required = edges.requiredValues
+    while (required.hasNext) {
+      val idx = required.next()
+      val i = edgeFrom(idx)
+      val j = edgeTo(idx)
+      if (i != excluded && j != excluded) {
+        val t1 = component.find(i).data.get
+        val t2 = component.find(j).data.get
+        val t = cctree.merge(t1,t2,idx)
+        component.union(i,j,t)
+      } else {
+        nAdjacentToExcluded += 1
+      }
+      addToTree(idx)
+      if (incident(i) > 2 || incident(j) > 2) {
+        throw Inconsistency
+      }
+      weight += reducedWeights(idx)
+    }
+    // check if out degree is not more than 2
+    if (nAdjacentToExcluded > 2) {
+      throw Inconsistency
+    }
+    heaviestWeightAdjacentToExcluded = Double.MaxValue
+    // then complete the minimum spanning tree with Kruskal
+    var k = 0
+    while (k < nEdges) {
+      val idx = order(k)
+      if (edges.isPossible(idx) && !edges.isRequired(idx)) {
+        val i = edgeFrom(idx)
+        val j = edgeTo(idx)
+        if (i != excluded && j != excluded) {
+          if (component.find(i) != component.find(j)) {
             val t1 = component.find(i).data.get
             val t2 = component.find(j).data.get
-            val t = cctree.merge(t1,t2,idx)
-            component.union(i,j,t)
-          } else {
-            nAdjacentToExcluded += 1
-          }
-          edgeUsed(idx) = true
-          if (incident(i) > 2 || incident(j) > 2) {
-            throw Inconsistency
+            val t = cctree.merge(t1, t2, idx)
+            component.union(i, j, t)
+            addToTree(idx)
+            weight += reducedWeights(idx)
           }
-          weight += edgeWeight(idx)
+        } else if (nAdjacentToExcluded < 2) {
+          addToTree(idx)
+          weight += reducedWeights(idx)
+          heaviestWeightAdjacentToExcluded = reducedWeights(idx)
+          nAdjacentToExcluded += 1
         }
-        // check if out degree is not more than 2
-        if (nAdjacentToExcluded > 2) {
-          throw Inconsistency
+      }
+      k += 1
+    }
+    var sumY = 0.0
+    var i = 0
+    while (i < n) {
+      sumY += y(i)
+      i += 1
+    }
+    oneTreeLBf = (2 * sumY + weight) - epsilon
+    if (!cctree.singleRoot) {
+      // the graph without "excluded" is not connected
+      throw Inconsistency
+    }
+  }
+
+  /**
+   * Sorts the edges by reduced weight, with an insertion sort if the order of the previous multipliers
+   * is almost preserved
+   */
+  private def sortEdges(): Unit = {
+    var idx = 0
+    while (idx < nEdges) {
+      reducedWeights(idx) = edgeCost(idx) - y(edgeFrom(idx)) - y(edgeTo(idx))
+      idx += 1
+    }
+    if (!insertionSort(8L * nEdges)) {
+      val sorted = order.sortBy(reducedWeights(_))
+      System.arraycopy(sorted, 0, order, 0, nEdges)
+    }
+  }
+
+  // Returns false if the order needs more than maxShifts shifts, order being then partially sorted
+  private def insertionSort(maxShifts: Long): Boolean = {
+    var shifts = 0L
+    var k = 1
+    while (k < nEdges) {
+      val idx = order(k)
+      val w = reducedWeights(idx)
+      var j = k - 1
+      while (j >= 0 && reducedWeights(order(j)) > w) {
+        order(j + 1) = order(j)
+        j -= 1
+        shifts += 1
+        if (shifts > maxShifts) {
+          order(j + 1) = idx
+          return false
         }
-        var heaviestWeightAdjacentToExcluded = Double.MaxValue 
-        // then complete the minimum spanning tree with Kruskal
-        val possibleValues = edges.possibleNotRequiredValues.toArray
-        val possible = possibleValues.sortBy(i => edgeWeight(i))
-        for (idx <- possible) {
-          val (i, j, w) = edgeData(idx)
+      }
+      order(j + 1) = idx
+      k += 1
+    }
+    true
+  }
+
+  /**
+   * Removes the edges whose reduced cost with respect to the last 1-tree makes the bound exceed the max of the cost
+   */
+  private def filterEdges(): Unit = {
+    val inorder = cctree.inorderCollect()
+    val pos = Array.fill(inorder.length)(0)
+    for (i <- 0 until inorder.length) {
+      pos(inorder(i).index) = i
+    }
+    val heights = inorder.map(_.height)
+    val rmq = new RangeMinQuery(heights)
+    val maxCost = cost.max
+    var idx = 0
+    while (idx < nEdges) {
+      if (!edgeUsed(idx) && edges.isPossible(idx) && !edges.isRequired(idx)) {
+        val i = edgeFrom(idx)
+        val j = edgeTo(idx)
+        val reducedCost =
           if (i != excluded && j != excluded) {
-            if (component.find(i) != component.find(j)) {
-              incident(i) += 1
-              incident(j) += 1
-              val t1 = component.find(i).data.get
-              val t2 = component.find(j).data.get
-              val t = cctree.merge(t1, t2, idx)
-              component.union(i, j, t)   
-              edgeUsed(idx) = true
-              weight += edgeWeight(idx)
-              //println("add edge "+i+"->"+j+" w:"+w+ "ecluded:"+excluded)
-            }
+            // marginal cost of the edges that can enter into the spanning tree
+            val idxr = inorder(rmq(pos(i), pos(j))).value // this is the heaviest edge to be removed
+            reducedWeights(idx) - reducedWeights(idxr)
           } else {
-            if (nAdjacentToExcluded < 2) {
-              incident(i) += 1
-              incident(j) += 1
-              weight += edgeWeight(idx)
-              heaviestWeightAdjacentToExcluded = edgeWeight(idx)
-              nAdjacentToExcluded += 1
-              edgeUsed(idx) = true
-              //println("add 1-tree edge"+i+"->"+j+" w:"+w)
-
-            }
+            // marginal cost of the edges adjacent to "excluded" node
+            reducedWeights(idx) - heaviestWeightAdjacentToExcluded
           }
+        if ((oneTreeLBf + reducedCost).ceil.toInt > maxCost) {
+          edges.excludes(idx)
         }
-        val oneTreeLBf = ((2 * y.map(_ + 0.0).sum + weight)-epsilon)
-        //println("=>"+oneTreeLBf+" " +y.mkString(","))
-        val oneTreeLB = oneTreeLBf.ceil.toInt
-        if (lb < oneTreeLB) {
-          improvement = true
-          lb = oneTreeLB
-          
-          cost.updateMin(lb)
-        }
-        if (!cctree.singleRoot) {
-          //println("failure , not single root")
-          // the graph without "excluded" is not connected
-          throw Inconsistency
-        }
-
-        // filtering of the edges
-        if ((iter == nSteps) && (nMetaIter-1 == metaIter)) {
-          val inorder = cctree.inorderCollect()
-          val pos = Array.fill(inorder.length)(0)
-          for (i <- 0 until inorder.length) {
-            pos(inorder(i).index) = i
-          }
-          val heights = inorder.map(_.height)
-          val rmq = new RangeMinQuery(heights)
-          for (idx <- possible) {
-            val (i, j, w) = edgeData(idx)
-            if (!edgeUsed(idx)) {
-              val reducedCost =
-                if (i != excluded && j != excluded) {
-                  // marginal cost of the edges that can enter into the spanning tree
-                  val idxr = inorder(rmq(pos(i), pos(j))).value // this is the heaviest edge to be removed
-                  edgeWeight(idx) - edgeWeight(idxr)
-                } else {
-                  // marginal cost of the edges adjacent to "excluded" node
-                  edgeWeight(idx) - heaviestWeightAdjacentToExcluded
-                }
-              if ((oneTreeLBf + reducedCost).ceil.toInt > cost.max) {
-                //println("failure h&k exclude edge")
-                edges.excludes(idx)
-              }
-            }
-          }
-        }
-
-        
-        // update the weights
-        val denom: Double = (for (i <- 0 until n) yield ((2 - incident(i)) * (2 - incident(i)))).sum
-        var target = if (cost.max - oneTreeLB < 0) oneTreeLB+0.1 else cost.max
-        if (denom == 0) stepSize = 0
-        else stepSize = alpha * (target - oneTreeLB) / denom
-        for (i <- 0 until n) {
-          y(i) += (stepSize * (2 - incident(i)))
-        }
-
       }
-      // end of iters, can do edge filtering here
-
-
-      alpha *= beta
-      beta /= 2
-      
-      metaIter += 1
+      idx += 1
     }
-    cost.updateMin(lb)
   }
- 
 }
 
 
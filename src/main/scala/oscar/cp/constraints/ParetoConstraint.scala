@@ -17,61 +17,60 @@ package oscar.cp.constraints
 import oscar.cp.core.variables.{CPIntVar, CPVar}
 import oscar.cp.core.Constraint
 import oscar.cp.core.CPPropagStrength
-import oscar.cp.multiobjective.Pareto
+import oscar.cp.multiobjective.{Pareto, ParetoObserver}
 
+/*
+ * Each objective is bounded by the best solution of the front dominating the point that is the best for
+ * all the other objectives (Gavanelli 2002). The pareto front answers these queries, and the answer
+ * of a query is kept until its point or the front changes.
+ */
 class ParetoConstraint[Sol](pareto: Pareto[Sol], isMax: Array[Boolean], objVars: Array[CPIntVar]) extends Constraint(objVars.head.store, "Gavanelli02 Dominance") {
 
   override def associatedVars(): Iterable[CPVar] = objVars
 
-  // Simplifies code understanding
-  type Point = IndexedSeq[Int]
-  
+  private[this] val nObjs = pareto.nObjs
+
+  // incremented each time the pareto front changes
+  private[this] var frontVersion = 0L
+  pareto.addObserver(new ParetoObserver {
+    override def update(): Unit = frontVersion += 1
+  })
+
+  // last query of each objective and its answer
+  private[this] val queries = Array.fill(nObjs, nObjs)(0)
+  private[this] val queryVersions = Array.fill(nObjs)(-1L)
+  private[this] val answers = new Array[Int](nObjs)
+
+  private[this] val point = new Array[Int](nObjs)
+
   override def propagate(): Unit = {
-    //println("propagate gananelli")
-    // List of all solutions
-    val allSols = pareto.objectiveSols
-    // The DPobj of each objective
-    val DPobjs = for(o <- pareto.Objs) yield computeDPobj(o)
-    // The best dominant solutions according to each objective
-    val bestDoms = getAllBestDominant(DPobjs, allSols)
-    
-    for (o <- pareto.Objs if bestDoms(o).isDefined) {
-        
-      val bound = bestDoms(o).get(o)
-      
+    var o = 0
+    while (o < nObjs) {
+      computeDPobj(o)
+      val query = queries(o)
+      if (queryVersions(o) != frontVersion || !java.util.Arrays.equals(query, point)) {
+        System.arraycopy(point, 0, query, 0, nObjs)
+        queryVersions(o) = frontVersion
+        answers(o) = pareto.bestDominating(query, o)
+      }
+      val bound = answers(o)
       // objective has to be maximized
-      if (isMax(o)) { 
-        objVars(o).updateMin(bound + 1)
+      if (isMax(o)) {
+        if (bound != Int.MinValue) objVars(o).updateMin(bound + 1)
       }
       // objective has to be minimized
-      else { 
-        objVars(o).updateMax(bound - 1)
-      }
-    }
-  }  
-  
-  // Returns the array of solutions such that for each objective i, bestDominant(i) is the solution 
-  // that dominates DPObjs(i) with the best value for the objective i.
-  private def getAllBestDominant(DPobjs: IndexedSeq[Point], sols: List[Point]): Array[Option[Point]] = {
-    
-    val bestDom: Array[Option[Point]] = Array.fill(pareto.nObjs)(None)
-    val bestObj: Array[Int] = Array.tabulate(pareto.nObjs)(o => if (isMax(o)) Int.MinValue else Int.MaxValue)
-    
-    for (s <- sols; o <- pareto.Objs) {
-      if (pareto.dominate(s, DPobjs(o))) {
-        if (pareto.isBetter(o)(s(o), bestObj(o))) {
-          bestDom(o) = Some(s)
-          bestObj(o) = s(o)
-        }
+      else {
+        if (bound != Int.MaxValue) objVars(o).updateMax(bound - 1)
       }
+      o += 1
     }
-    bestDom
   }
-  
+
   // Compute the point which is the best for all objectives except for the objective obj
-  private def computeDPobj(obj: Int): IndexedSeq[Int] = {
-    for (o <- pareto.Objs) yield {
-      if (o == obj) {
+  private def computeDPobj(obj: Int): Unit = {
+    var o = 0
+    while (o < nObjs) {
+      point(o) = if (o == obj) {
         if (isMax(o)) objVars(o).min
         else objVars(o).max
       }
@@ -79,6 +78,7 @@ class ParetoConstraint[Sol](pareto: Pareto[Sol], isMax: Array[Boolean], objVars:
         if (isMax(o)) objVars(o).max
         else objVars(o).min
       }
+      o += 1
     }
   }
 
@@ -0,0 +1,648 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.constraints
+
+import oscar.algo.reversible.{LevelLog, ReversibleBoolean, ReversibleIntArray}
+import oscar.cp.core.Constraint
+import oscar.cp.core.delta.DeltaIntVar
+import oscar.cp.core.variables.CPIntVar
+
+/**
+ * Reversible flow from the variables to the values, shared by the matching based constraints (AtLeastNValueAC,
+ * hence AllDiffAC, and GCCVarAC): each variable is matched to at most one value of its domain, and the value v
+ * to at most up(v - minVal) variables. The flow is feasible if each value v has at least low(v - minVal) variables.
+ *
+ * The flow is trailed, such that the search comes back to a node with the flow of that node. At each propagation,
+ * the constraint only repairs it where edges were removed: the variables whose value was removed are unmatched,
+ * and only the unmatched variables look for augmenting paths.
+ *
+ * An edge var -> val not in the flow belongs to a maximum (feasible) flow iff var and val are in the same strongly
+ * connected component of the residual graph, which has the edges
+ *  - var -> val for the values of the domain of var that are not matched to var,
+ *  - val -> var for the variables matched to val,
+ *  - val -> sink if flow(val) < up(val) and sink -> val if flow(val) > low(val),
+ *  - if the variables can be unmatched (partial): var -> source if var is matched, source -> var if var is not,
+ *    and sink -> source.
+ * The components are trailed as well, a component being identified by one of its nodes, and prune only decomposes
+ * again the components in which an edge was removed since they were computed, the removed values being given by the
+ * deltas of the variables: an edge removed between two components, or added inside a component, cannot change them. They are decomposed from scratch if an edge was added
+ * between two components, which only happens when the flow changed. The edges removed by the last prune are kept
+ * such that the constraint can read them.
+ *
+ * @param constraint the constraint that owns the flow, its propagate is called when a domain changes
+ * @param low the minimum flow of each value (indexed by value - minVal), can be changed by the constraint
+ * @param up the maximum flow of each value (indexed by value - minVal), can be changed by the constraint
+ * @param partial true if the variables can be unmatched
+ */
+final class ReversibleMatching(constraint: Constraint, x: Array[CPIntVar], minVal: Int, maxVal: Int, low: Array[Int], up: Array[Int], partial: Boolean) extends LevelLog(constraint.s) {
+
+  private[this] final val NONE = Int.MinValue
+
+  private[this] val store = constraint.s
+  private[this] val nVars = x.length
+  private[this] val nVals = maxVal - minVal + 1
+
+  // nodes: variables, then values, then the source and the sink
+  private[this] val source = nVars + nVals
+  private[this] val sink = source + 1
+  private[this] val nNodes = sink + 1
+
+  /** The value matched to each variable, Int.MinValue if none */
+  val varMatch: Array[Int] = Array.fill(nVars)(NONE)
+  /** The first variable matched to each value (indexed by value - minVal), Int.MinValue if none */
+  val valMatch: Array[Int] = Array.fill(nVals)(NONE)
+  /** The next variable matched to the same value, Int.MinValue if none */
+  val next: Array[Int] = Array.fill(nVars)(NONE)
+  /** The number of variables matched to each value (indexed by value - minVal) */
+  val flow: Array[Int] = new Array[Int](nVals)
+
+  private[this] val prev = Array.fill(nVars)(NONE)
+  private[this] var _flowSize = 0
+
+  // Log of the matches as (variable, value before the first change in the state)
+  private[this] val matchMagics = Array.fill(nVars)(-1L)
+  private[this] var logVars = new Array[Int](16)
+  private[this] var logMatches = new Array[Int](16)
+
+  // Used by the augmenting paths
+  private[this] val varSeen = new Array[Int](nVars)
+  private[this] val valSeen = new Array[Int](nVals)
+  private[this] var magic = 0
+
+  // Values removed from the domains since the end of the last propagation, null for the variables bound when they were registered
+  private[this] val deltas = new Array[DeltaIntVar](nVars)
+  private[this] val removed = new Array[Int](x.map(_.size).max)
+
+  // Components, with the flow, the size of the domains and the state of the values for which they were computed
+  private[this] val component = new ReversibleIntArray(store, nNodes, -1)
+  private[this] val componentMatch = new ReversibleIntArray(store, nVars, NONE)
+  private[this] val componentSize = new ReversibleIntArray(store, nVars, 0)
+  private[this] val componentStatus = new ReversibleIntArray(store, nVals, 0)
+  private[this] val componentsValid = new ReversibleBoolean(store, false)
+
+  // Used by the decomposition, the nodes of the components to decompose are the run
+  private[this] val domains = Array.tabulate(nVars)(k => new Array[Int](x(k).size))
+  private[this] val domSizes = new Array[Int](nVars)
+  private[this] val runNodes = new Array[Int](nNodes)
+  private[this] val runComponent = new Array[Int](nNodes)
+  private[this] val inRun = new Array[Int](nNodes)
+  private[this] val dirtyMarks = new Array[Int](nNodes)
+  private[this] val visited = new Array[Int](nNodes)
+  private[this] val done = new Array[Int](nNodes)
+  private[this] val dfs = new Array[Int](nNodes)
+  private[this] val high = new Array[Int](nNodes)
+  private[this] val edgePos = new Array[Int](nNodes)
+  private[this] val stack = new Array[Int](nNodes)
+  private[this] val callStack = new Array[Int](nNodes)
+  private[this] var nRun = 0
+  private[this] var runMagic = 0
+
+  // Edges removed by the last prune
+  private[this] var prunedVars = new Array[Int](16)
+  private[this] var prunedValues = new Array[Int](16)
+  private[this] var nPruned = 0
+
+  /** The number of matched variables */
+  def flowSize: Int = _flowSize
+
+  /** Registers the constraint on the changes of the domains of the variables that are not bound */
+  def registerDeltas(): Unit = {
+    var k = 0
+    while (k < nVars) {
+      if (!x(k).isBound) deltas(k) = x(k).callPropagateOnChangesWithDelta(constraint)
+      k += 1
+    }
+  }
+
+  /** Matches the variable k to the value v, k being unmatched from its previous value */
+  def assign(k: Int, v: Int): Unit = {
+    saveMatch(k)
+    if (varMatch(k) != NONE) unlink(k)
+    link(k, v)
+  }
+
+  /** Unmatches the variable k */
+  def unassign(k: Int): Unit = {
+    if (varMatch(k) != NONE) {
+      saveMatch(k)
+      unlink(k)
+    }
+  }
+
+  @inline private def link(k: Int, v: Int): Unit = {
+    val vind = v - minVal
+    val nk = valMatch(vind)
+    varMatch(k) = v
+    flow(vind) += 1
+    next(k) = nk
+    prev(k) = NONE
+    if (nk != NONE) prev(nk) = k
+    valMatch(vind) = k
+    _flowSize += 1
+  }
+
+  @inline private def unlink(k: Int): Unit = {
+    val vind = varMatch(k) - minVal
+    val pk = prev(k)
+    val nk = next(k)
+    if (pk == NONE) valMatch(vind) = nk
+    else next(pk) = nk
+    if (nk != NONE) prev(nk) = pk
+    flow(vind) -= 1
+    varMatch(k) = NONE
+    _flowSize -= 1
+  }
+
+  // Saves the match of the variable before its first change in the current state
+  @inline private def saveMatch(k: Int): Unit = {
+    val contextMagic = store.magic
+    if (matchMagics(k) != contextMagic) {
+      matchMagics(k) = contextMagic
+      val entry = newEntry()
+      if (entry == logVars.length) {
+        logVars = grow(logVars)
+        logMatches = grow(logMatches)
+      }
+      logVars(entry) = k
+      logMatches(entry) = varMatch(k)
+    }
+  }
+
+  final override protected def undo(entry: Int): Unit = {
+    val k = logVars(entry)
+    val v = logMatches(entry)
+    if (varMatch(k) != NONE) unlink(k)
+    if (v != NONE) link(k, v)
+    matchMagics(k) = -1L
+  }
+
+  /** Unmatches the variables whose value has been removed, to be called at the beginning of each propagation */
+  def removeLostEdges(): Unit = {
+    var k = 0
+    while (k < nVars) {
+      val v = varMatch(k)
+      if (v != NONE) {
+        if (!x(k).hasValue(v)) unassign(k)
+      }
+      k += 1
+    }
+  }
+
+  /** Matches each variable to the first value of its domain whose flow is below its maximum, if any */
+  def findInitialFlow(): Unit = {
+    var k = 0
+    while (k < nVars) {
+      val xk = x(k)
+      val max = xk.max
+      var v = xk.min
+      var matched = false
+      while (!matched && v <= max) {
+        if (flow(v - minVal) < up(v - minVal) && xk.hasValue(v)) {
+          assign(k, v)
+          matched = true
+        }
+        v += 1
+      }
+      k += 1
+    }
+  }
+
+  /** Matches all the variables, returns false as soon as a variable cannot be matched */
+  def findMaximalFlow(): Boolean = {
+    if (_flowSize < nVars) {
+      var k = 0
+      while (k < nVars) {
+        if (varMatch(k) == NONE) {
+          magic += 1
+          if (!findAugmentingPath(k)) return false
+        }
+        k += 1
+      }
+    }
+    true
+  }
+
+  /** Matches as many variables as possible, returns the number of matched variables */
+  def maximizeFlow(): Int = {
+    if (_flowSize < nVars) {
+      var k = 0
+      while (k < nVars) {
+        if (varMatch(k) == NONE) {
+          magic += 1
+          findAugmentingPath(k)
+        }
+        k += 1
+      }
+    }
+    _flowSize
+  }
+
+  private def findAugmentingPath(k: Int): Boolean = {
+    if (varSeen(k) != magic) {
+      varSeen(k) = magic
+      val xk = x(k)
+      val max = xk.max
+      var v = xk.min
+      while (v <= max) {
+        if (varMatch(k) != v && xk.hasValue(v) && findAugmentingPathValue(v)) {
+          assign(k, v)
+          return true
+        }
+        v += 1
+      }
+    }
+    false
+  }
+
+  private def findAugmentingPathValue(v: Int): Boolean = {
+    val vind = v - minVal
+    if (valSeen(vind) != magic) {
+      valSeen(vind) = magic
+      if (flow(vind) < up(vind)) return true
+      var k = valMatch(vind)
+      while (k != NONE) {
+        if (findAugmentingPath(k)) return true
+        k = next(k)
+      }
+    }
+    false
+  }
+
+  /** Moves flow to the values whose flow is below their minimum, returns false if it is not possible */
+  def findFeasibleFlow(): Boolean = {
+    var vind = 0
+    while (vind < nVals) {
+      while (flow(vind) < low(vind)) {
+        if (!findFeasibleFlowTo(vind + minVal)) return false
+      }
+      vind += 1
+    }
+    true
+  }
+
+  /** Moves one unit of flow to the value q from a value whose flow is above its minimum, returns false if it is not possible */
+  def findFeasibleFlowTo(q: Int): Boolean = {
+    magic += 1
+    var vind = 0
+    while (vind < nVals) {
+      if (flow(vind) > low(vind) && findFeasibleFlowValue(vind + minVal, q)) return true
+      vind += 1
+    }
+    false
+  }
+
+  // Tries to move one unit of flow from the value v to the value q
+  private def findFeasibleFlowValue(v: Int, q: Int): Boolean = {
+    val vind = v - minVal
+    if (valSeen(vind) != magic) {
+      valSeen(vind) = magic
+      var k = valMatch(vind)
+      while (k != NONE) {
+        if (varMatch(k) != q && x(k).hasValue(q)) {
+          assign(k, q)
+          return true
+        }
+        k = next(k)
+      }
+      k = valMatch(vind)
+      while (k != NONE) {
+        if (findFeasibleFlowVar(k, q)) return true
+        k = next(k)
+      }
+    }
+    false
+  }
+
+  private def findFeasibleFlowVar(k: Int, q: Int): Boolean = {
+    if (varSeen(k) != magic) {
+      varSeen(k) = magic
+      val xk = x(k)
+      val max = xk.max
+      var v = xk.min
+      while (v <= max) {
+        if (q != v && varMatch(k) != v && xk.hasValue(v) && findFeasibleFlowValue(v, q)) {
+          assign(k, v)
+          return true
+        }
+        v += 1
+      }
+    }
+    false
+  }
+
+  /**
+   * Removes the edges var -> val that are not in the flow and that are between two components of the residual graph.
+   * The flow must be maximum (and feasible if the variables cannot be unmatched).
+   *
+   * @return the number of removed values
+   */
+  def prune(): Int = {
+    runMagic += 1
+    nRun = 0
+    nPruned = 0
+    if (componentsValid.value && markChangedComponents()) {
+      var n = 0
+      while (n < nNodes) {
+        val c = component(n)
+        if (dirtyMarks(c) == runMagic) {
+          runNodes(nRun) = n
+          runComponent(n) = c
+          inRun(n) = runMagic
+          nRun += 1
+        }
+        n += 1
+      }
+    }
+    else {
+      var n = 0
+      while (n < nNodes) {
+        runNodes(n) = n
+        runComponent(n) = 0
+        inRun(n) = runMagic
+        n += 1
+      }
+      nRun = nNodes
+    }
+
+    if (nRun > 0) decompose()
+    val nRemoved = removeEdgesBetweenComponents()
+
+    // the components are now the ones of the current flow and domains
+    var k = 0
+    while (k < nVars) {
+      componentMatch(k) = varMatch(k)
+      componentSize(k) = x(k).size
+      k += 1
+    }
+    var vind = 0
+    while (vind < nVals) {
+      componentStatus(vind) = status(vind)
+      vind += 1
+    }
+    componentsValid.setValue(true)
+    nRemoved
+  }
+
+  /** The number of edges removed by the last prune */
+  def nPrunedEdges: Int = nPruned
+
+  /** The variable of the i^th edge removed by the last prune */
+  def prunedVar(i: Int): Int = prunedVars(i)
+
+  /** The value of the i^th edge removed by the last prune */
+  def prunedValue(i: Int): Int = prunedValues(i)
+
+  @inline private def status(vind: Int): Int = {
+    (if (flow(vind) < up(vind)) 1 else 0) | (if (flow(vind) > low(vind)) 2 else 0)
+  }
+
+  // Marks the components in which an edge has been removed since they were computed,
+  // returns false if an edge has been added between two components
+  private def markChangedComponents(): Boolean = {
+    var k = 0
+    while (k < nVars) {
+      val oldMatch = componentMatch(k)
+      val nRemoved = componentSize(k) - x(k).size
+      if (nRemoved > 0) {
+        val delta = deltas(k)
+        if (delta != null && delta.changed && delta.size == nRemoved) {
+          delta.fillArray(removed)
+          var i = 0
+          while (i < nRemoved) {
+            val w = removed(i)
+            if (w != oldMatch) edgeRemoved(k, nVars + w - minVal)
+            i += 1
+          }
+        }
+        // values removed after the components were computed but before the end of the propagation (e.g. by a subclass
+        // of the constraint) are not in the delta
+        else dirtyMarks(component(k)) = runMagic
+      }
+      val newMatch = varMatch(k)
+      if (newMatch != oldMatch) {
+        if (oldMatch != NONE) {
+          val node = nVars + oldMatch - minVal
+          edgeRemoved(node, k)
+          if (x(k).hasValue(oldMatch) && component(k) != component(node)) return false
+        }
+        if (newMatch != NONE) {
+          val node = nVars + newMatch - minVal
+          edgeRemoved(k, node)
+          if (component(k) != component(node)) return false
+        }
+        if (partial && (oldMatch == NONE) != (newMatch == NONE)) {
+          if (component(k) != component(source)) return false
+          // the edge with the source is reversed inside the component
+          dirtyMarks(component(k)) = runMagic
+        }
+      }
+      k += 1
+    }
+    var vind = 0
+    while (vind < nVals) {
+      val oldStatus = componentStatus(vind)
+      val newStatus = status(vind)
+      if (oldStatus != newStatus) {
+        val node = nVars + vind
+        // an edge with the sink is added or removed
+        if ((newStatus & ~oldStatus) != 0 && component(node) != component(sink)) return false
+        if ((oldStatus & ~newStatus) != 0) edgeRemoved(node, sink)
+      }
+      vind += 1
+    }
+    true
+  }
+
+  @inline private def edgeRemoved(a: Int, b: Int): Unit = {
+    val c = component(a)
+    if (c == component(b)) dirtyMarks(c) = runMagic
+  }
+
+  // Computes the components of the nodes of the run, with the edges between two nodes of the same component
+  private def decompose(): Unit = {
+    var index = 0
+    var top = 0
+    var r = 0
+    while (r < nRun) {
+      val root = runNodes(r)
+      r += 1
+      if (visited(root) != runMagic) {
+        var nCalls = 0
+        index += 1
+        visit(root, index)
+        stack(top) = root
+        top += 1
+        callStack(nCalls) = root
+        nCalls += 1
+        while (nCalls > 0) {
+          val u = callStack(nCalls - 1)
+          val v = nextSuccessor(u)
+          if (v >= 0) {
+            if (visited(v) != runMagic) {
+              index += 1
+              visit(v, index)
+              stack(top) = v
+              top += 1
+              callStack(nCalls) = v
+              nCalls += 1
+            }
+            else if (done(v) != runMagic && dfs(v) < high(u)) high(u) = dfs(v)
+          }
+          else {
+            nCalls -= 1
+            if (high(u) == dfs(u)) {
+              var popping = true
+              while (popping) {
+                top -= 1
+                val w = stack(top)
+                done(w) = runMagic
+                component(w) = u
+                popping = w != u
+              }
+            }
+            if (nCalls > 0) {
+              val p = callStack(nCalls - 1)
+              if (high(u) < high(p)) high(p) = high(u)
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Marks the node as visited and initializes the iteration on its successors
+  private def visit(u: Int, index: Int): Unit = {
+    visited(u) = runMagic
+    dfs(u) = index
+    high(u) = index
+    if (u < nVars) {
+      domSizes(u) = x(u).fillArray(domains(u))
+      edgePos(u) = 0
+    }
+    else if (u < source) {
+      val first = valMatch(u - nVars)
+      edgePos(u) = if (first == NONE) -1 else first
+    }
+    else edgePos(u) = 0
+  }
+
+  // Returns the next successor of the node in the same component of the run, -1 if there is none
+  private def nextSuccessor(u: Int): Int = {
+    val c = runComponent(u)
+    var v = nextEdge(u)
+    while (v >= 0 && (inRun(v) != runMagic || runComponent(v) != c)) v = nextEdge(u)
+    v
+  }
+
+  // Returns the next successor of the node in the residual graph, -1 if there is none
+  private def nextEdge(u: Int): Int = {
+    if (u < nVars) {
+      val dom = domains(u)
+      val size = domSizes(u)
+      while (edgePos(u) < size) {
+        val w = dom(edgePos(u))
+        edgePos(u) += 1
+        if (w != varMatch(u)) return nVars + w - minVal
+      }
+      if (partial && edgePos(u) == size) {
+        edgePos(u) += 1
+        if (varMatch(u) != NONE) return source
+      }
+      -1
+    }
+    else if (u < source) {
+      val vind = u - nVars
+      val k = edgePos(u)
+      if (k >= 0) {
+        val nk = next(k)
+        edgePos(u) = if (nk == NONE) -1 else nk
+        k
+      }
+      else {
+        if (k == -1) {
+          edgePos(u) = -2
+          if (flow(vind) < up(vind)) return sink
+        }
+        -1
+      }
+    }
+    else if (u == source) {
+      while (edgePos(u) < nVars) {
+        val k = edgePos(u)
+        edgePos(u) += 1
+        if (varMatch(k) == NONE) return k
+      }
+      -1
+    }
+    else {
+      while (edgePos(u) < nVals) {
+        val vind = edgePos(u)
+        edgePos(u) += 1
+        if (flow(vind) > low(vind)) return nVars + vind
+      }
+      if (partial && edgePos(u) == nVals) {
+        edgePos(u) += 1
+        return source
+      }
+      -1
+    }
+  }
+
+  // Removes the edges of the variables of the run to values of other components, the edges of the other
+  // variables have been removed when their component was computed
+  private def removeEdgesBetweenComponents(): Int = {
+    var nRemoved = 0
+    var r = 0
+    while (r < nRun) {
+      val k = runNodes(r)
+      r += 1
+      if (k < nVars && domSizes(k) > 1) {
+        val dom = domains(k)
+        val size = domSizes(k)
+        val comp = component(k)
+        val matched = varMatch(k)
+        // the removed values are moved at the beginning of the array and removed at once
+        var n = 0
+        var i = 0
+        while (i < size) {
+          val w = dom(i)
+          if (w != matched && component(nVars + w - minVal) != comp) {
+            dom(n) = w
+            n += 1
+          }
+          i += 1
+        }
+        if (n > 0) {
+          if (nPruned + n > prunedVars.length) {
+            val length = math.max(prunedVars.length * 2, nPruned + n)
+            prunedVars = java.util.Arrays.copyOf(prunedVars, length)
+            prunedValues = java.util.Arrays.copyOf(prunedValues, length)
+          }
+          i = 0
+          while (i < n) {
+            prunedVars(nPruned) = k
+            prunedValues(nPruned) = dom(i)
+            nPruned += 1
+            i += 1
+          }
+          nRemoved += n
+          x(k).removeValues(dom, n)
+        }
+      }
+    }
+    nRemoved
+  }
+}
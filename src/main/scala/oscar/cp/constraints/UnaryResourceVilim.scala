@@ -1,11 +1,10 @@
 package oscar.cp.constraints
 
 import oscar.algo.Inconsistency
-import oscar.algo.SortUtils._
 import oscar.algo.reversible.ReversibleInt
 import oscar.cp.core.variables.{CPIntVar, CPVar}
 import oscar.cp.core.{CPPropagStrength, Constraint}
-import oscar.cp.scheduling.util.ThetaLambdaTree
+import oscar.cp.scheduling.util.{ReversibleSortedOrder, ThetaLambdaTree}
 import oscar.cp._
 
 /**
@@ -23,14 +22,14 @@ class UnaryResourceVilim(starts: Array[CPIntVar], durations: Array[CPIntVar], en
   private[this] val thetaLambdaTree = new ThetaLambdaTree(nTasks)
   private[this] val thetaLambdaTreeMirror = new ThetaLambdaTree(nTasks)
 
-  private[this] val indexByIncreasingMinStarts: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMaxStarts: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMinEnds: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMaxEnds: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMinStartMirror: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMaxStartMirror: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMinEndMirror: Array[Int] = Array.tabulate(nTasks)(i => i)
-  private[this] val indexByIncreasingMaxEndMirror: Array[Int] = Array.tabulate(nTasks)(i => i)
+  private[this] val indexByIncreasingMinStarts = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMaxStarts = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMinEnds = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMaxEnds = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMinStartMirror = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMaxStartMirror = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMinEndMirror = new ReversibleSortedOrder(starts(0).store, nTasks)
+  private[this] val indexByIncreasingMaxEndMirror = new ReversibleSortedOrder(starts(0).store, nTasks)
 
   private[this] val startsMirror = ends map {-_}
   private[this] val endsMirror = starts map {-_}
@@ -56,10 +55,6 @@ class UnaryResourceVilim(starts: Array[CPIntVar], durations: Array[CPIntVar], en
   private[this] var failure = false
   private[this] var changed = true
 
-  // Temporary arrays needed by the mergeSort Algorithm
-  private[this] val mergeSortRuns = Array.ofDim[Int](nTasks + 1)
-  private[this] val mergeSortAux = Array.ofDim[Int](nTasks)
-
 
   override def setup(l: CPPropagStrength): Unit = {
     for (i <- 0 until nTasks) {
@@ -131,17 +126,20 @@ class UnaryResourceVilim(starts: Array[CPIntVar], durations: Array[CPIntVar], en
   private def detectablePrecedences(startMins : Array[Int], startMaxs: Array[Int], endMins : Array[Int],
                                     startMaxsMirror : Array[Int], endMaxsMirror : Array[Int], updatedMinStarts : Array[Int], updatedMaxEndsMirror : Array[Int],
                                     startVars : Array[_ <: CPIntVar], endVars : Array[_ <: CPIntVar], tree : ThetaLambdaTree,
-                                    orderedMinStartIds : Array[Int], orderedMaxStartIds: Array[Int], orderedMinEndIds : Array[Int]): Boolean = {
+                                    minStartOrder : ReversibleSortedOrder, maxStartOrder : ReversibleSortedOrder, minEndOrder : ReversibleSortedOrder): Boolean = {
 
     // Clearing the tree
-    mergeSort(orderedMinStartIds, startMins, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(startMins)
+    val orderedMinStartIds = minStartOrder.sortedIndexes
     tree.clearAndPlaceLeaves(orderedMinStartIds, startMins, currentMinDurations)
 
     //sorting activities in non-decreasing lst
-    mergeSort(orderedMaxStartIds, startMaxs, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxStartOrder.sort(startMaxs)
+    val orderedMaxStartIds = maxStartOrder.sortedIndexes
 
     //sorting activities in non-decreasing ect
-    mergeSort(orderedMinEndIds, endMins, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minEndOrder.sort(endMins)
+    val orderedMinEndIds = minEndOrder.sortedIndexes
 
     var i, j = 0
     while (i < nTasks) {
@@ -176,17 +174,20 @@ class UnaryResourceVilim(starts: Array[CPIntVar], durations: Array[CPIntVar], en
   private def notLast(startMins : Array[Int], startMaxs : Array[Int], endMaxs : Array[Int],
                       startMinsMirror : Array[Int], endMinsMirror : Array[Int], updatedMaxEnds : Array[Int], updatedMinStartsMirror : Array[Int],
                       startVars : Array[_ <: CPIntVar], endVars : Array[_ <: CPIntVar], tree : ThetaLambdaTree,
-                      orderedMinStartIds : Array[Int], orderedMaxStartIds: Array[Int], orderedMaxEndIds : Array[Int]) : Boolean = {
+                      minStartOrder : ReversibleSortedOrder, maxStartOrder : ReversibleSortedOrder, maxEndOrder : ReversibleSortedOrder) : Boolean = {
 
     // Clearing the tree
-    mergeSort(orderedMinStartIds, startMins, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(startMins)
+    val orderedMinStartIds = minStartOrder.sortedIndexes
     tree.clearAndPlaceLeaves(orderedMinStartIds, startMins, currentMinDurations)
 
     //sorting activities in non-decreasing lst
-    mergeSort(orderedMaxStartIds, startMaxs, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxStartOrder.sort(startMaxs)
+    val orderedMaxStartIds = maxStartOrder.sortedIndexes
 
     //sorting activities in non-decreasing lct
-    mergeSort(orderedMaxEndIds, endMaxs, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxEndOrder.sort(endMaxs)
+    val orderedMaxEndIds = maxEndOrder.sortedIndexes
 
     var i, j = 0
     while(i < nTasks) {
@@ -229,16 +230,18 @@ class UnaryResourceVilim(starts: Array[CPIntVar], durations: Array[CPIntVar], en
   private def edgeFinding(startMins : Array[Int], endMaxs : Array[Int], endMins : Array[Int],
                           startMaxsMirror : Array[Int], endMaxsMirror : Array[Int], updatedMinStarts : Array[Int], updatedMaxEndsMirror : Array[Int],
                           startVars : Array[_ <: CPIntVar], endVars : Array[_ <: CPIntVar], tree : ThetaLambdaTree,
-                          orderedMinStartIds : Array[Int], orderedMaxEndIds : Array[Int]) : Boolean = {
+                          minStartOrder : ReversibleSortedOrder, maxEndOrder : ReversibleSortedOrder) : Boolean = {
 
     // Inserting all activities in the tree
-    mergeSort(orderedMinStartIds, startMins, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(startMins)
+    val orderedMinStartIds = minStartOrder.sortedIndexes
 
     tree.fillAndPlaceLeaves(orderedMinStartIds, startMins, currentMinDurations) // true as we use gray nodes
 
     //sorting activities in non-decreasing lct
     //NOTE: we sort the array by increasing lct, we just will browse it from right to left
-    mergeSort(orderedMaxEndIds, endMaxs, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxEndOrder.sort(endMaxs)
+    val orderedMaxEndIds = maxEndOrder.sortedIndexes
 
     var estIndex = 0
     var j = nTasks - 1
@@ -0,0 +1,269 @@
+/*******************************************************************************
+  * OscaR is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Lesser General Public License as published by
+  * the Free Software Foundation, either version 2.1 of the License, or
+  * (at your option) any later version.
+  *
+  * OscaR is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Lesser General Public License  for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+  * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+  ******************************************************************************/
+
+
+package oscar.cp.constraints.mdd
+
+import java.util
+
+import oscar.algo.Inconsistency
+import oscar.cp.constraints.CPObjectiveUnit
+import oscar.cp.core.variables.{CPIntVar, CPVar}
+import oscar.cp.core.{CPPropagStrength, CPStore, Constraint}
+
+/**
+  * Bounds a linear objective sum(coefs(i) * x(i)) with width-limited decision diagrams compiled
+  * from the current domains (Bergman et al., Decision Diagrams for Optimization).
+  *
+  * At each propagation, two diagrams of the model are compiled top-down, the nodes of each layer being sorted by the
+  * best cost of a path from the root :
+  *   - the relaxed diagram merges the worst nodes of a layer into one node when it is larger than maxWidth.
+  *     Its best path is a bound of the objective, given to the objective unit as its best bound.
+  *     If it has no path, the model has no solution under the current domains.
+  *   - the restricted diagram only keeps the maxWidth best nodes of each layer. Its best path is an assignment
+  *     that satisfies the model, and can be used as value heuristic with primalValue to reach good solutions
+  *     of the problem early, which then tighten the objective.
+  *
+  * @param x : the variables, in the order of the layers of the diagrams
+  * @param coefs : the objective is at least (at most for a maximization) sum(coefs(i) * x(i))
+  * @param objective : the objective unit of the problem, its best bound is updated
+  * @param model : constraints of the problem on x, used to build the diagrams
+  * @param maxWidth : maximum number of nodes in each layer
+  * @param computePrimal : false to only compile the relaxed diagram
+  */
+class DecisionDiagramBound[S <: AnyRef](x: Array[CPIntVar], coefs: Array[Int], objective: CPObjectiveUnit,
+                                        model: DecisionDiagramModel[S], maxWidth: Int, computePrimal: Boolean = true)
+  extends Constraint(x(0).store, "DecisionDiagramBound") {
+
+  require(x.length == coefs.length, "one coefficient per variable")
+  require(maxWidth >= 1, "the width should be positive")
+
+  override def associatedVars(): Iterable[CPVar] = x
+
+  idempotent = true
+  // Compiling the diagrams is expensive, this should be done once the other constraints have reached their fix point
+  priorityL2 = CPStore.MinPriorityL2
+
+  private[this] val nVariables = x.length
+  // Costs are minimized, they are negated for a maximization
+  private[this] val sign = if (objective.isMin) 1L else -1L
+  private[this] val domain = new Array[Int](x.map(_.size).max)
+
+  /**
+    * Nodes of a layer, the nodes with the same state being merged with the best cost.
+    * The parent of a node is its index in the previous layer, with value the value of the edge.
+    */
+  private class Layer {
+    var size = 0
+    var states = new Array[AnyRef](16)
+    var costs = new Array[Long](16)
+    var parents = new Array[Int](16)
+    var values = new Array[Int](16)
+    private[this] val index = new util.HashMap[AnyRef, Integer]()
+    private[this] var sortedCosts = new Array[Long](16)
+
+    def clear(): Unit = {
+      util.Arrays.fill(states, 0, size, null)
+      size = 0
+      index.clear()
+    }
+
+    def insert(state: AnyRef, cost: Long, parent: Int, value: Int): Unit = {
+      val i = index.get(state)
+      if (i == null) {
+        if (size == states.length) grow()
+        states(size) = state
+        costs(size) = cost
+        parents(size) = parent
+        values(size) = value
+        index.put(state, size)
+        size += 1
+      }
+      else if (cost < costs(i)) {
+        costs(i) = cost
+        parents(i) = parent
+        values(i) = value
+      }
+    }
+
+    private def grow(): Unit = {
+      val capacity = size * 2
+      states = util.Arrays.copyOf(states, capacity)
+      costs = util.Arrays.copyOf(costs, capacity)
+      parents = util.Arrays.copyOf(parents, capacity)
+      values = util.Arrays.copyOf(values, capacity)
+    }
+
+    /**
+      * Keeps the width best nodes, ties being broken by index.
+      * If merge is true, only width - 1 nodes are kept and the others are merged into a last node.
+      */
+    def truncate(width: Int, merge: Boolean): Unit = {
+      val nKept = if (merge) width - 1 else width
+      var threshold = Long.MinValue
+      var nEqual = 0
+      if (nKept > 0) {
+        if (sortedCosts.length < size) sortedCosts = new Array[Long](states.length)
+        System.arraycopy(costs, 0, sortedCosts, 0, size)
+        util.Arrays.sort(sortedCosts, 0, size)
+        threshold = sortedCosts(nKept - 1)
+        var first = nKept - 1
+        while (first > 0 && sortedCosts(first - 1) == threshold) first -= 1
+        nEqual = nKept - first
+      }
+
+      var merged: S = null.asInstanceOf[S]
+      var mergedCost = Long.MaxValue
+      var newSize = 0
+      var i = 0
+      while (i < size) {
+        val cost = costs(i)
+        val kept = cost < threshold || (cost == threshold && nEqual > 0)
+        if (kept) {
+          if (cost == threshold) nEqual -= 1
+          states(newSize) = states(i)
+          costs(newSize) = cost
+          parents(newSize) = parents(i)
+          values(newSize) = values(i)
+          newSize += 1
+        }
+        else if (merge) {
+          val state = states(i).asInstanceOf[S]
+          merged = if (merged == null) state else model.merge(merged, state)
+          if (cost < mergedCost) mergedCost = cost
+        }
+        i += 1
+      }
+      util.Arrays.fill(states, newSize, size, null)
+      size = newSize
+      index.clear()
+      i = 0
+      while (i < size) {
+        index.put(states(i), i)
+        i += 1
+      }
+      if (merged != null) insert(merged, mergedCost, -1, 0)
+    }
+  }
+
+  private[this] var current = new Layer()
+  private[this] var next = new Layer()
+
+  // Parent and value of each node of the restricted diagram, layer i + 1 being stored at index i
+  private[this] val restrictedParents = Array.fill(nVariables)(new Array[Int](maxWidth))
+  private[this] val restrictedValues = Array.fill(nVariables)(new Array[Int](maxWidth))
+
+  private[this] val primal = new Array[Int](nVariables)
+  private[this] var primalFound = false
+  private[this] var primalCost = 0L
+
+  /** Returns true if the last restricted diagram had a solution */
+  def hasPrimalSolution: Boolean = primalFound
+
+  /** Returns the objective of the best solution of the last restricted diagram */
+  def primalObjective: Int = clamp(sign * primalCost)
+
+  /** Returns the best solution of the last restricted diagram */
+  def primalSolution: Array[Int] = primal.clone()
+
+  /**
+    * Returns the value of x(i) in the best solution of the last restricted diagram if it is in the domain
+    * of x(i), or the min of x(i) otherwise. This can be used as value heuristic.
+    */
+  def primalValue(i: Int): Int = {
+    if (primalFound && x(i).hasValue(primal(i))) primal(i)
+    else x(i).min
+  }
+
+  override def setup(l: CPPropagStrength): Unit = {
+    x.foreach(_.callPropagateWhenDomainChanges(this))
+    propagate()
+  }
+
+  override def propagate(): Unit = {
+    val bound = compile(relaxed = true)
+    if (bound == Long.MaxValue) throw Inconsistency
+    objective.updateBestBound(clamp(sign * bound))
+    if (computePrimal) {
+      primalCost = compile(relaxed = false)
+      primalFound = primalCost != Long.MaxValue
+    }
+  }
+
+  @inline private def clamp(value: Long): Int = {
+    if (value > Int.MaxValue) Int.MaxValue
+    else if (value < Int.MinValue) Int.MinValue
+    else value.toInt
+  }
+
+  /**
+    * Compiles the relaxed or restricted diagram
+    * @return the cost of its best path, Long.MaxValue if there is none
+    */
+  private def compile(relaxed: Boolean): Long = {
+    current.clear()
+    current.insert(model.initialState, 0L, -1, 0)
+    var i = 0
+    while (i < nVariables) {
+      next.clear()
+      val coef = sign * coefs(i)
+      val domainSize = x(i).fillArray(domain)
+      var n = 0
+      while (n < current.size) {
+        val state = current.states(n).asInstanceOf[S]
+        val cost = current.costs(n)
+        var k = 0
+        while (k < domainSize) {
+          val value = domain(k)
+          val nextState = model.transition(state, i, value)
+          if (nextState != null) next.insert(nextState, cost + coef * value, n, value)
+          k += 1
+        }
+        n += 1
+      }
+      if (next.size > maxWidth) next.truncate(maxWidth, relaxed)
+      if (!relaxed) {
+        System.arraycopy(next.parents, 0, restrictedParents(i), 0, next.size)
+        System.arraycopy(next.values, 0, restrictedValues(i), 0, next.size)
+      }
+      val tmp = current
+      current = next
+      next = tmp
+      if (current.size == 0) return Long.MaxValue
+      i += 1
+    }
+
+    // Best accepting node of the last layer
+    var best = -1
+    var n = 0
+    while (n < current.size) {
+      if (model.isAccepting(current.states(n).asInstanceOf[S]) && (best == -1 || current.costs(n) < current.costs(best))) best = n
+      n += 1
+    }
+    if (best == -1) Long.MaxValue
+    else {
+      if (!relaxed) {
+        var node = best
+        i = nVariables - 1
+        while (i >= 0) {
+          primal(i) = restrictedValues(i)(node)
+          node = restrictedParents(i)(node)
+          i -= 1
+        }
+      }
+      current.costs(best)
+    }
+  }
+}
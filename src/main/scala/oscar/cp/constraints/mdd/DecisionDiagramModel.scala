@@ -0,0 +1,51 @@
+/*******************************************************************************
+  * OscaR is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Lesser General Public License as published by
+  * the Free Software Foundation, either version 2.1 of the License, or
+  * (at your option) any later version.
+  *
+  * OscaR is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Lesser General Public License  for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+  * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+  ******************************************************************************/
+
+
+package oscar.cp.constraints.mdd
+
+/**
+  * Dynamic programming model of some constraints of a problem, used to compile decision diagrams
+  * layer by layer, the variables being assigned in their order.
+  *
+  * The nodes of a layer are identified by their state: two states are merged into a single node
+  * if they are equal, the states should therefore implement equals and hashCode.
+  *
+  * @tparam S : type of the states
+  */
+abstract class DecisionDiagramModel[S <: AnyRef] {
+
+  /**
+    * @return the state before any assignment
+    */
+  def initialState: S
+
+  /**
+    * @return the state reached by assigning value to the variable i in the given state,
+    *         or null if this assignment violates the constraints of the model
+    */
+  def transition(state: S, i: Int, value: Int): S
+
+  /**
+    * Relaxation of two states : every assignment allowed from a or from b must be allowed from the merged state
+    * (for instance the intersection of the sets of values already used for an all different)
+    */
+  def merge(a: S, b: S): S
+
+  /**
+    * @return true if the state reached after the assignment of the last variable satisfies the model
+    */
+  def isAccepting(state: S): Boolean = true
+}
@@ -257,81 +257,13 @@ object StaticMdd {
 
   /**
     * Build an mdd based on an finite state machine (the depth ofthemdd must also be specified).
+    * The mdd is reduced, it is built directly from the classes of equivalent states of each layer.
     * @param automaton
     * @param numberOfVariables
     * @return
     */
   def buildMddFromRegular(automaton: Automaton, numberOfVariables : Int) : StaticMddImpl = {
-    val mdd = new StaticMddImpl(numberOfVariables)
-    // The root is the initial state
-    val numStates = automaton.getNbStates
-    val acceptingStates = automaton.getAcceptingStates
-    val initialState = automaton.getInitialState
-    val numLetters = automaton.getNbLetters
-    val transition : Array[Array[Int]] = automaton.getTransitionMatrix
-    val nullState = automaton.getNullState
-
-    /**
-      * 1. create all states below and keep in array
-      * 2. for all current, add the outEdges and link
-      * 3. go through that state array and for each node with in, add it to layer. if not present, do nothing
-      */
-    var currentLayer = new java.util.TreeMap[Int,StaticMddNode]()
-    currentLayer.put(initialState,mdd.root)
-    for(i <- 0 until numberOfVariables-1){
-      val layerBelow = Array.fill(numStates)(new StaticMddNode(i+1))
-      val keyIterator = currentLayer.keySet().iterator()
-      while(keyIterator.hasNext){
-        val stateVal : Int = keyIterator.next()
-        val stateNode = currentLayer.get(stateVal)
-        for(letter <- 0 until numLetters){
-          val nextState = transition(stateVal)(letter)
-          if(nextState!=nullState){
-            val newMddEdge = new StaticMddEdge(stateNode,layerBelow(nextState),letter)
-          }
-        }
-      }
-      /** Final step, add what's needed**/
-      val newCurLayer = new util.TreeMap[Int, StaticMddNode]()
-      for(stateVal <- 0 until numStates){
-        if(layerBelow(stateVal).getInSize() != 0){
-          mdd.layers(i+1).add(layerBelow(stateVal))
-          newCurLayer.put(stateVal,layerBelow(stateVal))
-        }
-      }
-      currentLayer = newCurLayer
-    }
-
-    /**
-      * For each current state
-      * For each letter
-      * If destState in set, add it, otherwise do not add edge
-      *
-      * At the end, go through all states of previous layer, add as deadend if no outEdge
-      */
-    val stateIterator = currentLayer.keySet().iterator()
-    while(stateIterator.hasNext){
-      val stateVal  = stateIterator.next()
-      val node = currentLayer.get(stateVal)
-      for(letter <- 0 until numLetters){
-        val dest = transition(stateVal)(letter)
-        if(acceptingStates.contains(dest)){
-          // Add the edge
-          val newEdge = new StaticMddEdge(node,mdd.end,letter)
-        }
-      }
-      // If no edge lead to final state, add it to deadEnds
-      if(node.getOutSize() == 0){
-        mdd.pushDeadEnd(node)
-      }
-    }
-    // At the end, clear the deadends and nodes without any in-edges
-    mdd.deleteEdgesAndPropagate()
-    /**
-      * Optional reduction at the end to limit the size of the final mdd
-      */
-    mdd.reduce()
-    mdd
+    StreamingMddCompiler.fromAutomaton(automaton, numberOfVariables)
   }
 
   def intersect(mdd1 : StaticMddImpl, mdd2 : StaticMddImpl) : StaticMddImpl = {
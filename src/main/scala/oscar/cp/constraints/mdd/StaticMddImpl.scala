@@ -50,11 +50,19 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
   layers(arity).add(end)
 
   /**
-    * tableHashes is used for the reduction (and therefore incremental addition/deletion of tuples)
+    * tableHashes is used for the incremental addition/deletion of tuples, it is built from the reduced mdd when needed
+    * layerTable is the unique table used for the reduction of the whole mdd, one layer at a time
     * constraints : List of all the static constraints added to this MDD
     * splittedHeuristic : list of the closures used to sort the splitted nodes of a layer and decide greedily which one should be splitted first
     */
-  private[this] val tableHashes = Array.fill[java.util.TreeMap[String, StaticMddNode]](arity)(new util.TreeMap[String, StaticMddNode]())
+  private[this] val tableHashes = Array.fill[util.HashMap[StaticMddSignature, StaticMddNode]](arity)(new util.HashMap[StaticMddSignature, StaticMddNode]())
+  private[this] var tableHashesBuilt = false
+  private[this] val layerTable = new StaticMddUniqueTable()
+
+  /**
+    * If true, the signatures of the nodes of the large layers are computed in parallel during the reduction
+    */
+  var parallelReduction: Boolean = true
   private[this] val constraints = new util.ArrayList[StaticMddConstraint]()
   private[this] var splittedHeuristic = scala.collection.mutable.ArrayBuffer[(Int, (StaticMddSplittedNode, StaticMddSplittedNode) => Int)]()
   // Add basic heuristic : -10000 uses the ID (very poor), 0 used the number of outEdges (less outEdges first), and you can add your own heuristic
@@ -354,9 +362,10 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
   override def addTuple(tuple: Array[Int]): Unit = {
     if(this.contains(tuple)) return
     if(!reduced) reduce()
+    if(!tableHashesBuilt) buildTableHashes()
 
     val modifiedNode = Array.fill[util.HashSet[StaticMddNode]](arity+1)(new util.HashSet[StaticMddNode]())
-    val stringHashToRemove = Array.fill[util.ArrayList[String]](arity+1)(new util.ArrayList[String]())
+    val stringHashToRemove = Array.fill[util.ArrayList[StaticMddSignature]](arity+1)(new util.ArrayList[StaticMddSignature]())
 
     /**
       * Step 1 : Isolate the tuple
@@ -373,7 +382,7 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
         }
         else {
           modifiedNode(curNode.layer).add(curNode)
-          stringHashToRemove(curNode.layer).add(curNode.strHash())
+          stringHashToRemove(curNode.layer).add(curNode.signature())
 
           val newNode = new StaticMddNode(i + 1)
           modifiedNode(newNode.layer).add(newNode)
@@ -422,10 +431,11 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
     if(! this.contains(tuple)) return
 
     val modifiedNode = Array.fill[util.HashSet[StaticMddNode]](arity+1)(new util.HashSet[StaticMddNode]())
-    val stringHashToRemove = Array.fill[util.ArrayList[String]](arity+1)(new util.ArrayList[String]())
+    val stringHashToRemove = Array.fill[util.ArrayList[StaticMddSignature]](arity+1)(new util.ArrayList[StaticMddSignature]())
 
     // First, check that the hashMap of destination -> node is properly built
     if (!reduced) reduce()
+    if (!tableHashesBuilt) buildTableHashes()
 
     /**
       * Step 1 : Isolate the tuple
@@ -441,7 +451,7 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
       else {
         modifiedNode(curNode.layer).add(curNode)
         if(!alreadySplitted) {
-          stringHashToRemove(curNode.layer).add(curNode.strHash())
+          stringHashToRemove(curNode.layer).add(curNode.signature())
         }
         val newNode = new StaticMddNode(i + 1)
         modifiedNode(newNode.layer).add(newNode)
@@ -479,7 +489,7 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
     * @param modifiedNode
     * @param stringHashToRemove
     */
-  private def pReduce(modifiedNode : Array[util.HashSet[StaticMddNode]], stringHashToRemove : Array[util.ArrayList[String]]) : Unit = {
+  private def pReduce(modifiedNode : Array[util.HashSet[StaticMddNode]], stringHashToRemove : Array[util.ArrayList[StaticMddSignature]]) : Unit = {
     // First, removeHashes
     for(i <- 0 to arity){
       for(j <- 0 until stringHashToRemove(i).size()){
@@ -492,7 +502,7 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
       while(iterator.hasNext){
         val node = iterator.next()
         if(layers(i).contains(node)) {
-          val nodeHash = node.strHash()
+          val nodeHash = node.signature()
           if (tableHashes(i).containsKey(nodeHash) && tableHashes(i).get(nodeHash).getId() != node.getId()) {
             tableHashes(i).get(nodeHash).merge(node)
             layers(i).remove(node)
@@ -528,33 +538,40 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
     */
   override def reduce(): Unit = {
     reduced = true
+    tableHashesBuilt = false
     for (map <- tableHashes) map.clear()
 
     /**
-      * In a bottom up way, merge the nodes from a similar layer
+      * In a bottom up way, merge the nodes from a similar layer into the first node (by id) with the same out edges
       */
     for (level <- arity - 1 to 1 by -1) {
-      val levelMap = tableHashes(level)
       val levelLayer = layers(level)
-
-      val nodeIterator = levelLayer.iterator()
-      while (nodeIterator.hasNext) {
-        val curNode = nodeIterator.next()
-        val hash = curNode.strHash()
-        if (!levelMap.containsKey(hash)) {
-          levelMap.put(hash, curNode)
-        }
-        else {
-          levelMap.get(hash).merge(curNode)
+      val nodes = levelLayer.toArray(new Array[StaticMddNode](levelLayer.size()))
+      layerTable.load(nodes, parallelReduction && nodes.length >= StaticMddImpl.ParallelReductionThreshold)
+
+      var i = 0
+      while (i < nodes.length) {
+        val representative = layerTable.findOrInsert(i)
+        if (representative != i) {
+          nodes(representative).merge(nodes(i))
+          levelLayer.remove(nodes(i))
         }
+        i += 1
       }
+    }
+  }
 
-      /**
-        * All the merge have been done, now, clear the layer and put only the remaining nodes
-        */
-      levelLayer.clear()
-      val valuesIterator = levelMap.values().iterator()
-      while (valuesIterator.hasNext) levelLayer.add(valuesIterator.next())
+  /**
+    * Fill the unique tables used by the incremental reduction with the nodes of the reduced mdd
+    */
+  private def buildTableHashes(): Unit = {
+    tableHashesBuilt = true
+    for (level <- 1 until arity) {
+      val nodeIterator = layers(level).iterator()
+      while (nodeIterator.hasNext) {
+        val node = nodeIterator.next()
+        tableHashes(level).put(node.signature(), node)
+      }
     }
   }
 
@@ -674,4 +691,11 @@ class StaticMddImpl(val arity: Int) extends StaticMdd {
   }
 
 
-}
\ No newline at end of file
+}
+
+object StaticMddImpl {
+  /**
+    * Minimum number of nodes of a layer to compute the signatures of its nodes in parallel
+    */
+  val ParallelReductionThreshold: Int = 1 << 14
+}
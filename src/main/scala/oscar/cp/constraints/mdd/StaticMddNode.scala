@@ -42,17 +42,21 @@ class StaticMddNode(val layer : Int) extends GlobalNode{
   private[this] val outEdges : util.TreeMap[Int,StaticMddEdge] = new util.TreeMap[Int,StaticMddEdge]()
   private[this] val inEdges : util.TreeSet[StaticMddEdge] = new util.TreeSet[StaticMddEdge]()
 
-  def strHash() : String = {
-    val buf = new java.lang.StringBuffer()
-    val outValues = outEdges.keySet().iterator()
-    while(outValues.hasNext){
-      val value = outValues.next()
-      buf.append(value)
-      buf.append('#')
-      buf.append(outEdges.get(value).bottomNode.getId)
-      buf.append('#')
+  /**
+    * The out edges of this node as (value, id of the bottom node) pairs, nodes of the same layer
+    * with equal signatures can be merged
+    */
+  def signature() : StaticMddSignature = {
+    val edges = new Array[Long](2 * outEdges.size())
+    var k = 0
+    val outEdgesIterator = outEdges.values().iterator()
+    while(outEdgesIterator.hasNext){
+      val edge = outEdgesIterator.next()
+      edges(k) = edge.value
+      edges(k + 1) = edge.bottomNode.getId
+      k += 2
     }
-    buf.toString
+    new StaticMddSignature(edges)
   }
 
   def getInSize() : Int = this.inEdges.size()
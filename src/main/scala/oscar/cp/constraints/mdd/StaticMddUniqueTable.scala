@@ -0,0 +1,141 @@
+/*******************************************************************************
+  * OscaR is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Lesser General Public License as published by
+  * the Free Software Foundation, either version 2.1 of the License, or
+  * (at your option) any later version.
+  *
+  * OscaR is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Lesser General Public License  for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+  * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+  ******************************************************************************/
+
+
+package oscar.cp.constraints.mdd
+
+import java.util.stream.IntStream
+
+/**
+  * Signature of a node : its out edges as (value, id of the bottom node) pairs, in increasing order of value.
+  * Two nodes of a same layer with the same signature can be merged.
+  * This is the key of the unique tables used for the incremental addition/removal of tuples.
+  */
+final class StaticMddSignature(private val edges: Array[Long]) {
+  private[this] val hash = java.util.Arrays.hashCode(edges)
+
+  override def hashCode(): Int = hash
+
+  override def equals(o: scala.Any): Boolean = {
+    o match {
+      case that: StaticMddSignature => hash == that.hashCode() && java.util.Arrays.equals(edges, that.edges)
+      case _ => false
+    }
+  }
+}
+
+/**
+  * Unique table of the nodes of one layer, used for the bottom up reduction of a whole mdd.
+  *
+  * The signatures of the nodes are stored in a single array of (value, id of the bottom node) pairs,
+  * node i owning the range [starts(i), starts(i + 1)), and the table is an open addressing hash table
+  * of node indexes. Nothing is allocated per node, and the buffers are reused from one layer to the next.
+  * The signatures of the nodes of a layer are independent, they can be computed in parallel.
+  */
+private[mdd] final class StaticMddUniqueTable {
+
+  private[this] var edges = new Array[Long](64)
+  private[this] var starts = new Array[Int](17)
+  private[this] var hashes = new Array[Int](16)
+  private[this] var nNodes = 0
+
+  // node index + 1 in each slot, 0 for an empty slot
+  private[this] var table = new Array[Int](32)
+
+  /**
+    * Computes the signatures of the nodes and empties the table
+    * @param nodes : the nodes of a layer, their indexes are used by findOrInsert
+    * @param parallel : true to compute the signatures in parallel
+    */
+  def load(nodes: Array[StaticMddNode], parallel: Boolean): Unit = {
+    nNodes = nodes.length
+    if (nNodes >= hashes.length) {
+      val capacity = Integer.highestOneBit(nNodes) << 1
+      hashes = new Array[Int](capacity)
+      starts = new Array[Int](capacity + 1)
+    }
+    var size = 0
+    var i = 0
+    while (i < nNodes) {
+      starts(i) = size
+      size += 2 * nodes(i).getOutSize()
+      i += 1
+    }
+    starts(nNodes) = size
+    if (size > edges.length) edges = new Array[Long](Integer.highestOneBit(size) << 1)
+
+    if (parallel) IntStream.range(0, nNodes).parallel().forEach(i => computeSignature(nodes(i), i))
+    else {
+      i = 0
+      while (i < nNodes) {
+        computeSignature(nodes(i), i)
+        i += 1
+      }
+    }
+
+    val tableSize = Integer.highestOneBit(nNodes * 2 + 1) << 1
+    if (tableSize > table.length) table = new Array[Int](tableSize)
+    else java.util.Arrays.fill(table, 0)
+  }
+
+  private def computeSignature(node: StaticMddNode, i: Int): Unit = {
+    val nodeEdges = edges
+    var k = starts(i)
+    var hash = 1
+    val outEdgesIterator = node.getOutEdgeIterator()
+    while (outEdgesIterator.hasNext) {
+      val edge = outEdgesIterator.next()
+      val bottomId = edge.bottomNode.getId()
+      nodeEdges(k) = edge.value
+      nodeEdges(k + 1) = bottomId
+      hash = 31 * (31 * hash + edge.value) + java.lang.Long.hashCode(bottomId)
+      k += 2
+    }
+    hashes(i) = hash
+  }
+
+  /**
+    * @return the index of a node inserted before with the same signature as node i,
+    *         or i if there is none, in which case node i is inserted
+    */
+  def findOrInsert(i: Int): Int = {
+    val mask = table.length - 1
+    val hash = hashes(i)
+    var slot = (hash ^ (hash >>> 16)) & mask
+    while (true) {
+      val j = table(slot) - 1
+      if (j < 0) {
+        table(slot) = i + 1
+        return i
+      }
+      if (hashes(j) == hash && sameSignature(i, j)) return j
+      slot = (slot + 1) & mask
+    }
+    i
+  }
+
+  private def sameSignature(i: Int, j: Int): Boolean = {
+    val start = starts(i)
+    val length = starts(i + 1) - start
+    if (starts(j + 1) - starts(j) != length) return false
+    val offset = starts(j) - start
+    var k = start
+    while (k < start + length) {
+      if (edges(k) != edges(k + offset)) return false
+      k += 1
+    }
+    true
+  }
+}
@@ -0,0 +1,207 @@
+/*******************************************************************************
+  * OscaR is free software: you can redistribute it and/or modify
+  * it under the terms of the GNU Lesser General Public License as published by
+  * the Free Software Foundation, either version 2.1 of the License, or
+  * (at your option) any later version.
+  *
+  * OscaR is distributed in the hope that it will be useful,
+  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  * GNU Lesser General Public License  for more details.
+  *
+  * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+  * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+  ******************************************************************************/
+
+
+package oscar.cp.constraints.mdd
+
+import java.util
+
+import oscar.cp.constraints.Automaton
+
+/**
+  * Builds reduced static mdds in one pass, without building the trie (or the unrolled automaton) first.
+  * The result can directly be given to an Mdd4RConstraint or an Mdd4Constraint.
+  */
+object StreamingMddCompiler {
+
+  /**
+    * Builds the reduced mdd of tuples given in lexicographic order, with the incremental construction of
+    * Daciuk et al. (Incremental Construction of Minimal Acyclic Finite-State Automata).
+    * Only the path of the last tuple is not reduced yet: when a tuple diverges from the previous one at
+    * position p, the nodes of the previous path below p can not get any new edge, they are merged
+    * with an equivalent node of their layer if there is one. Each node is hashed once.
+    *
+    * @param tuples : tuples in increasing lexicographic order, the duplicates are ignored. The arrays are copied
+    *                 such that the iterator can reuse them.
+    * @param arity : arity of the tuples (and depth of the mdd)
+    */
+  def fromSortedTuples(tuples: Iterator[Array[Int]], arity: Int): StaticMddImpl = {
+    val mdd = new StaticMddImpl(arity)
+    // registered nodes of each layer, by signature
+    val registers = Array.fill(arity)(new util.HashMap[StaticMddSignature, StaticMddNode]())
+    // nodes of the path of the previous tuple, not registered yet (except the root)
+    val path = new Array[StaticMddNode](arity)
+    path(0) = mdd.root
+    val previous = new Array[Int](arity)
+    var hasPrevious = false
+
+    while (tuples.hasNext) {
+      val tuple = tuples.next()
+      if (tuple.length != arity) throw new IllegalArgumentException("the tuples should have " + arity + " values")
+      var prefix = 0
+      if (hasPrevious) {
+        while (prefix < arity && tuple(prefix) == previous(prefix)) prefix += 1
+        if (prefix < arity && tuple(prefix) < previous(prefix)) throw new IllegalArgumentException("the tuples are not in lexicographic order")
+      }
+      if (!hasPrevious || prefix < arity) {
+        if (hasPrevious) register(mdd, registers, path, previous, prefix + 1)
+
+        // Add the suffix of the tuple
+        var depth = prefix
+        while (depth < arity - 1) {
+          val node = new StaticMddNode(depth + 1)
+          new StaticMddEdge(path(depth), node, tuple(depth))
+          path(depth + 1) = node
+          depth += 1
+        }
+        new StaticMddEdge(path(arity - 1), mdd.end, tuple(arity - 1))
+
+        System.arraycopy(tuple, 0, previous, 0, arity)
+        hasPrevious = true
+      }
+    }
+    if (hasPrevious) register(mdd, registers, path, previous, 1)
+    mdd
+  }
+
+  /**
+    * Merges the nodes of the path of the tuple, from the last layer up to layer from, with the
+    * equivalent registered nodes, or registers them if there is none.
+    */
+  private def register(mdd: StaticMddImpl, registers: Array[util.HashMap[StaticMddSignature, StaticMddNode]],
+                       path: Array[StaticMddNode], tuple: Array[Int], from: Int): Unit = {
+    var depth = mdd.arity - 1
+    while (depth >= from) {
+      val node = path(depth)
+      val signature = node.signature()
+      val registered = registers(depth).get(signature)
+      if (registered == null) {
+        registers(depth).put(signature, node)
+        mdd.layers(depth).add(node)
+      }
+      else registered.merge(node)
+      depth -= 1
+    }
+  }
+
+  /**
+    * Builds the reduced mdd of a table, the tuples of the wrong arity are ignored
+    * @param table : the tuples, in any order
+    * @param arity : arity of the table constraint (and depth of the mdd)
+    */
+  def fromTable(table: Array[Array[Int]], arity: Int): StaticMddImpl = {
+    val sorted = table.filter(_.length == arity)
+    util.Arrays.sort(sorted, new util.Comparator[Array[Int]] {
+      override def compare(a: Array[Int], b: Array[Int]): Int = {
+        var i = 0
+        while (i < arity) {
+          if (a(i) != b(i)) return Integer.compare(a(i), b(i))
+          i += 1
+        }
+        0
+      }
+    })
+    fromSortedTuples(sorted.iterator, arity)
+  }
+
+  /**
+    * Builds the reduced mdd of the words of length nLayers accepted by the automaton.
+    * The classes of equivalent states are computed on each layer from the last one, on the
+    * states reachable from the initial state only, and a single node is then created for each class.
+    * This costs O(nLayers * nbStates * nbLetters), no node or edge is created and then removed.
+    *
+    * @param automaton : deterministic automaton, the letters are the values of the mdd
+    * @param nLayers : length of the words (and depth of the mdd)
+    */
+  def fromAutomaton(automaton: Automaton, nLayers: Int): StaticMddImpl = {
+    val mdd = new StaticMddImpl(nLayers)
+    val nStates = automaton.getNbStates
+    val nLetters = automaton.getNbLetters
+    val transitions = automaton.getTransitionMatrix
+    val nullState = automaton.getNullState
+
+    // Reachable states of each layer
+    val reachable = Array.ofDim[Boolean](nLayers + 1, nStates)
+    reachable(0)(automaton.getInitialState) = true
+    for (layer <- 0 until nLayers; state <- 0 until nStates; if reachable(layer)(state); letter <- 0 until nLetters) {
+      val next = transitions(state)(letter)
+      if (next != nullState) reachable(layer + 1)(next) = true
+    }
+
+    // Class of each reachable state on each layer, -1 if no accepting state can be reached from it
+    val classes = Array.fill(nLayers + 1, nStates)(-1)
+    // A state of each class, whose transitions are used to create the edges of the node of the class
+    val representatives = Array.fill(nLayers + 1)(new util.ArrayList[Integer]())
+    val acceptingStates = automaton.getAcceptingStates.iterator()
+    while (acceptingStates.hasNext) {
+      val state: Int = acceptingStates.next()
+      if (reachable(nLayers)(state)) classes(nLayers)(state) = 0
+    }
+    representatives(nLayers).add(0)
+
+    val classIds = new util.HashMap[StaticMddSignature, Integer]()
+    val signature = new Array[Long](2 * nLetters)
+    var layer = nLayers - 1
+    while (layer >= 0) {
+      classIds.clear()
+      var state = 0
+      while (state < nStates) {
+        if (reachable(layer)(state)) {
+          var size = 0
+          var letter = 0
+          while (letter < nLetters) {
+            val next = transitions(state)(letter)
+            if (next != nullState && classes(layer + 1)(next) >= 0) {
+              signature(size) = letter
+              signature(size + 1) = classes(layer + 1)(next)
+              size += 2
+            }
+            letter += 1
+          }
+          if (size > 0) {
+            val key = new StaticMddSignature(util.Arrays.copyOf(signature, size))
+            val id = classIds.get(key)
+            if (id != null) classes(layer)(state) = id
+            else {
+              classes(layer)(state) = classIds.size()
+              classIds.put(key, classIds.size())
+              representatives(layer).add(state)
+            }
+          }
+        }
+        state += 1
+      }
+      layer -= 1
+    }
+
+    // One node per class, the root and the end node being the only classes of the first and last layers
+    val nodes = Array.tabulate(nLayers + 1)(layer => {
+      val nClasses = representatives(layer).size()
+      if (layer == 0) Array.fill(nClasses)(mdd.root)
+      else if (layer == nLayers) Array(mdd.end)
+      else Array.fill(nClasses)(mdd.createNode(layer))
+    })
+    for (layer <- 0 until nLayers; c <- 0 until representatives(layer).size()) {
+      val state: Int = representatives(layer).get(c)
+      for (letter <- 0 until nLetters) {
+        val next = transitions(state)(letter)
+        if (next != nullState && classes(layer + 1)(next) >= 0) {
+          new StaticMddEdge(nodes(layer)(c), nodes(layer + 1)(classes(layer + 1)(next)), letter)
+        }
+      }
+    }
+    mdd
+  }
+}
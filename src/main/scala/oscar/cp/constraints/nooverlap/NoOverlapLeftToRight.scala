@@ -1,12 +1,12 @@
 package oscar.cp.constraints.nooverlap
 
 import oscar.algo.Inconsistency
-import oscar.algo.SortUtils.mergeSort
 import oscar.cp.Constraint
 import oscar.cp.constraints.nooverlap.thetalambdatree.ThetaLambdaTree
 import oscar.cp.constraints.nooverlap.util.OptionalIntervalDomain
 import oscar.cp.core.CPPropagStrength
 import oscar.cp.core.variables.{CPIntVar, CPVar}
+import oscar.cp.scheduling.util.ReversibleSortedOrder
 
 class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar], ends: Array[CPIntVar], runOnResource: Array[CPIntVar], resourceId : Int) extends Constraint(starts(0).store){
 
@@ -22,14 +22,14 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
   protected[this] val newMinStarts: Array[Int] = Array.ofDim[Int](nTasks)
   protected[this] val newMaxEnds: Array[Int] = Array.ofDim[Int](nTasks)
   protected[this] val optionalDomains = Array.tabulate(nTasks)(t => new OptionalIntervalDomain(starts(t), durations(t), ends(t), runOnResource(t), resourceId))
-  protected[this] val orderedMinStartIds: Array[Int] = Array.tabulate(nTasks)(i => i)
-  protected[this] val orderedMaxStartIds: Array[Int] = Array.tabulate(nTasks)(i => i)
-  protected[this] val orderedMinEndIds: Array[Int] = Array.tabulate(nTasks)(i => i)
-  protected[this] val orderedMaxEndIds: Array[Int] = Array.tabulate(nTasks)(i => i)
-
-  // Temporary arrays needed by the mergeSort Algorithm
-  protected[this] val mergeSortRuns = Array.ofDim[Int](nTasks + 1)
-  protected[this] val mergeSortAux = Array.ofDim[Int](nTasks)
+  protected[this] val minStartOrder = new ReversibleSortedOrder(starts(0).store, nTasks)
+  protected[this] val orderedMinStartIds: Array[Int] = minStartOrder.sortedIndexes
+  protected[this] val maxStartOrder = new ReversibleSortedOrder(starts(0).store, nTasks)
+  protected[this] val orderedMaxStartIds: Array[Int] = maxStartOrder.sortedIndexes
+  protected[this] val minEndOrder = new ReversibleSortedOrder(starts(0).store, nTasks)
+  protected[this] val orderedMinEndIds: Array[Int] = minEndOrder.sortedIndexes
+  protected[this] val maxEndOrder = new ReversibleSortedOrder(starts(0).store, nTasks)
+  protected[this] val orderedMaxEndIds: Array[Int] = maxEndOrder.sortedIndexes
 
   protected[this] val tree : ThetaLambdaTree = new ThetaLambdaTree(starts.length)
 
@@ -53,7 +53,7 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
 
   def overloadChecking() : Boolean = {
     // Clearing the tree
-    mergeSort(orderedMinStartIds, currentMinStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(currentMinStarts)
 
     //find out if there are still optional activities
     var someActiStillOptional = false
@@ -67,7 +67,7 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
     tree.clearAndPlaceLeaves(orderedMinStartIds, currentMinStarts, currentMinDurations, someActiStillOptional)
 
     //sorting activities in non-decreasing lct
-    mergeSort(orderedMaxEndIds, currentMaxEnds, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxEndOrder.sort(currentMaxEnds)
     i = 0
     while (i < nTasks) {
       val activityIndex = orderedMaxEndIds(i)
@@ -96,14 +96,14 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
 
   def detectablePrecedence(): Boolean = {
     // Clearing the tree
-    mergeSort(orderedMinStartIds, currentMinStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(currentMinStarts)
     tree.clearAndPlaceLeaves(orderedMinStartIds, currentMinStarts, currentMinDurations, false)
 
     //sorting activities in non-decreasing lst
-    mergeSort(orderedMaxStartIds, currentMaxStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxStartOrder.sort(currentMaxStarts)
 
     //sorting activities in non-decreasing ect
-    mergeSort(orderedMinEndIds, currentMinEnds, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minEndOrder.sort(currentMinEnds)
 
     var i, j = 0
     while (i < nTasks) {
@@ -125,14 +125,14 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
 
   def notLast(): Boolean  = {
     // Clearing the tree
-    mergeSort(orderedMinStartIds, currentMinStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(currentMinStarts)
     tree.clearAndPlaceLeaves(orderedMinStartIds, currentMinStarts, currentMinDurations, false)
 
     //sorting activities in non-decreasing lst
-    mergeSort(orderedMaxStartIds, currentMaxStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxStartOrder.sort(currentMaxStarts)
 
     //sorting activities in non-decreasing lct
-    mergeSort(orderedMaxEndIds, currentMaxEnds, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxEndOrder.sort(currentMaxEnds)
 
     var i, j, indexOfLastRunningActivity  = 0
     while(i < nTasks) {
@@ -165,7 +165,7 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
 
   def edgeFinding(): Boolean  = {
     // Inserting all activities in the tree
-    mergeSort(orderedMinStartIds, currentMinStarts, 0, nTasks, mergeSortRuns, mergeSortAux)
+    minStartOrder.sort(currentMinStarts)
     tree.fillAndPlaceLeaves(orderedMinStartIds, currentMinStarts, currentMinDurations) // true as we use gray nodes
 
     var a = 0
@@ -179,7 +179,7 @@ class NoOverlapLeftToRight(starts: Array[CPIntVar], durations: Array[CPIntVar],
 
     //sorting activities in non-decreasing lct
     //NOTE: we sort the array by increasing lct, we just will browse it from left to right
-    mergeSort(orderedMaxEndIds, currentMaxEnds, 0, nTasks, mergeSortRuns, mergeSortAux)
+    maxEndOrder.sort(currentMaxEnds)
 
     var estIndex = 0
     var j = nTasks - 1
@@ -240,6 +240,10 @@ class TransitionTimesInsert(
 
   private val feasiblePathMap = new mutable.HashMap[(Int, Int, util.BitSet), (Int, Int)]() //Used for path feasibility memoization
 
+  //Buffers for the primitive iteration over the insertions:
+  private val elemBuffer = new Array[Int](sequence.domainSize)
+  private val predBuffer = new Array[Int](sequence.domainSize + 1)
+
   override def propagate(): Unit = {
     updateMemberStarts()
     updateMembersEnds()
@@ -281,19 +285,30 @@ class TransitionTimesInsert(
   }
 
   private def updatePossibleTimeWindows(): Unit = {
-    for((elem, preds) <- sequence.currentInsertionsPerElem){
-      val ea = preds.map(pred => math.max(ends(pred).min + transitions(pred)(elem), starts(elem).min)).min
-      val ld = preds.map(pred => {
-        val next = sequence.nextMember(pred)
-        if(next == -1) ends(elem).max
-        else math.min(starts(next).max - transitions(elem)(next), ends(elem).max)
-      }).max
-      try {
-        starts(elem).updateMin(ea)
-        ends(elem).updateMax(ld)
-      } catch {
-        case _: Inconsistency => sequence.excludes(elem) //If failure when updating time windows: excluding activity from sequence
+    val nElems = sequence.fillPossibleOrRequired(elemBuffer)
+    var i = 0
+    while (i < nElems) {
+      val elem = elemBuffer(i)
+      val nPreds = sequence.fillCurrentInsertions(elem, predBuffer)
+      if (nPreds > 0) {
+        var ea = Int.MaxValue
+        var ld = Int.MinValue
+        var j = 0
+        while (j < nPreds) {
+          val pred = predBuffer(j)
+          ea = math.min(ea, math.max(ends(pred).min + transitions(pred)(elem), starts(elem).min))
+          val next = sequence.nextMember(pred)
+          ld = math.max(ld, if (next == -1) ends(elem).max else math.min(starts(next).max - transitions(elem)(next), ends(elem).max))
+          j += 1
+        }
+        try {
+          starts(elem).updateMin(ea)
+          ends(elem).updateMax(ld)
+        } catch {
+          case _: Inconsistency => sequence.excludes(elem) //If failure when updating time windows: excluding activity from sequence
+        }
       }
+      i += 1
     }
   }
 
@@ -384,10 +399,20 @@ class TransitionTimesInsert(
     * Filters possible insertion positions:
     */
   def filterInsertions(): Unit = {
-    for((elem, pred) <- sequence.allCurrentInsertions) {
-      val next = sequence.nextMember(pred)
-      val eae = math.max(ends(pred).min + transitions(pred)(elem), starts(elem).min)
-      if(next != -1 && eae + durations(elem).min + transitions(elem)(next) > starts(next).max) sequence.removeInsertion(elem, pred)
+    val nElems = sequence.fillPossibleOrRequired(elemBuffer)
+    var i = 0
+    while (i < nElems) {
+      val elem = elemBuffer(i)
+      val nPreds = sequence.fillCurrentInsertions(elem, predBuffer)
+      var j = 0
+      while (j < nPreds) {
+        val pred = predBuffer(j)
+        val next = sequence.nextMember(pred)
+        val eae = math.max(ends(pred).min + transitions(pred)(elem), starts(elem).min)
+        if(next != -1 && eae + durations(elem).min + transitions(elem)(next) > starts(next).max) sequence.removeInsertion(elem, pred)
+        j += 1
+      }
+      i += 1
     }
   }
 }
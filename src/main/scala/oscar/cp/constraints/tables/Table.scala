@@ -15,7 +15,7 @@
 
 package oscar.cp.constraints.tables
 
-import oscar.cp.constraints.mdd.{Mdd4Constraint, Mdd4RConstraint, StaticMdd}
+import oscar.cp.constraints.mdd.{Mdd4Constraint, Mdd4RConstraint, StreamingMddCompiler}
 import oscar.cp.core.Constraint
 import oscar.cp.core.variables.CPIntVar
 
@@ -66,12 +66,12 @@ object table {
       case Decomp => decomp(X, table)
       case ShortSTR2 => shortSTR2(X, table)
       case MDDGeneric => {
-        val mddStatic = StaticMdd.buildMddFromTableRegin(table, X.size)
+        val mddStatic = StreamingMddCompiler.fromTable(table, X.size)
         val cons = new Mdd4Constraint(X, mddStatic, X(0).store)
         cons
       }
       case MDD4RGeneric => {
-        val mddStatic = StaticMdd.buildMddFromTableRegin(table, X.size)
+        val mddStatic = StreamingMddCompiler.fromTable(table, X.size)
         val cons = new Mdd4RConstraint(X, mddStatic, X(0).store)
         cons
       }
@@ -186,13 +186,17 @@ final class TableCT(X: Array[CPIntVar], table: Array[Array[Int]]) extends Constr
         domainArraySize = x(varIndex).fillArray(domainArray)
         var i = 0
         var value = 0
+        var nRemoved = 0
         while (i < domainArraySize) {
           value = domainArray(i)
           if (!validTuples.intersect(variableValueSupports(varIndex)(value))) {
-            x(varIndex).removeValue(value)
+            /* The unsupported values are removed at once from the original variable */
+            domainArray(nRemoved) = value + offsets(varIndex)
+            nRemoved += 1
           }
           i += 1
         }
+        if (nRemoved > 0) X(varIndex).removeValues(domainArray, nRemoved)
       }
       if (x(varIndex).isBound) {
         /* If the variable is bound, we never need to consider it any more (put them in a sparse-set) */
@@ -19,7 +19,7 @@ import oscar.algo.Inconsistency
 import oscar.cp.constraints.CPObjectiveUnit
 import oscar.cp.constraints.ParetoConstraint
 import oscar.cp.multiobjective.Pareto
-import oscar.cp.multiobjective.ListPareto
+import oscar.cp.multiobjective.{ListPareto, NDTreePareto}
 import oscar.cp.constraints.CPObjectiveUnitMaximize
 import oscar.cp.constraints.CPObjective
 import oscar.cp.constraints.CPObjectiveUnitMinimize
@@ -95,7 +95,7 @@ class CPOptimizer(propagStrength: CPPropagStrength) extends CPStore(propagStreng
     postCut(objective)
     objective.objs.foreach(_.tightenMode = TightenType.NoTighten)
     
-    paretoSet = new ListPareto[CPSol](isMax)
+    paretoSet = new NDTreePareto[CPSol](isMax)
     // Adds a dominance constraint with all objectives in minimization mode
     addCut(new ParetoConstraint(paretoSet, isMax, objectives.toArray))
     this
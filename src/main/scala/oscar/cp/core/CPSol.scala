@@ -3,12 +3,12 @@
  * it under the terms of the GNU Lesser General Public License as published by
  * the Free Software Foundation, either version 2.1 of the License, or
  * (at your option) any later version.
- *   
+ *
  * OscaR is distributed in the hope that it will be useful,
  * but WITHOUT ANY WARRANTY; without even the implied warranty of
  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
  * GNU Lesser General Public License  for more details.
- *   
+ *
  * You should have received a copy of the GNU Lesser General Public License along with OscaR.
  * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
  ******************************************************************************/
@@ -17,13 +17,23 @@ package oscar.cp.core
 import oscar.cp.core.variables.CPIntVar
 
 /**
+ * Values of the variables in a solution.
+ *
+ * @param index the position of each variable in values
+ * @param values the value of each variable
  * @author Pierre Schaus pschaus@gmail.com
  */
-class CPSol(xs: Set[CPIntVar]) {
-  assert(xs forall { x => x.min == x.max })
-	val dict = xs.map(y => (y,y.min)).toMap
-	def apply(y: CPIntVar): Int = {
-	  assert(y.min == y.max)
-	  dict(y)
-	}
+class CPSol(index: Map[CPIntVar, Int], values: Array[Int]) {
+
+  def this(xs: Set[CPIntVar]) = this(CPSol.indexOf(xs.toArray), xs.toArray.map(_.min))
+
+  def apply(y: CPIntVar): Int = values(index(y))
+}
+
+object CPSol {
+
+  private def indexOf(xs: Array[CPIntVar]): Map[CPIntVar, Int] = {
+    assert(xs forall { x => x.min == x.max })
+    xs.zipWithIndex.toMap
+  }
 }
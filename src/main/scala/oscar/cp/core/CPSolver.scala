@@ -74,18 +74,27 @@ class CPSolver(propagStrength: CPPropagStrength) extends CPOptimizer(propagStren
   }
 
 
-  private val decVariables = scala.collection.mutable.Set[CPIntVar]()
+  /** The values of the decision variables in the last solutions */
+  val solutions = new SolutionStore()
 
-  var lastSol = new CPSol(Set[CPIntVar]())
+  // Copy of the last solution, built on demand
+  private var lastSolCopy: CPSol = null
 
-  def addDecisionVariables(x: Iterable[_ <: CPIntVar]): Unit = x.foreach(decVariables += _)
-
-  def addDecisionVariables(x: CPIntVar*): Unit = x.foreach(decVariables += _)
+  /** The values of the decision variables in the last solution */
+  def lastSol: CPSol = {
+    if (lastSolCopy == null) {
+      lastSolCopy = if (solutions.isEmpty) new CPSol(Map[CPIntVar, Int](), Array[Int]()) else solutions.solution(0)
+    }
+    lastSolCopy
+  }
 
-  private def recordSol(): Unit = {
-    lastSol = new CPSol(decVariables.toSet)
+  def addDecisionVariables(x: Iterable[_ <: CPIntVar]): Unit = {
+    solutions.addVariables(x)
+    lastSolCopy = null
   }
 
+  def addDecisionVariables(x: CPIntVar*): Unit = addDecisionVariables(x: Iterable[CPIntVar])
+
   private var throwNoSolExceptions = true
 
   /** Deactivate the no solution exception when an add is used and an inconsistent model is detected */
@@ -124,7 +133,8 @@ class CPSolver(propagStrength: CPPropagStrength) extends CPOptimizer(propagStren
 
   override def solFound(): Unit = {
     super.solFound()
-    lastSol = new CPSol(decVariables.toSet)
+    solutions.record()
+    lastSolCopy = null
     if (recordNonDominatedSolutions) {
       if (!silent) println("new solution:" + objective.objs.map(_.objVar.min).toArray.mkString(","))
       paretoSet.insert(lastSol, objective.objs.map(_.objVar.min): _*)
@@ -17,7 +17,7 @@ package oscar.cp.core
 
 import oscar.algo.Inconsistency
 import oscar.cp.constraints.Garded
-import oscar.cp.core.variables.{CPBoolVar, CPIntVar, CPSetVar, CPVar}
+import oscar.cp.core.variables.{CPBoolVar, CPIntVar, CPSeqVar, CPSetVar, CPVar}
 import oscar.cp.core.delta.Delta
 import oscar.algo.reversible.TrailEntry
 
@@ -58,12 +58,48 @@ abstract class Constraint(store: CPStore, val name: String = "cons") extends Tra
     snapshots = newStack
   }
 
+  // Lazy snapshots whose variable changed since the last propagation
+  private[this] var changedSnapshots = new Array[Delta](10)
+  private[this] var nChangedSnapshots = 0
+
+  /**
+   * Registers a snapshot that is not updated after each propagation, but only after the
+   * propagations that follow a call to snapshotChanged (typically made by a watcher of its variable).
+   * Constraints with many variables then only update the snapshots of the variables that changed.
+   */
+  final def registerLazyDelta(delta: Delta): Unit = delta.update()
+
+  /**
+   * Marks a lazy snapshot as changed such that it is updated after the next propagation
+   */
+  @inline final def snapshotChanged(delta: Delta): Unit = {
+    if (!delta.inChangedSnapshots) {
+      delta.inChangedSnapshots = true
+      if (nChangedSnapshots == changedSnapshots.length) {
+        val newStack = new Array[Delta](nChangedSnapshots * 2)
+        System.arraycopy(changedSnapshots, 0, newStack, 0, nChangedSnapshots)
+        changedSnapshots = newStack
+      }
+      changedSnapshots(nChangedSnapshots) = delta
+      nChangedSnapshots += 1
+    }
+  }
+
   @inline private def updateSnapshots(): Unit = {
     var i = nSnapshots
     while (i > 0) {
       i -= 1
       snapshots(i).update()
     }
+    // The marks of a failed propagation are kept, these snapshots are updated after the next one
+    i = nChangedSnapshots
+    while (i > 0) {
+      i -= 1
+      val delta = changedSnapshots(i)
+      delta.inChangedSnapshots = false
+      delta.update()
+    }
+    nChangedSnapshots = 0
   }
 
   private[this] var priorL2 = CPStore.MaxPriorityL2 - 2
@@ -293,6 +329,24 @@ abstract class Constraint(store: CPStore, val name: String = "cons") extends Tra
   @throws(classOf[Inconsistency])
   def valExcludedIdx(x: CPSetVar, idx: Int, value: Int): Unit = {}
 
+  /**
+   * Propagation method of Level L1 that is called if the sequence x has asked to do so
+   * with the method call x.callValInsertedWhenInserted(this)
+   * @param elem is an element that has been inserted in the sequence x since last call
+   * @throws Inconsistency
+   */
+  @throws(classOf[Inconsistency])
+  def valInserted(x: CPSeqVar, elem: Int): Unit = {}
+
+  /**
+   * Propagation method of Level L1 that is called if the sequence x has asked to do so
+   * with the method call x.callValExcludedWhenExcluded(this)
+   * @param elem is an element that has been excluded from the sequence x since last call
+   * @throws Inconsistency
+   */
+  @throws(classOf[Inconsistency])
+  def valExcluded(x: CPSeqVar, elem: Int): Unit = {}
+
   def execute(): Unit = {
     inQueue = false
     _inPropagate = true
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.core
+
+import java.io._
+
+import oscar.cp.core.variables.CPIntVar
+
+import scala.collection.mutable
+
+/**
+ * Values of the decision variables in the last solutions found, without allocation per solution.
+ *
+ * The values of a solution are copied in a row of a preallocated array used as a ring buffer:
+ * the column of each variable is the order in which it has been added and the ring keeps the last
+ * capacity solutions. The solutions can also be appended to a file, to enumerate all of them
+ * after the search with a streaming iterator.
+ *
+ * @param initCapacity the number of solutions kept in memory
+ */
+final class SolutionStore(initCapacity: Int = 1) {
+
+  require(initCapacity >= 1, "the capacity should be at least 1")
+
+  private[this] var _capacity = initCapacity
+  private[this] val vars = mutable.ArrayBuffer[CPIntVar]()
+  private[this] val index = mutable.HashMap[CPIntVar, Int]()
+  // Immutable copy of index shared by the solutions, which outlive the next decision variables
+  private[this] var solutionIndex = Map.empty[CPIntVar, Int]
+  private[this] var nVars = 0
+  private[this] var values = new Array[Int](0)
+
+  // Number of solutions recorded and row of the last one
+  private[this] var nRecorded = 0L
+  private[this] var last = -1
+
+  // Spill of the solutions on disk
+  private[this] var spillFile: File = null
+  private[this] var spill: DataOutputStream = null
+  private[this] var nSpilled = 0L
+
+  /** The number of solutions kept in memory */
+  def capacity: Int = _capacity
+
+  /** Sets the number of solutions kept in memory, the recorded solutions are cleared */
+  def capacity_=(capacity: Int): Unit = {
+    require(capacity >= 1, "the capacity should be at least 1")
+    _capacity = capacity
+    clear()
+  }
+
+  /** Adds decision variables, the recorded solutions are cleared */
+  def addVariables(xs: Iterable[_ <: CPIntVar]): Unit = {
+    for (x <- xs; if !index.contains(x)) {
+      index(x) = vars.length
+      vars += x
+    }
+    nVars = vars.length
+    solutionIndex = index.toMap
+    clear()
+  }
+
+  /** The decision variables, in the order of their columns */
+  def variables: IndexedSeq[CPIntVar] = vars
+
+  /** The number of decision variables */
+  def nVariables: Int = nVars
+
+  /** The column of the variable x */
+  def column(x: CPIntVar): Int = index(x)
+
+  /** The number of solutions recorded since the last clear */
+  def nSolutions: Long = nRecorded
+
+  /** The number of solutions kept in memory */
+  def size: Int = math.min(nRecorded, _capacity.toLong).toInt
+
+  def isEmpty: Boolean = nRecorded == 0
+
+  /** Removes the recorded solutions, the spill file is emptied */
+  def clear(): Unit = {
+    nRecorded = 0
+    last = -1
+    if (values.length != _capacity * nVars) values = new Array[Int](_capacity * nVars)
+    if (spillFile != null) spillTo(spillFile)
+  }
+
+  /** Records the values of the decision variables, which must all be bound */
+  def record(): Unit = {
+    last = if (last + 1 == _capacity) 0 else last + 1
+    val offset = last * nVars
+    var i = 0
+    while (i < nVars) {
+      val x = vars(i)
+      assert(x.isBound, "a decision variable is not bound in a solution")
+      values(offset + i) = x.min
+      i += 1
+    }
+    nRecorded += 1
+    if (spill != null) {
+      i = 0
+      while (i < nVars) {
+        spill.writeInt(values(offset + i))
+        i += 1
+      }
+      nSpilled += 1
+    }
+  }
+
+  /**
+   * The array in which the solutions are kept in memory, the values of the solution of age k
+   * are in the nVariables entries from offset(k), in the order of the columns.
+   * The array is overwritten by the next solutions.
+   */
+  def buffer: Array[Int] = values
+
+  /** The offset in buffer of the solution of age k, 0 being the last solution */
+  def offset(age: Int): Int = {
+    if (age < 0 || age >= size) throw new IndexOutOfBoundsException(s"no solution of age $age in memory")
+    val row = last - age
+    (if (row < 0) row + _capacity else row) * nVars
+  }
+
+  /** The value of x in the last solution */
+  def value(x: CPIntVar): Int = value(0, x)
+
+  /** The value of x in the solution of age k, 0 being the last solution */
+  def value(age: Int, x: CPIntVar): Int = values(offset(age) + index(x))
+
+  /** Copies the solution of age k, 0 being the last solution */
+  def solution(age: Int): CPSol = {
+    val offset = this.offset(age)
+    new CPSol(solutionIndex, java.util.Arrays.copyOfRange(values, offset, offset + nVars))
+  }
+
+  /**
+   * Appends the next solutions to the file (which is emptied), instead of keeping only
+   * the last ones in memory. The iterator then reads the file.
+   */
+  def spillTo(file: File): Unit = {
+    closeSpill()
+    spillFile = file
+    spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))
+    nSpilled = 0
+  }
+
+  /** Stops appending the solutions to the spill file, which is closed */
+  def closeSpill(): Unit = {
+    if (spill != null) spill.close()
+    spill = null
+    spillFile = null
+    nSpilled = 0
+  }
+
+  /**
+   * Iterates on the solutions from the oldest one: the solutions of the spill file if any,
+   * or the solutions kept in memory. The values of each solution are in the order of the columns,
+   * the same array is returned for all the solutions and is overwritten by the next call to next.
+   */
+  def iterator: Iterator[Array[Int]] = {
+    if (spill != null) spilledIterator
+    else memoryIterator
+  }
+
+  private def memoryIterator: Iterator[Array[Int]] = new Iterator[Array[Int]] {
+    private[this] val solution = new Array[Int](nVars)
+    private[this] var age = SolutionStore.this.size - 1
+
+    override def hasNext: Boolean = age >= 0
+
+    override def next(): Array[Int] = {
+      if (age < 0) throw new NoSuchElementException()
+      System.arraycopy(values, offset(age), solution, 0, nVars)
+      age -= 1
+      solution
+    }
+  }
+
+  private def spilledIterator: Iterator[Array[Int]] = new Iterator[Array[Int]] {
+    spill.flush()
+    private[this] val n = nSpilled
+    private[this] val in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile), 1 << 16))
+    private[this] val solution = new Array[Int](nVars)
+    private[this] var nRead = 0L
+
+    override def hasNext: Boolean = {
+      val has = nRead < n
+      if (!has) in.close()
+      has
+    }
+
+    override def next(): Array[Int] = {
+      if (nRead >= n) throw new NoSuchElementException()
+      var i = 0
+      while (i < nVars) {
+        solution(i) = in.readInt()
+        i += 1
+      }
+      nRead += 1
+      solution
+    }
+  }
+}
@@ -1,3 +1,9 @@
 package oscar.cp.core.delta
 
-abstract class Delta { def update(): Unit }
\ No newline at end of file
+abstract class Delta {
+
+  def update(): Unit
+
+  // True if the snapshot is in the changed snapshots of its constraint
+  private[core] var inChangedSnapshots: Boolean = false
+}
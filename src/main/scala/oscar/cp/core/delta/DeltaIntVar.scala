@@ -30,6 +30,7 @@ abstract class DeltaIntVar extends Delta {
   def changed: Boolean
   def size: Int
   def values: Iterator[Int]
+  // Copies the removed values in the buffer (of at least size entries) without allocation, returns their number
   def fillArray(values: Array[Int]): Int
   def minChanged: Boolean
   def maxChanged: Boolean
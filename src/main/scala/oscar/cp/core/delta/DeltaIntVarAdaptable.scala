@@ -20,14 +20,14 @@ import oscar.cp.core.variables.CPIntVar
 
 
 /**
+ * Snapshot of the domain of x.
+ * The snapshot is its own trail entry: the saved states are pushed on an internal stack of
+ * (min, max, size) triples such that no object is allocated when the snapshot is trailed.
+ *
  * @author Pierre Schaus pschaus@gmail.com
  * @author Renaud Hartert ren.hartert@gmail.com
  */
-class DeltaIntVarAdaptableTrailEntry(delta: DeltaIntVarAdaptable, min: Int, max: Int, size: Int) extends TrailEntry {
-  final override def restore(): Unit = delta.restore(min, max, size)
-}
-
-final class DeltaIntVarAdaptable(x: CPIntVar, final override val id: Int) extends DeltaIntVar {
+final class DeltaIntVarAdaptable(x: CPIntVar, final override val id: Int) extends DeltaIntVar with TrailEntry {
 
   private[this] val store = x.store
   private[this] var _oldMin: Int = x.min
@@ -36,6 +36,8 @@ final class DeltaIntVarAdaptable(x: CPIntVar, final override val id: Int) extend
 
   // Used to trail changes in the delta
   private[this] var lastMagic: Long = -1L
+  private[this] var savedStates: Array[Int] = new Array[Int](12)
+  private[this] var nSaved: Int = 0
   
   @inline final override def oldMin: Int = _oldMin
   @inline final override def oldMax: Int = _oldMax
@@ -52,14 +54,21 @@ final class DeltaIntVarAdaptable(x: CPIntVar, final override val id: Int) extend
     val contextMagic = store.magic
     if (lastMagic != contextMagic) {
       lastMagic = contextMagic
-      store.trail(new DeltaIntVarAdaptableTrailEntry(this, _oldMin, _oldMax, _oldSize))
+      if (nSaved == savedStates.length) savedStates = java.util.Arrays.copyOf(savedStates, nSaved * 2)
+      savedStates(nSaved) = _oldMin
+      savedStates(nSaved + 1) = _oldMax
+      savedStates(nSaved + 2) = _oldSize
+      nSaved += 3
+      store.trail(this)
     }
   }
 
-  @inline final def restore(oldMin: Int, oldMax: Int, oldSize: Int): Unit = {
-    _oldMin = oldMin
-    _oldMax = oldMax
-    _oldSize = oldSize
+  // Restores the last saved state, the entries being restored in the reverse order of trail
+  final override def restore(): Unit = {
+    nSaved -= 3
+    _oldMin = savedStates(nSaved)
+    _oldMax = savedStates(nSaved + 1)
+    _oldSize = savedStates(nSaved + 2)
   }
   
   final override def update(): Unit = {
@@ -69,6 +78,4 @@ final class DeltaIntVarAdaptable(x: CPIntVar, final override val id: Int) extend
     _oldMax = x.max
     _oldSize = xs
   }
-
-
 }
\ No newline at end of file
@@ -72,18 +72,14 @@ class AdaptableIntDomain(override val context: ReversibleContext, val minValue:
         if (maxValue == value) dom.updateMax(value - 1)
         else {
           // Dynamically change the representation of the domain
-          // - Use a bit vector for a small and dense domain (not yet available)
+          // - Use a bit set for a small and dense domain
           // - Otherwise, use a sparse set
-          //if (maxValue - minValue >= 32) {
-            val sparse = new SparseSetDomain(domain.context, minValue, maxValue)
-            domain.value = sparse
-            sparse.removeValue(value)
-            
-          /*} else {
-            val sparse = new SingleBitVectorDomain(domain.node, minValue, maxValue)
-            domain.value = sparse
-            sparse.removeValue(value)
-          }*/
+          val sparse = {
+            if (maxValue - minValue < BitSetDomain.MaxRange) new BitSetDomain(domain.context, minValue, maxValue)
+            else new SparseSetDomain(domain.context, minValue, maxValue)
+          }
+          domain.value = sparse
+          sparse.removeValue(value)
         }
       }
     }
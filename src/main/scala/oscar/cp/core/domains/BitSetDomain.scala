@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.core.domains
+
+import oscar.algo.Inconsistency
+import oscar.algo.reversible.{ReversibleContext, TrailEntry}
+
+import scala.util.Random
+
+final class BitSetDomainTrailEntry(domain: BitSetDomain, logSize: Int, minId: Int, maxId: Int, size: Int) extends TrailEntry {
+  @inline final override def restore(): Unit = domain.restore(logSize, minId, maxId, size)
+}
+
+/**
+ *  A sparse integer domain represented by a bit set of several words, value v
+ *  being represented by the bit v - minValue.
+ *
+ *  Removing a value clears its bit in constant time, nextValue and prevValue scan
+ *  the words from the value and the size is maintained with the popcount of the
+ *  removed bits. A word is saved in an internal log the first time it changes in
+ *  a state of the context, and a single trail entry is pushed per state.
+ *  The removed values are also recorded in the order of their removal, as in a
+ *  sparse set, so that delta returns the values removed since a given size.
+ *
+ *  This representation is meant for dense ranges of at most a few thousand values.
+ */
+class BitSetDomain(override val context: ReversibleContext, val minValue: Int, val maxValue: Int) extends IntDomain {
+
+  private[this] val nValues = maxValue - minValue + 1
+
+  require(nValues > 0, "the domain cannot be empty")
+
+  private[this] val nWords = (nValues + 63) >>> 6
+
+  // Domain representation
+  private[this] val words = BitSetDomain.fullWords(nValues)
+  private[this] var minId = 0
+  private[this] var maxId = nValues - 1
+  private[this] var _size = nValues
+
+  // Ids of the removed values in the order of their removal, the first nValues - size ones are valid
+  private[this] val removedIds = new Array[Int](nValues)
+
+  // Saved words, with the magic of the state in which each word has been saved
+  private[this] val wordMagics = Array.fill(nWords)(-1L)
+  private[this] var logIds = new Array[Int](nWords)
+  private[this] var logWords = new Array[Long](nWords)
+  private[this] var logSize = 0
+  private[this] var lastMagic = -1L
+
+  // Used to restrict the domain to sorted values
+  private[this] var sortedMask: Array[Long] = null
+
+  @inline private def trail(): Unit = {
+    val contextMagic = context.magic
+    if (lastMagic != contextMagic) {
+      lastMagic = contextMagic
+      context.trail(new BitSetDomainTrailEntry(this, logSize, minId, maxId, _size))
+    }
+  }
+
+  // Saves the word before its first change in the current state, trail must be called before
+  @inline private def saveWord(w: Int): Unit = {
+    if (wordMagics(w) != lastMagic) {
+      wordMagics(w) = lastMagic
+      if (logSize == logIds.length) {
+        logIds = java.util.Arrays.copyOf(logIds, logSize * 2)
+        logWords = java.util.Arrays.copyOf(logWords, logSize * 2)
+      }
+      logIds(logSize) = w
+      logWords(logSize) = words(w)
+      logSize += 1
+    }
+  }
+
+  final def restore(oldLogSize: Int, oldMinId: Int, oldMaxId: Int, oldSize: Int): Unit = {
+    while (logSize > oldLogSize) {
+      logSize -= 1
+      val w = logIds(logSize)
+      words(w) = logWords(logSize)
+      wordMagics(w) = -1L
+    }
+    minId = oldMinId
+    maxId = oldMaxId
+    _size = oldSize
+  }
+
+  @inline override final def size: Int = _size
+
+  @inline override final def isEmpty: Boolean = _size == 0
+
+  @inline override final def isBound: Boolean = _size == 1
+
+  override final def min: Int = {
+    if (_size == 0) throw new NoSuchElementException("empty")
+    else minValue + minId
+  }
+
+  override final def max: Int = {
+    if (_size == 0) throw new NoSuchElementException("empty")
+    else minValue + maxId
+  }
+
+  @inline override final def hasValue(value: Int): Boolean = {
+    if (value < minValue || value > maxValue) false
+    else {
+      val id = value - minValue
+      (words(id >>> 6) & (1L << id)) != 0
+    }
+  }
+
+  override final def randomValue(rand: Random): Int = {
+    var r = rand.nextInt(_size)
+    var w = minId >>> 6
+    var count = java.lang.Long.bitCount(words(w))
+    while (r >= count) {
+      r -= count
+      w += 1
+      count = java.lang.Long.bitCount(words(w))
+    }
+    // Clears the r lowest bits of the word
+    var word = words(w)
+    while (r > 0) {
+      word &= word - 1
+      r -= 1
+    }
+    minValue + (w << 6) + java.lang.Long.numberOfTrailingZeros(word)
+  }
+
+  // Smallest id >= id in the domain, there must be one
+  @inline private def nextId(id: Int): Int = {
+    var w = id >>> 6
+    var word = words(w) & (-1L << id)
+    while (word == 0) {
+      w += 1
+      word = words(w)
+    }
+    (w << 6) + java.lang.Long.numberOfTrailingZeros(word)
+  }
+
+  // Largest id <= id in the domain, there must be one
+  @inline private def prevId(id: Int): Int = {
+    var w = id >>> 6
+    var word = words(w) & (-1L >>> (63 - (id & 63)))
+    while (word == 0) {
+      w -= 1
+      word = words(w)
+    }
+    (w << 6) + 63 - java.lang.Long.numberOfLeadingZeros(word)
+  }
+
+  // Records the ids of the bits of cleared, taken from word w, from position pos of the removed ids
+  @inline private def logRemoved(w: Int, cleared: Long, pos: Int): Unit = {
+    var bits = cleared
+    var p = pos
+    while (bits != 0) {
+      removedIds(p) = (w << 6) + java.lang.Long.numberOfTrailingZeros(bits)
+      bits &= bits - 1
+      p += 1
+    }
+  }
+
+  // Clears the bits from id1 to id2 and returns the number of removed values
+  @inline private def clearIds(id1: Int, id2: Int): Int = {
+    val w1 = id1 >>> 6
+    val w2 = id2 >>> 6
+    var removed = 0
+    var w = w1
+    while (w <= w2) {
+      var mask = -1L
+      if (w == w1) mask &= -1L << id1
+      if (w == w2) mask &= -1L >>> (63 - (id2 & 63))
+      val word = words(w)
+      val cleared = word & mask
+      if (cleared != 0) {
+        saveWord(w)
+        words(w) = word & ~mask
+        logRemoved(w, cleared, nValues - _size + removed)
+        removed += java.lang.Long.bitCount(cleared)
+      }
+      w += 1
+    }
+    removed
+  }
+
+  // Empties the domain before a failure
+  @inline private def clear(): Unit = {
+    trail()
+    if (_size > 0) _size -= clearIds(minId, maxId)
+  }
+
+  override final def removeValue(value: Int): Unit = {
+    if (hasValue(value)) {
+      trail()
+      val id = value - minValue
+      val w = id >>> 6
+      saveWord(w)
+      words(w) &= ~(1L << id)
+      removedIds(nValues - _size) = id
+      _size -= 1
+      if (_size == 0) throw Inconsistency
+      if (id == minId) minId = nextId(id)
+      else if (id == maxId) maxId = prevId(id)
+    }
+  }
+
+  override final def assign(value: Int): Unit = {
+    if (!hasValue(value)) {
+      clear()
+      throw Inconsistency
+    } else if (_size > 1) {
+      trail()
+      val id = value - minValue
+      if (id > minId) _size -= clearIds(minId, id - 1)
+      if (id < maxId) _size -= clearIds(id + 1, maxId)
+      minId = id
+      maxId = id
+    }
+  }
+
+  override final def updateMin(value: Int): Unit = {
+    if (_size == 0) sys.error("empty domain")
+    val id = value - minValue
+    if (id <= minId) {}
+    else if (id > maxId) {
+      clear()
+      throw Inconsistency
+    } else {
+      trail()
+      _size -= clearIds(minId, id - 1)
+      minId = nextId(id)
+    }
+  }
+
+  override final def updateMax(value: Int): Unit = {
+    if (_size == 0) sys.error("empty domain")
+    val id = value - minValue
+    if (id >= maxId) {}
+    else if (id < minId) {
+      clear()
+      throw Inconsistency
+    } else {
+      trail()
+      _size -= clearIds(id + 1, maxId)
+      maxId = prevId(id)
+    }
+  }
+
+  /** Removes the values with a single trail entry, the bounds being updated once */
+  override final def removeValues(values: Array[Int], n: Int): Unit = {
+    var removed = 0
+    var i = 0
+    while (i < n) {
+      val value = values(i)
+      if (hasValue(value)) {
+        trail()
+        val id = value - minValue
+        val w = id >>> 6
+        saveWord(w)
+        words(w) &= ~(1L << id)
+        removedIds(nValues - _size + removed) = id
+        removed += 1
+      }
+      i += 1
+    }
+    if (removed > 0) {
+      _size -= removed
+      if (_size == 0) throw Inconsistency
+      minId = nextId(minId)
+      maxId = prevId(maxId)
+    }
+  }
+
+  override final def restrictToSorted(values: Array[Int], n: Int): Unit = {
+    if (sortedMask == null) sortedMask = new Array[Long](nWords)
+    else java.util.Arrays.fill(sortedMask, 0L)
+    var i = 0
+    while (i < n) {
+      val value = values(i)
+      if (value >= minValue && value <= maxValue) {
+        val id = value - minValue
+        sortedMask(id >>> 6) |= 1L << id
+      }
+      i += 1
+    }
+    intersect(sortedMask)
+  }
+
+  /**
+   * Removes the values whose bit is not set in mask, bit i of mask standing for the value minValue + i
+   * @param mask : bit set of at least (maxValue - minValue + 64) / 64 words
+   */
+  final def intersect(mask: Array[Long]): Unit = {
+    if (_size > 0) {
+      val w1 = minId >>> 6
+      val w2 = maxId >>> 6
+      var removed = 0
+      var w = w1
+      while (w <= w2) {
+        val word = words(w)
+        val cleared = word & ~mask(w)
+        if (cleared != 0) {
+          if (removed == 0) trail()
+          saveWord(w)
+          words(w) = word & mask(w)
+          logRemoved(w, cleared, nValues - _size + removed)
+          removed += java.lang.Long.bitCount(cleared)
+        }
+        w += 1
+      }
+      if (removed > 0) {
+        _size -= removed
+        if (_size == 0) throw Inconsistency
+        minId = nextId(minId)
+        maxId = prevId(maxId)
+      }
+    }
+  }
+
+  /**
+   * @return smallest value in the domain >= value, value-1 is returned if no such value
+   */
+  override final def nextValue(value: Int): Int = {
+    if (_size == 0) sys.error("empty domain")
+    else if (value <= minValue + minId) minValue + minId
+    else if (value > minValue + maxId) value - 1
+    else minValue + nextId(value - minValue)
+  }
+
+  /**
+   * @return largest value in the domain <= value, value+1 is returned if no such value
+   */
+  override final def prevValue(value: Int): Int = {
+    if (_size == 0) sys.error("empty domain")
+    else if (value >= minValue + maxId) minValue + maxId
+    else if (value < minValue + minId) value + 1
+    else minValue + prevId(value - minValue)
+  }
+
+  override def iterator: Iterator[Int] = {
+    if (_size == 0) Iterator.empty
+    else new Iterator[Int] {
+      private[this] var id = minId
+      private[this] val max = maxId
+      override def next(): Int = {
+        val value = minValue + id
+        id = if (id < max) nextId(id + 1) else id + 1
+        value
+      }
+      override def hasNext: Boolean = id <= max
+    }
+  }
+
+  override def delta(oldMin: Int, oldMax: Int, oldSize: Int): Iterator[Int] = {
+    (oldMin until minValue).iterator ++ delta(oldSize) ++ (maxValue + 1 to oldMax).iterator
+  }
+
+  // Values removed since the domain had oldSize values, the last ones of the removed ids
+  private def delta(oldSize: Int): Iterator[Int] = {
+    val first = math.max(0, nValues - oldSize)
+    val last = nValues - _size
+    (first until last).iterator.map(i => minValue + removedIds(i))
+  }
+
+  override def toString: String = {
+    if (isEmpty) "phi"
+    else "{" + this.mkString(", ") + "}"
+  }
+}
+
+object BitSetDomain {
+
+  /** Maximal number of values of the dense ranges represented with a bit set */
+  final val MaxRange = 4096
+
+  /** Returns the words of a bit set containing the ids from 0 to nValues - 1 */
+  def fullWords(nValues: Int): Array[Long] = {
+    val nWords = (nValues + 63) >>> 6
+    val words = Array.fill(nWords)(-1L)
+    val rest = nValues & 63
+    if (rest != 0) words(nWords - 1) = -1L >>> (64 - rest)
+    words
+  }
+}
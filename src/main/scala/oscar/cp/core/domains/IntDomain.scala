@@ -17,4 +17,28 @@ package oscar.cp.core.domains
 
 abstract class IntDomain extends IntervalDomain {
   def removeValue(value: Int): Unit
+
+  /** Removes the nValues first values of the array, the values that are not in the domain are ignored */
+  def removeValues(values: Array[Int], nValues: Int): Unit = {
+    var i = 0
+    while (i < nValues) {
+      removeValue(values(i))
+      i += 1
+    }
+  }
+
+  /** Removes the values that are not among the nValues first values of the array, sorted in increasing order */
+  def restrictToSorted(values: Array[Int], nValues: Int): Unit = {
+    val removed = new Array[Int](size)
+    var nRemoved = 0
+    val it = iterator
+    while (it.hasNext) {
+      val value = it.next()
+      if (java.util.Arrays.binarySearch(values, 0, nValues, value) < 0) {
+        removed(nRemoved) = value
+        nRemoved += 1
+      }
+    }
+    removeValues(removed, nRemoved)
+  }
 }
\ No newline at end of file
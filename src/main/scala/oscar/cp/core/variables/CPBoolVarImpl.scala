@@ -10,6 +10,8 @@ import oscar.cp.core.Constraint
 import oscar.cp.core.watcher.WatcherListL2
 import oscar.cp.core.watcher.WatcherListL1
 import oscar.cp.core.watcher.Watcher
+import oscar.cp.core.watcher.WatcherL2Delta
+import oscar.cp.core.watcher.WatcherL2DeltaGarded
 import oscar.cp.core.delta.DeltaIntVar
 
 import scala.collection.mutable
@@ -233,16 +235,16 @@ class CPBoolVarImpl private(final override val store: CPStore, initDomain: Int,
   }
   
   final override def callPropagateOnChangesWithDelta(c: Constraint): DeltaIntVar = {
-    val snap = delta(c)
+    val snap = lazyDelta(c)
     degree.incr()
-    onBindL2.register(c)
+    onBindL2.register(new WatcherL2Delta(c, snap))
     snap
   }
   
   final override def callPropagateOnChangesWithDelta(c: Constraint, cond: => Boolean): DeltaIntVar = {
-    val snap = delta(c)
+    val snap = lazyDelta(c)
     degree.incr()
-    onBindL2.register(c, cond)
+    onBindL2.register(new WatcherL2DeltaGarded(c, snap, cond))
     snap
   }
   
@@ -21,8 +21,6 @@ import oscar.cp.core.watcher._
 import oscar.cp.core._
 import oscar.cp.core.delta._
 
-import scala.collection.mutable
-
 class CPInsertSeqVar(
                       override val store: CPStore,
                       size: Int,
@@ -44,24 +42,56 @@ class CPInsertSeqVar(
   private val insertions: Array[ReversibleSparseSet] = Array.fill(size)(new ReversibleSparseSet(store, -1, size-1))
   for(i <- insertions.indices) insertions(i).removeValue(i)
 
-  val onDomainL2 = new WatcherListL2(store)
+  //Number of current insertions of each element, i.e. of the members of the sequence (or -1) in its insertions.
+  //Initially, -1 is the only member.
+  private val nCurrentInsertions: Array[ReversibleInt] = Array.fill(size)(new ReversibleInt(store, 1))
 
-  //Cache for current insertions:
-  private val insertionsUpToDate: Array[Boolean] = Array.fill(insertions.length)(false)
-  private val currentInsertions: Array[mutable.Set[Int]] = Array.tabulate(insertions.length)(i => mutable.Set(insertions(i).toSeq: _*))
+  val onDomainL2 = new WatcherListL2(store)
 
-  private def markInsertionsOutOfDate(): Unit = insertionsUpToDate.indices.foreach(insertionsUpToDate(_) = false)
+  //Fine grained events:
+  val onInsertL2 = new WatcherListL2(store)
+  val onExcludeL2 = new WatcherListL2(store)
+  private val onInsertL1 = new ReversibleArrayStack[Constraint](store, 4)
+  private val onExcludeL1 = new ReversibleArrayStack[Constraint](store, 4)
 
+  //Counts the new member p in the current insertions of the elements that can be inserted after it
   private def addNewCurrentInsertionsFor(p: Int): Unit = {
-    for(e <- allPossibleOrRequired) if(insertions(e).hasValue(p)) currentInsertions(e) += p
+    var e = 0
+    while (e < size) {
+      if (insertions(e).hasValue(p) && isPossibleOrRequired(e)) nCurrentInsertions(e).incr()
+      e += 1
+    }
+  }
+
+  private def notifyInserted(elem: Int): Unit = {
+    onInsertL2.enqueue()
+    var i = onInsertL1.size
+    while (i > 0) {
+      i -= 1
+      val c = onInsertL1(i)
+      if (c.isActive) store.enqueueL1(c, c.priorityRequireL1, c.valInserted(this, elem))
+    }
   }
 
-  store.onPop(markInsertionsOutOfDate())
+  private def notifyExcluded(elem: Int): Unit = {
+    onExcludeL2.enqueue()
+    var i = onExcludeL1.size
+    while (i > 0) {
+      i -= 1
+      val c = onExcludeL1(i)
+      if (c.isActive) store.enqueueL1(c, c.priorityExcludeL1, c.valExcluded(this, elem))
+    }
+  }
 
   def isBound: Boolean = allPossibleOrRequired.isEmpty && currentLength.value == setDomain.requiredSize
 
   def inDomain(elem: Int): Boolean = elem >= 0 && elem < size
 
+  /**
+    * @return the number of elements in the domain (member, possible or excluded)
+    */
+  def domainSize: Int = size
+
   def cardinality: CPIntVar = setDomain.card
 
 
@@ -77,6 +107,24 @@ class CPInsertSeqVar(
 
   def possibleSize: Int = setDomain.possibleSize
 
+  /**
+    * Copies in buffer the elements that can eventually be member of the sequence, without allocation.
+    * @param buffer : array of at least domainSize entries
+    * @return the number of elements copied in buffer
+    */
+  def fillPossibleOrRequired(buffer: Array[Int]): Int = {
+    var n = 0
+    var elem = 0
+    while (elem < size) {
+      if (isPossibleOrRequired(elem)) {
+        buffer(n) = elem
+        n += 1
+      }
+      elem += 1
+    }
+    n
+  }
+
   def isRequiredNotMember(elem: Int): Boolean = setDomain.isRequired(elem) && !isMember(elem)
 
   def isRequired(elem: Int): Boolean = setDomain.isRequired(elem)
@@ -102,11 +150,17 @@ class CPInsertSeqVar(
     if (isRequiredNotMember(elem) || isMember(elem)) throw Inconsistency
     setDomain.excludes(elem)
     clearInsertionsFor(elem)
+    notifyExcluded(elem)
     removeInsertionsAfter(elem)
   }
 
   def excludeAllPossibles(): Unit = {
     if (allRequiredNotMember.nonEmpty) throw Inconsistency //Cannot bind variable if required elems remaining
+    var elem = 0
+    while (elem < size) {
+      if (isPossibleOrRequired(elem)) notifyExcluded(elem) //The events are processed after the exclusion
+      elem += 1
+    }
     setDomain.excludesAll()
   }
 
@@ -199,6 +253,7 @@ class CPInsertSeqVar(
     currentLength.incr()
     clearInsertionsFor(elem)
     addNewCurrentInsertionsFor(elem)
+    notifyInserted(elem)
   }
 
   /**
@@ -232,10 +287,11 @@ class CPInsertSeqVar(
 
         currentLength.incr()
         clearInsertionsFor(elem)
+        addNewCurrentInsertionsFor(elem)
+        notifyInserted(elem)
       }
       currPred = elem
     }
-    markInsertionsOutOfDate()
   }
 
   /**
@@ -291,31 +347,61 @@ class CPInsertSeqVar(
    */
   def nPossibleInsertionsFor(elem: Int): Int = insertions(elem).size
 
-  private def resetCurrentInsertions(elem: Int): Unit = {
-    currentInsertions(elem).clear()
-    if(allPossibleInsertionsFor(elem).size <= length){
-      currentInsertions(elem) ++= allPossibleInsertionsFor(elem).filter(isMember)
+  /**
+    * Copies in buffer the elements after which the element can currently be inserted in the sequence
+    * (-1 standing for the beginning of the sequence), without allocation.
+    * @param buffer : array of at least domainSize + 1 entries
+    * @return the number of elements copied in buffer
+    */
+  def fillCurrentInsertions(elem: Int, buffer: Array[Int]): Int = {
+    if (!isPossibleOrRequired(elem)) return 0
+    val elemInsertions = insertions(elem)
+    var n = 0
+    if (elemInsertions.size <= length) {
+      //Filtering the insertions that are members:
+      val nInsertions = elemInsertions.fillArray(buffer)
+      var i = 0
+      while (i < nInsertions) {
+        val pred = buffer(i)
+        if (isMember(pred)) {
+          buffer(n) = pred
+          n += 1
+        }
+        i += 1
+      }
     } else {
-      if(isInsertableAfter(elem, -1)) currentInsertions(elem) += -1
-      currentInsertions(elem) ++= allMembersIterator.filter(isInsertableAfter(elem, _))
+      //Filtering the members that are insertions:
+      if (elemInsertions.hasValue(-1)) {
+        buffer(n) = -1
+        n += 1
+      }
+      var pred = successor(nullElem).value
+      while (pred != nullElem) {
+        if (elemInsertions.hasValue(pred)) {
+          buffer(n) = pred
+          n += 1
+        }
+        pred = successor(pred).value
+      }
     }
-    insertionsUpToDate(elem) = true
+    n
   }
 
   /**
     * @return all the elements after which the element can be inserted in the sequence
     */
   def allCurrentInsertionsFor(elem: Int): Iterable[Int] = {
-    if(!insertionsUpToDate(elem)) resetCurrentInsertions(elem)
-    currentInsertions(elem)
+    val buffer = new Array[Int](size + 1)
+    val n = fillCurrentInsertions(elem, buffer)
+    buffer.take(n)
   }
 
   /**
     * @return the number of elements after which the element can be inserted in the sequence
     */
   def nCurrentInsertionsFor(elem: Int): Int = {
-    if(!insertionsUpToDate(elem)) resetCurrentInsertions(elem)
-    currentInsertions(elem).size
+    if (!isPossibleOrRequired(elem)) 0
+    else nCurrentInsertions(elem).value
   }
 
   /**
@@ -338,17 +424,22 @@ class CPInsertSeqVar(
   def removeInsertion(elem: Int, pred: Int): Unit = {
     if(insertions(elem).hasValue(pred)){
       insertions(elem).removeValue(pred)
-      currentInsertions(elem) -= pred
+      if(isMember(pred)) nCurrentInsertions(elem).decr()
       if(insertions(elem).isEmpty || nCurrentInsertionsFor(elem) == 0) excludes(elem)
     }
   }
 
   def removeInsertionsAfter(pred: Int): Unit = {
-    for(elem <- allPossibleOrRequired) removeInsertion(elem, pred)
+    var elem = 0
+    while (elem < size) {
+      if (isPossibleOrRequired(elem)) removeInsertion(elem, pred)
+      elem += 1
+    }
   }
 
   def clearInsertionsFor(elem: Int): Unit = {
     insertions(elem).makeEmpty()
+    nCurrentInsertions(elem).setValue(0)
   }
 
 
@@ -359,6 +450,30 @@ class CPInsertSeqVar(
     setDomain.callPropagateWhenDomainChanges(c)
   }
 
+  /**
+    * Level 2 registration: ask that the propagate() method of the constraint c is called whenever an element
+    * is inserted in the sequence
+    */
+  def callPropagateWhenInserted(c: Constraint): Unit = onInsertL2.register(c)
+
+  /**
+    * Level 2 registration: ask that the propagate() method of the constraint c is called whenever an element
+    * is excluded from the sequence
+    */
+  def callPropagateWhenExcluded(c: Constraint): Unit = onExcludeL2.register(c)
+
+  /**
+    * Level 1 registration: ask that the valInserted(CPSeqVar, Int) method of the constraint c is called
+    * with each element inserted in the sequence
+    */
+  def callValInsertedWhenInserted(c: Constraint): Unit = onInsertL1.push(c)
+
+  /**
+    * Level 1 registration: ask that the valExcluded(CPSeqVar, Int) method of the constraint c is called
+    * with each element excluded from the sequence
+    */
+  def callValExcludedWhenExcluded(c: Constraint): Unit = onExcludeL1.push(c)
+
   def callPropagateOnChangesWithDelta(c: Constraint): DeltaSeqVar = {
     val snap = delta(c)
     onDomainL2.register(c)
@@ -18,6 +18,7 @@ package oscar.cp.core.variables
 import java.util.ConcurrentModificationException
 
 import oscar.algo.Inconsistency
+import oscar.algo.reversible.BitSetOp
 import oscar.algo.vars.IntVarLike
 import oscar.cp.constraints.InSet
 import oscar.cp.constraints.InSetReif
@@ -396,6 +397,12 @@ abstract class CPIntVar extends CPVar with IntVarLike {
    */
   def removeValue(value: Int): Unit
   
+  /**
+   * Removes the nValues first values of the array from the domain, the values that are not
+   * in the domain being ignored. Implementations may trail the domain and notify the
+   * registered constraints once for all the removed values.
+   * @throws Inconsistency if all the values of the domain are removed
+   */
   def removeValues(values: Array[Int], nValues: Int): Unit = {
     var i = nValues
     while (i > 0) {
@@ -405,12 +412,57 @@ abstract class CPIntVar extends CPVar with IntVarLike {
   }
   
   final def removeValues(values: Array[Int]): Unit = removeValues(values, values.length)
+
+  /**
+   * Restricts the domain to its values contained in the nValues first values of the array.
+   * Contrary to restrict, the values do not have to be in the domain but must be sorted in
+   * strictly increasing order.
+   * @throws Inconsistency if no value of the domain is in the array
+   */
+  def restrictToSorted(values: Array[Int], nValues: Int): Unit = {
+    val domain = new Array[Int](nValues min size)
+    var newSize = 0
+    var i = 0
+    while (i < nValues) {
+      val value = values(i)
+      if (hasValue(value)) {
+        domain(newSize) = value
+        newSize += 1
+      }
+      i += 1
+    }
+    if (newSize == 0) throw Inconsistency
+    else if (newSize < size) restrict(domain, newSize)
+  }
   
   /** 
    *  Restrict the domain to be equal to the `newSize` first values contained in `newDomain`.
    *  Observe that the restricted new domain must be a subset of the actual domain of the variable.
    */
   def restrict(newDomain: Array[Int], newSize: Int): Unit
+
+  /**
+   * Removes from the domain the values v such that the bit v - base of bitSet is not set,
+   * the values outside the bit set being removed. This is the set-style filtering of the
+   * constraints whose supports are stored as bit sets (table, element, ...).
+   * @throws Inconsistency if no value of the domain is in the bit set
+   */
+  def intersect(bitSet: Array[Long], base: Int): Unit = {
+    val domain = new Array[Int](size)
+    val domainSize = fillArray(domain)
+    var newSize = 0
+    var i = 0
+    while (i < domainSize) {
+      val value = domain(i)
+      if (BitSetOp.hasBit(bitSet, value - base)) {
+        domain(newSize) = value
+        newSize += 1
+      }
+      i += 1
+    }
+    if (newSize == 0) throw Inconsistency
+    else if (newSize < domainSize) restrict(domain, newSize)
+  }
   
   def delta(oldMin: Int, oldMax: Int, oldSize: Int): Iterator[Int]
   
@@ -422,6 +474,16 @@ abstract class CPIntVar extends CPVar with IntVarLike {
     delta
   }
 
+  /**
+   * Snapshot of the domain registered as a lazy snapshot of the constraint, see Constraint.registerLazyDelta.
+   * It must be marked with constraint.snapshotChanged at each change of the domain (see WatcherL2Delta).
+   */
+  def lazyDelta(constraint: Constraint, id: Int = 0): DeltaIntVar = {
+    val delta = new DeltaIntVarAdaptable(this, id)
+    constraint.registerLazyDelta(delta)
+    delta
+  }
+
   // ------------------------ some useful methods for java -------------------------
 
 
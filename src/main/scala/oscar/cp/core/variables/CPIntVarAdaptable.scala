@@ -20,15 +20,19 @@ import java.util.ConcurrentModificationException
 import oscar.algo.Inconsistency
 
 import scala.util.Random
+import oscar.algo.reversible.BitSetOp
 import oscar.algo.reversible.ReversibleBoolean
 import oscar.algo.reversible.ReversibleInt
 import oscar.algo.reversible.ReversiblePointer
 import oscar.algo.reversible.TrailEntry
 import oscar.cp.core.CPStore
 import oscar.cp.core.Constraint
+import oscar.cp.core.domains.BitSetDomain
 import oscar.cp.core.watcher.WatcherListL2
 import oscar.cp.core.watcher.WatcherListL1
 import oscar.cp.core.watcher.Watcher
+import oscar.cp.core.watcher.WatcherL2Delta
+import oscar.cp.core.watcher.WatcherL2DeltaGarded
 import oscar.cp.core.delta.DeltaIntVar
 
 import scala.collection.mutable
@@ -70,6 +74,9 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
   private[variables] var _min = minValue
   private[variables] var _max = maxValue
   private[variables] var _size = maxValue - minValue + 1
+  // Bit set of the sparse domain, bit i standing for the value i + offset. It is only
+  // maintained for ranges of at most BitSetDomain.MaxRange values and null otherwise.
+  private[variables] var words: Array[Long] = null
 
   // Switch to a sparse set if necessacry
   if (!origContinuous) buildSparse()
@@ -94,6 +101,15 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
 
   // Restore the domain to a sparse domain
   @inline final def restoreSparse(oldMin: Int, oldMax: Int, oldSize: Int): Unit = {
+    if (words != null) {
+      // The restored values are the ones between the current and the old size
+      var i = _size
+      while (i < oldSize) {
+        val id = values(i) - offset
+        words(id >>> 6) |= 1L << id
+        i += 1
+      }
+    }
     _min = oldMin; _max = oldMax; _size = oldSize
   }
 
@@ -230,6 +246,10 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
     }
     // Update domain
     val id = value - offset
+    if (words != null) {
+      clearWords(_min - offset, _max - offset)
+      words(id >>> 6) |= 1L << id
+    }
     val position = positions(id)
     val v = values(0)
     positions(id) = 0
@@ -277,6 +297,55 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
     offset = _min
     values = Array.tabulate(nValues)(i => i + offset)
     positions = Array.tabulate(nValues)(i => i)
+    words = if (nValues <= BitSetDomain.MaxRange) BitSetDomain.fullWords(nValues) else null
+  }
+
+  // Smallest id >= id in the sparse domain, there must be one
+  @inline private def nextId(id: Int): Int = {
+    if (words == null) {
+      var i = id
+      while (positions(i) >= _size) i += 1
+      i
+    } else {
+      var w = id >>> 6
+      var word = words(w) & (-1L << id)
+      while (word == 0) {
+        w += 1
+        word = words(w)
+      }
+      (w << 6) + java.lang.Long.numberOfTrailingZeros(word)
+    }
+  }
+
+  // Largest id <= id in the sparse domain, there must be one
+  @inline private def prevId(id: Int): Int = {
+    if (words == null) {
+      var i = id
+      while (positions(i) >= _size) i -= 1
+      i
+    } else {
+      var w = id >>> 6
+      var word = words(w) & (-1L >>> (63 - (id & 63)))
+      while (word == 0) {
+        w -= 1
+        word = words(w)
+      }
+      (w << 6) + 63 - java.lang.Long.numberOfLeadingZeros(word)
+    }
+  }
+
+  // Clears the bits from id1 to id2, words must not be null
+  @inline private def clearWords(id1: Int, id2: Int): Unit = {
+    val w1 = id1 >>> 6
+    val w2 = id2 >>> 6
+    var w = w1
+    while (w <= w2) {
+      var mask = -1L
+      if (w == w1) mask &= -1L << id1
+      if (w == w2) mask &= -1L >>> (63 - (id2 & 63))
+      words(w) &= ~mask
+      w += 1
+    }
   }
 
   @inline private def removeSparse(value: Int): Unit = {
@@ -294,6 +363,7 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
       values(pos2) = value
       positions(id1) = pos2
       positions(id2) = pos1
+      if (words != null) words(id1 >>> 6) &= ~(1L << id1)
       // Notify watchers
       if (_size == 1) {
         // Notify bind watchers
@@ -311,18 +381,14 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
         onBoundsL1.enqueueBounds()
         onBoundsL2.enqueue()
         // Update min
-        var i = _min - offset + 1
-        while (positions(i) >= _size) i += 1
-        _min = i + offset
+        _min = nextId(_min - offset + 1) + offset
       } // Max change
       else if (_max == value) {
         // Notify bound watchers
         onBoundsL1.enqueueBounds()
         onBoundsL2.enqueue()
         // Update max
-        var i = _max - offset - 1
-        while (positions(i) >= _size) i -= 1
-        _max = i + offset
+        _max = prevId(_max - offset - 1) + offset
       }
       // Notify domain watchers
       onDomainL2.enqueue()
@@ -391,9 +457,9 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
         }
         i += 1
       }
+      if (words != null) clearWords(_min - offset, valueId - 1)
       // Search new min
-      while (positions(i) >= _size) i += 1
-      _min = i + offset
+      _min = nextId(valueId) + offset
 
       // Notify bind events
       if (_size == 1) {
@@ -471,9 +537,9 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
         }
         i -= 1
       }
-      // Search new min
-      while (positions(i) >= _size) i -= 1
-      _max = i + offset
+      if (words != null) clearWords(valueId + 1, _max - offset)
+      // Search new max
+      _max = prevId(valueId) + offset
 
       // Notify bind events
 
@@ -545,16 +611,16 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
   }
 
   final override def callPropagateOnChangesWithDelta(c: Constraint): DeltaIntVar = {
-    val snap = delta(c)
+    val snap = lazyDelta(c)
     degree.incr()
-    onDomainL2.register(c)
+    onDomainL2.register(new WatcherL2Delta(c, snap))
     snap
   }
 
   final override def callPropagateOnChangesWithDelta(c: Constraint, cond: => Boolean): DeltaIntVar = {
-    val snap = delta(c)
+    val snap = lazyDelta(c)
     degree.incr()
-    onDomainL2.register(c, cond)
+    onDomainL2.register(new WatcherL2DeltaGarded(c, snap, cond))
     snap
   }
 
@@ -692,50 +758,277 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
 
     // Notify the constraints
     if (_size != oldSize) {
+      clearRemovedWords(oldSize)
+      notifyReduced(oldSize)
+    }
+  }
 
-      // Notify on change events
-      onDomainL2.enqueue()
-
-      // Notify on bind events
-      if (_size == 1) {
-        onBindL1.enqueueBind()
-        onBindL2.enqueue()
-        onBoundsL1.enqueueBounds()
-        onBoundsL2.enqueue()
-        _min = values(0)
-        _max = _min
-      } else {
-        // Notify on bound events
-        val minOffset = _min - offset
-        val maxOffset = _max - offset
-        val minChanged = positions(minOffset) >= _size
-        val maxChanged = positions(maxOffset) >= _size
-        // Update min
-        if (minChanged) {
-          var i = minOffset + 1
-          while (positions(i) >= _size) i += 1
-          _min = i + offset
+  /**
+   * Removes the nValues first values of the array from the domain, the values that are not
+   * in the domain being ignored. The domain is trailed and the constraints are notified once.
+   */
+  final override def removeValues(removedValues: Array[Int], nValues: Int): Unit = {
+    if (nValues == 1) removeValue(removedValues(0))
+    else if (nValues > 1) {
+      if (_continuous) {
+        // The domain becomes sparse if one of the values is in the domain
+        var i = 0
+        while (i < nValues && (removedValues(i) < _min || removedValues(i) > _max)) i += 1
+        if (i < nValues) {
+          buildSparse()
+          removeValuesSparse(removedValues, nValues)
         }
-        // Update max
-        if (maxChanged) {
-          var i = maxOffset - 1
-          while (positions(i) >= _size) i -= 1
-          _max = i + offset
+      }
+      else removeValuesSparse(removedValues, nValues)
+    }
+  }
+
+  @inline private def removeValuesSparse(removedValues: Array[Int], nValues: Int): Unit = {
+    val oldSize = _size
+    var i = 0
+    while (i < nValues) {
+      val value = removedValues(i)
+      if (value >= _min && value <= _max) {
+        val id = value - offset
+        if (positions(id) < _size) {
+          if (_size == 1) throw Inconsistency
+          if (_size == oldSize) trail() // trail before changes
+          removeId(id)
+          if (words != null) words(id >>> 6) &= ~(1L << id)
         }
-        if (minChanged || maxChanged) {
-          onBoundsL1.enqueueBounds()
-          onBoundsL2.enqueue()
+      }
+      i += 1
+    }
+    if (_size != oldSize) notifyReduced(oldSize)
+  }
+
+  /**
+   * Restricts the domain to its values contained in the nValues first values of the array,
+   * sorted in strictly increasing order. The domain is trailed and the constraints are notified once.
+   * A continuous domain remains continuous if the kept values are consecutive.
+   */
+  final override def restrictToSorted(sortedValues: Array[Int], nValues: Int): Unit = {
+    // Range of the values between the bounds of the domain
+    var first = 0
+    while (first < nValues && sortedValues(first) < _min) first += 1
+    var last = nValues - 1
+    while (last >= first && sortedValues(last) > _max) last -= 1
+    if (first > last) throw Inconsistency
+    else if (_continuous) {
+      val newMin = sortedValues(first)
+      val newMax = sortedValues(last)
+      if (newMax - newMin == last - first) {
+        if (newMax - newMin + 1 < _size) restrictContinuous(newMin, newMax)
+      } else {
+        buildSparse()
+        restrictSortedSparse(sortedValues, first, last)
+      }
+    }
+    else restrictSortedSparse(sortedValues, first, last)
+  }
+
+  @inline private def restrictContinuous(newMin: Int, newMax: Int): Unit = {
+    // Trail before changes
+    trail()
+    // Update the domain
+    val oldMin = _min
+    val oldMax = _max
+    _min = newMin
+    _max = newMax
+    _size = newMax - newMin + 1
+    // Notify bind watchers
+    if (_size == 1) {
+      onBindL1.enqueueBind()
+      onBindL2.enqueue()
+    }
+    // Notify bounds watchers
+    onBoundsL1.enqueueBounds()
+    onBoundsL2.enqueue()
+    // Notify remove watchers if necessary
+    if (!onDomainL1.isEmpty) {
+      var i = oldMin
+      while (i < newMin) {
+        onDomainL1.enqueueRemove(i)
+        i += 1
+      }
+      i = oldMax
+      while (i > newMax) {
+        onDomainL1.enqueueRemove(i)
+        i -= 1
+      }
+    }
+    // Notify domain watchers
+    onDomainL2.enqueue()
+  }
+
+  @inline private def restrictSortedSparse(sortedValues: Array[Int], first: Int, last: Int): Unit = {
+    val oldSize = _size
+    // Number of kept values
+    var newSize = 0
+    var i = first
+    while (i <= last) {
+      if (positions(sortedValues(i) - offset) < oldSize) newSize += 1
+      i += 1
+    }
+    if (newSize == 0) throw Inconsistency
+    else if (newSize < oldSize) {
+      trail() // trail before changes
+      // Moves the kept values at the beginning of the sparse domain
+      _size = 0
+      i = first
+      while (i <= last) {
+        val val1 = sortedValues(i)
+        val pos1 = positions(val1 - offset)
+        if (pos1 < oldSize) {
+          val val2 = values(_size)
+          val pos2 = positions(val2 - offset)
+          values(pos1) = val2
+          values(pos2) = val1
+          positions(val1 - offset) = pos2
+          positions(val2 - offset) = pos1
+          _size += 1
         }
+        i += 1
       }
+      clearRemovedWords(oldSize)
+      notifyReduced(oldSize)
+    }
+  }
 
-      // Notify on remove events
-      if (!onDomainL1.isEmpty) {
-        var i = _size
-        while (i < oldSize) {
-          val value = values(i)
-          onDomainL1.enqueueRemove(value)
-          i += 1
+  // Clears the bits of the values between the positions _size and oldSize of the sparse domain
+  @inline private def clearRemovedWords(oldSize: Int): Unit = {
+    if (words != null) {
+      var i = _size
+      while (i < oldSize) {
+        val id = values(i) - offset
+        words(id >>> 6) &= ~(1L << id)
+        i += 1
+      }
+    }
+  }
+
+  /**
+   * Removes the values v of the domain such that the bit v - base of bitSet is not set,
+   * the values outside the bit set being removed. The domain is trailed and the
+   * constraints are notified once.
+   */
+  final override def intersect(bitSet: Array[Long], base: Int): Unit = {
+    if (_continuous) {
+      val nKept = BitSetOp.countBits(bitSet, _min - base, _max - base)
+      if (nKept == 0) throw Inconsistency
+      else if (nKept < _size) {
+        buildSparse()
+        if (words != null) intersectWords(bitSet, base)
+        else intersectValues(bitSet, base)
+      }
+    }
+    else if (words != null) intersectWords(bitSet, base)
+    else intersectValues(bitSet, base)
+  }
+
+  @inline private def intersectWords(bitSet: Array[Long], base: Int): Unit = {
+    val w1 = (_min - offset) >>> 6
+    val w2 = (_max - offset) >>> 6
+    val shift = offset - base
+    // Number of removed values
+    var nRemoved = 0
+    var w = w1
+    while (w <= w2) {
+      nRemoved += java.lang.Long.bitCount(words(w) & ~BitSetOp.wordAt(bitSet, (w << 6) + shift))
+      w += 1
+    }
+    if (nRemoved == _size) throw Inconsistency
+    else if (nRemoved > 0) {
+      trail()
+      val oldSize = _size
+      w = w1
+      while (w <= w2) {
+        val word = words(w)
+        val kept = word & BitSetOp.wordAt(bitSet, (w << 6) + shift)
+        var removed = word & ~kept
+        words(w) = kept
+        while (removed != 0) {
+          val id = (w << 6) + java.lang.Long.numberOfTrailingZeros(removed)
+          removed &= removed - 1
+          removeId(id)
         }
+        w += 1
+      }
+      notifyReduced(oldSize)
+    }
+  }
+
+  @inline private def intersectValues(bitSet: Array[Long], base: Int): Unit = {
+    var nKept = 0
+    var i = _size
+    while (i > 0) {
+      i -= 1
+      if (BitSetOp.hasBit(bitSet, values(i) - base)) nKept += 1
+    }
+    if (nKept == 0) throw Inconsistency
+    else if (nKept < _size) {
+      trail()
+      val oldSize = _size
+      // The value swapped in position i has already been kept
+      i = _size
+      while (i > 0) {
+        i -= 1
+        val value = values(i)
+        if (!BitSetOp.hasBit(bitSet, value - base)) removeId(value - offset)
+      }
+      notifyReduced(oldSize)
+    }
+  }
+
+  // Swaps the value out of the sparse domain without updating the bounds nor the bit set
+  @inline private def removeId(id1: Int): Unit = {
+    _size -= 1
+    val pos1 = positions(id1)
+    val v2 = values(_size)
+    val id2 = v2 - offset
+    values(pos1) = v2
+    values(_size) = id1 + offset
+    positions(id1) = _size
+    positions(id2) = pos1
+  }
+
+  // Updates the bounds and notifies the constraints after the removal of the values
+  // between the positions _size and oldSize of the sparse domain
+  @inline private def notifyReduced(oldSize: Int): Unit = {
+    // Notify on change events
+    onDomainL2.enqueue()
+
+    // Notify on bind events
+    if (_size == 1) {
+      onBindL1.enqueueBind()
+      onBindL2.enqueue()
+      onBoundsL1.enqueueBounds()
+      onBoundsL2.enqueue()
+      _min = values(0)
+      _max = _min
+    } else {
+      // Notify on bound events
+      val minOffset = _min - offset
+      val maxOffset = _max - offset
+      val minChanged = positions(minOffset) >= _size
+      val maxChanged = positions(maxOffset) >= _size
+      // Update min
+      if (minChanged) _min = nextId(minOffset + 1) + offset
+      // Update max
+      if (maxChanged) _max = prevId(maxOffset - 1) + offset
+      if (minChanged || maxChanged) {
+        onBoundsL1.enqueueBounds()
+        onBoundsL2.enqueue()
+      }
+    }
+
+    // Notify on remove events
+    if (!onDomainL1.isEmpty) {
+      var i = _size
+      while (i < oldSize) {
+        val value = values(i)
+        onDomainL1.enqueueRemove(value)
+        i += 1
       }
     }
   }
@@ -746,22 +1039,14 @@ final class CPIntVarAdaptable( final override val store: CPStore, minValue: Int,
     if (value >= _max) value
     else if (value < _min) _min
     else if (_continuous) value + 1
-    else {
-      var i = value - offset + 1
-      while (positions(i) >= _size) i += 1
-      offset + i
-    }
+    else offset + nextId(value - offset + 1)
   }
 
   final override def valueBefore(value: Int): Int = {
     if (value <= _min) value
     else if (value > _max) _max
     else if (_continuous) value - 1
-    else {
-      var i = value - offset - 1
-      while (positions(i) >= _size) i -= 1
-      offset + i
-    }
+    else offset + prevId(value - offset - 1)
   }
 
   @inline final def delta(oldMin: Int, oldMax: Int, oldSize: Int): Iterator[Int] = {
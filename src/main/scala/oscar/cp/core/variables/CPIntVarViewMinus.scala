@@ -20,6 +20,8 @@ import scala.util.Random
 import oscar.cp.core.CPStore
 import oscar.cp.core.Constraint
 import oscar.cp.core.watcher.Watcher
+import oscar.cp.core.watcher.WatcherL2Delta
+import oscar.cp.core.watcher.WatcherL2DeltaGarded
 import oscar.cp.core.delta.DeltaIntVar
 
 /**
@@ -104,14 +106,14 @@ final class CPIntVarViewMinus(v: CPIntVar) extends CPIntVar with CPIntVarViewLin
   final override def awakeOnChanges(watcher: Watcher): Unit = v.awakeOnChanges(watcher)
 
   def callPropagateOnChangesWithDelta(c: Constraint): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2Delta(c, snap))
     snap
   }
   
   def callPropagateOnChangesWithDelta(c: Constraint, cond: => Boolean): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c, cond)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2DeltaGarded(c, snap, cond))
     snap
   }
   
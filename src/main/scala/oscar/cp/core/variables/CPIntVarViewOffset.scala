@@ -18,6 +18,8 @@ import scala.util.Random
 import oscar.cp.core.CPStore
 import oscar.cp.core.Constraint
 import oscar.cp.core.watcher.Watcher
+import oscar.cp.core.watcher.WatcherL2Delta
+import oscar.cp.core.watcher.WatcherL2DeltaGarded
 import oscar.cp.core.delta.DeltaIntVar
 
 /**
@@ -86,6 +88,28 @@ class CPIntVarViewOffset(v: CPIntVar, offset: Int) extends CPIntVar with CPIntVa
     }
     v.restrict(mapped, newSize)
   }
+
+  final override def intersect(bitSet: Array[Long], base: Int): Unit = v.intersect(bitSet, base - offset)
+
+  final override def removeValues(values: Array[Int], nValues: Int): Unit = {
+    val mapped = new Array[Int](nValues)
+    var i = nValues
+    while (i > 0) {
+      i -= 1
+      mapped(i) = values(i) - offset
+    }
+    v.removeValues(mapped, nValues)
+  }
+
+  final override def restrictToSorted(values: Array[Int], nValues: Int): Unit = {
+    val mapped = new Array[Int](nValues)
+    var i = nValues
+    while (i > 0) {
+      i -= 1
+      mapped(i) = values(i) - offset
+    }
+    v.restrictToSorted(mapped, nValues)
+  }
   
   final override def fillArray(array: Array[Int]): Int = {
     val m = v.fillArray(array)
@@ -117,14 +141,14 @@ class CPIntVarViewOffset(v: CPIntVar, offset: Int) extends CPIntVar with CPIntVa
   final override def callPropagateWhenDomainChanges(c: Constraint, cond: => Boolean): Unit = v.callPropagateWhenDomainChanges(c, cond)
 
   final override def callPropagateOnChangesWithDelta(c: Constraint): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2Delta(c, snap))
     snap
   }
   
   final override def callPropagateOnChangesWithDelta(c: Constraint, cond: => Boolean): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c, cond)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2DeltaGarded(c, snap, cond))
     snap
   }
   
@@ -22,6 +22,8 @@ import scala.util.Random
 import oscar.cp.core.Constraint
 import oscar.cp.core.CPStore
 import oscar.cp.core.watcher.Watcher
+import oscar.cp.core.watcher.WatcherL2Delta
+import oscar.cp.core.watcher.WatcherL2DeltaGarded
 import oscar.cp.core.delta.DeltaIntVar
 
 /**
@@ -122,14 +124,14 @@ final class CPIntVarViewTimes(v: CPIntVar, a: Int) extends CPIntVar with CPIntVa
   final override def callPropagateWhenDomainChanges(c: Constraint, cond: => Boolean): Unit = v.callPropagateWhenDomainChanges(c, cond)
 
   final override def callPropagateOnChangesWithDelta(c: Constraint): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2Delta(c, snap))
     snap
   }
   
   final override def callPropagateOnChangesWithDelta(c: Constraint, cond: => Boolean): DeltaIntVar = {
-    val snap = delta(c)
-    v.callPropagateWhenDomainChanges(c, cond)
+    val snap = lazyDelta(c)
+    v.awakeOnChanges(new WatcherL2DeltaGarded(c, snap, cond))
     snap
   }
   
@@ -1,6 +1,7 @@
 package oscar.cp.core.watcher
 
 import oscar.cp.core.Constraint
+import oscar.cp.core.delta.Delta
 import oscar.cp.core.variables.CPIntVar
 
 abstract class Watcher { def awake(): Unit }
@@ -15,6 +16,24 @@ final class WatcherL2(constraint: Constraint) extends Watcher {
   @inline final override def awake(): Unit = store.enqueueL2(constraint)
 }
 
+// Marks the lazy snapshot of the constraint as changed before enqueuing it
+final class WatcherL2Delta(constraint: Constraint, delta: Delta) extends Watcher {
+  private[this] val store = constraint.s
+  @inline final override def awake(): Unit = {
+    constraint.snapshotChanged(delta)
+    store.enqueueL2(constraint)
+  }
+}
+
+// The snapshot is marked even if the constraint is not enqueued
+final class WatcherL2DeltaGarded(constraint: Constraint, delta: Delta, gard: => Boolean) extends Watcher {
+  private[this] val store = constraint.s
+  @inline final override def awake(): Unit = {
+    constraint.snapshotChanged(delta)
+    if (gard) store.enqueueL2(constraint)
+  }
+}
+
 final class WatcherL1BindId(constraint: Constraint, variable: CPIntVar, id: Int) extends Watcher {
   private[this] val store = constraint.s
   final override def awake(): Unit = {
@@ -0,0 +1,45 @@
+package oscar.cp.examples
+
+import oscar.cp._
+import oscar.cp.constraints.{AtLeastNValueAC, GCCVarAC, SoftGCCAC}
+
+/**
+ * Times the matching based propagators (alldifferent AC, gcc with variable cardinalities, atLeastNValue and soft gcc)
+ * on large random instances. Each variable has the value of a hidden permutation and random other values.
+ * The search is the same for all the propagators and is stopped after a fixed number of failures,
+ * so that the times measure the propagation of the large matchings.
+ */
+object MatchingBenchmark extends App {
+
+  val n = if (args.length > 0) args(0).toInt else 300
+  val domSize = if (args.length > 1) args(1).toInt else 20
+  val nRuns = if (args.length > 2) args(2).toInt else 5
+  val failureLimit = 1000
+
+  def run(name: String, seed: Int): (Long, Int) = {
+    implicit val cp = CPSolver()
+    cp.silent = true
+    val rand = new scala.util.Random(seed)
+    val perm = rand.shuffle((0 until n).toList).toArray
+    val x = Array.tabulate(n)(i => CPIntVar((perm(i) :: List.fill(domSize - 1)(rand.nextInt(n))).toSet))
+    name match {
+      case "allDifferent" => add(allDifferent(x), Strong)
+      case "gccVar" => add(new GCCVarAC(x, 0, Array.fill(n)(CPIntVar(0 to 1))))
+      case "atLeastNValue" => add(new AtLeastNValueAC(x, CPIntVar(n - 1 to n)))
+      case "softGcc" => add(new SoftGCCAC(x, 0, Array.fill(n)(1), Array.fill(n)(1), CPIntVar(0 to 2)))
+    }
+    search(binaryFirstFail(x))
+    val stats = start(nSols = 1, failureLimit = failureLimit)
+    (stats.time, stats.nNodes)
+  }
+
+  val names = Seq("allDifferent", "gccVar", "atLeastNValue", "softGcc")
+
+  // warm up
+  names.foreach(run(_, 0))
+
+  for (name <- names) {
+    val times = Array.tabulate(nRuns)(i => run(name, i))
+    println(s"$name: nNodes ${times.map(_._2).sum}, time(ms) ${times.map(_._1).mkString(" ")}, total ${times.map(_._1).sum}")
+  }
+}
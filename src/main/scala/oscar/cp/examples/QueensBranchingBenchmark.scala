@@ -0,0 +1,37 @@
+package oscar.cp.examples
+
+import oscar.algo.search.Branching
+import oscar.cp._
+
+/**
+ * Compares the primitive decisions of binaryFirstFail with the alternatives of the same branching
+ * on the enumeration of all the solutions of the n-queens, with forward checking all different.
+ * The trees explored are the same, only the time spent in the search loop differs.
+ */
+object QueensBranchingBenchmark extends App {
+
+  val nQueens = if (args.length > 0) args(0).toInt else 12
+  val nRuns = if (args.length > 1) args(1).toInt else 5
+
+  def run(primitive: Boolean): (Long, Int) = {
+    implicit val cp = CPSolver()
+    val queens = Array.fill(nQueens)(CPIntVar(0 until nQueens))
+    add(allDifferent(queens), Weak)
+    add(allDifferent(Array.tabulate(nQueens)(i => queens(i) + i)), Weak)
+    add(allDifferent(Array.tabulate(nQueens)(i => queens(i) - i)), Weak)
+    val branching = binaryFirstFail(queens)
+    search(if (primitive) branching else Branching(branching.alternatives()))
+    val stats = start()
+    (stats.time, stats.nNodes)
+  }
+
+  // warm up
+  run(primitive = true)
+  run(primitive = false)
+
+  for (primitive <- Seq(false, true)) {
+    val times = Array.fill(nRuns)(run(primitive))
+    val name = if (primitive) "primitive decisions" else "alternatives"
+    println(s"$name: nNodes ${times(0)._2}, time(ms) ${times.map(_._1).mkString(" ")}, best ${times.map(_._1).min}")
+  }
+}
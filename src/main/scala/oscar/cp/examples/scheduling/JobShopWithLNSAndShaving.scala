@@ -17,9 +17,9 @@ package oscar.cp.examples.scheduling
 
 import oscar.cp._
 import oscar.cp.preprocessing.ShavingUtils
+import oscar.util.NumberReader
 
 import scala.collection.mutable.ArrayBuffer
-import scala.io.Source
 
 
 /**
@@ -40,11 +40,12 @@ object JobShopWithLNSAndShaving extends CPModel with App {
   // Parsing    
   // -----------------------------------------------------------------------
 
-  var lines = Source.fromFile("data/ft10.txt").getLines().toList
+  val reader = NumberReader("data/ft10.txt")
 
-  val nJobs = lines.head.trim().split(" ")(0).toInt
-  val nTasksPerJob = lines.head.trim().split(" ")(1).toInt
-  val nResources = lines.head.trim().split(" ")(2).toInt
+  val nJobs = reader.nextInt()
+  val nTasksPerJob = reader.nextInt()
+  val nResources = reader.nextInt()
+  reader.skipLine()
 
   val nActivities = nJobs * nTasksPerJob
 
@@ -52,21 +53,15 @@ object JobShopWithLNSAndShaving extends CPModel with App {
   val Jobs = 0 until nJobs
   val Resources = 0 until nResources
 
-  lines = lines.drop(1)
-
   val jobs = Array.fill(nActivities)(0)
   val resources = Array.fill(nActivities)(0)
   val durations = Array.fill(nActivities)(0)
 
   for (i <- Activities) {
-
-    val l = lines.head.trim().split("[ ,\t]+").map(_.toInt)
-
-    jobs(i) = l(0)
-    resources(i) = l(1)
-    durations(i) = l(2)
-
-    lines = lines.drop(1)
+    jobs(i) = reader.nextInt()
+    resources(i) = reader.nextInt()
+    durations(i) = reader.nextInt()
+    reader.skipLine()
   }
 
   // Modeling 
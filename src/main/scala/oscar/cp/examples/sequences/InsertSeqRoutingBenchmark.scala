@@ -0,0 +1,95 @@
+package oscar.cp.examples.sequences
+
+import oscar.cp._
+import oscar.cp.constraints.sequence._
+import oscar.cp.core.variables.CPInsertSeqVar
+
+import scala.util.Random
+
+/**
+ * Measures the search on random routing models with time windows based on an insertion sequence
+ * variable and the TransitionTimes constraint: a single vehicle visits as many places as possible,
+ * each place being inserted at its cheapest positions first.
+ *
+ * Usage: InsertSeqRoutingBenchmark [nVisits] [nRuns] [failureLimit]
+ */
+object InsertSeqRoutingBenchmark extends App {
+
+  val nVisits = if (args.length > 0) args(0).toInt else 100
+  val nRuns = if (args.length > 1) args(1).toInt else 5
+  val failureLimit = if (args.length > 2) args(2).toInt else 1000
+
+  val horizon = 1000
+  val windowSize = 200
+
+  def run(seed: Int): (Long, Int, Int) = {
+    implicit val cp: CPSolver = CPSolver()
+    cp.silent = true
+    val rand = new Random(seed)
+
+    // Visits, then the start and end depots at the same place
+    val n = nVisits + 2
+    val startDepot = nVisits
+    val endDepot = nVisits + 1
+    val xs = Array.fill(n)(rand.nextInt(100))
+    val ys = Array.fill(n)(rand.nextInt(100))
+    xs(endDepot) = xs(startDepot)
+    ys(endDepot) = ys(startDepot)
+    val transitions = Array.tabulate(n, n)((i, j) => math.round(math.hypot(xs(i) - xs(j), ys(i) - ys(j))).toInt)
+
+    val arrivals = Array.tabulate(n)(i => {
+      if (i == startDepot) CPIntVar(0)
+      else if (i == endDepot) CPIntVar(0 to horizon)
+      else {
+        val windowStart = rand.nextInt(horizon - windowSize)
+        CPIntVar(windowStart to windowStart + windowSize)
+      }
+    })
+    val durations = Array.tabulate(n)(i => CPIntVar(if (i < nVisits) 5 else 0))
+    val departures = Array.tabulate(n)(i => arrivals(i) + durations(i))
+
+    val sequence = CPInsertSeqVar(n)
+    add(First(sequence, startDepot))
+    add(Last(sequence, endDepot))
+    add(TransitionTimes(sequence, arrivals, durations, departures, transitions))
+
+    maximize(sequence.cardinality)
+
+    // Detour of the insertion of elem after pred
+    def detour(elem: Int, pred: Int): Int = {
+      val next = sequence.nextMember(pred)
+      if (pred == -1 || next == -1) 0
+      else transitions(pred)(elem) + transitions(elem)(next) - transitions(pred)(next)
+    }
+
+    val preds = new Array[Int](n + 1)
+    search {
+      // Visit with the fewest insertions
+      var elem = -1
+      var i = 0
+      while (i < nVisits) {
+        if (sequence.isPossibleOrRequired(i) && (elem == -1 || sequence.nCurrentInsertionsFor(i) < sequence.nCurrentInsertionsFor(elem))) elem = i
+        i += 1
+      }
+      if (elem == -1) noAlternative
+      else {
+        val nPreds = sequence.fillCurrentInsertions(elem, preds)
+        val sortedPreds = preds.take(nPreds).sortBy(detour(elem, _))
+        branchAll(sortedPreds.toSeq)(pred => sequence.insertAfter(elem, pred)) ++ branchOne {
+          sequence.excludes(elem)
+          cp.propagate()
+        }
+      }
+    }
+
+    val stats = start(failureLimit = failureLimit)
+    (stats.time, stats.nNodes, sequence.length)
+  }
+
+  // warm up
+  run(0)
+
+  val results = Array.tabulate(nRuns)(run)
+  for ((time, nNodes, length) <- results) println(s"time(ms) $time, nNodes $nNodes, visits of the last sequence $length")
+  println(s"nVisits $nVisits: best time(ms) ${results.map(_._1).min}")
+}
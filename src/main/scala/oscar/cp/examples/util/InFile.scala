@@ -14,25 +14,22 @@
  ******************************************************************************/
 package oscar.cp.examples.util
 
-import java.io.IOException
-import java.io.FileWriter
-import java.io.BufferedWriter
-import scala.io.Source
+import oscar.util.NumberReader
 
 /**
  * @author Pierre Schaus pschaus@gmail.com
  */
 class InFile(filepath: String) {
 
-    val lines = Source.fromFile(filepath).getLines.reduceLeft(_ + " " + _)
-    val vals = lines.split("[ ,\t]").toList.filterNot(_ == "").map(_.toInt)
+    private val reader = NumberReader(filepath)
     var index = 0
-    
+
+    def hasNext: Boolean = reader.hasNext
+
     def nextInt() = {
       index += 1
-      vals(index - 1)
+      reader.nextInt()
     }
-  
 
 }
 
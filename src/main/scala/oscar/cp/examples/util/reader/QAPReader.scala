@@ -1,47 +1,34 @@
 package oscar.cp.examples.util.reader
 
-import scala.io.Source
-import scala.language.postfixOps
+import oscar.util.NumberReader
+
 object QAPReader {
 
 
   def read(dataFile: String, n: Int) = {
-    val N = 0 until n
-    // Read the data
-    var lines = Source.fromFile(dataFile).getLines.toList.filter(_ != "")
-    lines = lines.drop(1)
-    var w1: Array[Array[Int]] = Array() //weight matrix 1
-    var w2: Array[Array[Int]] = Array() //weight matrix 2
-    var d: Array[Array[Int]] = Array() //distance matrix
-    for (i <- N) {
-      d = d :+ lines.head.split("[ ,\t]+").filter(_ != "").map(_ toInt).toArray
-      lines = lines.drop(1)
-    }
-    for (i <- N) {
-      w1 = w1 :+ lines.head.split("[ ,\t]+").filter(_ != "").map(_ toInt).toArray
-      lines = lines.drop(1)
-    }
-    for (i <- N) {
-      w2 = w2 :+ lines.head.split("[ ,\t]+").filter(_ != "").map(_ toInt).toArray
-      lines = lines.drop(1)
-    }
+    // Read the data, the first line is the size
+    val reader = NumberReader(dataFile)
+    reader.nextLineInts()
+    val d = Array.fill(n)(reader.nextLineInts()) //distance matrix
+    val w1 = Array.fill(n)(reader.nextLineInts()) //weight matrix 1
+    val w2 = Array.fill(n)(reader.nextLineInts()) //weight matrix 2
     (d,w1,w2)
   }
 
   def readSolutions(solFile: String, n: Int) = {
-    var lines = Source.fromFile(solFile).getLines.toList.filter(_ != "")
-    for (l <- lines) yield {
-      val ar = l.split("[ ,\t]+").filter(_ != "").map(_ toInt).toArray
-      (ar.take(n), ar.drop(n))
-    }
+    for (ar <- readLines(solFile)) yield (ar.take(n), ar.drop(n))
   }
 
   def readSolutions2(solFile: String, n: Int) = {
-    var lines = Source.fromFile(solFile).getLines.toList.filter(_ != "")
-    for (l <- lines) yield {
-      val ar = l.split("[ ,\t]+").filter(_ != "").map(_ toInt).toArray
-      (ar.drop(2), ar.take(2))
-    }
+    for (ar <- readLines(solFile)) yield (ar.drop(2), ar.take(2))
+  }
+
+  // The integers of each non empty line
+  private def readLines(file: String): List[Array[Int]] = {
+    val reader = NumberReader(file)
+    val lines = List.newBuilder[Array[Int]]
+    while (reader.hasNext) lines += reader.nextLineInts()
+    lines.result()
   }
 
 }
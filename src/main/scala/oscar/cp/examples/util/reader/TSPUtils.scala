@@ -1,14 +1,15 @@
 package oscar.cp.examples.util.reader
 
 import oscar.cp.examples.util._
-
-import scala.io.Source
+import oscar.util.NumberReader
 
 object TSPUtils {
 
   def readSet(filepath: String): Array[Array[Int]] = {
-    val lines = Source.fromFile(filepath).getLines.toArray
-    lines.map(l => l.trim.split("[ ,\t]").map(_.toInt))
+    val reader = NumberReader(filepath)
+    val set = Array.newBuilder[Array[Int]]
+    while (reader.hasNext) set += reader.nextLineInts()
+    set.result()
   }
 
   def writeSet(filepath: String, set: Array[Array[Int]]): Unit = {
@@ -58,18 +59,18 @@ object TSPUtils {
   }
 
   def parseCoordinates(filepath: String): Array[(Int, Int)] = {
-    var lines = Source.fromFile(filepath).getLines.toList
-    lines = lines.drop(6)
-    val l = lines.head.trim().split("[ ,\t]+").map(_.toInt).toArray
-    val n = lines.size - 1
-    val coordinates = Array.tabulate(n)(i => {
-      val l = lines.head.trim.split("[ ,\t]+").map(_.toInt).toArray
-      val x = l(1)
-      val y = l(2)
-      lines = lines.drop(1)
-      (x, y)
-    })
-    coordinates
+    // 6 lines of header, then the index and the coordinates of each city until EOF
+    val reader = NumberReader(filepath)
+    reader.skipLines(6)
+    val coordinates = Array.newBuilder[(Int, Int)]
+    while (reader.hasNextNumber) {
+      reader.nextInt()
+      val x = reader.nextInt()
+      val y = reader.nextInt()
+      reader.skipLine()
+      coordinates += ((x, y))
+    }
+    coordinates.result()
   }
 
   def nint(x: Double): Int = {
@@ -19,6 +19,7 @@ import oscar.algo.branchings._
 import oscar.algo.search.{Branching, BranchingUtils, DiscrepancyBranching}
 import oscar.cp.scheduling.search.SetTimesBranching
 import oscar.cp.scheduling.search.RankBranching
+import oscar.cp.searches.{BinaryHeapBranchingDouble, BinaryHeapBranchingInt, BinaryHeapBranchingLong}
 import oscar.cp.core.variables.CPIntVar
 import oscar.cp.core.variables.CPSetVar
 import oscar.algo.vars.{IntVarLike, SetVarLike}
@@ -322,6 +323,50 @@ trait Branchings extends BranchingUtils {
     binaryFirstFailIdx(vars, i => valHeuris(vars(i)))
   }
 
+  /**
+    * Binary search with an int variable heuristic maintained incrementally in a reversible heap,
+    * such that selecting a variable costs O(log n) instead of O(n)
+    *
+    * @example {{{search(binaryIncrementalIdx(x, i => x(i).size, i => x(i).min))}}}
+    *
+    * @param variables    Decision variables to branch on
+    * @param varHeuristic Given an index in variables, returns a value such that the unbound variable with the
+    *                     smallest one is selected first (ties are broken by index). It is recomputed
+    *                     each time the domain of the variable changes, so it should only depend on this domain.
+    * @param valHeuristic Given an index i in variables, returns the value to try on the left branch,
+    *                     this value is removed on the right branch
+    * @return The variable-value heuristic specified by the parameters
+    */
+  def binaryIncrementalIdx(variables: Array[CPIntVar], varHeuristic: Int => Int, valHeuristic: Int => Int): Branching = {
+    new BinaryHeapBranchingInt(variables, varHeuristic, valHeuristic)
+  }
+
+  /**
+    * Same as binaryIncrementalIdx with a long variable heuristic
+    */
+  def binaryIncrementalIdxLong(variables: Array[CPIntVar], varHeuristic: Int => Long, valHeuristic: Int => Int): Branching = {
+    new BinaryHeapBranchingLong(variables, varHeuristic, valHeuristic)
+  }
+
+  /**
+    * Same as binaryIncrementalIdx with a double variable heuristic
+    */
+  def binaryIncrementalIdxDouble(variables: Array[CPIntVar], varHeuristic: Int => Double, valHeuristic: Int => Int): Branching = {
+    new BinaryHeapBranchingDouble(variables, varHeuristic, valHeuristic)
+  }
+
+  /**
+    * Binary First Fail (min dom size) on the decision variables vars with min value in domain as value heuristic.
+    * Selects the same variables as binaryFirstFail, the domain sizes being maintained in a reversible heap.
+    *
+    * @param variables Decision variables to branch on
+    * @return A first fail variable heuristic with min value in domain value heuristic
+    */
+  def binaryFirstFailIncremental(variables: Seq[CPIntVar]): Branching = {
+    val vars = variables.toArray
+    binaryIncrementalIdx(vars, vars(_).size, vars(_).min)
+  }
+
 
   /**
     * Select first the unbound variable with the max number of propagator attached (max-degree heuristic)
@@ -1158,6 +1158,19 @@ trait Constraints {
     new Regular(vars, automaton)
   }
 
+  /**
+    * Cost Regular Constraint, ensuring that vars are accepted by the automaton with cost = sum_i costs(i)(vars(i))
+    *
+    * @param vars      an non empty array of variables, with domains belonging to the set of transitions of the automaton
+    * @param automaton a deterministic automaton
+    * @param costs     costs(i)(a) is the cost of the letter a at the position i
+    * @param cost      the sum of the costs of the letters
+    * @return a constraint ensuring values in vars respect the automaton provided and the cost of the sequence
+    */
+  def costRegular(vars: Array[CPIntVar], automaton: Automaton, costs: Array[Array[Int]], cost: CPIntVar): Constraint = {
+    new CostRegular(vars, automaton, costs, cost)
+  }
+
   /**
     * Maximum Constraint
     *
@@ -1607,6 +1620,22 @@ trait Constraints {
     maxCumulativeResource(starts, durations, ends, demands, resources, capacity, 0)
   }
 
+  /**
+    * Discrete Resources constraint with maximum capacities: at any time, the cumulative demands of the tasks executing on the resource r, must be <= than the capacity of r.
+    * This is the time-tabling filtering of maxCumulativeResource for all the resources at once, which is faster than posting one constraint per resource when there are many resources.
+    *
+    * @param starts     the variables representing the start time of the tasks
+    * @param durations  the variables representing the duration of the tasks
+    * @param ends       the variables representing the completion time of the tasks, it is your responsibility to link starts, durations and ends such that start(i) + durations(i) = ends(i)
+    * @param demands    the variables representing how much each task consume of the resource
+    * @param resources  the variables representing the resource where the task is scheduled (values outside of [0 ; capacities.length) are ignored)
+    * @param capacities the capacity of each resource
+    * @return a constraint enforcing that the load over each resource is always below/at its capacity at any point of time
+    */
+  def maxCumulativeResources(starts: Array[CPIntVar], durations: Array[CPIntVar], ends: Array[CPIntVar], demands: Array[CPIntVar], resources: Array[CPIntVar], capacities: Array[CPIntVar]): Constraint = {
+    MaxCumulativeMultiResource(starts, durations, ends, demands, resources, capacities)
+  }
+
   /**
     * Discrete Resource constraint with minimum capacity: at any time where at least one tasks overlaps, the cumulative demands of the tasks executing on the resource id, must be >= than the capacity
     *
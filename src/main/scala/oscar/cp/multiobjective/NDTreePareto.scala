@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+package oscar.cp.multiobjective
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * Pareto front indexed by an ND-tree (Jaszkiewicz and Lust, 2018).
+ *
+ * Each node of the tree stores the ideal and nadir points of the solutions of its subtree,
+ * such that dominance queries only visit the nodes whose bounding box may contain an answer.
+ * Objective values are stored as keys to be minimized, the maximized objectives being negated.
+ *
+ * @param maxLeafSize number of solutions in a leaf before it is split
+ * @param nChildren number of children of a split leaf
+ */
+class NDTreePareto[Sol](objMax: Array[Boolean], maxLeafSize: Int = 20, nChildren: Int = -1) extends Pareto[Sol](objMax) {
+
+  require(maxLeafSize > 1, "a leaf should contain at least 2 solutions")
+
+  private[this] val nChildrenOfSplit = if (nChildren > 1) nChildren else nObjs + 1
+
+  private class Entry(val key: Array[Int], val paretoSol: ParetoSol)
+
+  private class Node {
+    val ideal: Array[Int] = Array.fill(nObjs)(Int.MaxValue)
+    val nadir: Array[Int] = Array.fill(nObjs)(Int.MinValue)
+    var entries: ArrayBuffer[Entry] = new ArrayBuffer[Entry]()
+    var children: ArrayBuffer[Node] = null
+    def isLeaf: Boolean = children == null
+    def isEmpty: Boolean = if (isLeaf) entries.isEmpty else children.isEmpty
+
+    def extend(key: Array[Int]): Unit = {
+      var i = 0
+      while (i < nObjs) {
+        if (key(i) < ideal(i)) ideal(i) = key(i)
+        if (key(i) > nadir(i)) nadir(i) = key(i)
+        i += 1
+      }
+    }
+
+    def recomputeBounds(): Unit = {
+      java.util.Arrays.fill(ideal, Int.MaxValue)
+      java.util.Arrays.fill(nadir, Int.MinValue)
+      if (isLeaf) entries.foreach(e => extend(e.key))
+      else children.foreach(c => { extend(c.ideal); extend(c.nadir) })
+    }
+  }
+
+  private[this] var root = new Node()
+  private[this] var nSols = 0
+
+  // buffer used to convert the queries into keys
+  private[this] val queryKey = new Array[Int](nObjs)
+
+  def nadir: Array[Int] = Array.tabulate(nObjs)(i => if (root.isEmpty) Int.MaxValue else toValue(i, if (objMax(i)) root.ideal(i) else root.nadir(i)))
+
+  def ideal: Array[Int] = Array.tabulate(nObjs)(i => if (root.isEmpty) Int.MinValue else toValue(i, if (objMax(i)) root.nadir(i) else root.ideal(i)))
+
+  @inline private def toKey(i: Int, value: Int): Int = if (objMax(i)) -value else value
+
+  @inline private def toValue(i: Int, key: Int): Int = if (objMax(i)) -key else key
+
+  // true if a dominates b, both being keys
+  @inline private def dominates(a: Array[Int], b: Array[Int]): Boolean = {
+    var i = 0
+    while (i < nObjs) {
+      if (a(i) > b(i)) return false
+      i += 1
+    }
+    true
+  }
+
+  def insert(sol: Sol, objValues: IndexedSeq[Int]): Boolean = {
+    val key = Array.tabulate(nObjs)(i => toKey(i, objValues(i)))
+    val inserted = if (findDominant(root, key) != null) false
+    else {
+      removeDominated(root, key)
+      if (root.isEmpty) root = new Node()
+      insertInto(root, new Entry(key, ParetoSol(objValues, sol)))
+      nSols += 1
+      true
+    }
+    notifyObservers()
+    inserted
+  }
+
+  // returns an entry that dominates key in the subtree of node, null if there is none
+  private def findDominant(node: Node, key: Array[Int]): Entry = {
+    if (node.isEmpty || !dominates(node.ideal, key)) null
+    else if (node.isLeaf) {
+      var i = 0
+      while (i < node.entries.length) {
+        val entry = node.entries(i)
+        if (dominates(entry.key, key)) return entry
+        i += 1
+      }
+      null
+    }
+    else {
+      var i = 0
+      while (i < node.children.length) {
+        val entry = findDominant(node.children(i), key)
+        if (entry != null) return entry
+        i += 1
+      }
+      null
+    }
+  }
+
+  // removes the entries dominated by key, returns true if some entries were removed
+  private def removeDominated(node: Node, key: Array[Int]): Boolean = {
+    if (node.isEmpty || !dominates(key, node.nadir)) false
+    else {
+      val removed = if (node.isLeaf) {
+        val before = node.entries.length
+        node.entries.filterInPlace(e => !dominates(key, e.key))
+        nSols -= before - node.entries.length
+        before != node.entries.length
+      }
+      else {
+        var removed = false
+        var i = 0
+        while (i < node.children.length) {
+          if (removeDominated(node.children(i), key)) removed = true
+          i += 1
+        }
+        if (removed) node.children.filterInPlace(!_.isEmpty)
+        removed
+      }
+      if (removed) node.recomputeBounds()
+      removed
+    }
+  }
+
+  private def insertInto(node: Node, entry: Entry): Unit = {
+    node.extend(entry.key)
+    if (node.isLeaf) {
+      node.entries += entry
+      if (node.entries.length > maxLeafSize) split(node)
+    }
+    else insertInto(closestChild(node, entry.key), entry)
+  }
+
+  // the child whose bounding box has its middle point closest to key
+  private def closestChild(node: Node, key: Array[Int]): Node = {
+    var best: Node = null
+    var bestDistance = Double.MaxValue
+    var c = 0
+    while (c < node.children.length) {
+      val child = node.children(c)
+      var distance = 0.0
+      var i = 0
+      while (i < nObjs) {
+        val d = (child.ideal(i).toDouble + child.nadir(i)) / 2 - key(i)
+        distance += d * d
+        i += 1
+      }
+      if (distance < bestDistance) {
+        bestDistance = distance
+        best = child
+      }
+      c += 1
+    }
+    best
+  }
+
+  // splits a leaf in children along the objective with the widest range
+  private def split(leaf: Node): Unit = {
+    var dim = 0
+    var i = 1
+    while (i < nObjs) {
+      if (leaf.nadir(i).toLong - leaf.ideal(i) > leaf.nadir(dim).toLong - leaf.ideal(dim)) dim = i
+      i += 1
+    }
+    val sorted = leaf.entries.sortBy(_.key(dim))
+    val groupSize = (sorted.length + nChildrenOfSplit - 1) / nChildrenOfSplit
+    leaf.children = new ArrayBuffer[Node](nChildrenOfSplit)
+    for (group <- sorted.grouped(groupSize)) {
+      val child = new Node()
+      group.foreach(e => { child.entries += e; child.extend(e.key) })
+      leaf.children += child
+    }
+    leaf.entries = null
+  }
+
+  /**
+   * Returns the best value of objective obj among the solutions dominating the given point,
+   * or the worst possible value of this objective if there is no such solution.
+   */
+  override def bestDominating(objValues: Array[Int], obj: Int): Int = {
+    var i = 0
+    while (i < nObjs) {
+      queryKey(i) = toKey(i, objValues(i))
+      i += 1
+    }
+    val best = bestDominatingKey(root, obj, Int.MaxValue)
+    if (best == Int.MaxValue) { if (objMax(obj)) Int.MinValue else Int.MaxValue }
+    else toValue(obj, best)
+  }
+
+  private def bestDominatingKey(node: Node, obj: Int, bound: Int): Int = {
+    if (node.isEmpty || node.ideal(obj) >= bound || !dominates(node.ideal, queryKey)) bound
+    else {
+      var best = bound
+      var i = 0
+      if (node.isLeaf) {
+        while (i < node.entries.length) {
+          val key = node.entries(i).key
+          if (key(obj) < best && dominates(key, queryKey)) best = key(obj)
+          i += 1
+        }
+      }
+      else {
+        while (i < node.children.length) {
+          best = bestDominatingKey(node.children(i), obj, best)
+          i += 1
+        }
+      }
+      best
+    }
+  }
+
+  def getDominant(objValues: Array[Int]): Option[Sol] = {
+    val key = Array.tabulate(nObjs)(i => toKey(i, objValues(i)))
+    val entry = findDominant(root, key)
+    if (entry == null) None else Some(entry.paretoSol.sol)
+  }
+
+  private def foreachEntry(node: Node, f: Entry => Unit): Unit = {
+    if (node.isLeaf) node.entries.foreach(f)
+    else node.children.foreach(foreachEntry(_, f))
+  }
+
+  def objectiveSols: List[IndexedSeq[Int]] = {
+    var list = List[IndexedSeq[Int]]()
+    foreachEntry(root, e => list = e.paretoSol.objValues :: list)
+    list
+  }
+
+  def size: Int = nSols
+
+  def foreach[B](f: (Sol) => B): Unit = foreachEntry(root, e => f(e.paretoSol.sol))
+
+  def removeAll(): Unit = {
+    root = new Node()
+    nSols = 0
+  }
+
+  def sortByObj(obj: Int): List[Sol] = {
+    var list = List[ParetoSol]()
+    foreachEntry(root, e => list = e.paretoSol :: list)
+    list.sortBy(_.objValues(obj)).map(_.sol)
+  }
+}
+
+object NDTreePareto {
+  def apply[Sol](nObjs: Int, maximization: Boolean = false) = new NDTreePareto[Sol](Array.fill(nObjs)(maximization))
+  def apply[Sol](maximizations: Boolean*) = new NDTreePareto[Sol](maximizations.toArray)
+}
@@ -97,6 +97,15 @@ abstract class Pareto[Sol](protected val maxObj: Array[Boolean]) {
    */
   def getDominant(sol: Array[Int]): Option[Sol]
 
+  /** Returns the best value of the objective obj among the solutions that dominate sol,
+   *  or the worst possible value of this objective if sol is not dominated
+   */
+  def bestDominating(sol: Array[Int], obj: Int): Int = {
+    var best = if (maxObj(obj)) Int.MinValue else Int.MaxValue
+    for (s <- objectiveSols if dominate(s, sol.toIndexedSeq) && isBetter(obj)(s(obj), best)) best = s(obj)
+    best
+  }
+
   /** Return true if the solution is dominated false otherwise
    * 
    */
@@ -0,0 +1,456 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.preprocessing
+
+import oscar.algo.Inconsistency
+import oscar.cp._
+import oscar.cp.constraints.{DiffVar, Eq, LeEq}
+import oscar.cp.core.{Constraint, NoSolutionException}
+import oscar.cp.core.variables.{CPIntVarViewLinear, CPIntVarViewMinus}
+
+import scala.collection.mutable
+
+/**
+ * Gathers the constraints of a model and posts a reduced model.
+ *
+ * The equalities x == y + k and x == -y + k are not posted: the variables equal up to an offset
+ * (and a sign) are merged in classes, the domain of the representative of a class is the
+ * intersection of the domains of the class, and the other variables of the class are replaced
+ * by views on the representative (see resolve). The differences x != y + k and the inequalities
+ * x <= y + k are rewritten on the representatives, then
+ * <ul>
+ *   <li>the ones entailed by the domains are removed,</li>
+ *   <li>the ones with a bound variable are replaced by a domain reduction of the other variable,</li>
+ *   <li>the duplicated ones are removed, as well as the inequalities subsumed by tighter ones.</li>
+ * </ul>
+ * The other constraints are posted as given, once. The variables of the classes they use are
+ * assigned if their class is bound, linked to their representative otherwise.
+ *
+ * The variables to search on are the unbound representatives (see searchVariables): the
+ * other variables are either fixed, views, or unused.
+ * All the constraints on the variables of the equalities must be given to the presolver.
+ */
+class Presolver(cp: CPSolver) {
+
+  // Variables of the equalities, indexed in the order in which they are seen
+  private[this] val index = mutable.HashMap[CPIntVar, Int]()
+  private[this] val vars = mutable.ArrayBuffer[CPIntVar]()
+
+  // Classes of the equalities: vars(i) = sign(i) * vars(parent(i)) + offset(i)
+  private[this] val parent = mutable.ArrayBuffer[Int]()
+  private[this] val sign = mutable.ArrayBuffer[Int]()
+  private[this] val offset = mutable.ArrayBuffer[Int]()
+
+  // Relations x != y + k (diff) or x <= y + k, on the variables of the model
+  private[this] final class Relation(val diff: Boolean, val x: CPIntVar, val y: CPIntVar, val k: Int)
+
+  private[this] val relations = mutable.ArrayBuffer[Relation]()
+  private[this] val assignments = mutable.ArrayBuffer[(CPIntVar, Int)]()
+  private[this] val constraints = mutable.ArrayBuffer[Constraint]()
+  private[this] val added = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap[Constraint, java.lang.Boolean]())
+
+  // Variables used as given by the reduced model, linked to their representative
+  private[this] val usedAsGiven = mutable.LinkedHashSet[CPIntVar]()
+
+  // Variables of the reduced model, the variables of the views are used
+  private[this] val used = mutable.HashSet[CPIntVar]()
+
+  // Buffer of the path compression
+  private[this] val path = mutable.ArrayBuffer[Int]()
+
+  // A cycle of equalities is inconsistent
+  private[this] var inconsistent = false
+  private[this] var presolved = false
+
+  private[this] var _nAliased = 0
+  private[this] var _nRemoved = 0
+  private[this] var _nPosted = 0
+
+  /** The number of variables replaced by a view on the representative of their class */
+  def nAliased: Int = _nAliased
+
+  /** The number of constraints removed because duplicated, subsumed, entailed or replaced by a domain reduction */
+  def nRemoved: Int = _nRemoved
+
+  /** The number of constraints posted */
+  def nPosted: Int = _nPosted
+
+  /** x == y + k */
+  def equal(x: CPIntVar, y: CPIntVar, k: Int = 0): Unit = union(x, y, 1, k)
+
+  /** x == -y + k */
+  def opposite(x: CPIntVar, y: CPIntVar, k: Int = 0): Unit = union(x, y, -1, k)
+
+  /** x != y + k */
+  def different(x: CPIntVar, y: CPIntVar, k: Int = 0): Unit = addRelation(new Relation(true, x, y, k))
+
+  /** x <= y + k */
+  def lessOrEqual(x: CPIntVar, y: CPIntVar, k: Int = 0): Unit = addRelation(new Relation(false, x, y, k))
+
+  /** x == value */
+  def assign(x: CPIntVar, value: Int): Unit = {
+    require(!presolved, "the model has already been presolved")
+    assignments += ((x, value))
+  }
+
+  /** Adds a constraint posted as given, a constraint added twice is posted once */
+  def add(c: Constraint): Unit = {
+    require(!presolved, "the model has already been presolved")
+    if (added.add(c)) constraints += c
+    else _nRemoved += 1
+  }
+
+  def add(cs: Iterable[Constraint]): Unit = cs.foreach(add)
+
+  /**
+   * The variable that replaces x in the reduced model: a view on the representative of its class,
+   * or x itself if it is not in an equality
+   */
+  def resolve(x: CPIntVar): CPIntVar = {
+    unit(x) match {
+      case Some((b, _, _)) if index.contains(b) =>
+        val (r, s, o) = term(x)
+        view(r, s, o)
+      case _ => x
+    }
+  }
+
+  def resolve(xs: Array[CPIntVar]): Array[CPIntVar] = xs.map(resolve)
+
+  /** Returns true if x, or the representative of its class, is a variable of the reduced model */
+  def isUsed(x: CPIntVar): Boolean = {
+    require(presolved, "the model has not been presolved")
+    used.contains(base(resolve(x)))
+  }
+
+  /**
+   * The unbound representatives of the variables, without duplicates, to search on.
+   * The unused variables are removed: they can take any value of their domain.
+   */
+  def searchVariables(xs: Array[CPIntVar]): Array[CPIntVar] = {
+    val seen = mutable.HashSet[CPIntVar]()
+    val representatives = mutable.ArrayBuffer[CPIntVar]()
+    for (x <- xs) {
+      val r = unit(x) match {
+        case Some((b, _, _)) if index.contains(b) => vars(find(index(b)))
+        case _ => x
+      }
+      if (!r.isBound && (!presolved || used.contains(base(r))) && seen.add(r)) representatives += r
+    }
+    representatives.toArray
+  }
+
+  /**
+   * Reduces the model and posts it
+   *
+   * @throws NoSolutionException if the presolve or the propagation of the reduced model fails
+   */
+  def presolve(): Unit = {
+    require(!presolved, "the model has already been presolved")
+    presolved = true
+    val reduced = try {
+      if (inconsistent) throw Inconsistency
+      restrictDomains()
+      for ((x, value) <- assignments) {
+        val (r, s, o) = term(x)
+        r.assign(s * (value - o))
+      }
+      val posted = reduceRelations()
+      posted ++= linkedConstraints()
+      posted
+    } catch {
+      case _: Inconsistency =>
+        cp.fail()
+        throw new NoSolutionException("the presolve detected an inconsistent model")
+    }
+    _nPosted = reduced.length
+    for (c <- reduced; v <- c.associatedVars()) v match {
+      case x: CPIntVar => used += base(x)
+      case _ =>
+    }
+    cp.add(reduced.toArray)
+  }
+
+  private def id(x: CPIntVar): Int = {
+    index.getOrElseUpdate(x, {
+      vars += x
+      parent += vars.length - 1
+      sign += 1
+      offset += 0
+      vars.length - 1
+    })
+  }
+
+  // Returns the representative of i, and compresses the path: i = sign(i) * r + offset(i) on return
+  private def find(i: Int): Int = {
+    var r = i
+    while (parent(r) != r) {
+      path += r
+      r = parent(r)
+    }
+    // From the closest to the root: j = sj * p + oj and p = sp * r + op
+    var k = path.length - 2
+    while (k >= 0) {
+      val j = path(k)
+      val p = path(k + 1)
+      offset(j) = sign(j) * offset(p) + offset(j)
+      sign(j) = sign(j) * sign(p)
+      parent(j) = r
+      k -= 1
+    }
+    path.clear()
+    r
+  }
+
+  // x == s * y + k
+  private def union(x: CPIntVar, y: CPIntVar, s: Int, k: Int): Unit = {
+    require(!presolved, "the model has already been presolved")
+    (unit(x), unit(y)) match {
+      case (Some((bx, ax, cx)), Some((by, ay, cy))) =>
+        // ax * bx + cx == s * (ay * by + cy) + k
+        unionVars(bx, by, ax * s * ay, ax * (s * cy + k - cx))
+      case _ =>
+        // not a variable up to a sign and an offset
+        add(new Eq(x, view(y, s, k)))
+    }
+  }
+
+  // x == s * y + k
+  private def unionVars(x: CPIntVar, y: CPIntVar, s: Int, k: Int): Unit = {
+    val i = id(x)
+    val j = id(y)
+    val ri = find(i)
+    val rj = find(j)
+    // si * ri + oi == s * (sj * rj + oj) + k, hence ri == si * s * sj * rj + si * (s * oj + k - oi)
+    val rs = sign(i) * s * sign(j)
+    val ro = sign(i) * (s * offset(j) + k - offset(i))
+    if (ri != rj) {
+      parent(ri) = rj
+      sign(ri) = rs
+      offset(ri) = ro
+      _nAliased += 1
+    }
+    else if (rs == 1) {
+      // ri == ri + ro
+      if (ro != 0) inconsistent = true
+    }
+    else {
+      // ri == -ri + ro
+      if (ro % 2 != 0) inconsistent = true
+      else assignments += ((vars(ri), ro / 2))
+    }
+  }
+
+  // (b, a, c) such that x == a * b + c with a = 1 or -1, None if x is a view with another coefficient
+  private def unit(x: CPIntVar): Option[(CPIntVar, Int, Int)] = x match {
+    case v: CPIntVarViewLinear =>
+      val (a, c, b) = v.linearView
+      if (a == 1 || a == -1) Some((b, a, c)) else None
+    case _ => Some((x, 1, 0))
+  }
+
+  // (r, s, o) such that x == s * r + o, r being the representative of x
+  private def term(x: CPIntVar): (CPIntVar, Int, Int) = {
+    unit(x) match {
+      case None =>
+        usedAsGiven += x
+        (x, 1, 0)
+      case Some((b, a, c)) =>
+        index.get(b) match {
+          case None => (b, a, c)
+          case Some(i) =>
+            val r = find(i)
+            // x == a * (sign(i) * r + offset(i)) + c
+            (vars(r), a * sign(i), a * offset(i) + c)
+        }
+    }
+  }
+
+  // The variable of a view
+  private def base(x: CPIntVar): CPIntVar = x match {
+    case v: CPIntVarViewLinear => v.linearView._3
+    case _ => x
+  }
+
+  private def view(r: CPIntVar, s: Int, o: Int): CPIntVar = plus(if (s == 1) r else new CPIntVarViewMinus(r), o)
+
+  private def addRelation(relation: Relation): Unit = {
+    require(!presolved, "the model has already been presolved")
+    relations += relation
+  }
+
+  // The domain of each representative is restricted to the values allowed by all the members of its class
+  private def restrictDomains(): Unit = {
+    for (i <- vars.indices) {
+      val r = find(i)
+      if (r != i) {
+        val rep = vars(r)
+        val x = vars(i)
+        val s = sign(i)
+        val o = offset(i)
+        for (v <- rep.toArray; if !x.hasValue(s * v + o)) rep.removeValue(v)
+      }
+    }
+  }
+
+  // Normalized relation s1 * a - s2 * b (op) c on representatives
+  private final class Normalized(val diff: Boolean, val a: CPIntVar, val sa: Int, val b: CPIntVar, val sb: Int, var c: Int) {
+    def key: (Boolean, CPIntVar, Int, CPIntVar, Int) = (diff, a, sa, b, sb)
+  }
+
+  private def normalize(relation: Relation): Normalized = {
+    val (a, sa, oa) = term(relation.x)
+    val (b, sb, ob) = term(relation.y)
+    // sa * a + oa (op) sb * b + ob + k
+    val c = relation.k + ob - oa
+    if (relation.diff) {
+      // the first variable is the smallest and has a positive sign
+      val swap = id(a) > id(b)
+      val (a1, s1, b1, s2, c1) = if (swap) (b, sb, a, sa, -c) else (a, sa, b, sb, c)
+      new Normalized(true, a1, 1, b1, s1 * s2, s1 * c1)
+    }
+    else new Normalized(false, a, sa, b, sb, c)
+  }
+
+  @inline private def minOf(x: CPIntVar, s: Int): Int = if (s == 1) x.min else -x.max
+
+  @inline private def maxOf(x: CPIntVar, s: Int): Int = if (s == 1) x.max else -x.min
+
+  // Removes the entailed relations and the relations with a bound variable, until a fix point
+  private def reduceRelations(): mutable.ArrayBuffer[Constraint] = {
+    var active = relations.map(normalize)
+    var changed = true
+    while (changed) {
+      changed = false
+      active = active.filter { rel =>
+        val keep = {
+          if (rel.a == rel.b) {
+            changed |= reduceSameVariable(rel)
+            false
+          }
+          else if (rel.diff) {
+            // a != s * b + c
+            if (maxOf(rel.a, 1) < minOf(rel.b, rel.sb) + rel.c || minOf(rel.a, 1) > maxOf(rel.b, rel.sb) + rel.c) false
+            else if (rel.b.isBound) {
+              rel.a.removeValue(rel.sb * rel.b.min + rel.c)
+              changed = true
+              false
+            }
+            else if (rel.a.isBound) {
+              rel.b.removeValue(rel.sb * (rel.a.min - rel.c))
+              changed = true
+              false
+            }
+            else true
+          }
+          else {
+            // sa * a - sb * b <= c
+            if (maxOf(rel.a, rel.sa) - minOf(rel.b, rel.sb) <= rel.c) false
+            else if (rel.b.isBound) {
+              val bound = rel.c + rel.sb * rel.b.min
+              if (rel.sa == 1) rel.a.updateMax(bound) else rel.a.updateMin(-bound)
+              changed = true
+              false
+            }
+            else if (rel.a.isBound) {
+              val bound = rel.sa * rel.a.min - rel.c
+              if (rel.sb == 1) rel.b.updateMin(bound) else rel.b.updateMax(-bound)
+              changed = true
+              false
+            }
+            else true
+          }
+        }
+        if (!keep) _nRemoved += 1
+        keep
+      }
+    }
+    // Duplicated and subsumed relations: the tightest inequality of each pair is kept
+    val tightest = mutable.LinkedHashMap[(Boolean, CPIntVar, Int, CPIntVar, Int), Normalized]()
+    val differences = mutable.LinkedHashSet[(CPIntVar, CPIntVar, Int, Int)]()
+    val posted = mutable.ArrayBuffer[Constraint]()
+    for (rel <- active) {
+      if (rel.diff) {
+        if (differences.add((rel.a, rel.b, rel.sb, rel.c))) posted += new DiffVar(rel.a, view(rel.b, rel.sb, rel.c))
+        else _nRemoved += 1
+      }
+      else {
+        tightest.get(rel.key) match {
+          case None => tightest(rel.key) = rel
+          case Some(other) =>
+            other.c = math.min(other.c, rel.c)
+            _nRemoved += 1
+        }
+      }
+    }
+    for (rel <- tightest.values) posted += new LeEq(view(rel.a, rel.sa, 0), view(rel.b, rel.sb, rel.c))
+    posted
+  }
+
+  // Relation between a variable and itself, reduced to a domain reduction, returns true if the domain changed
+  private def reduceSameVariable(rel: Normalized): Boolean = {
+    val a = rel.a
+    if (rel.diff) {
+      // a != s * a + c
+      if (rel.sb == 1) {
+        if (rel.c == 0) throw Inconsistency
+        false
+      }
+      else if (rel.c % 2 == 0 && a.hasValue(rel.c / 2)) {
+        a.removeValue(rel.c / 2)
+        true
+      }
+      else false
+    }
+    else {
+      // (sa - sb) * a <= c
+      val coef = rel.sa - rel.sb
+      if (coef == 0) {
+        if (rel.c < 0) throw Inconsistency
+        false
+      }
+      else {
+        val (min, max) = (a.min, a.max)
+        if (coef > 0) a.updateMax(Math.floorDiv(rel.c, coef))
+        else a.updateMin(-Math.floorDiv(rel.c, -coef))
+        a.min != min || a.max != max
+      }
+    }
+  }
+
+  // The variables of the classes used by the other constraints are assigned or linked to their representative
+  private def linkedConstraints(): mutable.ArrayBuffer[Constraint] = {
+    for (c <- constraints; v <- c.associatedVars()) v match {
+      case x: CPIntVar => usedAsGiven += x
+      case _ =>
+    }
+    val links = mutable.ArrayBuffer[Constraint]()
+    val linked = mutable.HashSet[CPIntVar]()
+    for (x <- usedAsGiven) {
+      // the variable of a view is linked
+      val b = base(x)
+      if (index.contains(b) && linked.add(b)) {
+        val (r, s, o) = term(b)
+        if (r != b) {
+          if (r.isBound) b.assign(s * r.min + o)
+          else links += new Eq(b, view(r, s, o))
+        }
+      }
+    }
+    links ++= constraints
+    links
+  }
+}
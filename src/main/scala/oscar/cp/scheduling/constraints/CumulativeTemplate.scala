@@ -87,9 +87,13 @@ extends Constraint(capacity.store, name) {
   private[this] val tToUpdate = new OpenSparseSet(n)  // time variables: s/e coupled since constant durations are common
   private[this] val tByStatus = tToUpdate.sortedByStatus
   
+  // Called when the compulsory part of task a may have changed: its smax, emin, hmin, required or status
+  protected def compulsoryPartChanged(a: Int): Unit = {}
+  
   final class OpenSparseSetMod(n: Int) extends OpenSparseSet(n: Int) {
     override def exclude(a: Int) = {
       super.exclude(a)
+      compulsoryPartChanged(a)
       rToUpdate.exclude(a)
       hToUpdate.exclude(a)
       dToUpdate.exclude(a)
@@ -112,6 +116,7 @@ extends Constraint(capacity.store, name) {
       if (requiredTasks(a)) {
         rToUpdate.exclude(a)
         possibleTasks(a) = true
+        compulsoryPartChanged(a)
       }
       else if (!resources(a).hasValue(id)) {
         toConsider.exclude(a)
@@ -135,7 +140,11 @@ extends Constraint(capacity.store, name) {
         toConsider.exclude(a)
       }
       else {
-        hMin(a) = heights(a).min
+        val hMinTask = heights(a).min
+        if (hMinTask != hMin(a)) {
+          hMin(a) = hMinTask
+          compulsoryPartChanged(a)
+        }
         if (hMin(a) == hMax(a)) hToUpdate.exclude(a)
       }
       p -= 1
@@ -175,9 +184,11 @@ extends Constraint(capacity.store, name) {
         val sMinTask = starts(taskId).min
         val eMaxTask = ends(taskId).max
         val eMinTask = sMinTask + dMinTask
+        val sMaxTask = eMaxTask - dMinTask
+        if (sMaxTask != sMax(taskId) || eMinTask != eMin(taskId)) compulsoryPartChanged(taskId)
         sMin(taskId) = sMinTask
         eMax(taskId) = eMaxTask  
-        sMax(taskId) = eMaxTask - dMinTask
+        sMax(taskId) = sMaxTask
         eMin(taskId) = eMinTask   
         if (eMinTask == eMaxTask) tToUpdate.exclude(taskId)
       }
@@ -186,10 +197,13 @@ extends Constraint(capacity.store, name) {
         val endVar = ends(taskId)
         val sMinTask = startVar.min
         val eMaxTask = endVar.max
+        val sMaxTask = startVar.max
+        val eMinTask = endVar.min
+        if (sMaxTask != sMax(taskId) || eMinTask != eMin(taskId)) compulsoryPartChanged(taskId)
         sMin(taskId) = sMinTask
         eMax(taskId) = eMaxTask     
-        sMax(taskId) = startVar.max 
-        eMin(taskId) = endVar.min       
+        sMax(taskId) = sMaxTask 
+        eMin(taskId) = eMinTask       
         if (sMinTask + dMinTask == eMaxTask) tToUpdate.exclude(taskId)
       }
     }
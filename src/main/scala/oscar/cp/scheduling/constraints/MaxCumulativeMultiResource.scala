@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ * *****************************************************************************/
+package oscar.cp.scheduling.constraints
+
+import java.lang.Math.{max, min}
+
+import oscar.algo.Inconsistency
+import oscar.algo.reversible.LevelLog
+import oscar.cp.core.variables.{CPIntVar, CPVar}
+import oscar.cp.core.{CPPropagStrength, Constraint}
+import oscar.cp.scheduling.util.{OpenSparseSet, ProfileEvents}
+
+/**
+ * Time-tabling on several resources at once: task i is executed on the resource resources(i),
+ * and the tasks executed on resource r must not exceed capacities(r) at any point of time.
+ * Values of resources(i) outside of [0 ; capacities.length) are ignored.
+ *
+ * It is equivalent to posting maxCumulativeResource with the Weak strength for every resource, but the bounds
+ * of the tasks are cached once for all the resources, and the compulsory part of a task is only added to the
+ * profile of the resource it is assigned to. At each call, only the resources whose profile or capacity changed
+ * and the tasks whose bounds or resource changed are filtered.
+ */
+final class MaxCumulativeMultiResource(starts: Array[CPIntVar], durations: Array[CPIntVar], ends: Array[CPIntVar], demands: Array[CPIntVar], resources: Array[CPIntVar], capacities: Array[CPIntVar])
+  extends Constraint(starts.head.store, "MaxCumulativeMultiResource") {
+
+  private[this] val nTasks = starts.length
+  private[this] val nResources = capacities.length
+  require(nTasks == durations.length)
+  require(nTasks == ends.length)
+  require(nTasks == demands.length)
+  require(nTasks == resources.length)
+
+  override def associatedVars(): Iterable[CPVar] = starts ++ durations ++ ends ++ demands ++ resources ++ capacities
+
+  // Cached bounds, shared by all the resources
+  private[this] val sMin = new Array[Int](nTasks)
+  private[this] val sMax = new Array[Int](nTasks)
+  private[this] val eMin = new Array[Int](nTasks)
+  private[this] val eMax = new Array[Int](nTasks)
+  private[this] val dMin = new Array[Int](nTasks)
+  private[this] val hMin = new Array[Int](nTasks)
+  private[this] val rSize = new Array[Int](nTasks)
+  private[this] val rMin = new Array[Int](nTasks)
+  private[this] val rMax = new Array[Int](nTasks)
+  private[this] val capaMax = Array.fill(nResources)(Int.MinValue)
+
+  // Tasks that are not fixed yet
+  private[this] val unfixed = new OpenSparseSet(nTasks)(s)
+  private[this] val unfixedTasks = unfixed.sortedByStatus
+
+  // Tasks that could be executed on each resource at setup
+  private[this] val tasksOf: Array[Array[Int]] = Array.tabulate(nResources)(r => (0 until nTasks).filter(i => resources(i).hasValue(r)).toArray)
+  private[this] val profiles = Array.tabulate(nResources)(r => new ResourceProfile(tasksOf(r).length))
+
+  // Reversible contribution of each task: the resource on which it is added, -1 if none
+  private[this] val contribResource = Array.fill(nTasks)(-1)
+  private[this] val contribStart = new Array[Int](nTasks)
+  private[this] val contribEnd = new Array[Int](nTasks)
+  private[this] val contribHeight = new Array[Int](nTasks)
+
+  // Changes since the last call
+  private[this] val taskChanged = new Array[Boolean](nTasks)
+  private[this] val changedTasks = new Array[Int](nTasks)
+  private[this] var nChangedTasks = 0
+  private[this] val resourceChanged = new Array[Boolean](nResources)
+  private[this] val changedResources = new Array[Int](nResources)
+  private[this] var nChangedResources = 0
+  private[this] var lastCallCompleted = false
+
+  // Used to iterate on the domain of resources
+  private[this] val values = new Array[Int](if (nTasks == 0) 0 else resources.map(_.size).max)
+
+  override def setup(l: CPPropagStrength): Unit = {
+    var i = 0
+    while (i < nTasks) {
+      if (durations(i).max > 0 && demands(i).max > 0 && (0 until nResources).exists(r => resources(i).hasValue(r))) {
+        if (!starts(i).isBound) starts(i).callPropagateWhenBoundsChange(this)
+        if (!durations(i).isBound) durations(i).callPropagateWhenBoundsChange(this)
+        if (!ends(i).isBound) ends(i).callPropagateWhenBoundsChange(this)
+        if (!demands(i).isBound) demands(i).callPropagateWhenBoundsChange(this)
+        if (!resources(i).isBound) resources(i).callPropagateWhenDomainChanges(this)
+      }
+      else unfixed.exclude(i)
+      i += 1
+    }
+    capacities.foreach(c => if (!c.isBound) c.callPropagateWhenBoundsChange(this))
+    propagate()
+  }
+
+  override def propagate(): Unit = {
+    val checkAll = !lastCallCompleted
+    lastCallCompleted = false
+    if (checkAll) {
+      // the previous call failed, forget the tasks that were marked
+      while (nChangedTasks > 0) {
+        nChangedTasks -= 1
+        taskChanged(changedTasks(nChangedTasks)) = false
+      }
+    }
+
+    // Step 1: update the cache and the contributions of the tasks
+    val limit = unfixed.limit.value
+    var p = limit
+    while (p > 0) {
+      p -= 1
+      val i = unfixedTasks(p)
+      if (updateTask(i) || checkAll) {
+        taskChanged(i) = true
+        changedTasks(nChangedTasks) = i
+        nChangedTasks += 1
+      }
+    }
+
+    // Step 2: update the capacities
+    var resource = 0
+    while (resource < nResources) {
+      val capa = capacities(resource).max
+      if (capa != capaMax(resource) || checkAll) {
+        capaMax(resource) = capa
+        markResource(resource)
+      }
+      resource += 1
+    }
+
+    // Step 3: check the profiles that changed
+    var k = 0
+    while (k < nChangedResources) {
+      val r = changedResources(k)
+      val profile = profiles(r)
+      profile.refresh()
+      capacities(r).updateMin(profile.maxHeight)
+      k += 1
+    }
+
+    // Step 4: filter the tasks on the resources whose profile changed
+    val newLimit = unfixed.limit.value
+    val status = unfixed.status
+    k = 0
+    while (k < nChangedResources) {
+      val r = changedResources(k)
+      val tasks = tasksOf(r)
+      var j = tasks.length
+      while (j > 0) {
+        j -= 1
+        val i = tasks(j)
+        if (status(i) < newLimit && !taskChanged(i) && resources(i).hasValue(r)) filterTask(i, r)
+      }
+      k += 1
+    }
+
+    // Step 5: filter the tasks that changed on their other resources
+    k = 0
+    while (k < nChangedTasks) {
+      val i = changedTasks(k)
+      if (status(i) < newLimit) {
+        val nValues = resources(i).fillArray(values)
+        var v = 0
+        while (v < nValues) {
+          val r = values(v)
+          if (r >= 0 && r < nResources) filterTask(i, r)
+          v += 1
+        }
+      }
+      taskChanged(i) = false
+      k += 1
+    }
+
+    k = 0
+    while (k < nChangedResources) {
+      resourceChanged(changedResources(k)) = false
+      k += 1
+    }
+    nChangedTasks = 0
+    nChangedResources = 0
+    lastCallCompleted = true
+  }
+
+  @inline private def markResource(r: Int): Unit = {
+    if (!resourceChanged(r)) {
+      resourceChanged(r) = true
+      changedResources(nChangedResources) = r
+      nChangedResources += 1
+    }
+  }
+
+  // Updates the cached bounds of the task and its contribution, returns true if they changed
+  private def updateTask(i: Int): Boolean = {
+    val resource = resources(i)
+    val start = starts(i)
+    val end = ends(i)
+    val newSMin = start.min
+    val newSMax = start.max
+    val newEMin = end.min
+    val newEMax = end.max
+    val newDMin = durations(i).min
+    val newHMin = demands(i).min
+    val newRSize = resource.size
+    val newRMin = resource.min
+    val newRMax = resource.max
+
+    val changed = newSMin != sMin(i) || newSMax != sMax(i) || newEMin != eMin(i) || newEMax != eMax(i) ||
+      newDMin != dMin(i) || newHMin != hMin(i) || newRSize != rSize(i) || newRMin != rMin(i) || newRMax != rMax(i)
+
+    if (changed) {
+      sMin(i) = newSMin
+      sMax(i) = newSMax
+      eMin(i) = newEMin
+      eMax(i) = newEMax
+      dMin(i) = newDMin
+      hMin(i) = newHMin
+      rSize(i) = newRSize
+      rMin(i) = newRMin
+      rMax(i) = newRMax
+
+      if (newRSize == 1 && newRMin >= 0 && newRMin < nResources && newSMax < newEMin && newHMin > 0) {
+        if (contribResource(i) != newRMin || contribStart(i) != newSMax || contribEnd(i) != newEMin || contribHeight(i) != newHMin) {
+          logContribution(i)
+          setContribution(i, newRMin, newSMax, newEMin, newHMin)
+        }
+      }
+      else if (contribResource(i) >= 0) {
+        logContribution(i)
+        setContribution(i, -1, 0, 0, 0)
+      }
+    }
+
+    if (newRSize == 1 && start.isBound && end.isBound && durations(i).isBound && demands(i).isBound) unfixed.exclude(i)
+
+    changed
+  }
+
+  private def filterTask(i: Int, r: Int): Unit = {
+    val h = hMin(i)
+    if (h > 0) {
+      val C = capaMax(r) - h
+      val profile = profiles(r)
+      if (resources(i).isBound) {
+        // the task is executed on r, push it
+        val contributes = sMax(i) < eMin(i)
+        if (sMin(i) < sMax(i)) {
+          val profileSMin = profile.sweepLR(i, C, contributes)
+          if (!contributes && profileSMin > sMax(i)) throw Inconsistency
+          val newSMin = min(profileSMin, sMax(i))
+          if (newSMin > sMin(i)) {
+            starts(i).updateMin(newSMin)
+            val newEMin = newSMin + dMin(i)
+            if (newEMin > eMin(i)) ends(i).updateMin(newEMin)
+          }
+        }
+        if (eMin(i) < eMax(i)) {
+          val profileEMax = profile.sweepRL(i, C, contributes)
+          if (!contributes && profileEMax < eMin(i)) throw Inconsistency
+          val newEMax = max(profileEMax, eMin(i))
+          if (newEMax < eMax(i)) {
+            ends(i).updateMax(newEMax)
+            val newSMax = newEMax - dMin(i)
+            if (newSMax < sMax(i)) starts(i).updateMax(newSMax)
+          }
+        }
+      }
+      else {
+        // the task could be executed on r, check that it fits
+        val newEMin =
+          if (sMin(i) < sMax(i)) {
+            val newSMin = min(profile.sweepLR(i, C, false), sMax(i))
+            if (newSMin > sMin(i)) max(newSMin + dMin(i), eMin(i))
+            else eMin(i)
+          }
+          else eMin(i)
+
+        val newSMax =
+          if (eMin(i) < eMax(i)) {
+            val newEMax = max(profile.sweepRL(i, C, false), eMin(i))
+            if (newEMax < eMax(i)) min(newEMax - dMin(i), sMax(i))
+            else sMax(i)
+          }
+          else sMax(i)
+
+        if (newSMax < newEMin && profile.maxInterval(newSMax, newEMin) > C) {
+          resources(i).removeValue(r)
+        }
+      }
+    }
+  }
+
+  /*
+   * Reversibility of the contributions: changes are logged, and undone on backtrack as
+   * ReversibleInt restores its value.
+   */
+
+  private[this] object contributionsLog extends LevelLog(s) {
+
+    private[this] var logTasks = new Array[Int](16)
+    private[this] var logResources = new Array[Int](16)
+    private[this] var logStarts = new Array[Int](16)
+    private[this] var logEnds = new Array[Int](16)
+    private[this] var logHeights = new Array[Int](16)
+
+    def log(i: Int): Unit = {
+      val entry = newEntry()
+      if (entry == logTasks.length) {
+        logTasks = grow(logTasks)
+        logResources = grow(logResources)
+        logStarts = grow(logStarts)
+        logEnds = grow(logEnds)
+        logHeights = grow(logHeights)
+      }
+      logTasks(entry) = i
+      logResources(entry) = contribResource(i)
+      logStarts(entry) = contribStart(i)
+      logEnds(entry) = contribEnd(i)
+      logHeights(entry) = contribHeight(i)
+    }
+
+    final override protected def undo(entry: Int): Unit = {
+      setContribution(logTasks(entry), logResources(entry), logStarts(entry), logEnds(entry), logHeights(entry))
+    }
+  }
+
+  @inline private def logContribution(i: Int): Unit = contributionsLog.log(i)
+
+  private def setContribution(i: Int, r: Int, start: Int, end: Int, height: Int): Unit = {
+    val oldResource = contribResource(i)
+    if (oldResource >= 0) {
+      val oldHeight = contribHeight(i)
+      profiles(oldResource).addEvent(contribStart(i), -oldHeight)
+      profiles(oldResource).addEvent(contribEnd(i), oldHeight)
+      markResource(oldResource)
+    }
+    if (r >= 0) {
+      profiles(r).addEvent(start, height)
+      profiles(r).addEvent(end, -height)
+      markResource(r)
+    }
+    contribResource(i) = r
+    contribStart(i) = start
+    contribEnd(i) = end
+    contribHeight(i) = height
+  }
+
+  /*
+   * Profile of the compulsory parts of one resource, as a sorted map from times to non null
+   * height variations. The variations of a call are merged into the map at once, and points
+   * are regenerated from the map when it changed.
+   */
+  private final class ResourceProfile(maxTasks: Int) {
+
+    private[this] val events = new ProfileEvents(maxTasks * 2)
+
+    private[this] val pointTimes = new Array[Int](maxTasks * 2 + 2)
+    private[this] val pointHeights = new Array[Int](maxTasks * 2 + 2)
+    private[this] var nPoints = 2
+    private[this] var maxH = 0
+
+    pointTimes(0) = Int.MinValue
+    pointTimes(1) = Int.MaxValue
+
+    @inline def addEvent(t: Int, delta: Int): Unit = events.add(t, delta)
+
+    def refresh(): Unit = {
+      if (events.hasPending) {
+        events.merge()
+        nPoints = 1
+        maxH = 0
+        var h = 0
+        var i = 0
+        while (i < events.size) {
+          h += events.delta(i)
+          if (h > maxH) maxH = h
+          pointTimes(nPoints) = events.time(i)
+          pointHeights(nPoints) = h
+          nPoints += 1
+          i += 1
+        }
+        pointTimes(nPoints) = Int.MaxValue
+        pointHeights(nPoints) = 0
+        nPoints += 1
+      }
+    }
+
+    def maxHeight: Int = maxH
+
+    // returns the profile event at t or the closest before
+    @inline private def indexBefore(t: Int): Int = {
+      var l = 0
+      var r = nPoints - 1
+      while (l + 1 < r) {
+        val i = (l + r) >>> 1
+        if (pointTimes(i) > t) r = i
+        else l = i
+      }
+      l
+    }
+
+    // returns the profile event at t or the closest after
+    @inline private def indexAfter(t: Int): Int = {
+      var l = 0
+      var r = nPoints - 1
+      while (l + 1 < r) {
+        val i = (l + r) >>> 1
+        if (pointTimes(i) < t) l = i
+        else r = i
+      }
+      r
+    }
+
+    // same as ProfileStructure.sweepLR
+    def sweepLR(a: Int, C: Int, contributes: Boolean): Int = {
+      var event = indexBefore(sMin(a))
+      var checkFrom = Int.MinValue
+      val checkUntilDefault = if (contributes) sMax(a) else max(sMax(a) + dMin(a), eMin(a))
+      var checkUntil = min(checkUntilDefault, eMin(a))
+
+      while (pointTimes(event) < checkUntil) {
+        if (pointHeights(event) > C) {
+          checkFrom = Int.MaxValue
+          checkUntil = checkUntilDefault
+        }
+        else if (pointTimes(event) < checkFrom) {
+          checkFrom = pointTimes(event)
+          val newEMin = max(checkFrom + dMin(a), eMin(a))
+          checkUntil = min(newEMin, checkUntilDefault)
+        }
+        event += 1
+      }
+      checkFrom
+    }
+
+    // same as ProfileStructure.sweepRL
+    def sweepRL(a: Int, C: Int, contributes: Boolean): Int = {
+      var event = indexAfter(eMax(a))
+      var checkFrom = Int.MaxValue
+      val checkUntilDefault = if (contributes) eMin(a) else min(eMin(a) - dMin(a), sMax(a))
+      var checkUntil = max(checkUntilDefault, sMax(a))
+
+      while (pointTimes(event) > checkUntil) {
+        if (pointHeights(event - 1) > C) {
+          checkFrom = Int.MinValue
+          checkUntil = checkUntilDefault
+        }
+        else if (pointTimes(event) > checkFrom) {
+          checkFrom = pointTimes(event)
+          val newSMax = min(checkFrom - dMin(a), sMax(a))
+          checkUntil = max(newSMax, checkUntilDefault)
+        }
+        event -= 1
+      }
+      checkFrom
+    }
+
+    // maximum height on [time1 ; time2)
+    def maxInterval(time1: Int, time2: Int): Int = {
+      var i = indexBefore(time1)
+      var maxHeight = pointHeights(i)
+      while (i < nPoints && pointTimes(i) < time2) {
+        val h = pointHeights(i)
+        if (h > maxHeight) maxHeight = h
+        i += 1
+      }
+      maxHeight
+    }
+  }
+}
+
+object MaxCumulativeMultiResource {
+  def apply(starts: Array[CPIntVar], durations: Array[CPIntVar], ends: Array[CPIntVar], demands: Array[CPIntVar], resources: Array[CPIntVar], capacities: Array[CPIntVar]) =
+    new MaxCumulativeMultiResource(starts, durations, ends, demands, resources, capacities)
+}
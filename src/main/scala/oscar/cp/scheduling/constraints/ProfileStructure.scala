@@ -1,17 +1,27 @@
 package oscar.cp.scheduling.constraints
 
-import oscar.algo.SortUtils
-import oscar.cp.scheduling.util.OpenSparseSet
+import oscar.cp.scheduling.util.{OpenSparseSet, ProfileEvents}
 import Math.min
 import Math.max
-import oscar.algo.reversible.ReversibleInt
+import oscar.algo.reversible.LevelLog
 import oscar.cp.core.CPStore
-import oscar.algo.array.ArrayStack
 
 // Expected usage: update smin/smax...
-// Then rebuild profile
+// Then update profile
 // Finally sweep all relevant activities
 
+/*
+ * The profile of compulsory parts is maintained incrementally and reversibly:
+ * the contribution [smax ; emin) x hmin of every task is recorded, and update() only
+ * looks at the tasks marked with taskChanged since the last call (the owner of the bounds marks
+ * the tasks whose smax, emin, hmin, required or status changed). Contributions are stored
+ * as a sorted array of times with their height variations. The variations of the changed
+ * contributions are sorted and merged into it in one pass, and the profile points are then
+ * recomputed by a prefix sum: an update of k tasks costs O(k log k + #events), and nothing
+ * is done if no contribution changed.
+ * Changes are logged, and undone on backtrack as ReversibleInt restores its value. The restored
+ * tasks are marked again, as their bounds are recomputed by the owner after a backtrack.
+ */
 final class ProfileStructure(
    smin: Array[Int], 
    smax: Array[Int], 
@@ -20,191 +30,135 @@ final class ProfileStructure(
    emax: Array[Int],
    hmin: Array[Int], 
    required: Array[Boolean], 
-   possible: Array[Boolean])(implicit val store: CPStore) {
+   possible: Array[Boolean])(implicit val store: CPStore) extends LevelLog(store) {
 
   private[this] val nTasks = smax.length
 
   private[this] val pointTimes = Array.ofDim[Int](nTasks * 2 + 2)  // one point for origin of times, one for ending
   private[this] val pointHeights = Array.ofDim[Int](nTasks * 2 + 2)
-  private[this] var nPoints = 1
+  private[this] var nPoints = 2
 
-  // Initial point
+  // Initial points, the profile is empty
   pointTimes(0) = Int.MinValue
   pointHeights(0) = 0
+  pointTimes(1) = Int.MaxValue
+  pointHeights(1) = 0
+  
+  // contribution of each task to the profile, a height of 0 means no contribution
+  private[this] val contribStart = new Array[Int](nTasks)
+  private[this] val contribEnd = new Array[Int](nTasks)
+  private[this] val contribHeight = new Array[Int](nTasks)
+  
+  // sorted map from times to non null height variations
+  private[this] val events = new ProfileEvents(nTasks * 2)
 
-  // for mergeSort
-  private[this] val temp1 = Array.ofDim[Int](nTasks + 1)
-  private[this] val temp2 = Array.ofDim[Int](nTasks + 1)
+  // tasks to consider at the next update, all of them at the first one
+  private[this] val changedTasks = Array.tabulate(nTasks)(i => i)
+  private[this] val isChanged = Array.fill(nTasks)(true)
+  private[this] var nChanged = nTasks
 
-  // events
-  private[this] val sortedBySMax = Array.tabulate(nTasks)(i => i)
-  private[this] val sortedByEMin = Array.tabulate(nTasks)(i => i)
-  private var nSorted = 0
-  
-  private[this] val filteredBySMax = new Array[Int](nTasks)
-  private[this] val filteredByEMin = new Array[Int](nTasks)
-  private[this] val location = new Array[Int](nTasks)
+  // log of the changed contributions, as (task, start, end, height) before the change
+  private[this] var logTasks = new Array[Int](16)
+  private[this] var logStarts = new Array[Int](16)
+  private[this] var logEnds = new Array[Int](16)
+  private[this] var logHeights = new Array[Int](16)
+  
+  /** Marks the task, its contribution is checked at the next update */
+  @inline final def taskChanged(task: Int): Unit = {
+    if (!isChanged(task)) {
+      isChanged(task) = true
+      changedTasks(nChanged) = task
+      nChanged += 1
+    }
+  }
+
+  @inline private def setContribution(task: Int, start: Int, end: Int, height: Int): Unit = {
+    val oldHeight = contribHeight(task)
+    if (oldHeight > 0) {
+      events.add(contribStart(task), -oldHeight)
+      events.add(contribEnd(task), oldHeight)
+    }
+    if (height > 0) {
+      events.add(start, height)
+      events.add(end, -height)
+    }
+    contribStart(task) = start
+    contribEnd(task) = end
+    contribHeight(task) = height
+  }
   
-  // range of indexes of interest in sortedBySMax = [smaxMin, smaxMax[
-  // indexes outside are in toConsider
-  // this is kept incrementally
-  private[this] val smaxMinToConsider = new ReversibleInt(store, 0)
-  private[this] val smaxMaxToConsider = new ReversibleInt(store, nTasks)
+  @inline private def logContribution(task: Int): Unit = {
+    val entry = newEntry()
+    if (entry == logTasks.length) {
+      logTasks = grow(logTasks)
+      logStarts = grow(logStarts)
+      logEnds = grow(logEnds)
+      logHeights = grow(logHeights)
+    }
+    logTasks(entry) = task
+    logStarts(entry) = contribStart(task)
+    logEnds(entry) = contribEnd(task)
+    logHeights(entry) = contribHeight(task)
+  }
   
-  // same for emin
-  private[this] val eminMinToConsider = new ReversibleInt(store, 0)
-  private[this] val eminMaxToConsider = new ReversibleInt(store, nTasks)
+  final override protected def undo(entry: Int): Unit = {
+    val task = logTasks(entry)
+    setContribution(task, logStarts(entry), logEnds(entry), logHeights(entry))
+    taskChanged(task)
+  }
   
   
-  def rebuild(toConsider: OpenSparseSet): Unit = {
+  def update(toConsider: OpenSparseSet): Unit = {
     /*
-     *  Filter tasks by toConsider + has mandatory part, sort, then generate events
+     *  Update the contribution of tasks that changed, then regenerate points if needed
      */
-    
-    // Reset
-    nPoints = 1
-    nSorted = 0
-    
     val status = toConsider.status
     val limit = toConsider.limit.value
     
-    // filter and sort smax events
-    var smaxMin = smaxMinToConsider.value
-    var smaxMax = smaxMaxToConsider.value
-    val oldSMaxMin = smaxMin
-    var continue = true
-    
-    while (smaxMin < smaxMax && continue) {
-      val task = sortedBySMax(smaxMin)
-      if (status(task) < limit) continue = false
-      else smaxMin += 1
-    }
-    if (smaxMin > oldSMaxMin) smaxMinToConsider.setValue(smaxMin)
-    
-    val oldSMaxMax = smaxMax
-    continue = true
-    smaxMax -= 1
-    while (smaxMin < smaxMax && continue) {
-      val task = sortedBySMax(smaxMax)
-      if (status(task) < limit) continue = false
-      else smaxMax -= 1
-    }
-    smaxMax += 1
-    if (smaxMax < oldSMaxMax) smaxMaxToConsider.setValue(smaxMax)
-    
-    var p = smaxMin 
-    var q = 0
-    
-    // filter
-    while (p < smaxMax) {
-      val task = sortedBySMax(p)
-      if (status(task) < limit && smax(task) < emin(task) && required(task) && hmin(task) > 0) {
-        filteredBySMax(q) = task
-        location(q) = p
-        q += 1        
-      } 
-     p += 1
-    }    
-    
-    // sort 
-    SortUtils.mergeSort(filteredBySMax, smax, 0, q, temp1, temp2)
-    
-    // put tasks back sorted for mergeSort's incremental behaviour
-    p = q
-    while (p > 0) {
-      p -= 1
-      sortedBySMax(location(p)) = filteredBySMax(p) 
-    }
-
-    // filter and sort emin events
-    var eminMin = eminMinToConsider.value
-    var eminMax = eminMaxToConsider.value
-    val oldEMinMin = eminMin
-    continue = true
-    
-    while (eminMin < eminMax && continue) {
-      val task = sortedByEMin(eminMin)
-      if (status(task) < limit) continue = false
-      else eminMin += 1
-    }
-    if (eminMin > oldEMinMin) eminMinToConsider.setValue(eminMin)
-    
-    val oldEMinMax = eminMax
-    continue = true
-    eminMax -= 1
-    while (eminMin < eminMax && continue) {
-      val task = sortedByEMin(eminMax)
-      if (status(task) < limit) continue = false
-      else eminMax -= 1
-    }
-    eminMax += 1
-    if (eminMax < oldEMinMax) eminMaxToConsider.setValue(eminMax)
-    
-    p = eminMin 
-    q = 0
-    
-    // filter
-    while (p < eminMax) {
-      val task = sortedByEMin(p)
-      if (status(task) < limit && smax(task) < emin(task) && required(task) && hmin(task) > 0) {
-        filteredByEMin(q) = task
-        location(q) = p
-        q += 1        
-      } 
-     p += 1
-    }    
-    
-    // sort
-    SortUtils.mergeSort(filteredByEMin, emin, 0, q, temp1, temp2)
-    
-    // put tasks back sorted for mergeSort's incremental behaviour
-    p = q
-    while (p > 0) {
-      p -= 1
-      sortedByEMin(location(p)) = filteredByEMin(p) 
+    while (nChanged > 0) {
+      nChanged -= 1
+      val task = changedTasks(nChanged)
+      isChanged(task) = false
+      val contributes = status(task) < limit && smax(task) < emin(task) && required(task) && hmin(task) > 0
+      if (contributes) {
+        if (contribHeight(task) != hmin(task) || contribStart(task) != smax(task) || contribEnd(task) != emin(task)) {
+          logContribution(task)
+          setContribution(task, smax(task), emin(task), hmin(task))
+        }
+      }
+      else if (contribHeight(task) > 0) {
+        logContribution(task)
+        setContribution(task, 0, 0, 0)
+      }
     }
     
-    nSorted = q
-
-    // generate events
-    var s = 0 // next start
-    var e = 0 // next end
-    var h = 0 // height
-    
-    while (e < nSorted) {
-      val prevH = h
-
-      // find next event
-      var tSweepLine = emin(filteredByEMin(e))
-      if (s < nSorted) tSweepLine = min(tSweepLine, smax(filteredBySMax(s)))
-      val t = tSweepLine
+    if (events.hasPending) {
+      events.merge()
       
-      // add all tasks at smax
-      while (s < nSorted && smax(filteredBySMax(s)) == t) {
-        h += hmin(filteredBySMax(s))
-        s += 1
-      }
-
-      // remove all tasks at emin
-      while (e < nSorted && emin(filteredByEMin(e)) == t) {
-        h -= hmin(filteredByEMin(e))
-        e += 1
-      }
-
-      // if the profile has changed, register new profile point
-      if (h != prevH) {
-        pointTimes(nPoints) = t
+      // generate points
+      nPoints = 1
+      var h = 0
+      var i = 0
+      while (i < events.size) {
+        h += events.delta(i)
+        pointTimes(nPoints) = events.time(i)
         pointHeights(nPoints) = h
         nPoints += 1
+        i += 1
       }
+
+      // add end of time
+      pointTimes(nPoints) = Int.MaxValue
+      pointHeights(nPoints) = 0
+      nPoints += 1
     }
-    
-    // add end of time
-    pointTimes(nPoints) = Int.MaxValue
-    pointHeights(nPoints) = 0
-    nPoints += 1
   }
   
+  // Access to the profile points, the first one is the origin of times and the last one the end of times
+  @inline final def nProfilePoints: Int = nPoints
+  @inline final def pointTime(i: Int): Int = pointTimes(i)
+  @inline final def pointHeight(i: Int): Int = pointHeights(i)
+  
   
   /*
    * Functions to manage sweeping.
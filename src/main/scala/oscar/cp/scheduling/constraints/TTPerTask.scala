@@ -45,6 +45,8 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
   // Profile
   private[this] val profile = new ProfileStructure(sMin, sMax, dMin, eMin, eMax, hMin, requiredTasks, possibleTasks)
 
+  override protected def compulsoryPartChanged(a: Int): Unit = profile.taskChanged(a)
+
   override def associatedVars(): Iterable[CPVar] = starts ++ durations ++ ends ++ heights ++ resources ++ Array(capacity)
 
   final override def propagate(): Unit = {
@@ -65,7 +67,7 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
   }
   
   @inline private def oneSweep(): Boolean = {
-    profile.rebuild(toConsider)
+    profile.update(toConsider)
     val maxHeight = profile.maxHeight()
     if (maxHeight > C) true // Check overload 
     else pushAll(maxHeight)
@@ -103,6 +105,7 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
             
             sMin(taskId) = newSMin
             eMin(taskId) = newEMin
+            profile.taskChanged(taskId)
             
             hasChanged |= sMaxTask < newEMin  // do fixed point only if profile changes
           } 
@@ -126,6 +129,7 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
             
             eMax(taskId) = newEMax
             sMax(taskId) = newSMax
+            profile.taskChanged(taskId)
             
             hasChanged |= newSMax < eMinTask
           }
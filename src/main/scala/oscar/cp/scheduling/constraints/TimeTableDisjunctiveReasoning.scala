@@ -54,6 +54,8 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
 
   private[this] val profile = new ProfileStructure(smin, smax, dmin, emin, emax, hmin, required, possible)
 
+  override protected def compulsoryPartChanged(a: Int): Unit = profile.taskChanged(a)
+
   override def associatedVars(): Iterable[CPVar] = starts ++ durations ++ ends ++ heights ++ resources ++ Array(capacity)
 
   @inline private def updateFreeAndMaxs(limit: Int) = {
@@ -170,9 +172,9 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
     if (C == capacity.min) removeExtremal()
     else removeImpossible()
 
-    // TODO: building the profile is expensive, redo prefiltering to opt out when there are 0 pushers
+    // TODO: the profile is incremental, but redo prefiltering to opt out when there are 0 pushers
     // This happens when moi of tasks are all larger than durations, i.e. often near the root.
-    profile.rebuild(toConsider)    
+    profile.update(toConsider)    
     
     val limit = toConsider.limit.value
     
@@ -41,13 +41,14 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
 
   private[this] val sortedBySMin = Array.tabulate(nTasks){ i => i }
   private[this] val sortedByEMax = Array.tabulate(nTasks){ i => i }
-  private[this] val sortedByEMin = Array.tabulate(nTasks){ i => i }
-  private[this] val sortedBySMax = Array.tabulate(nTasks){ i => i }
   
   private[this] val activeBySMin = Array.ofDim[Int](nTasks)
   private[this] val activeByEMax = Array.ofDim[Int](nTasks)
-  private[this] val mandatoryBySMax = Array.ofDim[Int](nTasks)
-  private[this] val mandatoryByEMin = Array.ofDim[Int](nTasks)
+  
+  // profile of compulsory parts, maintained incrementally
+  private[this] val profile = new ProfileStructure(smin, smax, dmin, emin, emax, hmin, required, possible)
+
+  override protected def compulsoryPartChanged(a: Int): Unit = profile.taskChanged(a)
   
   private[this] val smaxF = Array.ofDim[Int](nTasks)
   private[this] val eminF = Array.ofDim[Int](nTasks)
@@ -73,11 +74,12 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
     
     val nActive = filterActiveSort(sortedBySMin, activeBySMin, smin)
                   filterActiveSort(sortedByEMax, activeByEMax, emax)
-    val nMandatory = filterMandatorySort(sortedByEMin, mandatoryByEMin, emin)
-                     filterMandatorySort(sortedBySMax, mandatoryBySMax, smax)
+    profile.update(toConsider)
+    val nPoints = profile.nProfilePoints - 1  // last point is the end of times
     
     // initialize TT : ttBefore smin/emax
-    var sminp, smaxp, eminp, emaxp = 0
+    var sminp, emaxp = 0
+    var pointp = 1  // first point is the origin of times
     var minHeight, e = 0L
     var maxHeight = 0
     var date, prevDate = if (nActive > 0) smin(activeBySMin(0)) else 0  // first event should be first smin
@@ -86,8 +88,7 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
       // find next date
       date = emax(activeByEMax(emaxp))
       if (sminp < nActive)    date = min(date, smin(activeBySMin(sminp)))
-      if (smaxp < nMandatory) date = min(date, smax(mandatoryBySMax(smaxp)))
-      if (eminp < nMandatory) date = min(date, emin(mandatoryByEMin(eminp)))
+      if (pointp < nPoints)   date = min(date, profile.pointTime(pointp))
       
       // update energy
       // e += minHeight * (date - prevDate)
@@ -108,16 +109,9 @@ extends CumulativeTemplate(starts, durations, ends, heights, resources, capacity
         emaxp += 1
       }
       
-      while (smaxp < nMandatory && smax(mandatoryBySMax(smaxp)) == date) {
-        val a = mandatoryBySMax(smaxp)
-        minHeight += hmin(a)
-        smaxp += 1
-      }
-      
-      while (eminp < nMandatory && emin(mandatoryByEMin(eminp)) == date) {
-        val a = mandatoryByEMin(eminp)
-        minHeight -= hmin(a)
-        eminp += 1
+      if (pointp < nPoints && profile.pointTime(pointp) == date) {
+        minHeight = profile.pointHeight(pointp)
+        pointp += 1
       }
       
       if (minHeight > C) throw Inconsistency
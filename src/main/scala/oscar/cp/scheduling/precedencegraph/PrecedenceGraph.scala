@@ -1,7 +1,7 @@
 package oscar.cp.scheduling.precedencegraph
 
 import oscar.algo.Inconsistency
-import oscar.cp.scheduling.precedencegraph.datastructures.{ActivityQueue, ActivityStack, IncreasingSet, ReversibleSetOfActivities}
+import oscar.cp.scheduling.precedencegraph.datastructures.{ActivityQueue, ActivityStack, ReversibleBitMatrix, ReversibleSetOfActivities}
 import oscar.cp.{CPIntVar, _}
 
 import scala.collection.mutable.ArrayBuffer
@@ -25,12 +25,9 @@ class PrecedenceGraph(starts:Array[CPIntVar], durations:Array[CPIntVar], ends: A
   private[this] val EMPTY_NODE = -1
 
   /*** Internal Structures ***/
-  private[this] val tasksInNonDetectablePrecsContainer : Array[Int] = Array.ofDim(_nTasks)
   private[this] val postOrderArray = Array.fill(_nTasks)(EMPTY_NODE)
   private[this] val topoOrder = Array.fill(_nTasks)(EMPTY_NODE)
   private[this] val postOrder = new ActivityQueue(_nTasks)
-  private[this] val successorsInTransitiveClosure = Array.tabulate(_nTasks)(v => new IncreasingSet(v, _nTasks))
-  private[this] val successorsInTransitiveClosureContainers : Array[Array[Int]] = Array.ofDim(_nTasks, _nTasks)
   private[this] val UNSEEN = -1
   private[this] val EXPANDED = 0
   private[this] val CLOSED = 1
@@ -40,13 +37,15 @@ class PrecedenceGraph(starts:Array[CPIntVar], durations:Array[CPIntVar], ends: A
   /*** Non Detectable Precedences ***/
   private[this] val nonDetectableSuccessors : Array[ReversibleSetOfActivities] = Array.fill(_nTasks)(new ReversibleSetOfActivities(_cp,  _nTasks))
   private[this] val nonDetectablePredecessors : Array[ReversibleSetOfActivities] = Array.fill(_nTasks)(new ReversibleSetOfActivities(_cp,  _nTasks))
-  private[this] val tasksInNonDetectablePrecs = new ReversibleSetOfActivities(_cp, _nTasks)
+  //the non detectable precedences are transitively closed, the closure is maintained on rows of bits such that a new precedence is propagated 64 tasks at a time
+  private[this] val nonDetectableSuccessorBits = new ReversibleBitMatrix(_cp, _nTasks)
+  private[this] val nonDetectablePredecessorBits = new ReversibleBitMatrix(_cp, _nTasks)
+  private[this] val newSuccessorBits = new Array[Long](nonDetectableSuccessorBits.nWords)
 
   private[this] var associatedPropagators = ArrayBuffer[Constraint]()
 
   //add the initial non detectable precedences
-  for(precs <- initialKnownPrecedences)(addNonDetectablePrec(precs._1, precs._2))
-    updateTransitiveClosureOfNonDetectablePrecedence()
+  for(precs <- initialKnownPrecedences)(addNonDetectablePrecAndCloseIfNew(precs._1, precs._2))
 
   def subscribe(c: Constraint): Unit = {
     associatedPropagators += c
@@ -55,20 +54,12 @@ class PrecedenceGraph(starts:Array[CPIntVar], durations:Array[CPIntVar], ends: A
   def nonDetectableSuccessorsOf(index: Int): Int = nonDetectableSuccessors(index).fillArray(nonDetectableSuccessorsContainers(index))
   def nonDetectablePredecessorsOf(index: Int): Int = nonDetectablePredecessors(index).fillArray(nonDetectablePredecessorsContainers(index))
   def isPrecDetectable(from: Int, to: Int) : Boolean = starts(from).max < ends(to).min
-  def isPrecNonDetectable(from: Int, to: Int) : Boolean = nonDetectableSuccessors(from).hasValue(to)
+  def isPrecNonDetectable(from: Int, to: Int) : Boolean = nonDetectableSuccessorBits.hasValue(from, to)
   def hasPrec(from: Int, to: Int): Boolean = isPrecDetectable(from, to) || isPrecNonDetectable(from, to)
   def hasPrecForPair(from: Int, to: Int) = hasPrec(from, to) || hasPrec(to, from)
   def hasNonDetectablePrecForPair(from: Int, to: Int) = isPrecNonDetectable(from, to) || isPrecNonDetectable(to, from)
 
-  def addNonDetectablePrecAndUpdateTransitiveClosure(from: Int, to: Int): Unit = {
-    if(!nonDetectableSuccessors(from).hasValue(to)) {
-      if(nonDetectableSuccessors(to).hasValue(from) || nonDetectablePredecessors(from).hasValue(to) ) {
-        throw Inconsistency
-      }
-      addNonDetectablePrec(from, to)
-      updateTransitiveClosureOfNonDetectablePrecedence()
-    }
-  }
+  def addNonDetectablePrecAndUpdateTransitiveClosure(from: Int, to: Int): Unit = addNonDetectablePrecAndCloseIfNew(from, to)
 
   def triggerPropagation() = {
     var i = 0
@@ -90,59 +81,50 @@ class PrecedenceGraph(starts:Array[CPIntVar], durations:Array[CPIntVar], ends: A
     topoOrder
   }
 
-  private def addNonDetectablePrec(from: Int, to: Int): Unit = {
-    nonDetectableSuccessors(from).add(to)
-    nonDetectablePredecessors(to).add(from)
-    tasksInNonDetectablePrecs.add(from)
-    tasksInNonDetectablePrecs.add(to)
-  }
-
-  private def updateTransitiveClosureOfNonDetectablePrecedence(): Unit = {
-    clearSuccessorsInTransitiveClosure()
-    //dfs post order is equivalent to a reversed topology sort
-    val postOrder = nonDetectableDFSPostOrder()
-    //visit the topology sort in reversed order to compute the transitive closure of the DAG of non detectable precedences
-    var indexInPostOrder = 0
-    var currentNode = postOrder(indexInPostOrder)
-    while (currentNode != EMPTY_NODE && indexInPostOrder < _nTasks ){
-      var predecessorIndex = 0
-      while (predecessorIndex < _nTasks) {
-        //for all predecessor of the current node, we add to their successors the successors of the current node
-        if(nonDetectableSuccessors(predecessorIndex).hasValue(currentNode)) {
-          successorsInTransitiveClosure(predecessorIndex).addAll(successorsInTransitiveClosure(currentNode))
+  private def addNonDetectablePrecAndCloseIfNew(from: Int, to: Int): Unit = {
+    if(!nonDetectableSuccessorBits.hasValue(from, to)) {
+      if(from == to || nonDetectableSuccessorBits.hasValue(to, from) || nonDetectablePredecessorBits.hasValue(from, to)) {
+        throw Inconsistency
+      }
+      //to and its successors become successors of from and of all its predecessors
+      var w = 0
+      while(w < newSuccessorBits.length) {
+        newSuccessorBits(w) = nonDetectableSuccessorBits.word(to, w)
+        w += 1
+      }
+      newSuccessorBits(to >>> 6) |= 1L << to
+
+      addNonDetectableSuccessors(from)
+      w = 0
+      while(w < newSuccessorBits.length) {
+        var predecessors = nonDetectablePredecessorBits.word(from, w)
+        while(predecessors != 0) {
+          addNonDetectableSuccessors((w << 6) + java.lang.Long.numberOfTrailingZeros(predecessors))
+          predecessors &= predecessors - 1
         }
-        predecessorIndex += 1
+        w += 1
       }
-
-      indexInPostOrder += 1
-      if(indexInPostOrder < _nTasks)
-        currentNode = postOrder(indexInPostOrder)
     }
+  }
 
-    //update the graph with transitive closure
-    var t = 0
-    while(t < _nTasks) {
-      var s = 0
-      val nSuccs = successorsInTransitiveClosure(t).fillArray(successorsInTransitiveClosureContainers(t))
-      while(s < nSuccs) {
-        val succ = successorsInTransitiveClosureContainers(t)(s)
-        if(t != succ && !nonDetectableSuccessors(t).hasValue(succ)){ //if new non-detectable precedence
-          addNonDetectablePrec(t,succ)
+  private def addNonDetectableSuccessors(task: Int): Unit = {
+    var w = 0
+    while(w < newSuccessorBits.length) {
+      var added = newSuccessorBits(w) & ~nonDetectableSuccessorBits.word(task, w)
+      if(added != 0) {
+        nonDetectableSuccessorBits.orWord(task, w, added)
+        while(added != 0) {
+          val succ = (w << 6) + java.lang.Long.numberOfTrailingZeros(added)
+          nonDetectableSuccessors(task).add(succ)
+          nonDetectablePredecessors(succ).add(task)
+          nonDetectablePredecessorBits.add(succ, task)
+          added &= added - 1
         }
-
-        s += 1
       }
-      t += 1
+      w += 1
     }
   }
 
-  private def nonDetectableDFSPostOrder() : Array[Int] = {
-    clearInternalStructures()
-    val nTasksInNonDetectablePrecs = tasksInNonDetectablePrecs.fillArray(tasksInNonDetectablePrecsContainer)
-    fillPostOrder(nTasksInNonDetectablePrecs, tasksInNonDetectablePrecsContainer) //reversed dfs post order
-    postOrderArray
-  }
-
   private def dagPostOrderDFS(startingNode: Int): Unit = {
     stack.push(startingNode)
     while(!stack.isEmpty) {
@@ -194,14 +176,6 @@ class PrecedenceGraph(starts:Array[CPIntVar], durations:Array[CPIntVar], ends: A
     }
   }
 
-  private def clearSuccessorsInTransitiveClosure() = {
-    var v = 0
-    while(v < _nTasks) {
-      successorsInTransitiveClosure(v).clear()
-      successorsInTransitiveClosure(v).add(v)
-      v += 1
-    }
-  }
 
 
 }
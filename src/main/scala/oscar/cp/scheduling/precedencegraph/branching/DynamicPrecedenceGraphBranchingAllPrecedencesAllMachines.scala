@@ -1,5 +1,7 @@
 package oscar.cp.scheduling.precedencegraph.branching
 
+import java.util.concurrent.{Callable, ForkJoinPool}
+
 import oscar.algo.reversible.ReversibleInt
 import oscar.algo.search.Branching
 import oscar.cp.scheduling.precedencegraph.PrecedenceGraph
@@ -8,7 +10,9 @@ import oscar.cp.{Alternative, noAlternative}
 import scala.util.Random
 
 //this branching branches on all precedences (detectable included) because transition times remove the property that all detectable precedences are (fully) propagated
-class DynamicPrecedenceGraphBranchingAllPrecedencesAllMachines(precGraphs: Array[_ <: PrecedenceGraph], machineNames: Array[String], varHeuristic: (Int, Int,Int) => Float, isPrecOrderPreferable: (Int, Int,Int) => Boolean) extends Branching {
+//if nThreads > 1, the heuristic is evaluated on the machines in parallel, the heuristic should then only read the domains,
+//and close should be called once the search is done to stop the threads
+class DynamicPrecedenceGraphBranchingAllPrecedencesAllMachines(precGraphs: Array[_ <: PrecedenceGraph], machineNames: Array[String], varHeuristic: (Int, Int,Int) => Float, isPrecOrderPreferable: (Int, Int,Int) => Boolean, nThreads: Int = 1) extends Branching with AutoCloseable {
 
   protected[this] val nMachines = precGraphs.length
   implicit private[this] val cp = precGraphs(0).store
@@ -26,6 +30,32 @@ class DynamicPrecedenceGraphBranchingAllPrecedencesAllMachines(precGraphs: Array
   private[this] val bestIndices = new Array[Int](nMaxPrecs)
   private[this] var nbBestIndices = -1
 
+  // heuristic value of each decision, decisions of machine m are in [firstPrecOfMachine(m), firstPrecOfMachine(m + 1))
+  private[this] val scores = new Array[Float](nMaxPrecs)
+  private[this] val firstPrecOfMachine = Array.tabulate(nMachines + 1)(m => decisionPrecs.indexWhere(_._1 >= m) match {
+    case -1 => nMaxPrecs
+    case i => i
+  })
+
+  // created at the first parallel evaluation, with daemon threads so that a branching which is not closed does not keep the JVM alive
+  private[this] var pool: ForkJoinPool = null
+  private[this] var closed = false
+  private[this] lazy val scoringTasks = {
+    val tasks = new java.util.ArrayList[Callable[Unit]](nMachines)
+    for (m <- 0 until nMachines) {
+      tasks.add(new Callable[Unit] {
+        override def call(): Unit = computeScores(m)
+      })
+    }
+    tasks
+  }
+
+  /** Stops the threads of the parallel evaluation, the branching cannot be used anymore if nThreads > 1 */
+  override def close(): Unit = {
+    closed = true
+    if (pool != null) pool.shutdown()
+  }
+
   val store = cp
 
   val random = new Random(42)
@@ -76,49 +106,75 @@ class DynamicPrecedenceGraphBranchingAllPrecedencesAllMachines(precGraphs: Array
 
     updateStartingNFixedPrecs()
 
+    // moves the decisions that are already known to the front
     var i = nFixedPrec.value
-    var bestIndex = nFixedPrec.value
-
     while(i < nMaxPrecs) {
       val currentPair = decisionPrecs(decisionPrecsIndices(i))
-      val machine = currentPair._1
-      if(precGraphs(machine).hasNonDetectablePrecForPair(currentPair._2,currentPair._3)) {
+      if(precGraphs(currentPair._1).hasNonDetectablePrecForPair(currentPair._2,currentPair._3)) {
         swapIndexAndIncrementNFixedPrec(i)
-        bestIndex = math.max(nFixedPrec.value, bestIndex)
-      }
-      else {
-        val bestPrec = decisionPrecs(decisionPrecsIndices(bestIndex))
-        if(varChoice(currentPair._1,currentPair._2, currentPair._3) < varChoice(bestPrec._1, bestPrec._2, bestPrec._3))
-          bestIndex = i
-
       }
       i += 1
     }
 
-    if(bestIndex == decisionPrecsIndices.length){
+    if(nFixedPrec.value == nMaxPrecs){
       foundPrecIndexToBranchOn = nMaxPrecs
     }
     else {
+      if (nThreads > 1 && nMachines > 1) {
+        if (closed) throw new IllegalStateException("the branching is closed")
+        if (pool == null) pool = new ForkJoinPool(nThreads, (p: ForkJoinPool) => {
+          val thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p)
+          thread.setDaemon(true)
+          thread
+        }, null, false)
+        pool.invokeAll(scoringTasks)
+      }
+      else {
+        var m = 0
+        while (m < nMachines) {
+          computeScores(m)
+          m += 1
+        }
+      }
+
+      var bestScore = Float.MaxValue
       i = nFixedPrec.value
+      while(i < nMaxPrecs) {
+        bestScore = math.min(bestScore, scores(decisionPrecsIndices(i)))
+        i += 1
+      }
+
       //remember all best indices and pick one randomly
-      val bestPair = decisionPrecs(decisionPrecsIndices(bestIndex))
+      i = nFixedPrec.value
       nbBestIndices = 0
       while(i < nMaxPrecs) {
-        val currentPair = decisionPrecs(decisionPrecsIndices(i))
-        if(varChoice(currentPair._1,currentPair._2, currentPair._3) == varChoice(bestPair._1,bestPair._2, bestPair._3)) {
+        if(scores(decisionPrecsIndices(i)) == bestScore) {
           bestIndices(nbBestIndices) = i
           nbBestIndices += 1
         }
         i += 1
       }
 
-      bestIndex = bestIndices(random.nextInt(/*bestIndices.length*/nbBestIndices))
+      val bestIndex = bestIndices(random.nextInt(nbBestIndices))
 
       foundPrecIndexToBranchOn = decisionPrecsIndices(bestIndex)
       swapIndexAndIncrementNFixedPrec(bestIndex)
     }
   }
 
+  // computes the heuristic value of the decisions of the machine that are not known yet
+  private def computeScores(machine: Int): Unit = {
+    val precGraph = precGraphs(machine)
+    var p = firstPrecOfMachine(machine)
+    val end = firstPrecOfMachine(machine + 1)
+    while (p < end) {
+      val pair = decisionPrecs(p)
+      if (!precGraph.hasNonDetectablePrecForPair(pair._2, pair._3))
+        scores(p) = varChoice(machine, pair._2, pair._3)
+      p += 1
+    }
+  }
+
   def updateStartingNFixedPrecs(): Unit = {
     var i = nFixedPrec.value
     var unfixedPrecFound = false
@@ -0,0 +1,42 @@
+package oscar.cp.scheduling.precedencegraph.datastructures
+
+import oscar.algo.reversible.{LevelLog, ReversibleContext}
+
+//reversible square matrix of bits, stored as rows of 64 bits words, only with additions
+class ReversibleBitMatrix(context: ReversibleContext, n: Int) extends LevelLog(context) {
+
+  val nWords: Int = (n + 63) >>> 6
+  private[this] val words = new Array[Long](n * nWords)
+
+  // log of the changed words, as (index, value before the change)
+  private[this] var logIndices = new Array[Int](16)
+  private[this] var logValues = new Array[Long](16)
+
+  @inline final def hasValue(row: Int, column: Int): Boolean = (words(row * nWords + (column >>> 6)) & (1L << column)) != 0
+
+  @inline final def word(row: Int, w: Int): Long = words(row * nWords + w)
+
+  def add(row: Int, column: Int): Unit = orWord(row, column >>> 6, 1L << column)
+
+  // sets the bits of the w^th word of the row
+  def orWord(row: Int, w: Int, bits: Long): Unit = {
+    val index = row * nWords + w
+    val value = words(index)
+    if ((value | bits) != value) {
+      log(index, value)
+      words(index) = value | bits
+    }
+  }
+
+  private def log(index: Int, value: Long): Unit = {
+    val entry = newEntry()
+    if (entry == logIndices.length) {
+      logIndices = grow(logIndices)
+      logValues = grow(logValues)
+    }
+    logIndices(entry) = index
+    logValues(entry) = value
+  }
+
+  final override protected def undo(entry: Int): Unit = words(logIndices(entry)) = logValues(entry)
+}
@@ -0,0 +1,85 @@
+package oscar.cp.scheduling.util
+
+/**
+ * Sorted map from times to the non null height variations of a profile.
+ *
+ * The variations are not inserted one by one: they are buffered by add, and merge sorts the buffer
+ * and merges it into the map in one pass, the variations at a same time being summed and the null
+ * ones dropped. Merging k variations into a map of n times costs O(n + k log k).
+ *
+ * @param maxEvents the maximum number of times in the map
+ */
+final class ProfileEvents(maxEvents: Int) {
+
+  private[this] var times = new Array[Int](maxEvents)
+  private[this] var deltas = new Array[Int](maxEvents)
+  private[this] var nEvents = 0
+
+  // buffers of the merge, swapped with the map
+  private[this] var mergedTimes = new Array[Int](maxEvents)
+  private[this] var mergedDeltas = new Array[Int](maxEvents)
+
+  // variations not merged yet, as time << 32 | delta so that they are sorted by time
+  private[this] var pending = new Array[Long](16)
+  private[this] var nPending = 0
+
+  /** The number of times in the map */
+  @inline final def size: Int = nEvents
+
+  /** The i^th time of the map, in increasing order */
+  @inline final def time(i: Int): Int = times(i)
+
+  /** The height variation at the i^th time of the map */
+  @inline final def delta(i: Int): Int = deltas(i)
+
+  /** Returns true if variations were added since the last merge */
+  @inline final def hasPending: Boolean = nPending > 0
+
+  /** Adds the variation delta at time t, the map is only changed by the next merge */
+  @inline final def add(t: Int, delta: Int): Unit = {
+    if (nPending == pending.length) pending = java.util.Arrays.copyOf(pending, nPending * 2)
+    pending(nPending) = (t.toLong << 32) | (delta & 0xFFFFFFFFL)
+    nPending += 1
+  }
+
+  /** Merges the variations added since the last merge into the map */
+  final def merge(): Unit = {
+    java.util.Arrays.sort(pending, 0, nPending)
+    var i = 0
+    var p = 0
+    var n = 0
+    while (i < nEvents || p < nPending) {
+      var t = 0
+      var delta = 0
+      if (p == nPending || (i < nEvents && times(i) < (pending(p) >> 32).toInt)) {
+        t = times(i)
+        delta = deltas(i)
+        i += 1
+      }
+      else {
+        t = (pending(p) >> 32).toInt
+        if (i < nEvents && times(i) == t) {
+          delta = deltas(i)
+          i += 1
+        }
+        while (p < nPending && (pending(p) >> 32).toInt == t) {
+          delta += pending(p).toInt
+          p += 1
+        }
+      }
+      if (delta != 0) {
+        mergedTimes(n) = t
+        mergedDeltas(n) = delta
+        n += 1
+      }
+    }
+    val oldTimes = times
+    val oldDeltas = deltas
+    times = mergedTimes
+    deltas = mergedDeltas
+    mergedTimes = oldTimes
+    mergedDeltas = oldDeltas
+    nEvents = n
+    nPending = 0
+  }
+}
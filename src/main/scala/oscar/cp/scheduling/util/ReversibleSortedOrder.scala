@@ -0,0 +1,51 @@
+package oscar.cp.scheduling.util
+
+import oscar.algo.reversible.{LevelLog, ReversibleContext}
+
+/**
+ * Permutation of [0, nElements) kept sorted according to keys given at each call of sort.
+ *
+ * The order is maintained by insertion sort from the order of the previous call, which costs
+ * O(n + k) where k is the number of inversions introduced since that call. This is much cheaper
+ * than sorting from scratch when only a few keys changed, as between two propagations of a resource.
+ * The swaps are logged and undone on backtrack, such that the order is still sorted for the
+ * restored keys when the search comes back to a node.
+ */
+final class ReversibleSortedOrder(context: ReversibleContext, nElements: Int) extends LevelLog(context) {
+
+  /** The elements, in the order of the keys given to the last call of sort */
+  val sortedIndexes: Array[Int] = Array.tabulate(nElements)(i => i)
+
+  // log of the swaps, a swap at position p exchanges the elements at positions p and p + 1
+  private[this] var swaps = new Array[Int](16)
+
+  /** Sorts the elements in non-decreasing order of their key, the sort is stable */
+  final def sort(keys: Array[Int]): Unit = {
+    var i = 1
+    while (i < nElements) {
+      val element = sortedIndexes(i)
+      val key = keys(element)
+      var j = i
+      while (j > 0 && keys(sortedIndexes(j - 1)) > key) {
+        sortedIndexes(j) = sortedIndexes(j - 1)
+        logSwap(j - 1)
+        j -= 1
+      }
+      sortedIndexes(j) = element
+      i += 1
+    }
+  }
+
+  @inline private def logSwap(position: Int): Unit = {
+    val entry = newEntry()
+    if (entry == swaps.length) swaps = grow(swaps)
+    swaps(entry) = position
+  }
+
+  final override protected def undo(entry: Int): Unit = {
+    val p = swaps(entry)
+    val tmp = sortedIndexes(p)
+    sortedIndexes(p) = sortedIndexes(p + 1)
+    sortedIndexes(p + 1) = tmp
+  }
+}
@@ -43,76 +43,82 @@ class ThetaLambdaTree(nElements: Int) {
   private[this] var actiIndex = UNDEF
   private[this] var nodeIndex = UNDEF
 
+  // Leaves are kept from one call to the other: only the leaves whose activity, est or duration changed
+  // are updated, together with their ancestors in a tree where all the activities are present.
+  private[this] val leafActivities = Array.fill(nElements)(UNDEF)
+  private[this] val fullSumDurations = Array.fill(nPositions)(0)
+  private[this] val fullEcts = Array.fill(nPositions)(Int.MinValue)
+  private[this] val isNodeChanged = Array.fill(nPositions)(false)
+  private[this] val changedNodes = new Array[Int](nPositions)
+
   // Empties the tree and resets the node content to default values
   final def clearAndPlaceLeaves(sortedIndexes: Array[Int], currentEsts: Array[Int], currentMinDurations: Array[Int]) = {
     useOfGrayNodes = false
-    var p = 0
-    while(p < nPositions) {
-      if (p < nElements) {
-        activityIndexToLeafIndex(sortedIndexes(p)) = p
-      }
-      // if it is a used leaf, we update the ests and durations of the leaf according to corresponding activity
-      if (p >= firstUsedLeafPosition && p <= lastUsedLeafPosition) {
-        actiIndex = p - firstUsedLeafPosition
-        ests(p) = currentEsts(sortedIndexes(actiIndex))
-        durations(p) = currentMinDurations(sortedIndexes(actiIndex))
-      }
-      // else default values
-      else {
-        ests(p) = Int.MinValue
-        durations(p) = 0
-      }
-
-      //reset node
-      sumDurations(p) = 0
-      ects(p) = Int.MinValue
-      isActivityPresent(p) = false
-
-      p += 1
-    }
+    placeLeaves(sortedIndexes, currentEsts, currentMinDurations)
+    java.util.Arrays.fill(sumDurations, 0)
+    java.util.Arrays.fill(ects, Int.MinValue)
+    java.util.Arrays.fill(isActivityPresent, false)
   }
 
   // Fills the tree and updates all the nodes to correct values
   final def fillAndPlaceLeaves(sortedIndexes: Array[Int], currentEsts: Array[Int], currentMinDurations: Array[Int]) = {
     useOfGrayNodes = true
+    placeLeaves(sortedIndexes, currentEsts, currentMinDurations)
+    System.arraycopy(fullSumDurations, 0, sumDurations, 0, nPositions)
+    System.arraycopy(fullSumDurations, 0, sumDurationsBar, 0, nPositions)
+    System.arraycopy(fullEcts, 0, ects, 0, nPositions)
+    System.arraycopy(fullEcts, 0, ectsBar, 0, nPositions)
+    java.util.Arrays.fill(isActivityPresent, firstUsedLeafPosition, lastUsedLeafPosition + 1, true)
+    java.util.Arrays.fill(responsibleEctsBar, UNDEF)
+    java.util.Arrays.fill(responsibleSumDurationsBar, UNDEF)
+  }
 
-    //Setting the leaves up to date
-    var p = firstUsedLeafPosition
-    while(p < nPositions) {
-      // if it is a used leaf, we update the ests and durations of the leaf according to corresponding activity
-      if (p <= lastUsedLeafPosition) {
-        actiIndex = p - firstUsedLeafPosition
-        activityIndexToLeafIndex(sortedIndexes(actiIndex)) = actiIndex
-        ests(p) = currentEsts(sortedIndexes(actiIndex))
-        durations(p) = currentMinDurations(sortedIndexes(actiIndex))
-        isActivityPresent(p) = true
-        sumDurations(p) = durations(p)
-        ects(p) = ests(p) + durations(p)
-        sumDurationsBar(p) = sumDurations(p)
-        ectsBar(p) = ects(p)
-      }
-      // else default values
-      else {
-        ests(p) = Int.MinValue
-        durations(p) = 0
-        isActivityPresent(p) = false
-        sumDurations(p) = 0
-        ects(p) = Int.MinValue
-        sumDurationsBar(p) = 0
-        ectsBar(p) = Int.MinValue
+  // Updates the leaves that changed since the last call and the ancestors of these leaves in the full tree
+  private def placeLeaves(sortedIndexes: Array[Int], currentEsts: Array[Int], currentMinDurations: Array[Int]): Unit = {
+    var nChangedNodes = 0
+    actiIndex = 0
+    while (actiIndex < nElements) {
+      val activity = sortedIndexes(actiIndex)
+      nodeIndex = firstUsedLeafPosition + actiIndex
+      val est = currentEsts(activity)
+      val duration = currentMinDurations(activity)
+      if (leafActivities(actiIndex) != activity || ests(nodeIndex) != est || durations(nodeIndex) != duration) {
+        leafActivities(actiIndex) = activity
+        activityIndexToLeafIndex(activity) = actiIndex
+        ests(nodeIndex) = est
+        durations(nodeIndex) = duration
+        fullSumDurations(nodeIndex) = duration
+        fullEcts(nodeIndex) = est + duration
+        if (nodeIndex > 0) {
+          val father = (nodeIndex - 1) / 2
+          if (!isNodeChanged(father)) {
+            isNodeChanged(father) = true
+            changedNodes(nChangedNodes) = father
+            nChangedNodes += 1
+          }
+        }
       }
-      //reset node
-      responsibleEctsBar(p) = UNDEF
-      responsibleSumDurationsBar(p) = UNDEF
-      p += 1
+      actiIndex += 1
     }
 
-    var nNodesAtLevel = nTotalLeaves / 2
-    p = (firstUsedLeafPosition - 1) / 2
-    while (nNodesAtLevel > 0) {
-      updateLevelPositions(p, p + nNodesAtLevel)
-      nNodesAtLevel = nNodesAtLevel / 2
-      p = (p - 1) / 2
+    // The changed nodes are processed in FIFO order, such that a level is completed before its father's level
+    var i = 0
+    while (i < nChangedNodes) {
+      currentPos = changedNodes(i)
+      isNodeChanged(currentPos) = false
+      leftSon = 2 * currentPos + 1
+      rightSon = 2 * currentPos + 2
+      fullSumDurations(currentPos) = fullSumDurations(leftSon) + fullSumDurations(rightSon)
+      fullEcts(currentPos) = math.max(fullEcts(rightSon), fullEcts(leftSon) + fullSumDurations(rightSon))
+      if (currentPos > 0) {
+        val father = (currentPos - 1) / 2
+        if (!isNodeChanged(father)) {
+          isNodeChanged(father) = true
+          changedNodes(nChangedNodes) = father
+          nChangedNodes += 1
+        }
+      }
+      i += 1
     }
   }
 
@@ -225,27 +231,4 @@ class ThetaLambdaTree(nElements: Int) {
     }
   }
 
-  // Updates the values contained in node from minPos until maxPos (updates a level of the tree)
-  @inline
-  private def updateLevelPositions(minPos: Int, maxPos: Int) : Unit = {
-    currentPos = minPos
-    leftSon = UNDEF
-    rightSon = UNDEF
-
-    while (currentPos < maxPos) {
-      leftSon = 2 * currentPos + 1
-      rightSon = 2 * currentPos + 2
-      sumDurations(currentPos) = sumDurations(leftSon) + sumDurations(rightSon)
-      ects(currentPos) = math.max(ects(rightSon), ects(leftSon) + sumDurations(rightSon))
-
-      sumDurationsBar(currentPos) = sumDurations(currentPos)
-      ectsBar(currentPos) = ects(currentPos)
-      responsibleEctsBar(currentPos) = UNDEF
-      responsibleSumDurationsBar(currentPos) = UNDEF
-
-      // go to next node
-      currentPos += 1
-    }
-  }
-
 }
@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.searches
+
+import oscar.algo.reversible.ReversibleIndexedHeap
+import oscar.algo.search.PrimitiveBranching
+import oscar.algo.vars.IntVarLike
+import oscar.cp.core.variables.CPIntVar
+import oscar.cp.core.watcher.Watcher
+
+/**
+ * Binary Branching on the unbound variable with the smallest key, ties being broken by index.
+ *
+ * Contrary to [[oscar.algo.branchings.BinaryBranching]], the variables are not scanned at each node.
+ * The unbound variables are kept in a reversible heap, and the key of a variable is recomputed each
+ * time its domain changes. The selection of a variable then costs O(log n).
+ *
+ * @param key the key of a variable, it should only depend on the domain of this variable
+ * @param valHeuris the value tried on the left branch for the selected variable, removed on the right branch
+ */
+class BinaryHeapBranching(variables: Array[CPIntVar], key: Int => Long, valHeuris: Int => Int)
+  extends PrimitiveBranching(variables.asInstanceOf[Array[IntVarLike]]) {
+
+  private[this] val nVariables = variables.length
+  private[this] val heap = new ReversibleIndexedHeap(variables(0).store, Array.tabulate(nVariables)(key))
+
+  private class KeyWatcher(i: Int) extends Watcher {
+    final override def awake(): Unit = {
+      if (variables(i).isBound) heap.remove(i)
+      else heap.changeKey(i, key(i))
+    }
+  }
+
+  {
+    var i = 0
+    while (i < nVariables) {
+      if (variables(i).isBound) heap.remove(i)
+      else variables(i).awakeOnChanges(new KeyWatcher(i))
+      i += 1
+    }
+  }
+
+  def nextDecision(): Boolean = {
+    if (heap.isEmpty) false
+    else {
+      val i = heap.min
+      decide(i, PrimitiveBranching.Assign, valHeuris(i))
+      true
+    }
+  }
+}
+
+/** Binary Branching on the unbound variable with the smallest int heuristic value */
+class BinaryHeapBranchingInt(variables: Array[CPIntVar], varHeuris: Int => Int, valHeuris: Int => Int)
+  extends BinaryHeapBranching(variables, i => varHeuris(i).toLong, valHeuris)
+
+/** Binary Branching on the unbound variable with the smallest long heuristic value */
+class BinaryHeapBranchingLong(variables: Array[CPIntVar], varHeuris: Int => Long, valHeuris: Int => Int)
+  extends BinaryHeapBranching(variables, varHeuris, valHeuris)
+
+/** Binary Branching on the unbound variable with the smallest double heuristic value */
+class BinaryHeapBranchingDouble(variables: Array[CPIntVar], varHeuris: Int => Double, valHeuris: Int => Int)
+  extends BinaryHeapBranching(variables, i => ReversibleIndexedHeap.doubleToKey(varHeuris(i)), valHeuris)
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.searches
+
+import oscar.algo.search._
+import oscar.cp.core.variables.CPInsertSeqVar
+
+/**
+ * Insertion branching on sequence variables sharing the same elements.
+ *
+ * The undecided element with the fewest current insertions over all the sequences is selected, ties being broken
+ * by index. Its insertions are tried by increasing cost, the cost of inserting elem between pred and succ being
+ * the increment of the transition times transitions(pred)(elem) + transitions(elem)(succ) - transitions(pred)(succ).
+ * The last alternative excludes the element from all the sequences if it is not required.
+ *
+ * @param sequences the sequence variables
+ * @param elements the elements to insert
+ * @param transitions the transition times between the elements, as in the TransitionTimes constraint
+ */
+class InsertionBranching(sequences: Array[CPInsertSeqVar], elements: Array[Int], transitions: Array[Array[Int]]) extends Branching {
+
+  require(sequences.length > 0, "no sequence")
+
+  private[this] val store = sequences(0).store
+  private[this] val nSequences = sequences.length
+  private[this] val domainSize = sequences.map(_.domainSize).max
+
+  // Buffers of the insertions of the selected element
+  private[this] val preds = new Array[Int](domainSize + 1)
+  private[this] val insertionSeqs = new Array[Int](nSequences * (domainSize + 1))
+  private[this] val insertionPreds = new Array[Int](nSequences * (domainSize + 1))
+  private[this] val insertionCosts = new Array[Int](nSequences * (domainSize + 1))
+
+  /** @return the increment of the transition times if elem is inserted after pred in the sequence */
+  def insertionCost(sequence: CPInsertSeqVar, elem: Int, pred: Int): Int = {
+    val succ = sequence.nextMember(pred)
+    if (pred == -1 && succ == -1) 0
+    else if (pred == -1) transitions(elem)(succ)
+    else if (succ == -1) transitions(pred)(elem)
+    else transitions(pred)(elem) + transitions(elem)(succ) - transitions(pred)(succ)
+  }
+
+  // Returns the number of current insertions of the element, -1 if the element is decided
+  private def nInsertions(elem: Int): Int = {
+    var n = 0
+    var possible = false
+    var s = 0
+    while (s < nSequences) {
+      val sequence = sequences(s)
+      if (sequence.inDomain(elem)) {
+        if (sequence.isMember(elem)) return -1
+        if (sequence.isPossibleOrRequired(elem)) {
+          possible = true
+          n += sequence.nCurrentInsertionsFor(elem)
+        }
+      }
+      s += 1
+    }
+    if (possible) n else -1
+  }
+
+  override def alternatives(): Seq[Alternative] = {
+    var elem = -1
+    var minInsertions = Int.MaxValue
+    var i = 0
+    while (i < elements.length) {
+      val n = nInsertions(elements(i))
+      if (n >= 0 && n < minInsertions) {
+        elem = elements(i)
+        minInsertions = n
+      }
+      i += 1
+    }
+    if (elem == -1) noAlternative
+    else {
+      // Collecting the insertions
+      var nInsertionsFound = 0
+      var required = false
+      var s = 0
+      while (s < nSequences) {
+        val sequence = sequences(s)
+        if (sequence.inDomain(elem) && sequence.isPossibleOrRequired(elem)) {
+          if (sequence.isRequired(elem)) required = true
+          val nPreds = sequence.fillCurrentInsertions(elem, preds)
+          var k = 0
+          while (k < nPreds) {
+            insertionSeqs(nInsertionsFound) = s
+            insertionPreds(nInsertionsFound) = preds(k)
+            insertionCosts(nInsertionsFound) = insertionCost(sequence, elem, preds(k))
+            nInsertionsFound += 1
+            k += 1
+          }
+        }
+        s += 1
+      }
+      val order = (0 until nInsertionsFound).sortBy(k => insertionCosts(k))
+      val selected = elem
+      val inserts: Seq[Alternative] = order.map(k => {
+        val sequence = sequences(insertionSeqs(k))
+        val pred = insertionPreds(k)
+        () => sequence.insertAfter(selected, pred)
+      })
+      if (required) inserts
+      else inserts :+ (() => {
+        var s = 0
+        while (s < nSequences) {
+          val sequence = sequences(s)
+          if (sequence.inDomain(selected) && sequence.isPossibleOrRequired(selected)) sequence.excludes(selected)
+          s += 1
+        }
+        store.propagate()
+      })
+    }
+  }
+}
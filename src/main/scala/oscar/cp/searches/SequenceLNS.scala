@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.searches
+
+import oscar.algo.search.SearchStatistics
+import oscar.cp.constraints.sequence.Precedence
+import oscar.cp.core.CPSolver
+import oscar.cp.core.variables.{CPHeadSeqVar, CPInsertSeqVar, CPSeqVar}
+
+import scala.util.Random
+
+/**
+ * Large neighborhood search on the sequence variables of a model.
+ *
+ * At each iteration, a removal operator is chosen at random and some members of the sequences of the best solution
+ * are removed. The other members are kept in the same order: they are inserted in the sequences of
+ * insertion variables, or required with their precedences for head variables. The search of the model then
+ * reinserts the removed elements with a failure limit, which is doubled if the limit was reached and halved
+ * otherwise, as in the other LNS of the examples.
+ *
+ * The search of the model (e.g. an InsertionBranching) and its objective must be set before calling run.
+ *
+ * @param solver the solver of the model
+ * @param sequences the sequence variables of the model, they share the same elements
+ * @param removable true for the elements that can be removed from the sequences (e.g. all but the depots)
+ * @param removals the removal operators
+ * @param seed the seed of the random choices
+ */
+class SequenceLNS(solver: CPSolver, sequences: Array[CPSeqVar], removable: Array[Boolean], removals: Array[SequenceRemoval], seed: Int = 0) {
+
+  require(removals.length > 0, "no removal operator")
+
+  private[this] val rand = new Random(seed)
+  private[this] val domainSize = removable.length
+  private[this] val removed = new Array[Boolean](domainSize)
+
+  private[this] var best: SequencesSolution = null
+
+  solver.onSolution {
+    best = new SequencesSolution(sequences.map(_.allMembers.toArray), domainSize)
+  }
+
+  /** @return the members of the sequences in the best solution found, null if no solution was found */
+  def bestSolution: SequencesSolution = best
+
+  /** Number of iterations in which each removal operator improved the best solution */
+  val nImprovements: Array[Int] = new Array[Int](removals.length)
+
+  /**
+   * Keeps the members of the solution that are not removed, in the same order
+   */
+  private def relax(solution: SequencesSolution): Unit = {
+    var s = 0
+    while (s < sequences.length) {
+      val kept = solution.routes(s).filterNot(removed(_))
+      sequences(s) match {
+        case sequence: CPInsertSeqVar =>
+          var pred = -1
+          var i = 0
+          while (i < kept.length) {
+            val elem = kept(i)
+            if (!sequence.isMember(elem)) sequence.markInsertedAfter(elem, pred)
+            pred = elem
+            i += 1
+          }
+        case sequence: CPHeadSeqVar =>
+          kept.foreach(sequence.requires)
+          solver.add(Precedence(sequence, kept.toSeq))
+        case sequence => throw new IllegalArgumentException("sequence variable not supported: " + sequence.getClass.getName)
+      }
+      s += 1
+    }
+    solver.propagate()
+  }
+
+  /**
+   * Runs the search
+   *
+   * @param nIterations the number of relaxations
+   * @param nRemoved the number of elements removed at each relaxation
+   * @param initialFailureLimit the failure limit of the first relaxation
+   * @param timeLimit the time limit of the whole search, in seconds
+   * @return the statistics of the first search and of each relaxation
+   */
+  def run(nIterations: Int, nRemoved: Int, initialFailureLimit: Int = 100, timeLimit: Int = Int.MaxValue): Seq[SearchStatistics] = {
+    val t0 = System.currentTimeMillis()
+    def remainingTime: Int = {
+      if (timeLimit == Int.MaxValue) Int.MaxValue
+      else timeLimit - ((System.currentTimeMillis() - t0) / 1000).toInt
+    }
+
+    // First solution
+    val stats = Seq.newBuilder[SearchStatistics]
+    stats += solver.start(nSols = 1, timeLimit = timeLimit)
+
+    var limit = initialFailureLimit
+    var iteration = 0
+    while (best != null && iteration < nIterations && remainingTime > 0) {
+      val r = rand.nextInt(removals.length)
+      val solution = best
+      java.util.Arrays.fill(removed, false)
+      removals(r).select(solution, removable, nRemoved, rand, removed)
+      val stat = solver.startSubjectTo(failureLimit = limit, timeLimit = remainingTime) {
+        relax(solution)
+      }
+      if (best ne solution) nImprovements(r) += 1
+      limit = if (stat.completed) math.max(1, limit / 2) else math.min(limit, Int.MaxValue / 4) * 2
+      stats += stat
+      iteration += 1
+    }
+    stats.result()
+  }
+}
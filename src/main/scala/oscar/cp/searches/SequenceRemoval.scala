@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.searches
+
+import scala.util.Random
+
+/**
+ * Members of the sequences of a solution, in order, with the sequence and the position of each element.
+ *
+ * @param routes the members of each sequence
+ * @param domainSize the number of elements in the domain of the sequences
+ */
+class SequencesSolution(val routes: Array[Array[Int]], val domainSize: Int) {
+
+  /** The sequence of each element, -1 if the element is not member of any sequence */
+  val routeOf: Array[Int] = Array.fill(domainSize)(-1)
+
+  /** The position of each element in its sequence, -1 if the element is not member of any sequence */
+  val positionOf: Array[Int] = Array.fill(domainSize)(-1)
+
+  {
+    var r = 0
+    while (r < routes.length) {
+      val route = routes(r)
+      var i = 0
+      while (i < route.length) {
+        routeOf(route(i)) = r
+        positionOf(route(i)) = i
+        i += 1
+      }
+      r += 1
+    }
+  }
+
+  @inline final def isMember(elem: Int): Boolean = routeOf(elem) != -1
+}
+
+/**
+ * Selects the elements removed from the sequences of a solution in a large neighborhood search.
+ * The other members of the sequences are kept in the same order.
+ */
+abstract class SequenceRemoval {
+
+  /**
+   * Marks the removed elements.
+   *
+   * @param solution the solution to relax
+   * @param removable true for the elements that can be removed, the other members are always kept
+   * @param nRemoved the number of elements to remove, less elements are removed if there are not enough removable members
+   * @param removed set to true for each removed element, it must be false for all the elements on call
+   * @return the number of removed elements
+   */
+  def select(solution: SequencesSolution, removable: Array[Boolean], nRemoved: Int, rand: Random, removed: Array[Boolean]): Int
+
+  /** @return the removable members of the solution */
+  protected def candidates(solution: SequencesSolution, removable: Array[Boolean]): Array[Int] = {
+    val buffer = new Array[Int](solution.domainSize)
+    var n = 0
+    var elem = 0
+    while (elem < solution.domainSize) {
+      if (removable(elem) && solution.isMember(elem)) {
+        buffer(n) = elem
+        n += 1
+      }
+      elem += 1
+    }
+    java.util.Arrays.copyOf(buffer, n)
+  }
+}
+
+/**
+ * Removes members chosen uniformly at random.
+ */
+class RandomRemoval extends SequenceRemoval {
+
+  override def select(solution: SequencesSolution, removable: Array[Boolean], nRemoved: Int, rand: Random, removed: Array[Boolean]): Int = {
+    val elems = candidates(solution, removable)
+    val n = math.min(nRemoved, elems.length)
+    // Partial Fisher-Yates shuffle
+    var i = 0
+    while (i < n) {
+      val j = i + rand.nextInt(elems.length - i)
+      val elem = elems(j)
+      elems(j) = elems(i)
+      elems(i) = elem
+      removed(elem) = true
+      i += 1
+    }
+    n
+  }
+}
+
+/**
+ * Related removal (Shaw, Using Constraint Programming and Local Search Methods to Solve Vehicle Routing Problems).
+ *
+ * A first member is chosen at random. Then, a removed element r is chosen at random and the kept members are
+ * ranked by relatedness to r. The member at rank floor(y^determinism * nKept) is removed, y being uniform in [0, 1[,
+ * until enough elements are removed.
+ *
+ * @param relatedness the smaller relatedness(i, j), the more related the elements i and j are (e.g. their distance)
+ * @param determinism the higher, the more the most related elements are removed
+ */
+class RelatedRemoval(relatedness: (Int, Int) => Int, determinism: Double = 3.0) extends SequenceRemoval {
+
+  require(determinism >= 1, "the determinism should be at least 1")
+
+  override def select(solution: SequencesSolution, removable: Array[Boolean], nRemoved: Int, rand: Random, removed: Array[Boolean]): Int = {
+    val kept = candidates(solution, removable)
+    val n = math.min(nRemoved, kept.length)
+    if (n == 0) return 0
+    val removedElems = new Array[Int](n)
+    var nKept = kept.length
+
+    // Removes the kept element at index i
+    def remove(i: Int, nRemovedElems: Int): Unit = {
+      val elem = kept(i)
+      nKept -= 1
+      kept(i) = kept(nKept)
+      removedElems(nRemovedElems) = elem
+      removed(elem) = true
+    }
+
+    remove(rand.nextInt(nKept), 0)
+    var nRemovedElems = 1
+    val keys = new Array[Int](kept.length)
+    val order = new Array[Integer](kept.length)
+    while (nRemovedElems < n) {
+      val r = removedElems(rand.nextInt(nRemovedElems))
+      var i = 0
+      while (i < nKept) {
+        keys(i) = relatedness(r, kept(i))
+        order(i) = i
+        i += 1
+      }
+      java.util.Arrays.sort(order, 0, nKept, (a: Integer, b: Integer) => {
+        val cmp = Integer.compare(keys(a), keys(b))
+        if (cmp != 0) cmp else Integer.compare(kept(a), kept(b))
+      })
+      val rank = (math.pow(rand.nextDouble(), determinism) * nKept).toInt
+      remove(order(rank), nRemovedElems)
+      nRemovedElems += 1
+    }
+    n
+  }
+}
+
+/**
+ * String removal (Christiaens and Vanden Berghe, Slack Induction by String Removals for Vehicle Routing Problems).
+ *
+ * A seed member is chosen at random and the members are visited by relatedness to the seed.
+ * For each visited member whose sequence has not been ruined yet, a string of consecutive members of random length
+ * containing it is removed from its sequence. The members are visited again, all the sequences being restored, until
+ * enough elements are removed.
+ *
+ * @param relatedness the smaller relatedness(i, j), the more related the elements i and j are (e.g. their distance)
+ * @param maxStringLength the maximum number of consecutive members removed from a sequence
+ */
+class StringRemoval(relatedness: (Int, Int) => Int, maxStringLength: Int = 10) extends SequenceRemoval {
+
+  require(maxStringLength >= 1, "the strings should contain at least one element")
+
+  override def select(solution: SequencesSolution, removable: Array[Boolean], nRemoved: Int, rand: Random, removed: Array[Boolean]): Int = {
+    val elems = candidates(solution, removable)
+    val n = math.min(nRemoved, elems.length)
+    if (n == 0) return 0
+    val seed = elems(rand.nextInt(elems.length))
+    val neighbors = elems.sortBy(elem => (if (elem == seed) Int.MinValue else relatedness(seed, elem), elem))
+    val ruined = new Array[Boolean](solution.routes.length)
+    var count = 0
+    while (count < n) {
+      // A new pass over the neighbors if all the sequences have been ruined
+      java.util.Arrays.fill(ruined, false)
+      var k = 0
+      while (k < neighbors.length && count < n) {
+        val elem = neighbors(k)
+        val r = solution.routeOf(elem)
+        if (!ruined(r) && !removed(elem)) {
+          ruined(r) = true
+          val route = solution.routes(r)
+          val length = 1 + rand.nextInt(math.min(math.min(maxStringLength, n - count), route.length))
+          // Random window of the given length containing the position of the element
+          val pos = solution.positionOf(elem)
+          val first = math.max(0, pos - length + 1)
+          val last = math.min(pos, route.length - length)
+          val start = first + rand.nextInt(last - first + 1)
+          var i = start
+          while (i < start + length && count < n) {
+            val e = route(i)
+            if (removable(e) && !removed(e)) {
+              removed(e) = true
+              count += 1
+            }
+            i += 1
+          }
+        }
+        k += 1
+      }
+    }
+    count
+  }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.ml.classificationtree.ANDORsearch
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{Callable, ConcurrentHashMap, ExecutorService, Executors, Semaphore, TimeUnit}
+
+import oscar.ml.classificationtree.DecisionTree.{DEndNode, DNode, DTreeDecision}
+import oscar.algo.Inconsistency
+import oscar.cp.core.CPStore
+
+/**
+ * Parallel version of [[ANDORSearch.search]].
+ *
+ * The two children of an AND node are independent subproblems. When a worker is idle, the right child
+ * is solved on the worker's own copy of the model (obtained from `builder`) while the current thread solves
+ * the left child. All the threads share the same subproblem cache, and the cost of the first child to finish
+ * is used to tighten the upper bound of its sibling.
+ *
+ * Entries are only published in the cache once an OR node is completely explored, so that a thread never
+ * reads the partial result of a subproblem that is still being solved by another thread.
+ *
+ * @param builder creates a new solver and the root of a decision tree identical to the one given to `search`
+ * @param nThreads the number of threads (including the calling one) used to solve the AND nodes
+ * @param minParallelDepth the AND nodes of smaller depth are always solved sequentially
+ * @param verbose prints the solution and the statistics at the end of each search
+ */
+class ParallelANDORSearch(builder: () => (CPStore, DTreeDecision), nThreads: Int, minParallelDepth: Int = 3, verbose: Boolean = false) {
+
+  require(nThreads >= 1, "the number of threads should be at least 1")
+
+  private class Replica(val solver: CPStore, root: DTreeDecision) {
+    val nodes: Array[DTreeDecision] = new Array[DTreeDecision]((1 << root.depth) - 1)
+    root.applyToAllNode(n => nodes(n.id) = n)
+  }
+
+  // Each worker lazily builds and then keeps its own copy of the model
+  private[this] val replicas = new ThreadLocal[Replica] {
+    override def initialValue(): Replica = {
+      val (solver, root) = builder()
+      new Replica(solver, root)
+    }
+  }
+
+  private[this] val storage = new ConcurrentHashMap[(String, String), (String, Int)]()
+  private[this] val idleWorkers = new Semaphore(nThreads - 1)
+  private[this] var pool: ExecutorService = null
+  @volatile private[this] var stopcondition: () => Boolean = () => false
+
+  // Statistics of the last search
+  private[this] var _searchTime = 0L
+  private[this] var _completed = false
+
+  def storageSize: Int = storage.size
+
+  /** The time in milliseconds of the last search */
+  def searchTime: Long = _searchTime
+
+  /** Returns true if the last search has not been stopped by the timeout */
+  def isCompleted: Boolean = _completed
+
+  def search(solver: CPStore, problem: DTreeDecision, TO: Int = -1): (String, Int) = {
+    val initTime = System.currentTimeMillis()
+    val maxTime = (TO * 1000) + initTime
+    stopcondition = if (TO > 0) () => System.currentTimeMillis() >= maxTime else () => false
+    storage.clear()
+    pool = Executors.newFixedThreadPool(Math.max(1, nThreads - 1))
+
+    val sol = try {
+      ORnode(problem, Int.MaxValue, () => Int.MaxValue)
+    } finally {
+      pool.shutdown()
+      pool.awaitTermination(Long.MaxValue, TimeUnit.MILLISECONDS)
+    }
+    _searchTime = System.currentTimeMillis() - initTime
+    _completed = !stopcondition()
+
+    if (verbose) {
+      println("storage size: " + storage.size)
+      println("Solution: " + (if (sol._2 < Int.MaxValue) sol._1 else "NOSOL"))
+      println("Cost: " + sol._2)
+      println("Search time: " + _searchTime)
+      println("Completed: " + _completed)
+    }
+    sol
+  }
+
+  /**
+   * Same as the OR node of [[ANDORSearch.search]], except that the upper bound is the minimum between
+   * `cost_ub` and `limit()`, the latter being tightened by the siblings solved concurrently.
+   */
+  private def ORnode(problem: DTreeDecision, cost_ub: Int, limit: () => Int): (String, Int) = {
+    val solver = problem.solver
+    var cost_best = cost_ub
+    var sol_best = ""
+    var found = false
+    val hash = problem.getHash
+    val cached = storage.get(hash)
+    if (cached != null) {
+      cached
+    } else {
+      if (!stopcondition()) {
+        if (problem.decision.isBound) {
+          val (sol_tree, cost_tree) =
+            problem match {
+              case p: DNode =>
+                ANDnode(p, Math.min(cost_best, limit()), problem.decision.min - 1, limit)
+              case p: DEndNode =>
+                (problem.decision.min - 1 + "(" + problem.leftChild.leafString + "," + problem.rightChild.leafString + ")", p.miniSum.min)
+            }
+          if (cost_best > cost_tree) {
+            cost_best = cost_tree
+            if (problem.decision.min == 0)
+              sol_best = problem.leafString
+            else
+              sol_best = sol_tree
+            found = true
+          }
+        } else {
+          solver.pushState()
+          try {
+            solver.assign(problem.decision, 0)
+            val (sol_tree, cost_tree) =
+              problem match {
+                case p: DNode =>
+                  ANDnode(p, Math.min(cost_best, limit()), 0, limit)
+                case p: DEndNode =>
+                  (0 + "(" + problem.leftChild.leafString + "," + problem.rightChild.leafString + ")", p.miniSum.min)
+              }
+            if (cost_best > cost_tree) {
+              cost_best = cost_tree
+              sol_best = problem.leafString
+              found = true
+            }
+          } catch {
+            case e: Inconsistency =>
+          }
+          solver.pop()
+          if (!stopcondition()) {
+            solver.pushState()
+            try {
+              solver.remove(problem.decision, 0)
+              for (f <- problem.valueOrdering) {
+                if (!stopcondition()) {
+                  solver.pushState()
+                  try {
+                    val ub = Math.min(cost_best, limit())
+                    solver.smaller(problem.miniSum, ub)
+                    solver.assign(problem.decision, f)
+                    val (sol_tree, cost_tree) =
+                      problem match {
+                        case p: DNode =>
+                          ANDnode(p, ub, f - 1, limit)
+                        case p: DEndNode =>
+                          (f - 1 + "(" + problem.leftChild.leafString + "," + problem.rightChild.leafString + ")", p.miniSum.min)
+                      }
+                    if (cost_best > cost_tree) {
+                      cost_best = cost_tree
+                      sol_best = sol_tree
+                      found = true
+                    }
+                  } catch {
+                    case e: Inconsistency =>
+                  }
+                  solver.pop()
+                }
+              }
+            } catch {
+              case e: Inconsistency =>
+            }
+            solver.pop()
+          }
+        }
+      }
+      // if the limit dropped below the best cost, some better subtrees may have been pruned
+      if (found && cost_best < limit())
+        storage.put(hash, (sol_best, cost_best))
+      (sol_best, cost_best)
+    }
+  }
+
+  private def ANDnode(problem: DNode, cost_ub: Int, f_root: Int, limit: () => Int): (String, Int) = {
+    if (problem.depth < minParallelDepth || !idleWorkers.tryAcquire()) {
+      val (sol_left, cost_left) = ORnode(problem.leftChild, cost_ub, limit)
+      if (cost_left > cost_ub) {
+        return ("", Int.MaxValue)
+      }
+      val (sol_right, cost_right) = ORnode(problem.rightChild, cost_ub - cost_left, limit)
+      if (cost_left.toLong + cost_right >= cost_ub) {
+        return ("", Int.MaxValue)
+      }
+      val sol_tree = f_root + "(" + sol_left + "," + sol_right + ")"
+      (sol_tree, cost_left + cost_right)
+    } else {
+      val leftBound = new AtomicInteger(cost_ub)
+      val rightBound = new AtomicInteger(cost_ub)
+      val path = pathTo(problem)
+      val rightId = problem.rightChild.id
+      val right = pool.submit(new Callable[(String, Int)] {
+        override def call(): (String, Int) = {
+          try {
+            val res = solveOnReplica(path, rightId, cost_ub, () => Math.min(rightBound.get, limit()))
+            if (res._2 <= cost_ub)
+              decrease(leftBound, cost_ub - res._2)
+            res
+          } finally {
+            idleWorkers.release()
+          }
+        }
+      })
+      val (sol_left, cost_left) = ORnode(problem.leftChild, cost_ub, () => Math.min(leftBound.get, limit()))
+      if (cost_left > cost_ub) {
+        // the right child cannot lead to a solution anymore: let the worker stop as soon as possible
+        decrease(rightBound, -1)
+        return ("", Int.MaxValue)
+      }
+      decrease(rightBound, cost_ub - cost_left)
+      val (sol_right, cost_right) = right.get()
+      if (cost_left.toLong + cost_right >= cost_ub) {
+        return ("", Int.MaxValue)
+      }
+      val sol_tree = f_root + "(" + sol_left + "," + sol_right + ")"
+      (sol_tree, cost_left + cost_right)
+    }
+  }
+
+  /**
+   * Solves the node `id` of the replica of the current thread, after having replayed the decisions of `path`
+   */
+  private def solveOnReplica(path: Array[(Int, Int)], id: Int, cost_ub: Int, limit: () => Int): (String, Int) = {
+    val replica = replicas.get()
+    replica.solver.pushState()
+    try {
+      for ((nodeId, value) <- path)
+        replica.solver.assign(replica.nodes(nodeId).decision, value)
+      ORnode(replica.nodes(id), cost_ub, limit)
+    } catch {
+      case e: Inconsistency => ("", Int.MaxValue)
+    } finally {
+      replica.solver.pop()
+    }
+  }
+
+  // Decisions taken on the path from the root up to (and including) the given node
+  private def pathTo(problem: DTreeDecision): Array[(Int, Int)] = {
+    var path = List[(Int, Int)]()
+    var node: Option[DTreeDecision] = Some(problem)
+    while (node.isDefined) {
+      path = (node.get.id, node.get.decision.min) :: path
+      node = node.get.getParent
+    }
+    path.toArray
+  }
+
+  private def decrease(bound: AtomicInteger, value: Int): Unit = {
+    var current = bound.get
+    while (value < current && !bound.compareAndSet(current, value))
+      current = bound.get
+  }
+}
@@ -1,8 +1,8 @@
 package oscar.ml.classificationtree
 
-import ANDORsearch.ANDORSearch
+import ANDORsearch.{ANDORSearch, ParallelANDORSearch}
 import DataManipulation.{Data, FileFormat, SparseFormat}
-import DecisionTree.DTree
+import DecisionTree.{DTree, DTreeDecision}
 import oscar.cp.core.CPStore
 
 /**
@@ -20,13 +20,48 @@ object RunTreeANDOR {
           lbLeafPercent: Boolean,
           heuristic: Int,
           isPrunningMinActive: Boolean = true,
-          isCacheActive: Boolean = true
+          isCacheActive: Boolean = true,
+          nThreads: Int = 1
          ): String = {
 
     val t = System.currentTimeMillis()
-    implicit val solver = new CPStore()
 
     val db = Data(file, format)
+    val (solver, tree) = buildModel(db, isComplete, depth, lbLeaf, lbLeafPercent, heuristic)
+
+    val t1 = System.currentTimeMillis()
+    val (sol_tree, cost_tree) = if (nThreads > 1 && isPrunningMinActive && isCacheActive) {
+      val builder = () => buildModel(db, isComplete, depth, lbLeaf, lbLeafPercent, heuristic)
+      new ParallelANDORSearch(builder, nThreads, verbose = true).search(solver, tree, TO)
+    } else if (isPrunningMinActive && isCacheActive) {
+      ANDORSearch.search(solver, tree, TO)
+    } else if (isCacheActive) {
+      ANDORSearch.searchNoMin(solver, tree, TO)
+    } else {
+      ANDORSearch.searchNoCache(solver, tree, TO)
+    }
+    val t2 = System.currentTimeMillis()
+    println("Total time: " + (t2 - t) )
+
+    if(cost_tree < Int.MaxValue)
+      sol_tree
+    else
+      "NOSOL"
+
+  }
+
+  /*
+   * Build the solver and the decision tree with all its constraints posted
+   */
+  def buildModel(db: Data,
+                 isComplete: Boolean,
+                 depth: Int,
+                 lbLeaf: Int,
+                 lbLeafPercent: Boolean,
+                 heuristic: Int
+                ): (CPStore, DTreeDecision) = {
+
+    val solver = new CPStore()
 
     val tree = DTree(depth, solver, db)
     tree.countP.assign(db.nbTransP)
@@ -59,23 +94,7 @@ object RunTreeANDOR {
       case 2 => tree.computeValueOrdering
     }
 
-
-    val t1 = System.currentTimeMillis()
-    val (sol_tree, cost_tree) = if (isPrunningMinActive && isCacheActive) {
-      ANDORSearch.search(solver, tree, TO)
-    } else if (isCacheActive) {
-      ANDORSearch.searchNoMin(solver, tree, TO)
-    } else {
-      ANDORSearch.searchNoCache(solver, tree, TO)
-    }
-    val t2 = System.currentTimeMillis()
-    println("Total time: " + (t2 - t) )
-
-    if(cost_tree < Int.MaxValue)
-      sol_tree
-    else
-      "NOSOL"
-
+    (solver, tree)
   }
 
 
@@ -94,8 +113,9 @@ object solveDecisionTree extends App {
   val heuristic: Int = 1
   var isCacheActive = true
   var isPrunningMinActive = true
+  val nThreads: Int = 1
   println("===============")
-  val treeANDOR = RunTreeANDOR.run(file, format, TO, isComplete, depth, lbLeaf, lbLeafPercent, heuristic,isPrunningMinActive,isCacheActive)
+  val treeANDOR = RunTreeANDOR.run(file, format, TO, isComplete, depth, lbLeaf, lbLeafPercent, heuristic,isPrunningMinActive,isCacheActive,nThreads)
   println(treeANDOR)
 
 
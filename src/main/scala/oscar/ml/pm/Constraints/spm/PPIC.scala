@@ -96,6 +96,7 @@ class PPIC(val P: Array[CPIntVar], val minsup: Int, val data: Dataset) extends C
     System.arraycopy(psdbPosInSeq, 0, newPsdbPosInSeq, 0, innerTrailSize)
     psdbSeqId = newPsdbSeqId
     psdbPosInSeq = newPsdbPosInSeq
+    s.innerTrailGrown(innerTrailSize * 8L)
     innerTrailSize *= 2
   }
 
@@ -60,6 +60,7 @@ class PPIC(val P: Array[CPIntVar], val SDB: Array[Array[Int]], val minsup: Int)
     System.arraycopy(psdbPosInSeq, 0, newPsdbPosInSeq, 0, innerTrailSize)
     psdbSeqId = newPsdbSeqId
     psdbPosInSeq = newPsdbPosInSeq
+    s.innerTrailGrown(innerTrailSize * 8L)
     innerTrailSize *= 2
   }
 
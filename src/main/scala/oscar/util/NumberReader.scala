@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.util
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Paths, StandardOpenOption}
+
+/**
+ * Reads the numbers of a text file, separated by spaces, tabs, commas or new lines.
+ *
+ * The file is mapped in memory and the numbers are parsed from its bytes, without allocation
+ * per number: there are no lines nor strings. The keywords of the formats (e.g. the headers of
+ * the TSPLIB files) can be skipped by token or by line.
+ *
+ * @param buffer the bytes of the text, from its position to its limit
+ */
+final class NumberReader(buffer: ByteBuffer) {
+
+  def this(filepath: String) = this(NumberReader.map(filepath))
+
+  private[this] val limit = buffer.limit()
+  private[this] var pos = buffer.position()
+
+  // Numbers of the current line read by nextLineInts
+  private[this] var lineBuffer = new Array[Int](16)
+
+  @inline private def isBlank(c: Int): Boolean = c == ' ' || c == '\t' || c == ',' || c == '\r'
+
+  @inline private def isDigit(c: Int): Boolean = c >= '0' && c <= '9'
+
+  @inline private def isSeparator(c: Int): Boolean = isBlank(c) || c == '\n'
+
+  private def skipSeparators(): Unit = {
+    while (pos < limit && isSeparator(buffer.get(pos))) pos += 1
+  }
+
+  private def skipBlanks(): Unit = {
+    while (pos < limit && isBlank(buffer.get(pos))) pos += 1
+  }
+
+  /** @return true if there is another token */
+  def hasNext: Boolean = {
+    skipSeparators()
+    pos < limit
+  }
+
+  /** @return true if the next token is a number */
+  def hasNextNumber: Boolean = {
+    skipSeparators()
+    if (pos >= limit) false
+    else {
+      val c = buffer.get(pos)
+      if (isDigit(c)) true
+      else if ((c == '-' || c == '+' || c == '.') && pos + 1 < limit) {
+        val d = buffer.get(pos + 1)
+        isDigit(d) || (d == '.' && c != '.' && pos + 2 < limit && isDigit(buffer.get(pos + 2)))
+      }
+      else false
+    }
+  }
+
+  /** @return true if there is another token on the current line */
+  def hasNextOnLine: Boolean = {
+    skipBlanks()
+    pos < limit && buffer.get(pos) != '\n'
+  }
+
+  /** Skips the next token */
+  def skipToken(): Unit = {
+    skipSeparators()
+    while (pos < limit && !isSeparator(buffer.get(pos))) pos += 1
+  }
+
+  /** Skips the rest of the current line */
+  def skipLine(): Unit = {
+    while (pos < limit && buffer.get(pos) != '\n') pos += 1
+    if (pos < limit) pos += 1
+  }
+
+  /** Skips the rest of the current line and the n - 1 next ones */
+  def skipLines(n: Int): Unit = {
+    var i = 0
+    while (i < n) {
+      skipLine()
+      i += 1
+    }
+  }
+
+  def nextInt(): Int = {
+    val value = nextLong()
+    if (value < Int.MinValue || value > Int.MaxValue) {
+      throw new NumberFormatException(s"$value does not fit in an integer")
+    }
+    value.toInt
+  }
+
+  def nextLong(): Long = {
+    skipSeparators()
+    if (pos >= limit) throw new NoSuchElementException("no more number")
+    val start = pos
+    val negative = readSign()
+    if (pos >= limit || !isDigit(buffer.get(pos))) throw notANumber(start)
+    var value = 0L
+    while (pos < limit && isDigit(buffer.get(pos))) {
+      val digit = buffer.get(pos) - '0'
+      if (value > (Long.MaxValue - digit) / 10) throw notANumber(start)
+      value = value * 10 + digit
+      pos += 1
+    }
+    if (pos < limit && !isSeparator(buffer.get(pos))) throw notANumber(start)
+    if (negative) -value else value
+  }
+
+  def nextDouble(): Double = {
+    skipSeparators()
+    if (pos >= limit) throw new NoSuchElementException("no more number")
+    val start = pos
+    val negative = readSign()
+    // mantissa * 10^exponent, the digits beyond the precision of a long are ignored
+    var mantissa = 0L
+    var nDigits = 0
+    var exponent = 0
+    var exact = true
+    while (pos < limit && isDigit(buffer.get(pos))) {
+      if (mantissa < 100000000000000000L) mantissa = mantissa * 10 + (buffer.get(pos) - '0')
+      else {
+        exponent += 1
+        exact = false
+      }
+      nDigits += 1
+      pos += 1
+    }
+    if (pos < limit && buffer.get(pos) == '.') {
+      pos += 1
+      while (pos < limit && isDigit(buffer.get(pos))) {
+        if (mantissa < 100000000000000000L) {
+          mantissa = mantissa * 10 + (buffer.get(pos) - '0')
+          exponent -= 1
+        }
+        else exact = false
+        nDigits += 1
+        pos += 1
+      }
+    }
+    if (nDigits == 0) throw notANumber(start)
+    if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+      pos += 1
+      val negativeExp = readSign()
+      if (pos >= limit || !isDigit(buffer.get(pos))) throw notANumber(start)
+      var exp = 0
+      while (pos < limit && isDigit(buffer.get(pos))) {
+        if (exp < 10000) exp = exp * 10 + (buffer.get(pos) - '0')
+        pos += 1
+      }
+      exponent += (if (negativeExp) -exp else exp)
+    }
+    if (pos < limit && !isSeparator(buffer.get(pos))) throw notANumber(start)
+    val value = {
+      // exact if the mantissa and the power of ten are exact doubles, parsed as a string otherwise
+      if (exact && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+        if (exponent < 0) mantissa / NumberReader.powersOfTen(-exponent)
+        else mantissa * NumberReader.powersOfTen(exponent)
+      }
+      else java.lang.Double.parseDouble(token(start))
+    }
+    if (negative) -value else value
+  }
+
+  /** Reads n integers in values from offset */
+  def readInts(values: Array[Int], offset: Int, n: Int): Unit = {
+    var i = 0
+    while (i < n) {
+      values(offset + i) = nextInt()
+      i += 1
+    }
+  }
+
+  def nextInts(n: Int): Array[Int] = {
+    val values = new Array[Int](n)
+    readInts(values, 0, n)
+    values
+  }
+
+  /** Reads a matrix of n rows of m integers */
+  def nextIntMatrix(n: Int, m: Int): Array[Array[Int]] = Array.fill(n)(nextInts(m))
+
+  def nextDoubles(n: Int): Array[Double] = Array.fill(n)(nextDouble())
+
+  /** Reads the integers from the next token to the end of its line, which is skipped */
+  def nextLineInts(): Array[Int] = {
+    skipSeparators()
+    var n = 0
+    while (hasNextOnLine) {
+      if (n == lineBuffer.length) lineBuffer = java.util.Arrays.copyOf(lineBuffer, n * 2)
+      lineBuffer(n) = nextInt()
+      n += 1
+    }
+    skipLine()
+    java.util.Arrays.copyOf(lineBuffer, n)
+  }
+
+  // Reads an optional sign and returns true if it is a minus
+  private def readSign(): Boolean = {
+    if (pos < limit && buffer.get(pos) == '-') {
+      pos += 1
+      true
+    }
+    else {
+      if (pos < limit && buffer.get(pos) == '+') pos += 1
+      false
+    }
+  }
+
+  private def token(start: Int): String = {
+    var end = start
+    while (end < limit && !isSeparator(buffer.get(end))) end += 1
+    val bytes = new Array[Byte](end - start)
+    var i = 0
+    while (i < bytes.length) {
+      bytes(i) = buffer.get(start + i)
+      i += 1
+    }
+    new String(bytes, StandardCharsets.US_ASCII)
+  }
+
+  private def notANumber(start: Int): NumberFormatException = {
+    new NumberFormatException(s"'${token(start)}' is not a number (byte $start)")
+  }
+}
+
+object NumberReader {
+
+  def apply(filepath: String): NumberReader = new NumberReader(filepath)
+
+  // The powers of ten that are exact doubles
+  private val powersOfTen = Array.iterate(1.0, 23)(_ * 10)
+
+  // Maps the whole file in memory, the mapping remains valid after the channel is closed
+  private def map(filepath: String): ByteBuffer = {
+    val channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)
+    try channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+    finally channel.close()
+  }
+}
@@ -126,5 +126,21 @@ class ReversibleIntTest extends AnyFunSuite {
     assert((1+b) == 3)
     assert((b-1) == 1)
   }
-}
 
+  test("test trail memory") {
+    val r = new ReversibleContextImpl()
+    val a = new ReversibleInt(r, 0, 4)
+    val initialBytes = r.trailBytes
+
+    for (i <- 1 to 5000) {
+      r.pushState()
+      a.setValue(i)
+    }
+    assert(r.trailBytes > initialBytes)
+
+    r.popAll()
+    assert(a.value == 0)
+    // the stacks of the context are shrunk, the inner trail of a has grown from 4 to 8192 entries
+    assert(r.trailBytes == initialBytes + (8192 - 4) * 4L)
+  }
+}
@@ -323,5 +323,26 @@ class SearchTest extends TestSuite {
     assert(a.value == 5)
     assert(b.value == 3)
   }
-}
 
+  test("test memory limit") {
+    val node = new DFSearchNode()
+
+    val i = new ReversibleInt(node, 0)
+    node.search {
+      if (i.value > 200) noAlternative
+      else branch { i.incr() } { i.incr() }
+    }
+
+    // the search stops as soon as the trail grows
+    node.memoryLimit = node.trailBytes
+    val stat = node.start()
+    assert(stat.memoryLimitReached)
+    assert(!stat.completed)
+    assert(stat.nSols == 0)
+
+    node.memoryLimit = Long.MaxValue
+    val stat2 = node.start(nSols = 1)
+    assert(!stat2.memoryLimitReached)
+    assert(stat2.nSols == 1)
+  }
+}
@@ -0,0 +1,75 @@
+package oscar.cp.constraints
+
+import oscar.cp._
+import oscar.cp.constraints.mdd.{DecisionDiagramBound, DecisionDiagramModel}
+import oscar.cp.testUtils._
+
+import scala.util.Random
+
+class DecisionDiagramBoundSuite extends TestSuite {
+
+  // all different on the values, the state is the set of used values
+  object AllDifferentModel extends DecisionDiagramModel[Set[Int]] {
+    def initialState: Set[Int] = Set()
+    def transition(state: Set[Int], i: Int, value: Int): Set[Int] = if (state.contains(value)) null else state + value
+    def merge(a: Set[Int], b: Set[Int]): Set[Int] = a.intersect(b)
+  }
+
+  // minimal assignment cost sum(coefs(i) * x(i)) with all different values
+  private def solve(coefs: Array[Int], maxWidth: Int, primalHeuristic: Boolean = false): (Int, Int) = {
+    implicit val cp = CPSolver()
+    val n = coefs.length
+    val x = Array.fill(n)(CPIntVar(0 until n))
+    val objective = sum(Array.tabulate(n)(i => x(i) * coefs(i)))
+    add(allDifferent(x))
+    minimize(objective)
+    if (maxWidth > 0) {
+      val bound = new DecisionDiagramBound(x, coefs, cp.obj(objective), AllDifferentModel, maxWidth)
+      add(bound)
+      if (primalHeuristic) search(binaryIdx(x, i => x(i).size, bound.primalValue))
+      else search(binaryFirstFail(x))
+    }
+    else search(binaryFirstFail(x))
+    var best = Int.MaxValue
+    onSolution { best = objective.value }
+    val stats = start()
+    (best, stats.nNodes)
+  }
+
+  test("the bound should not change the optimum and should reduce the search") {
+    val rand = new Random(0)
+    for (_ <- 0 until 5) {
+      val coefs = Array.fill(7)(rand.nextInt(20) - 5)
+      val (optimum, nNodes) = solve(coefs, 0)
+      for (width <- Seq(1, 3, 10)) {
+        val (optimumDD, nNodesDD) = solve(coefs, width)
+        optimumDD shouldBe optimum
+        assert(nNodesDD <= nNodes)
+        solve(coefs, width, primalHeuristic = true)._1 shouldBe optimum
+      }
+    }
+  }
+
+  test("an exact diagram should give the optimum at the root") {
+    val coefs = Array(3, -2, 7, 1, 5)
+    val (optimum, _) = solve(coefs, 0)
+    implicit val cp = CPSolver()
+    val x = Array.fill(5)(CPIntVar(0 until 5))
+    val objective = sum(Array.tabulate(5)(i => x(i) * coefs(i)))
+    minimize(objective)
+    val bound = new DecisionDiagramBound(x, coefs, cp.obj(objective), AllDifferentModel, 1000)
+    add(bound)
+    objective.min shouldBe optimum
+    bound.hasPrimalSolution shouldBe true
+    bound.primalObjective shouldBe optimum
+    bound.primalSolution.distinct.length shouldBe 5
+  }
+
+  test("a relaxed diagram without path should fail") {
+    implicit val cp = CPSolver()
+    val x = Array.fill(3)(CPIntVar(0 until 2))
+    val objective = sum(x)
+    minimize(objective)
+    postAndCheckFailure(cp, new DecisionDiagramBound(x, Array(1, 1, 1), cp.obj(objective), AllDifferentModel, 5))
+  }
+}
@@ -24,6 +24,70 @@ class SingleBitVectorDomainSuite extends IntDomainSuite {
   }
 }
 
+/**
+ *  Test the multi-word bit set implementation of a sparse domain
+ */
+class BitSetDomainSuite extends IntDomainSuite {
+  override def sparseDomain(context: ReversibleContext, minValue: Int, maxValue: Int): IntDomain = {
+    new BitSetDomain(context, minValue, maxValue)
+  }
+
+  test("Bounds, next and previous values should be found across words") {
+    val context = new ReversibleContextImpl()
+    val domain = new BitSetDomain(context, -100, 200)
+    context.pushState()
+    (-100 to 150).foreach(domain.removeValue)
+    domain.removeValue(200)
+    assert(domain.min == 151)
+    assert(domain.max == 199)
+    assert(domain.size == 49)
+    domain.removeValue(160)
+    assert(domain.nextValue(160) == 161)
+    assert(domain.prevValue(160) == 159)
+    assert(domain.iterator.toSeq == (151 to 199).filter(_ != 160))
+    context.pop()
+    assert(domain.size == 301)
+    assert(domain.min == -100)
+    assert(domain.max == 200)
+    assert((-100 to 200).forall(domain.hasValue))
+  }
+
+  test("Intersect should only keep the values of the mask") {
+    val context = new ReversibleContextImpl()
+    val domain = new BitSetDomain(context, 0, 129)
+    val mask = new Array[Long](3)
+    Seq(3, 64, 100, 128).foreach(i => mask(i >>> 6) |= 1L << i)
+    context.pushState()
+    domain.intersect(mask)
+    assert(domain.size == 4)
+    assert(domain.min == 3)
+    assert(domain.max == 128)
+    assert(domain.iterator.toSeq == Seq(3, 64, 100, 128))
+    context.pop()
+    assert(domain.size == 130)
+    assert(isInconsistent(domain.intersect(new Array[Long](3))))
+  }
+
+  test("Delta should return the values removed since the given size") {
+    val context = new ReversibleContextImpl()
+    val domain = new BitSetDomain(context, 0, 199)
+    context.pushState()
+    domain.removeValue(10)
+    domain.updateMin(5)
+    val size = domain.size
+    domain.removeValues(Array(70, 130), 2)
+    domain.updateMax(150)
+    assert(domain.delta(5, 199, size).toSet == Set(70, 130) ++ (151 to 199))
+    assert(domain.delta(0, 199, 200).toSet == Set(10, 70, 130) ++ (0 to 4) ++ (151 to 199))
+    assert(domain.delta(-5, 199, 205).toSet == Set(10, 70, 130) ++ (-5 to 4) ++ (151 to 199))
+    domain.assign(100)
+    assert(domain.delta(0, 199, 200).toSet == (0 to 199).toSet - 100)
+    context.pop()
+    domain.removeValue(3)
+    assert(domain.delta(0, 199, 200).toList == List(3))
+  }
+}
+
 /**
  *  Generic class to test implementations of a sparse domain
  *  @author Renaud Hartert ren.hartert@gmail.com
@@ -221,4 +285,31 @@ abstract class IntDomainSuite extends IntervalDomainSuite {
     assert(domain.nextValue(13) == 15)
     assert(domain.nextValue(18) == 20)
   }
+
+  test("RemoveValues should remove all the values of the array") {
+    val context = new ReversibleContextImpl()
+    val domain = sparseDomain(context, 5, 20)
+    context.pushState()
+    domain.removeValues(Array(5, 9, 30, 20, 9), 5)
+    assert(domain.size == 13)
+    assert(domain.min == 6)
+    assert(domain.max == 19)
+    assert(!domain.hasValue(9))
+    context.pop()
+    assert(domain.size == 16)
+  }
+
+  test("RestrictToSorted should remove the values not contained in the array") {
+    val context = new ReversibleContextImpl()
+    val domain = sparseDomain(context, 5, 20)
+    context.pushState()
+    domain.restrictToSorted(Array(0, 6, 8, 9, 25), 5)
+    assert(domain.size == 3)
+    assert(domain.min == 6)
+    assert(domain.max == 9)
+    assert(domain.iterator.toSet == Set(6, 8, 9))
+    context.pop()
+    assert(domain.size == 16)
+    assert(isInconsistent(domain.restrictToSorted(Array(1, 2, 21), 3)))
+  }
 }
\ No newline at end of file
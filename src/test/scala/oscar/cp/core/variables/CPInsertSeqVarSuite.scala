@@ -0,0 +1,86 @@
+package oscar.cp.core.variables
+
+import oscar.cp.testUtils._
+import oscar.cp.core.{CPPropagStrength, CPStore, Constraint}
+
+import scala.collection.mutable.ArrayBuffer
+
+class CPInsertSeqVarSuite extends TestSuite {
+
+  test("current insertions should be maintained on insertions and restored on pop") {
+    val store = new CPStore()
+    val seq = CPInsertSeqVar(5)(store)
+    assert(seq.nCurrentInsertionsFor(0) == 1)
+    assert(seq.allCurrentInsertionsFor(0).toSet == Set(-1))
+
+    store.pushState()
+    seq.insertAfter(2, -1)
+    seq.insertAfter(3, 2)
+    assert(seq.nCurrentInsertionsFor(0) == 3)
+    assert(seq.allCurrentInsertionsFor(0).toSet == Set(-1, 2, 3))
+    assert(seq.nCurrentInsertionsFor(2) == 0)
+    assert(seq.allCurrentInsertionsFor(2).isEmpty)
+
+    seq.removeInsertion(0, 2)
+    assert(seq.nCurrentInsertionsFor(0) == 2)
+    assert(seq.allCurrentInsertionsFor(0).toSet == Set(-1, 3))
+
+    store.pop()
+    assert(seq.nCurrentInsertionsFor(0) == 1)
+    assert(seq.allCurrentInsertionsFor(0).toSet == Set(-1))
+    assert(seq.nCurrentInsertionsFor(2) == 1)
+    assert(seq.allCurrentInsertionsFor(2).toSet == Set(-1))
+  }
+
+  test("fillCurrentInsertions should only copy the members after which the element can be inserted") {
+    val store = new CPStore()
+    val seq = CPInsertSeqVar(5)(store)
+    val buffer = new Array[Int](seq.domainSize + 1)
+    seq.insertAfter(2, -1)
+    seq.insertAfter(3, 2)
+    seq.removeInsertion(4, 0)
+    seq.removeInsertion(4, 1)
+    var n = seq.fillCurrentInsertions(4, buffer)
+    assert(buffer.take(n).toSet == Set(-1, 2, 3))
+    seq.removeInsertion(4, -1)
+    n = seq.fillCurrentInsertions(4, buffer)
+    assert(buffer.take(n).toSet == Set(2, 3))
+    assert(seq.nCurrentInsertionsFor(4) == 2)
+    assert(seq.fillCurrentInsertions(2, buffer) == 0)
+  }
+
+  test("removeInsertion should exclude the element if it has no current insertion") {
+    val store = new CPStore()
+    val seq = CPInsertSeqVar(3)(store)
+    seq.removeInsertion(0, -1)
+    assert(seq.isExcluded(0))
+    assert(seq.nCurrentInsertionsFor(0) == 0)
+    assert(seq.nCurrentInsertionsFor(1) == 1)
+  }
+
+  test("inserted and excluded elements should be notified to the L1 listeners") {
+    val store = new CPStore()
+    val seq = CPInsertSeqVar(4)(store)
+
+    class Listener extends Constraint(store, "Listener") {
+      val inserted = ArrayBuffer[Int]()
+      val excluded = ArrayBuffer[Int]()
+      override def setup(l: CPPropagStrength): Unit = {
+        seq.callValInsertedWhenInserted(this)
+        seq.callValExcludedWhenExcluded(this)
+      }
+      override def valInserted(x: CPSeqVar, elem: Int): Unit = inserted += elem
+      override def valExcluded(x: CPSeqVar, elem: Int): Unit = excluded += elem
+      override def associatedVars(): Iterable[CPVar] = Array(seq)
+    }
+
+    val listener = new Listener
+    store.post(listener)
+    seq.insertAfter(1, -1)
+    seq.insertAfter(3, 1)
+    seq.excludes(2)
+    store.propagate()
+    assert(listener.inserted == Seq(1, 3))
+    assert(listener.excluded == Seq(2))
+  }
+}
@@ -652,4 +652,138 @@ class CPIntVarAdaptableSuite extends TestSuite {
     assert(maxbyBefore == maxbyAfter)
   }
   
+
+  // Bit set containing the given values, value v being represented by the bit v - base
+  private def bitSet(values: Iterable[Int], base: Int, nWords: Int): Array[Long] = {
+    val words = new Array[Long](nWords)
+    values.foreach(v => words((v - base) >>> 6) |= 1L << (v - base))
+    words
+  }
+
+  test("Intersect should only keep the values contained in the bit set") {
+    for (continuous <- Seq(true, false)) {
+      val store = new CPStore()
+      val variable = new CPIntVarAdaptable(store, -10, 200, continuous)
+      val kept = Seq(-10, 5, 63, 64, 150, 180)
+      store.pushState()
+      variable.intersect(bitSet(kept :+ 250, -20, 5), -20)
+      assert(variable.size == kept.size)
+      assert(variable.min == -10)
+      assert(variable.max == 180)
+      assert(variable.toArray.sorted.toSeq == kept)
+      assert(variable.valueAfter(64) == 150)
+      assert(variable.valueBefore(150) == 64)
+      store.pop()
+      assert(variable.size == 211)
+      assert((-10 to 200).forall(variable.hasValue))
+    }
+  }
+
+  test("Intersect should fail if no value is contained in the bit set") {
+    val store = new CPStore()
+    val variable = new CPIntVarAdaptable(store, 0, 100, false)
+    assert(isInconsistent(variable.intersect(bitSet(Seq(101, 120), 0, 2), 0)))
+  }
+
+  test("Intersect should notify the domain event once and each removed value") {
+    val store = new CPStore()
+    val variable = new CPIntVarAdaptable(store, 0, 100, true)
+    val removedValues = scala.collection.mutable.Set[Int]()
+    var n = 0
+
+    class TestConstraint extends Constraint(store, "intersectTester") {
+      override def setup(l: CPPropagStrength): Unit = {
+        variable.callPropagateWhenDomainChanges(this)
+        variable.callValRemoveWhenValueIsRemoved(this)
+      }
+      override def propagate(): Unit = n += 1
+      override def valRemove(x: CPIntVar, value: Int): Unit = removedValues.add(value)
+      override def associatedVars(): Iterable[CPVar] = ???
+    }
+
+    store.add(new TestConstraint)
+    variable.intersect(bitSet(Seq(1, 50, 70), 0, 2), 0)
+    store.propagate()
+    assert(n == 1)
+    assert(removedValues == (0 to 100).toSet -- Set(1, 50, 70))
+  }
+
+  test("Next and previous values should be consistent with the domain after removals and backtracks") {
+    val rand = new Random(0)
+    // Ranges represented with and without the bit set
+    for (maxValue <- Seq(300, 5000)) {
+      val store = new CPStore()
+      val variable = new CPIntVarAdaptable(store, 0, maxValue, false)
+      for (_ <- 1 to 50) {
+        store.pushState()
+        for (_ <- 1 to 20) {
+          if (variable.size > 2) {
+            rand.nextInt(3) match {
+              case 0 => variable.removeValue(variable.randomValue(rand))
+              case 1 => variable.updateMin(variable.min + rand.nextInt(3))
+              case 2 => variable.updateMax(variable.max - rand.nextInt(3))
+            }
+          }
+        }
+        val values = variable.toArray.sorted
+        assert(values.head == variable.min)
+        assert(values.last == variable.max)
+        for (i <- 0 until values.length - 1) {
+          assert(variable.valueAfter(values(i)) == values(i + 1))
+          assert(variable.valueBefore(values(i + 1)) == values(i))
+        }
+        if (rand.nextBoolean()) store.pop()
+      }
+    }
+  }
+
+  test("RemoveValues should trail and notify the constraints once") {
+    for (continuous <- Seq(true, false)) {
+      val store = new CPStore()
+      val variable = new CPIntVarAdaptable(store, 0, 10, continuous)
+      val removedValues = scala.collection.mutable.Set[Int]()
+      var n = 0
+
+      class TestConstraint extends Constraint(store, "removeValuesTester") {
+        override def setup(l: CPPropagStrength): Unit = {
+          variable.callPropagateWhenDomainChanges(this)
+          variable.callValRemoveWhenValueIsRemoved(this)
+        }
+        override def propagate(): Unit = n += 1
+        override def valRemove(x: CPIntVar, value: Int): Unit = removedValues.add(value)
+        override def associatedVars(): Iterable[CPVar] = ???
+      }
+
+      store.add(new TestConstraint)
+      store.pushState()
+      variable.removeValues(Array(0, 4, 12, 4, 10, -3), 6)
+      store.propagate()
+      assert(n == 1)
+      assert(removedValues == Set(0, 4, 10))
+      assert(variable.min == 1)
+      assert(variable.max == 9)
+      assert(variable.size == 8)
+      store.pop()
+      assert(variable.size == 11)
+      assert(isInconsistent(variable.removeValues((0 to 10).toArray)))
+    }
+  }
+
+  test("RestrictToSorted should only keep the values of the domain contained in the array") {
+    val store = new CPStore()
+    val variable = new CPIntVarAdaptable(store, 0, 10, true)
+    store.pushState()
+    variable.restrictToSorted(Array(-2, 3, 4, 5, 12), 5)
+    assert(variable.isContinuous)
+    assert(variable.min == 3)
+    assert(variable.max == 5)
+    variable.restrictToSorted(Array(3, 5, 7), 3)
+    assert(variable.size == 2)
+    assert(!variable.hasValue(4))
+    assert(variable.valueAfter(3) == 5)
+    store.pop()
+    assert(variable.size == 11)
+    assert(isInconsistent(variable.restrictToSorted(Array(-1, 11), 2)))
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package oscar.cp.scheduling
+
+import oscar.cp.testUtils._
+import oscar.cp.core.CPStore
+import oscar.cp.scheduling.constraints.ProfileStructure
+import oscar.cp.scheduling.util.OpenSparseSet
+
+import scala.util.Random
+
+class ProfileStructureSuite extends TestSuite {
+
+  class Instance(n: Int)(implicit val store: CPStore) {
+    val smin, smax, dmin, emin, emax, hmin = new Array[Int](n)
+    val required = Array.fill(n)(true)
+    val possible = Array.fill(n)(true)
+    val toConsider = new OpenSparseSet(n)
+    val profile = new ProfileStructure(smin, smax, dmin, emin, emax, hmin, required, possible)
+
+    def set(task: Int, s: Int, e: Int, h: Int): Unit = {
+      smax(task) = s
+      emin(task) = e
+      hmin(task) = h
+      profile.taskChanged(task)
+    }
+
+    def exclude(task: Int): Unit = {
+      toConsider.exclude(task)
+      profile.taskChanged(task)
+    }
+
+    // profile computed from scratch, as (time, height) points where the height changes
+    def expected: List[(Int, Int)] = {
+      val deltas = scala.collection.mutable.TreeMap[Int, Int]()
+      for (a <- 0 until n; if toConsider.status(a) < toConsider.limit.value && required(a) && smax(a) < emin(a) && hmin(a) > 0) {
+        deltas(smax(a)) = deltas.getOrElse(smax(a), 0) + hmin(a)
+        deltas(emin(a)) = deltas.getOrElse(emin(a), 0) - hmin(a)
+      }
+      var h = 0
+      deltas.toList.filter(_._2 != 0).map { case (t, d) => h += d; (t, h) }
+    }
+
+    def points: List[(Int, Int)] = {
+      profile.update(toConsider)
+      List.tabulate(profile.nProfilePoints - 2)(i => (profile.pointTime(i + 1), profile.pointHeight(i + 1)))
+    }
+  }
+
+  test("the profile should contain the compulsory parts of the tasks") {
+    implicit val store = new CPStore()
+    val instance = new Instance(3)
+    instance.set(0, 0, 4, 2)
+    instance.set(1, 2, 6, 1)
+    instance.set(2, 5, 5, 3) // no compulsory part
+    instance.points shouldBe List((0, 2), (2, 3), (4, 1), (6, 0))
+    instance.profile.maxHeight() shouldBe 3
+  }
+
+  test("tasks with opposite variations at the same time should not create a point") {
+    implicit val store = new CPStore()
+    val instance = new Instance(2)
+    instance.set(0, 0, 4, 2)
+    instance.set(1, 4, 8, 2)
+    instance.points shouldBe List((0, 2), (8, 0))
+  }
+
+  test("the profile should be restored on backtrack") {
+    implicit val store = new CPStore()
+    val instance = new Instance(3)
+    instance.set(0, 0, 4, 2)
+    instance.set(1, 2, 6, 1)
+    val root = instance.points
+
+    store.pushState()
+    instance.set(2, 1, 3, 5)
+    instance.set(0, 1, 4, 2)
+    val level1 = instance.points
+    level1 shouldBe instance.expected
+
+    store.pushState()
+    instance.exclude(1)
+    instance.points shouldBe List((1, 7), (3, 2), (4, 0))
+
+    store.pop()
+    instance.toConsider.status(1) should be < instance.toConsider.limit.value
+    instance.points shouldBe level1
+
+    store.pop()
+    instance.set(2, 0, 0, 0)
+    instance.set(0, 0, 4, 2)
+    instance.points shouldBe root
+  }
+
+  test("the incremental profile should be equal to the profile computed from scratch") {
+    implicit val store = new CPStore()
+    val rand = new Random(0)
+    val n = 20
+    val instance = new Instance(n)
+    import instance.{set, exclude, points, expected, smax, emin, hmin, profile}
+    def randomChanges(): Unit = {
+      for (_ <- 0 until rand.nextInt(5)) {
+        val a = rand.nextInt(n)
+        val s = rand.nextInt(20)
+        set(a, s, s + rand.nextInt(6) - 1, rand.nextInt(4))
+      }
+      if (rand.nextInt(4) == 0) exclude(rand.nextInt(n))
+    }
+    for (_ <- 0 until 50) {
+      randomChanges()
+      points shouldBe expected
+      // bounds are not reversible here, they are restored by hand as the cache would be
+      val saved = (smax.clone(), emin.clone(), hmin.clone())
+      store.pushState()
+      randomChanges()
+      points shouldBe expected
+      store.pushState()
+      randomChanges()
+      points shouldBe expected
+      store.pop()
+      store.pop()
+      for (a <- 0 until n; if smax(a) != saved._1(a) || emin(a) != saved._2(a) || hmin(a) != saved._3(a)) profile.taskChanged(a)
+      saved._1.copyToArray(smax)
+      saved._2.copyToArray(emin)
+      saved._3.copyToArray(hmin)
+      points shouldBe expected
+    }
+  }
+
+  test("an update should only look at the changed tasks") {
+    implicit val store = new CPStore()
+    val instance = new Instance(3)
+    instance.set(0, 0, 4, 2)
+    instance.set(1, 2, 6, 1)
+    instance.points shouldBe List((0, 2), (2, 3), (4, 1), (6, 0))
+    // not marked, the profile is kept
+    instance.smax(1) = 0
+    instance.points shouldBe List((0, 2), (2, 3), (4, 1), (6, 0))
+    instance.profile.taskChanged(1)
+    instance.points shouldBe List((0, 3), (4, 1), (6, 0))
+  }
+}
@@ -0,0 +1,56 @@
+package oscar.cp.scheduling
+
+import oscar.cp.testUtils._
+import oscar.cp.core.CPStore
+import oscar.cp.scheduling.util.ReversibleSortedOrder
+
+import scala.util.Random
+
+class ReversibleSortedOrderSuite extends TestSuite {
+
+  def isSorted(order: ReversibleSortedOrder, keys: Array[Int]): Boolean = {
+    order.sortedIndexes.sorted.toSeq == keys.indices && order.sortedIndexes.map(keys).sliding(2).forall(p => p.length < 2 || p(0) <= p(1))
+  }
+
+  test("the order should be sorted according to the keys") {
+    val store = new CPStore()
+    val order = new ReversibleSortedOrder(store, 5)
+    val keys = Array(4, 2, 7, 2, 0)
+    order.sort(keys)
+    order.sortedIndexes shouldBe Array(4, 1, 3, 0, 2)
+  }
+
+  test("the sort should be stable with respect to the previous order") {
+    val store = new CPStore()
+    val order = new ReversibleSortedOrder(store, 4)
+    order.sort(Array(3, 2, 1, 0))
+    order.sortedIndexes shouldBe Array(3, 2, 1, 0)
+    order.sort(Array(0, 0, 0, 0))
+    order.sortedIndexes shouldBe Array(3, 2, 1, 0)
+  }
+
+  test("the order should be restored on backtrack") {
+    val store = new CPStore()
+    val rand = new Random(0)
+    val n = 30
+    val order = new ReversibleSortedOrder(store, n)
+    val keys = Array.fill(n)(rand.nextInt(50))
+    order.sort(keys)
+    for (_ <- 0 until 50) {
+      val before = order.sortedIndexes.clone()
+      store.pushState()
+      for (_ <- 0 until 3) {
+        keys(rand.nextInt(n)) = rand.nextInt(50)
+        order.sort(keys)
+        assert(isSorted(order, keys))
+        store.pushState()
+        keys(rand.nextInt(n)) = rand.nextInt(50)
+        order.sort(keys)
+        assert(isSorted(order, keys))
+        store.pop()
+      }
+      store.pop()
+      order.sortedIndexes shouldBe before
+    }
+  }
+}
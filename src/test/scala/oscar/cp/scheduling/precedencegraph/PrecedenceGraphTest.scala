@@ -54,4 +54,47 @@ class PrecedenceGraphTest extends AnyFunSuite with Matchers with Assertions {
 
   }
 
+  test("transitive closure should be restored on backtrack, more than 64 tasks") {
+    val nTasks = 100
+    val horizon = 1000
+    implicit val cp = CPSolver()
+    val starts = Array.fill(nTasks)(CPIntVar(0 until horizon))
+    val durations = Array.fill(nTasks)(CPIntVar(2))
+    val ends = Array.fill(nTasks)(CPIntVar(0 until horizon))
+    val graph = PrecedenceGraph(starts, durations, ends)
+    val rand = new scala.util.Random(0)
+
+    // precedences from a lower to a higher index cannot create a cycle
+    def closureOf(precs: Seq[(Int, Int)]): Set[(Int, Int)] = {
+      var closure = precs.toSet
+      var changed = true
+      while (changed) {
+        val next = closure ++ (for ((a, b) <- closure; (c, d) <- closure; if b == c) yield (a, d))
+        changed = next.size > closure.size
+        closure = next
+      }
+      closure
+    }
+    def check(precs: Seq[(Int, Int)]): Unit = {
+      val closure = closureOf(precs)
+      for (i <- 0 until nTasks; j <- 0 until nTasks)
+        assert(graph.isPrecNonDetectable(i, j) == closure.contains((i, j)))
+      for (i <- 0 until nTasks)
+        assert(graph.nonDetectableSuccessorsOf(i) == closure.count(_._1 == i))
+    }
+    def randomPrec(): (Int, Int) = {
+      val a = rand.nextInt(nTasks - 1)
+      (a, a + 1 + rand.nextInt(nTasks - a - 1))
+    }
+
+    val root = Seq.fill(30)(randomPrec())
+    root.foreach(p => graph.addNonDetectablePrecAndUpdateTransitiveClosure(p._1, p._2))
+    check(root)
+    cp.pushState()
+    val deeper = root ++ Seq.fill(30)(randomPrec())
+    deeper.foreach(p => graph.addNonDetectablePrecAndUpdateTransitiveClosure(p._1, p._2))
+    check(deeper)
+    cp.pop()
+    check(root)
+  }
 }
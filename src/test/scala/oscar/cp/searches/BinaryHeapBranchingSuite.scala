@@ -0,0 +1,54 @@
+package oscar.cp.searches
+
+import oscar.algo.reversible.ReversibleIndexedHeap
+import oscar.cp._
+import oscar.cp.testUtils._
+
+import scala.util.Random
+
+class BinaryHeapBranchingSuite extends TestSuite {
+
+  test("the heap should be restored on backtrack") {
+    val store = new CPStore()
+    val rand = new Random(0)
+    val n = 50
+    val keys = Array.fill(n)(rand.nextInt(20).toLong)
+    val heap = new ReversibleIndexedHeap(store, keys)
+    def expectedMin = (0 until n).filter(heap.contains).minBy(i => (heap.key(i), i))
+    heap.min shouldBe expectedMin
+    for (_ <- 0 until 20) {
+      val saved = (0 until n).map(i => (heap.contains(i), heap.key(i)))
+      store.pushState()
+      for (_ <- 0 until 30) {
+        val i = rand.nextInt(n)
+        if (rand.nextInt(3) == 0) heap.remove(i)
+        else heap.changeKey(i, rand.nextInt(20))
+        if (!heap.isEmpty) heap.min shouldBe expectedMin
+      }
+      store.pop()
+      (0 until n).map(i => (heap.contains(i), heap.key(i))) shouldBe saved
+      heap.min shouldBe expectedMin
+    }
+  }
+
+  test("double keys should be ordered as the doubles") {
+    val doubles = Array(-3.5, Double.NegativeInfinity, 0.0, -0.0, 2.25, 1e10, -1e-10, Double.PositiveInfinity)
+    val sortedByKeys = doubles.sortBy(ReversibleIndexedHeap.doubleToKey)
+    sortedByKeys.toSeq shouldBe doubles.sorted.toSeq
+  }
+
+  test("first fail with a heap should explore the same tree as first fail") {
+    def solve(incremental: Boolean): (Int, Int, Int) = {
+      implicit val cp = CPSolver()
+      val nQueens = 8
+      val queens = Array.fill(nQueens)(CPIntVar(0 until nQueens))
+      add(allDifferent(queens))
+      add(allDifferent(Array.tabulate(nQueens)(i => queens(i) + i)))
+      add(allDifferent(Array.tabulate(nQueens)(i => queens(i) - i)))
+      search(if (incremental) binaryFirstFailIncremental(queens) else binaryFirstFail(queens))
+      val stats = start()
+      (stats.nSols, stats.nNodes, stats.nFails)
+    }
+    solve(incremental = true) shouldBe solve(incremental = false)
+  }
+}
@@ -0,0 +1,31 @@
+package oscar.cp.searches
+
+import oscar.algo.search.Branching
+import oscar.cp._
+import oscar.cp.testUtils._
+
+class PrimitiveBranchingSuite extends TestSuite {
+
+  // solves the n-queens with the primitive decisions, or with the alternatives of the same branching
+  private def solve(nQueens: Int, primitive: Boolean, split: Boolean): (Int, Int, Int) = {
+    implicit val cp = CPSolver()
+    val queens = Array.fill(nQueens)(CPIntVar(0 until nQueens))
+    add(allDifferent(queens))
+    add(allDifferent(Array.tabulate(nQueens)(i => queens(i) + i)))
+    add(allDifferent(Array.tabulate(nQueens)(i => queens(i) - i)))
+    val branching = if (split) binarySplit(queens) else binaryFirstFail(queens)
+    search(if (primitive) branching else Branching(branching.alternatives()))
+    val stats = start()
+    (stats.nSols, stats.nNodes, stats.nFails)
+  }
+
+  test("primitive decisions should explore the same tree as the alternatives") {
+    solve(8, primitive = true, split = false) shouldBe solve(8, primitive = false, split = false)
+    solve(8, primitive = true, split = false)._1 shouldBe 92
+  }
+
+  test("primitive domain splits should explore the same tree as the alternatives") {
+    solve(7, primitive = true, split = true) shouldBe solve(7, primitive = false, split = true)
+    solve(7, primitive = true, split = true)._1 shouldBe 40
+  }
+}
@@ -0,0 +1,103 @@
+package oscar.cp.searches
+
+import oscar.cp._
+import oscar.cp.constraints.sequence._
+import oscar.cp.core.variables.{CPInsertSeqVar, CPSeqVar}
+import oscar.cp.testUtils._
+
+import scala.util.Random
+
+class SequenceLNSSuite extends TestSuite {
+
+  // Three routes of 6 elements, each starting and ending with a depot
+  private val routes = Array(Array(18, 0, 1, 2, 3, 4, 5, 21), Array(19, 6, 7, 8, 9, 10, 11, 22), Array(20, 12, 13, 14, 15, 16, 17, 23))
+  private val solution = new SequencesSolution(routes, 24)
+  private val removable = Array.tabulate(24)(_ < 18)
+  private def relatedness(i: Int, j: Int): Int = math.abs(i - j)
+
+  test("removals should remove the requested number of removable members") {
+    val rand = new Random(0)
+    for (removal <- Seq(new RandomRemoval, new RelatedRemoval(relatedness), new StringRemoval(relatedness, 3)); nRemoved <- Seq(1, 5, 18, 30)) {
+      val removed = new Array[Boolean](24)
+      val n = removal.select(solution, removable, nRemoved, rand, removed)
+      n shouldBe math.min(nRemoved, 18)
+      removed.count(b => b) shouldBe n
+      assert((18 until 24).forall(!removed(_)))
+    }
+  }
+
+  test("string removal should remove consecutive members") {
+    val rand = new Random(1)
+    for (_ <- 0 until 50) {
+      val removed = new Array[Boolean](24)
+      new StringRemoval(relatedness, 3).select(solution, removable, 6, rand, removed)
+      for (route <- routes) {
+        val positions = route.indices.filter(i => removed(route(i)))
+        if (positions.nonEmpty) positions.last - positions.head shouldBe positions.size - 1
+      }
+    }
+  }
+
+  test("insertion branching should enumerate each partial sequence once") {
+    implicit val cp = CPSolver()
+    val sequence = CPInsertSeqVar(4)
+    search(new InsertionBranching(Array(sequence), Array(0, 1, 2, 3), Array.fill(4, 4)(0)))
+    val sequences = scala.collection.mutable.Set[Seq[Int]]()
+    onSolution(sequences += sequence.allMembers)
+    val stats = start()
+    // sum over k of the number of sequences of k elements among 4
+    stats.nSols shouldBe 65
+    sequences.size shouldBe 65
+  }
+
+  test("insertion branching should try the cheapest insertions first") {
+    implicit val cp = CPSolver()
+    val points = Array(2, 8, 5, 0, 10)
+    val transitions = Array.tabulate(5, 5)((i, j) => math.abs(points(i) - points(j)))
+    val sequence = CPInsertSeqVar(5)
+    add(First(sequence, 3))
+    add(Last(sequence, 4))
+    search(new InsertionBranching(Array(sequence), Array(0, 1, 2), transitions))
+    onSolution(sequence.allMembers shouldBe Seq(3, 0, 2, 1, 4))
+    start(nSols = 1).nSols shouldBe 1
+  }
+
+  test("the LNS should improve the first solution and keep feasible routes") {
+    implicit val cp = CPSolver()
+    cp.silent = true
+    val rand = new Random(0)
+    val nVisits = 20
+    val nVehicles = 2
+    val n = nVisits + 2 * nVehicles
+    val xs = Array.fill(n)(rand.nextInt(100))
+    val transitions = Array.tabulate(n, n)((i, j) => math.abs(xs(i) - xs(j)))
+    val sequences = Array.fill(nVehicles)(CPInsertSeqVar(n))
+    val vehicle = Array.tabulate(n)(i => if (i < nVisits) CPIntVar(0 until nVehicles) else CPIntVar((i - nVisits) % nVehicles))
+    val arrivals = Array.tabulate(nVehicles, n)((_, _) => CPIntVar(0 to 2000))
+    val durations = Array.tabulate(nVehicles, n)((_, _) => CPIntVar(0))
+    for (v <- 0 until nVehicles) {
+      add(First(sequences(v), nVisits + v))
+      add(Last(sequences(v), nVisits + nVehicles + v))
+      add(TransitionTimes(sequences(v), arrivals(v), durations(v), arrivals(v), transitions))
+    }
+    add(SequenceAllocation(sequences.asInstanceOf[Array[CPSeqVar]], Array.tabulate(n)(i => i), vehicle))
+    val makespan = maximum(Array.tabulate(nVehicles)(v => arrivals(v)(nVisits + nVehicles + v)))
+    minimize(makespan)
+    search(new InsertionBranching(sequences, Array.tabulate(nVisits)(i => i), transitions))
+
+    var objectives = List[Int]()
+    onSolution {
+      objectives ::= makespan.value
+      sequences.foreach(s => s.length shouldBe s.allMembers.size)
+      (0 until nVisits).count(i => sequences.exists(_.isMember(i))) shouldBe nVisits
+    }
+
+    val removals = Array[SequenceRemoval](new RandomRemoval, new RelatedRemoval(transitions(_)(_)), new StringRemoval(transitions(_)(_)))
+    val lns = new SequenceLNS(cp, sequences.asInstanceOf[Array[CPSeqVar]], Array.tabulate(n)(_ < nVisits), removals)
+    val stats = lns.run(nIterations = 50, nRemoved = 5)
+    stats.size shouldBe 51
+    assert(objectives.nonEmpty)
+    assert(objectives.head <= objectives.last)
+    lns.bestSolution.routes.map(_.length).sum shouldBe n
+  }
+}
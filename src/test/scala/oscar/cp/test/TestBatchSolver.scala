@@ -0,0 +1,94 @@
+package oscar.cp.test
+
+import oscar.cp._
+import oscar.cp.batch.{BatchSolver, ModelTemplate}
+import oscar.cp.testUtils.TestSuite
+
+class TestBatchSolver extends TestSuite {
+
+  // Number of assignments of distinct digits to x with sum(x) = target and x(0) >= first
+  class CountTemplate extends ModelTemplate[(Int, Int), Int] {
+    val target = parameter(0, 30, "target")
+    val first = parameter(0, 9, "first")
+    val x = Array.fill(3)(CPIntVar(0 to 9))
+    add(allDifferent(x))
+    add(sum(x) === target)
+    add(x(0) >= first)
+    search(binaryStatic(x))
+
+    override protected def bind(data: (Int, Int)): Unit = {
+      bind(target, data._1)
+      bind(first, data._2)
+    }
+
+    override protected def solve(data: (Int, Int)): Int = start().nSols
+
+    override protected def infeasible(data: (Int, Int)): Int = 0
+  }
+
+  // Minimum of the largest difference between consecutive values of a permutation of the data
+  class MinMaxTemplate extends ModelTemplate[Array[Int], Int] {
+    val values = parameters(5, 0, 100)
+    val order = Array.fill(5)(CPIntVar(0 to 4))
+    val permuted = Array.tabulate(5)(i => values(order(i)))
+    val objective = maximum(Array.tabulate(4)(i => (permuted(i + 1) - permuted(i)).abs))
+    add(allDifferent(order))
+    minimize(objective)
+    search(binaryStatic(order))
+    var best = -1
+    onSolution(best = objective.value)
+
+    override protected def bind(data: Array[Int]): Unit = {
+      for (i <- 0 until 5) bind(values(i), data(i))
+    }
+
+    override protected def solve(data: Array[Int]): Int = {
+      best = -1
+      start()
+      best
+    }
+
+    override protected def infeasible(data: Array[Int]): Int = -1
+  }
+
+  def count(target: Int, first: Int): Int = {
+    (for (a <- first to 9; b <- 0 to 9; c <- 0 to 9; if a != b && b != c && a != c && a + b + c == target) yield 1).sum
+  }
+
+  test("A template should give the results of fresh models") {
+    val template = new CountTemplate()
+    for (target <- 0 to 30; first <- 0 to 9) {
+      template.run((target, first)) shouldBe count(target, first)
+    }
+    template.run((40, 0)) shouldBe 0
+    template.nRuns shouldBe 31 * 10 + 1
+    template.solver.nLevel shouldBe 0
+  }
+
+  test("A template should relax its objective between the instances") {
+    val template = new MinMaxTemplate()
+    template.run(Array(0, 10, 20, 30, 40)) shouldBe 10
+    template.run(Array(0, 1, 2, 3, 4)) shouldBe 1
+    template.run(Array(50, 0, 100, 25, 75)) shouldBe 25
+  }
+
+  test("A batch solver should give the results in the order of the instances") {
+    val instances = for (target <- 0 to 30; first <- 0 to 9) yield (target, first)
+    val batch = new BatchSolver[(Int, Int), Int](4, () => new CountTemplate())
+    batch.warmUp(instances.take(5))
+    batch.solveAll(instances) shouldBe instances.map(i => count(i._1, i._2))
+    batch.solveAll(instances.reverse) shouldBe instances.reverse.map(i => count(i._1, i._2))
+    batch.close()
+    batch.isClosed shouldBe true
+    an[IllegalStateException] should be thrownBy batch.solveAll(instances)
+  }
+
+  test("A batch solver should rethrow the exceptions of the workers") {
+    class Failing extends CountTemplate {
+      override protected def solve(data: (Int, Int)): Int = throw new IllegalArgumentException("fails")
+    }
+    val batch = new BatchSolver[(Int, Int), Int](2, () => new Failing())
+    an[IllegalArgumentException] should be thrownBy batch.solveAll(IndexedSeq((3, 0), (4, 0), (5, 0)))
+    batch.close()
+  }
+}
@@ -497,5 +497,72 @@ class TestDeltaPropagate extends TestSuite {
     nPropag should be(2)
   }
 
+  test("test delta 12 lazy snapshots of many variables") {
 
+    class MyCons(val X: Array[CPIntVar]) extends Constraint(X(0).store, "TestDelta") {
+      val snapshots = new Array[DeltaIntVar](X.length)
+      val buffer = new Array[Int](10)
+      var removed = Set[(Int, Int)]()
+
+      override def setup(l: CPPropagStrength): Unit = {
+        for (i <- X.indices) snapshots(i) = X(i).callPropagateOnChangesWithDelta(this)
+      }
+
+      override def propagate(): Unit = {
+        removed = Set()
+        for (i <- X.indices) {
+          val n = snapshots(i).fillArray(buffer)
+          for (k <- 0 until n) removed += ((i, buffer(k)))
+        }
+      }
+      override def associatedVars(): Iterable[CPVar] = X
+    }
+
+    val cp = CPSolver()
+    val x = Array.fill(100)(CPIntVar(0 to 9)(cp))
+    val cons = new MyCons(x)
+    cp.add(cons)
+
+    cp.pushState()
+    cp.add(x(3) !== 5)
+    cons.removed should be(Set((3, 5)))
+    cp.add(x(42) < 8)
+    cons.removed should be(Set((42, 8), (42, 9)))
+    cp.add(x(3) !== 6)
+    cons.removed should be(Set((3, 6)))
+    cp.pop()
+
+    cp.add(x(42) !== 0)
+    cons.removed should be(Set((42, 0)))
+    cp.add(x(3) > 7)
+    cons.removed should be((0 to 7).map((3, _)).toSet)
+  }
+
+  test("test delta 13 lazy snapshot with a guard") {
+    var nPropag = 0
+    var guard = false
+
+    class MyCons(val X: CPIntVar) extends Constraint(X.store, "TestDelta") {
+      var snapshot: DeltaIntVar = null
+
+      override def setup(l: CPPropagStrength): Unit = {
+        snapshot = X.callPropagateOnChangesWithDelta(this, guard)
+      }
+
+      override def propagate(): Unit = {
+        nPropag += 1
+        snapshot.values.toSet should be(Set(0, 1, 2))
+      }
+      override def associatedVars(): Iterable[CPVar] = Array(X)
+    }
+
+    val cp = CPSolver()
+    val x = CPIntVar(0 to 5)(cp)
+    cp.add(new MyCons(x))
+    cp.add(x > 0)
+    nPropag should be(0)
+    guard = true
+    cp.add(x > 2)
+    nPropag should be(1)
+  }
 }
@@ -91,4 +91,69 @@ class TestGCC extends TestSuite {
 
     assert(isInconsistent(cp.post(gcc(x, allValues), Strong)))
   }
+
+  test("GCC4 long alternating paths") {
+    // x(i) in {i, i+1} and x(n-1) = n-1: the residual graph is a path through all the variables
+    val n = 5000
+    for (gccVar <- Seq(true, false)) {
+      implicit val cp = CPSolver()
+      val x = Array.tabulate(n)(i => if (i < n - 1) CPIntVar(i to i + 1) else CPIntVar(n - 1))
+      if (gccVar) add(new GCCVarAC(x, 0, Array.fill(n)(CPIntVar(1))))
+      else add(new AtLeastNValueAC(x, CPIntVar(n)))
+      cp.isFailed should be(false)
+      for (i <- 0 until n) x(i).value should be(i)
+    }
+  }
+
+  // values of each variable that belong to an assignment in which each value v appears between low(v) and up(v) times
+  def supports(x: Array[CPIntVar], low: Array[Int], up: Array[Int]): Array[Set[Int]] = {
+    val supported = Array.fill(x.length)(Set.empty[Int])
+    val values = new Array[Int](x.length)
+    val count = new Array[Int](low.length)
+    def assign(k: Int): Unit = {
+      if (k == x.length) {
+        if (low.indices.forall(v => count(v) >= low(v) && count(v) <= up(v))) {
+          for (i <- x.indices) supported(i) += values(i)
+        }
+      }
+      else for (v <- x(k)) {
+        values(k) = v
+        count(v) += 1
+        assign(k + 1)
+        count(v) -= 1
+      }
+    }
+    assign(0)
+    supported
+  }
+
+  test("GCC5 arc consistency along the search") {
+    // the matching and its components are repaired incrementally, each value left must belong to a solution at each node
+    val n = 5
+    for (i <- 0 until 50; allDiff <- Seq(true, false)) {
+      val cp = CPSolver()
+      val x = Array.fill(n)(CPIntVar(Array.fill(3)(rand.nextInt(n)).toSet)(cp))
+      val o = Array.fill(n)(CPIntVar(rand.nextInt(2) to 1 + rand.nextInt(2))(cp))
+      val inconsistent = isInconsistent {
+        if (allDiff) cp.post(new AllDiffAC(x))
+        else cp.post(new GCCVarAC(x, 0, o))
+      }
+      if (!inconsistent) {
+        cp.search {
+          val supported = {
+            if (allDiff) supports(x, Array.fill(n)(0), Array.fill(n)(1))
+            else supports(x, o.map(_.min), o.map(_.max))
+          }
+          for (k <- 0 until n; v <- x(k)) supported(k).contains(v) should be(true)
+          x.find(!_.isBound) match {
+            case None => noAlternative
+            case Some(y) =>
+              val v = y.min
+              branch(cp.post(y === v))(cp.post(y !== v))
+          }
+        }
+        cp.start()
+      }
+    }
+  }
 }
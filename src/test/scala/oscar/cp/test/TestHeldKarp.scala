@@ -120,6 +120,18 @@ class TestHeldKarp extends TestSuite {
     }
   }
 
+  test("HK with warm started multipliers should keep the tours of cost at most ub") {
+    val rand = new scala.util.Random(1)
+
+    for (i <- 0 until 20) {
+      val distMatrix = Array.fill(8, 8)(rand.nextInt(20))
+      val b = bestTourSize(distMatrix)
+      val s1 = stat(distMatrix, b + 2, false, false)
+      val s2 = stat(distMatrix, b + 2, false, true)
+      s1.nSols should be(s2.nSols)
+    }
+  }
+
   test("test DisjointSet and LCA computation") {
 
     val sets = new DisjointSets[CCTreeNode](0, 5)
@@ -18,7 +18,7 @@ package oscar.cp.test
 
 import oscar.cp._
 import oscar.cp.constraints.{Automaton, Regular}
-import oscar.cp.constraints.mdd.{Mdd4RConstraint, StaticMdd, StaticMddImpl}
+import oscar.cp.constraints.mdd.{Mdd4RConstraint, StaticMdd, StaticMddImpl, StreamingMddCompiler}
 import oscar.cp.testUtils.TestSuite
 
 class TestMDD extends TestSuite {
@@ -111,6 +111,97 @@ class TestMDD extends TestSuite {
     mdd.contains(Array(1,1,1,1)) should be(false)
   }
 
+  test("Parallel and sequential reductions should give the same mdd") {
+    val rand = new scala.util.Random(42)
+    // the last layers of the trie are larger than the parallel reduction threshold
+    val arity = 8
+    val table = Array.fill(40000, arity)(rand.nextInt(6))
+
+    def buildTrie(): StaticMddImpl = {
+      val mdd = new StaticMddImpl(arity)
+      for (tuple <- table) {
+        var curNode = mdd.root
+        for (i <- 0 until arity) {
+          val edge = curNode.getOutEdge(tuple(i))
+          if (edge != null) curNode = edge.bottomNode
+          else {
+            val newNode = if (i == arity - 1) mdd.end else mdd.createNode(i + 1)
+            mdd.addEdge(curNode, newNode, tuple(i))
+            curNode = newNode
+          }
+        }
+      }
+      mdd
+    }
+
+    val sequential = buildTrie()
+    sequential.parallelReduction = false
+    sequential.reduce()
+    val parallel = buildTrie()
+    parallel.reduce()
+    val reference = StaticMdd.buildMddFromTableChenAndYap(table, arity)
+
+    parallel.getNumberOfNodes() should equal(sequential.getNumberOfNodes())
+    parallel.getNumberOfEdges() should equal(sequential.getNumberOfEdges())
+    parallel.getNumberOfNodes() should equal(reference.getNumberOfNodes())
+    parallel.numPaths().intValue() should equal(table.map(_.toSeq).distinct.length)
+    for (tuple <- table.take(100)) parallel.contains(tuple) should be(true)
+  }
+
+  test("Streaming compilation of a table should give the reduced mdd") {
+    val rand = new scala.util.Random(7)
+    for (arity <- Array(1, 3, 6); nTuples <- Array(1, 50, 2000); maxValue <- Array(2, 5)) {
+      val table = Array.fill(nTuples, arity)(rand.nextInt(maxValue))
+      val streamed = StreamingMddCompiler.fromTable(table, arity)
+      val reduced = StaticMdd.buildMddFromTableRegin(table, arity)
+
+      streamed.numPaths() should equal(reduced.numPaths())
+      streamed.getNumberOfNodes() should equal(reduced.getNumberOfNodes())
+      streamed.getNumberOfEdges() should equal(reduced.getNumberOfEdges())
+      for (tuple <- table) streamed.contains(tuple) should be(true)
+    }
+  }
+
+  test("Streaming compilation should reject unsorted tuples") {
+    val tuples = Iterator(Array(1, 2), Array(1, 3), Array(0, 4))
+    an[IllegalArgumentException] should be thrownBy StreamingMddCompiler.fromSortedTuples(tuples, 2)
+  }
+
+  test("Compilation of an automaton should give the reduced mdd of its words") {
+    val acceptingStates = new java.util.HashSet[Integer]()
+    acceptingStates.add(0)
+    acceptingStates.add(2)
+    // words on {0, 1, 2} without two consecutive 1 and not ending with 1
+    val automaton = new Automaton(4, 3, 0, acceptingStates)
+    automaton.addTransition(0, 1, 1)
+    automaton.addTransition(0, 2, 2)
+    automaton.addTransition(0, 0, 0)
+    automaton.addTransition(1, 2, 2)
+    automaton.addTransition(1, 0, 0)
+    automaton.addTransition(2, 1, 1)
+    automaton.addTransition(2, 2, 2)
+    automaton.addTransition(2, 0, 0)
+    automaton.addTransition(3, 0, 0) // unreachable state
+
+    for (nLayers <- 1 to 6) {
+      def accepts(word: Array[Int]): Boolean = {
+        var state = 0
+        for (letter <- word; if state != -1) state = automaton.getTransitionMatrix()(state)(letter)
+        state != -1 && acceptingStates.contains(state)
+      }
+      val words = Array.fill(nLayers)(0 until 3).foldLeft(Seq(Array[Int]()))((prefixes, letters) =>
+        for (prefix <- prefixes; letter <- letters) yield prefix :+ letter).filter(accepts).toArray
+
+      val compiled = StreamingMddCompiler.fromAutomaton(automaton, nLayers)
+      val reduced = StaticMdd.buildMddFromTableRegin(words, nLayers)
+
+      compiled.numPaths().intValue() should equal(words.length)
+      compiled.getNumberOfNodes() should equal(reduced.getNumberOfNodes())
+      compiled.getNumberOfEdges() should equal(reduced.getNumberOfEdges())
+      for (word <- words) compiled.contains(word) should be(true)
+    }
+  }
+
   /**
     * Test of the regular constraint on an Mdd
     */
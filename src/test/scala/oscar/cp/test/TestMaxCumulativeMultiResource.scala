@@ -0,0 +1,71 @@
+package oscar.cp.test
+
+import oscar.cp._
+import oscar.cp.scheduling.constraints._
+import oscar.cp.testUtils._
+
+import scala.util.Random
+
+class TestMaxCumulativeMultiResource extends TestSuite {
+
+  // returns all the solutions as (starts, resources)
+  def solveAll(durations: Array[Int], demands: Array[Int], capacities: Array[Int], horizon: Int, multi: Boolean): Set[List[Int]] = {
+    implicit val cp = CPSolver()
+    cp.silent = true
+    val nTasks = durations.length
+    val starts = Array.tabulate(nTasks)(t => CPIntVar(0 to horizon - durations(t)))
+    val durationVars = Array.tabulate(nTasks)(t => CPIntVar(durations(t)))
+    val ends = Array.tabulate(nTasks)(t => starts(t) + durations(t))
+    val demandVars = Array.tabulate(nTasks)(t => CPIntVar(demands(t)))
+    // value capacities.length is a resource without constraint
+    val resources = Array.fill(nTasks)(CPIntVar(0 to capacities.length))
+    val capacityVars = capacities.map(c => CPIntVar(c))
+
+    if (multi) add(MaxCumulativeMultiResource(starts, durationVars, ends, demandVars, resources, capacityVars))
+    else for (r <- capacities.indices) add(new CumulativeDecomp(starts, durationVars, ends, demandVars, resources, capacityVars(r), r))
+
+    var sols = Set[List[Int]]()
+    search(binaryStatic(resources) ++ binaryStatic(starts))
+    onSolution { sols += (starts.map(_.value) ++ resources.map(_.value)).toList }
+    start()
+    sols
+  }
+
+  test("the multi-resource time-table should have the same solutions as the decomposition") {
+    val rand = new Random(0)
+    for (_ <- 1 to 50) {
+      val nTasks = 5
+      val durations = Array.fill(nTasks)(rand.nextInt(3) + 1)
+      val demands = Array.fill(nTasks)(rand.nextInt(4))
+      val capacities = Array.fill(2)(rand.nextInt(4) + 1)
+      val horizon = durations.sum / 2 + durations.max + 1
+      solveAll(durations, demands, capacities, horizon, multi = true) shouldBe solveAll(durations, demands, capacities, horizon, multi = false)
+    }
+  }
+
+  test("tasks should be pushed by the compulsory parts of their resource only") {
+    implicit val cp = CPSolver()
+    val starts = Array(CPIntVar(0 to 2), CPIntVar(0 to 10), CPIntVar(0 to 10))
+    val durations = Array.fill(3)(CPIntVar(4))
+    val ends = Array.tabulate(3)(i => starts(i) + 4)
+    val demands = Array.fill(3)(CPIntVar(1))
+    val resources = Array(CPIntVar(0), CPIntVar(0), CPIntVar(1))
+    val capacities = Array(CPIntVar(1), CPIntVar(1))
+    add(MaxCumulativeMultiResource(starts, durations, ends, demands, resources, capacities))
+    // the compulsory part of task 0 is [2 ; 4)
+    starts(1).min shouldBe 4
+    starts(2).min shouldBe 0
+  }
+
+  test("an optional task that cannot fit should be removed from the resource") {
+    implicit val cp = CPSolver()
+    val starts = Array(CPIntVar(0), CPIntVar(0 to 1))
+    val durations = Array.fill(2)(CPIntVar(4))
+    val ends = Array.tabulate(2)(i => starts(i) + 4)
+    val demands = Array.fill(2)(CPIntVar(1))
+    val resources = Array(CPIntVar(0), CPIntVar(0 to 1))
+    val capacities = Array(CPIntVar(1), CPIntVar(1))
+    add(MaxCumulativeMultiResource(starts, durations, ends, demands, resources, capacities))
+    resources(1).isBoundTo(1) shouldBe true
+  }
+}
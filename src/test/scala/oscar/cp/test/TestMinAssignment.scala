@@ -138,6 +138,28 @@ class TestMinAssignment extends TestSuite {
   }
 
 
+  test("Test Assignment 8") {
+    val cp = CPSolver()
+    val w = Array(Array(0, 3, 3),
+                  Array(3, 0, 3),
+                  Array(3, 3, 0))
+    val cost = CPIntVar(0 to 100)(cp)
+    val x = Array.fill(3)(CPIntVar(0 to 2)(cp))
+    cp.post(new MinAssignment(x, w, cost))
+    cost.min should be(0)
+    cp.pushState()
+    cp.post(x(0) !== 0)
+    cost.min should be(6)
+    cp.pop()
+    cost.min should be(0)
+    // any other assignment changes at least two edges of reduced cost 3
+    cp.post(cost <= 5)
+    x(0).value should be(0)
+    x(1).value should be(1)
+    x(2).value should be(2)
+  }
+
+
   test("Test random min assignment") {
 
     for (i <- 0 until 200) {
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * OscaR is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 2.1 of the License, or
+ * (at your option) any later version.
+ *   
+ * OscaR is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License  for more details.
+ *   
+ * You should have received a copy of the GNU Lesser General Public License along with OscaR.
+ * If not, see http://www.gnu.org/licenses/lgpl-3.0.en.html
+ ******************************************************************************/
+
+package oscar.cp.test
+
+import oscar.cp.testUtils.TestSuite
+import oscar.cp.multiobjective.{ListPareto, NDTreePareto}
+
+import scala.util.Random
+
+class TestNDTreePareto extends TestSuite {
+
+  test("insert should keep the non dominated solutions") {
+    val pareto = NDTreePareto[Int](2, maximization = false)
+    pareto.insert(0, 3, 3) should be(true)
+    pareto.insert(1, 4, 4) should be(false)
+    pareto.insert(2, 3, 3) should be(false)
+    pareto.insert(3, 1, 5) should be(true)
+    pareto.insert(4, 2, 2) should be(true)
+    pareto.size should be(2)
+    pareto.toList.toSet should be(Set(3, 4))
+  }
+
+  test("the front and the queries should be the same as with a list") {
+    val rand = new Random(0)
+    for (nObjs <- 2 to 4; maxObj <- Seq(Array.fill(nObjs)(false), Array.tabulate(nObjs)(_ % 2 == 0))) {
+      val list = new ListPareto[Int](maxObj)
+      val tree = new NDTreePareto[Int](maxObj, maxLeafSize = 4)
+      for (s <- 0 until 500) {
+        val values = IndexedSeq.tabulate(nObjs)(i => if (maxObj(i)) rand.nextInt(200) else 200 - rand.nextInt(200))
+        tree.insert(s, values) should be(list.insert(s, values))
+        tree.size should be(list.size)
+        val query = Array.tabulate(nObjs)(_ => rand.nextInt(200))
+        for (o <- 0 until nObjs)
+          tree.bestDominating(query, o) should be(list.bestDominating(query, o))
+        tree.isDominated(query) should be(list.isDominated(query))
+      }
+      tree.objectiveSols.toSet should be(list.objectiveSols.toSet)
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package oscar.cp.test
+
+import oscar.cp._
+import oscar.cp.constraints.{DiffVar, Eq, EqCons, LeEq}
+import oscar.cp.core.NoSolutionException
+import oscar.cp.preprocessing.Presolver
+import oscar.cp.testUtils.TestSuite
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+class TestPresolver extends TestSuite {
+
+  // (kind, x, y, k) with kind 0: x == y + k, 1: x == -y + k, 2: x != y + k, 3: x <= y + k, 4: x == k, 5: allDifferent(x, y)
+  type Relation = (Int, Int, Int, Int)
+
+  def solutions(n: Int, relations: Seq[Relation], presolve: Boolean): Set[List[Int]] = {
+    implicit val cp = CPSolver()
+    val x = Array.fill(n)(CPIntVar(-3 to 3))
+    val found = ArrayBuffer[List[Int]]()
+    try {
+      if (presolve) {
+        val presolver = new Presolver(cp)
+        for ((kind, i, j, k) <- relations) kind match {
+          case 0 => presolver.equal(x(i), x(j), k)
+          case 1 => presolver.opposite(x(i), x(j), k)
+          case 2 => presolver.different(x(i), x(j), k)
+          case 3 => presolver.lessOrEqual(x(i), x(j), k)
+          case 4 => presolver.assign(x(i), k)
+          case 5 => presolver.add(allDifferent(Array(x(i), x(j))))
+        }
+        presolver.presolve()
+        val resolved = presolver.resolve(x)
+        search(binaryStatic(resolved)).onSolution(found += resolved.map(_.value).toList)
+      }
+      else {
+        for ((kind, i, j, k) <- relations) kind match {
+          case 0 => add(new Eq(x(i), x(j) + k))
+          case 1 => add(new Eq(x(i), -x(j) + k))
+          case 2 => add(new DiffVar(x(i), x(j) + k))
+          case 3 => add(new LeEq(x(i), x(j) + k))
+          case 4 => add(new EqCons(x(i), k))
+          case 5 => add(allDifferent(Array(x(i), x(j))))
+        }
+        search(binaryStatic(x)).onSolution(found += x.map(_.value).toList)
+      }
+      start()
+    } catch {
+      case _: NoSolutionException =>
+    }
+    found.toSet
+  }
+
+  test("The presolved model should have the solutions of the model") {
+    val rand = new Random(0)
+    for (_ <- 0 until 300) {
+      val n = 2 + rand.nextInt(4)
+      val relations = Seq.fill(rand.nextInt(8)) {
+        (rand.nextInt(6), rand.nextInt(n), rand.nextInt(n), rand.nextInt(5) - 2)
+      }
+      solutions(n, relations, presolve = true) shouldBe solutions(n, relations, presolve = false)
+    }
+  }
+
+  test("A chain of equalities should be merged in a single variable") {
+    implicit val cp = CPSolver()
+    val x = Array.tabulate(10)(i => CPIntVar(0 to 20))
+    val y = CPIntVar(0 to 20)
+    val presolver = new Presolver(cp)
+    for (i <- 1 until 10) presolver.equal(x(i), x(i - 1), 1)
+    presolver.different(x(0), y)
+    presolver.different(y, x(0))
+    presolver.lessOrEqual(x(3), y, 2)
+    presolver.lessOrEqual(x(5), y, 0)
+    presolver.lessOrEqual(x(0), x(9))
+    presolver.presolve()
+
+    presolver.nAliased shouldBe 9
+    presolver.nRemoved shouldBe 3
+    presolver.nPosted shouldBe 2
+    x(9).min shouldBe 0 // x(9) is not used anymore, resolve gives its view
+    presolver.resolve(x(9)).min shouldBe 9
+    presolver.resolve(x(0)).max shouldBe 11
+    y.min shouldBe 5
+    val searched = presolver.searchVariables(x :+ y)
+    searched.length shouldBe 2
+    searched.contains(y) shouldBe true
+  }
+
+  test("Fixed variables should be propagated to their class") {
+    implicit val cp = CPSolver()
+    val x = Array.fill(4)(CPIntVar(0 to 9))
+    val presolver = new Presolver(cp)
+    presolver.opposite(x(0), x(1), 9)
+    presolver.equal(x(2), x(1), -1)
+    presolver.assign(x(2), 3)
+    presolver.different(x(3), x(0), 0)
+    presolver.presolve()
+    presolver.resolve(x).take(3).map(_.value) shouldBe Array(5, 4, 3)
+    x(3).hasValue(5) shouldBe false
+    presolver.isUsed(x(3)) shouldBe false
+    presolver.nPosted shouldBe 0
+    presolver.searchVariables(x).length shouldBe 0
+  }
+}
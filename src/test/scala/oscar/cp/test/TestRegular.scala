@@ -0,0 +1,134 @@
+package oscar.cp.test
+
+import oscar.cp._
+import oscar.cp.constraints.{Automaton, CostRegular, Regular}
+import oscar.cp.testUtils.TestSuite
+
+import scala.util.Random
+
+class TestRegular extends TestSuite {
+
+  def randomAutomaton(rand: Random, nStates: Int, nLetters: Int): Automaton = {
+    val accepting = new java.util.HashSet[Integer]()
+    for (q <- 0 until nStates; if rand.nextInt(3) == 0) accepting.add(q)
+    accepting.add(rand.nextInt(nStates))
+    val automaton = new Automaton(nStates, nLetters, 0, accepting)
+    for (q <- 0 until nStates; a <- 0 until nLetters; if rand.nextInt(3) != 0) {
+      automaton.addTransition(q, rand.nextInt(nStates), a)
+    }
+    automaton
+  }
+
+  def accepts(automaton: Automaton, word: Array[Int]): Boolean = {
+    val t = automaton.getTransitionMatrix
+    var q = automaton.getInitialState
+    for (a <- word; if q >= 0) q = if (a >= 0 && a < automaton.getNbLetters) t(q)(a) else -1
+    q >= 0 && automaton.getAcceptingStates.contains(q)
+  }
+
+  def randomDomains(rand: Random, n: Int, nLetters: Int): Array[Set[Int]] = {
+    Array.fill(n)((-1 to nLetters).filter(_ => rand.nextInt(4) != 0).toSet + rand.nextInt(nLetters))
+  }
+
+  test("Regular should have the solutions of the automaton without failure") {
+    val rand = new Random(0)
+    for (_ <- 0 until 100) {
+      val nLetters = 2 + rand.nextInt(3)
+      val automaton = randomAutomaton(rand, 2 + rand.nextInt(5), nLetters)
+      val domains = randomDomains(rand, 1 + rand.nextInt(6), nLetters)
+
+      val cp = CPSolver()
+      val x = domains.map(d => CPIntVar(d)(cp))
+      cp.search(binaryStatic(x))
+      val expected = {
+        val all = CPSolver()
+        val y = domains.map(d => CPIntVar(d)(all))
+        var nAccepted = 0
+        all.search(binaryStatic(y)).onSolution {
+          if (accepts(automaton, y.map(_.value))) nAccepted += 1
+        }
+        all.start()
+        nAccepted
+      }
+      if (isInconsistent(cp.post(new Regular(x, automaton)))) expected shouldBe 0
+      else {
+        cp.onSolution(accepts(automaton, x.map(_.value)) shouldBe true)
+        val stats = cp.start()
+        stats.nSols shouldBe expected
+        stats.nFails shouldBe 0
+      }
+    }
+  }
+
+  test("Regular should restore its graph on backtrack") {
+    val accepting = new java.util.HashSet[Integer]()
+    accepting.add(2)
+    // a b* a
+    val automaton = new Automaton(3, 2, 0, accepting)
+    automaton.addTransition(0, 1, 0)
+    automaton.addTransition(1, 1, 1)
+    automaton.addTransition(1, 2, 0)
+    val cp = CPSolver()
+    val x = Array.fill(4)(CPIntVar(0 to 1)(cp))
+    cp.post(new Regular(x, automaton))
+    x.map(_.min) shouldBe Array(0, 1, 1, 0)
+    x.map(_.max) shouldBe Array(0, 1, 1, 0)
+
+    // a b* a+
+    val automaton2 = new Automaton(3, 2, 0, accepting)
+    automaton2.addTransition(0, 1, 0)
+    automaton2.addTransition(1, 1, 1)
+    automaton2.addTransition(1, 2, 0)
+    automaton2.addTransition(2, 2, 0)
+    val y = Array.fill(5)(CPIntVar(0 to 1)(cp))
+    cp.post(new Regular(y, automaton2))
+    y(0).value shouldBe 0
+    y(4).value shouldBe 0
+    cp.pushState()
+    cp.post(y(1) === 0)
+    y.map(_.value) shouldBe Array(0, 0, 0, 0, 0)
+    cp.pop()
+    y(1).isBound shouldBe false
+    y(3).hasValue(1) shouldBe true
+    cp.post(y(3) === 1)
+    y.map(_.value) shouldBe Array(0, 1, 1, 1, 0)
+  }
+
+  test("CostRegular should have the solutions of the automaton within the max cost without failure") {
+    val rand = new Random(1)
+    for (_ <- 0 until 100) {
+      val nLetters = 2 + rand.nextInt(3)
+      val automaton = randomAutomaton(rand, 2 + rand.nextInt(5), nLetters)
+      val domains = randomDomains(rand, 1 + rand.nextInt(6), nLetters)
+      val costs = Array.fill(domains.length, nLetters)(rand.nextInt(10))
+      val maxCost = rand.nextInt(30)
+      def costOf(word: Array[Int]): Int = word.indices.map(i => costs(i)(word(i))).sum
+
+      val expected = {
+        val all = CPSolver()
+        val y = domains.map(d => CPIntVar(d)(all))
+        var nAccepted = 0
+        all.search(binaryStatic(y)).onSolution {
+          val word = y.map(_.value)
+          if (accepts(automaton, word) && costOf(word) <= maxCost) nAccepted += 1
+        }
+        all.start()
+        nAccepted
+      }
+
+      val cp = CPSolver()
+      val x = domains.map(d => CPIntVar(d)(cp))
+      val cost = CPIntVar(0 to maxCost)(cp)
+      cp.search(binaryStatic(x))
+      if (isInconsistent(cp.post(new CostRegular(x, automaton, costs, cost)))) expected shouldBe 0
+      else {
+        cp.onSolution {
+          cost.value shouldBe costOf(x.map(_.value))
+        }
+        val stats = cp.start()
+        stats.nSols shouldBe expected
+        stats.nFails shouldBe 0
+      }
+    }
+  }
+}
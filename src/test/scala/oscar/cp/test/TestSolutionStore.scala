@@ -0,0 +1,71 @@
+package oscar.cp.test
+
+import oscar.cp._
+import oscar.cp.testUtils.TestSuite
+
+import scala.collection.mutable.ArrayBuffer
+
+class TestSolutionStore extends TestSuite {
+
+  // All the permutations of 0..2 in lexicographic order
+  def permutations(capacity: Int): (CPSolver, Array[CPIntVar], ArrayBuffer[List[Int]]) = {
+    implicit val cp = CPSolver()
+    val x = Array.fill(3)(CPIntVar(0 to 2))
+    add(allDifferent(x))
+    cp.addDecisionVariables(x)
+    cp.solutions.capacity = capacity
+    val found = ArrayBuffer[List[Int]]()
+    cp.search(binaryStatic(x)).onSolution {
+      found += x.map(_.value).toList
+    }
+    (cp, x, found)
+  }
+
+  test("The store should keep the last solutions in a ring") {
+    val (cp, x, found) = permutations(4)
+    cp.start()
+    found.size shouldBe 6
+    cp.solutions.nSolutions shouldBe 6
+    cp.solutions.size shouldBe 4
+    for (age <- 0 until 4; i <- 0 until 3) {
+      cp.solutions.value(age, x(i)) shouldBe found(5 - age)(i)
+    }
+    cp.solutions.iterator.map(_.toList).toList shouldBe found.drop(2).toList
+    val offset = cp.solutions.offset(1)
+    cp.solutions.buffer.slice(offset, offset + 3).toList shouldBe found(4)
+    x.map(cp.lastSol(_)).toList shouldBe found.last
+  }
+
+  test("The store should stream all the solutions from the spill file") {
+    val (cp, _, found) = permutations(1)
+    val file = java.io.File.createTempFile("solutions", ".bin")
+    file.deleteOnExit()
+    cp.solutions.spillTo(file)
+    cp.start()
+    cp.solutions.size shouldBe 1
+    cp.solutions.iterator.map(_.toList).toList shouldBe found.toList
+    cp.solutions.closeSpill()
+    cp.solutions.iterator.map(_.toList).toList shouldBe List(found.last)
+  }
+
+  test("lastSol should follow the solutions of the LNS restarts") {
+    val (cp, x, _) = permutations(1)
+    cp.start(nSols = 1)
+    x.map(cp.lastSol(_)).toList shouldBe List(0, 1, 2)
+    cp.startSubjectTo(nSols = 1) {
+      cp.add(x(0) === 2)
+    }
+    x.map(cp.lastSol(_)).toList shouldBe List(2, 0, 1)
+    x.map(cp.solutions.value(_)).toList shouldBe List(2, 0, 1)
+  }
+
+  test("A solution should not see the decision variables added after it") {
+    val (cp, x, found) = permutations(1)
+    cp.start()
+    val sol = cp.solutions.solution(0)
+    val y = CPIntVar(cp, 0 to 2)
+    cp.addDecisionVariables(Array(y))
+    x.map(sol(_)).toList shouldBe found.last
+    a[NoSuchElementException] should be thrownBy sol(y)
+  }
+}
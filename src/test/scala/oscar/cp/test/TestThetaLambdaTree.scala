@@ -81,5 +81,36 @@ class TestThetaLambdaTree extends TestSuite {
 
   }
 
-
+  test("a reused tree should be equal to a new tree") {
+    val rand = new scala.util.Random(0)
+    val n = 13
+    val reused = new ThetaLambdaTree(n)
+    val order = Array.tabulate(n)(i => i)
+    for (_ <- 0 until 100) {
+      val ests = Array.fill(n)(rand.nextInt(40))
+      val durs = Array.fill(n)(rand.nextInt(10))
+      val sorted = order.sortBy(ests(_))
+      val fresh = new ThetaLambdaTree(n)
+      if (rand.nextBoolean()) {
+        reused.fillAndPlaceLeaves(sorted, ests, durs)
+        fresh.fillAndPlaceLeaves(sorted, ests, durs)
+        for (a <- 0 until n; if rand.nextInt(3) == 0) {
+          reused.grayActivity(a)
+          fresh.grayActivity(a)
+          reused.ectBar should be(fresh.ectBar)
+          reused.responsibleEctBar should be(fresh.responsibleEctBar)
+        }
+      }
+      else {
+        reused.clearAndPlaceLeaves(sorted, ests, durs)
+        fresh.clearAndPlaceLeaves(sorted, ests, durs)
+        for (a <- 0 until n; if rand.nextInt(3) == 0) {
+          reused.insert(a)
+          fresh.insert(a)
+        }
+      }
+      reused.ect should be(fresh.ect)
+      reused.sumDuration should be(fresh.sumDuration)
+    }
+  }
 }
@@ -0,0 +1,49 @@
+package oscar.ml.classificationtree.test
+
+import oscar.algo.testUtils.TestSuite
+import oscar.ml.classificationtree.ANDORsearch.{ANDORSearch, ParallelANDORSearch}
+import oscar.ml.classificationtree.DataManipulation.Data
+import oscar.ml.classificationtree.RunTreeANDOR
+
+import scala.util.Random
+
+class TestParallelANDORSearch extends TestSuite {
+
+  // Transactions with random features (numbered from 1) and a class depending on the first features with noise
+  def randomData(seed: Int, nTrans: Int, nFeatures: Int): Data = {
+    val rand = new Random(seed)
+    val transactions = Array.fill(nTrans) {
+      val features = (1 to nFeatures).filter(_ => rand.nextBoolean()).toArray
+      val label = if ((features.contains(1) ^ features.contains(2)) != (rand.nextInt(10) == 0)) 1 else 0
+      (features, label)
+    }
+    new Data("random" + seed, transactions)
+  }
+
+  def model(db: Data, depth: Int) = RunTreeANDOR.buildModel(db, isComplete = false, depth = depth, lbLeaf = 1, lbLeafPercent = false, heuristic = 0)
+
+  test("The parallel search should find the cost of the sequential search") {
+    for (seed <- 0 until 5) {
+      val db = randomData(seed, 40, 6)
+      val (solver, tree) = model(db, 3)
+      val (_, cost) = ANDORSearch.search(solver, tree)
+      val parallel = new ParallelANDORSearch(() => model(db, 3), nThreads = 4, minParallelDepth = 1)
+      val (solverP, treeP) = model(db, 3)
+      val (_, costP) = parallel.search(solverP, treeP)
+      costP shouldBe cost
+      parallel.isCompleted shouldBe true
+    }
+  }
+
+  test("The parallel search should stop at the timeout") {
+    val db = randomData(0, 400, 40)
+    val parallel = new ParallelANDORSearch(() => model(db, 5), nThreads = 4, minParallelDepth = 1)
+    val (solver, tree) = model(db, 5)
+    val start = System.currentTimeMillis()
+    parallel.search(solver, tree, TO = 1)
+    val time = System.currentTimeMillis() - start
+    parallel.isCompleted shouldBe false
+    time should be < 5000L
+    parallel.searchTime should be < 5000L
+  }
+}
@@ -0,0 +1,50 @@
+package oscar.util.test
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+import oscar.algo.testUtils.TestSuite
+import oscar.util.NumberReader
+
+class NumberReaderTest extends TestSuite {
+
+  def reader(text: String): NumberReader = new NumberReader(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)))
+
+  test("Integers separated by spaces, tabs, commas and new lines") {
+    val r = reader("  10 -3,\t+7\r\n\n0 2147483647 -2147483648\n")
+    Array.fill(6)(r.nextInt()) shouldBe Array(10, -3, 7, 0, Int.MaxValue, Int.MinValue)
+    r.hasNext shouldBe false
+    a[NoSuchElementException] should be thrownBy r.nextInt()
+  }
+
+  test("Doubles") {
+    val r = reader("1.5 -0.25 3 1e3 -2.5E-2 .5 12345678901234567890.5 0.1")
+    r.nextDoubles(8) shouldBe Array(1.5, -0.25, 3.0, 1000.0, -0.025, 0.5, 12345678901234567890.5, 0.1)
+  }
+
+  test("Tokens that are not numbers are rejected") {
+    a[NumberFormatException] should be thrownBy reader("12a").nextInt()
+    a[NumberFormatException] should be thrownBy reader("1.5").nextInt()
+    a[NumberFormatException] should be thrownBy reader("3000000000").nextInt()
+    reader("3000000000").nextLong() shouldBe 3000000000L
+  }
+
+  test("Lines and TSPLIB headers") {
+    val r = reader("NAME : a\nTYPE : TSP\nNODE_COORD_SECTION\n1 3 4\n2 5 6 7\n\n3 8 9\nEOF\n")
+    r.skipLines(3)
+    r.hasNextNumber shouldBe true
+    r.nextLineInts() shouldBe Array(1, 3, 4)
+    r.nextLineInts() shouldBe Array(2, 5, 6, 7)
+    r.nextInts(3) shouldBe Array(3, 8, 9)
+    r.hasNextOnLine shouldBe false
+    r.hasNextNumber shouldBe false
+    r.skipToken()
+    r.hasNext shouldBe false
+  }
+
+  test("Matrices") {
+    val r = reader("2\n1 2\n3 4\n")
+    val n = r.nextInt()
+    r.nextIntMatrix(n, n) shouldBe Array(Array(1, 2), Array(3, 4))
+  }
+}